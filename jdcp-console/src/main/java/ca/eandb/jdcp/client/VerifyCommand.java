@@ -30,7 +30,9 @@ import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 
 import ca.eandb.util.UnexpectedException;
 import ca.eandb.util.args.AbstractCommand;
@@ -67,6 +69,8 @@ public final class VerifyCommand extends AbstractCommand<Configuration> {
       throw new IllegalArgumentException(path.getAbsolutePath().concat(" is not a directory."));
     }
 
+    List<File> files = new ArrayList<File>();
+    List<String> classNames = new ArrayList<String>();
     for (File file : path.listFiles()) {
       if (file.isDirectory()) {
         verify(combine(pkg, file.getName()), file, conf);
@@ -76,29 +80,51 @@ public final class VerifyCommand extends AbstractCommand<Configuration> {
         if (extensionSeparator >= 0) {
           String extension = fileName.substring(extensionSeparator + 1);
           if (extension.equals("class")) {
-            String className = combine(pkg, fileName.substring(0, extensionSeparator));
-            try {
-              byte[] digest = conf.getJobService().getClassDigest(className);
-              if (digest == null) {
-                System.out.print("? ");
-                System.out.println(className);
-              } else if (!matches(file, digest, conf)) {
-                System.out.print("* ");
-                System.out.println(className);
-              } else if (conf.verbose) {
-                System.out.print("= ");
-                System.out.println(className);
-              }
-            } catch (FileNotFoundException e) {
-              throw new UnexpectedException(e);
-            } catch (IOException e) {
-              System.out.print("E ");
-              System.out.println(className);
-            }
+            files.add(file);
+            classNames.add(combine(pkg, fileName.substring(0, extensionSeparator)));
           }
         }
       }
     }
+
+    if (classNames.isEmpty()) {
+      return;
+    }
+
+    /* Get the digests of all classes in this package in a single call. */
+    byte[][] digests;
+    try {
+      digests = conf.getJobService().getClassDigests(
+          classNames.toArray(new String[classNames.size()]));
+    } catch (IOException e) {
+      for (String className : classNames) {
+        System.out.print("E ");
+        System.out.println(className);
+      }
+      return;
+    }
+
+    for (int i = 0; i < classNames.size(); i++) {
+      String className = classNames.get(i);
+      try {
+        byte[] digest = digests[i];
+        if (digest == null) {
+          System.out.print("? ");
+          System.out.println(className);
+        } else if (!matches(files.get(i), digest, conf)) {
+          System.out.print("* ");
+          System.out.println(className);
+        } else if (conf.verbose) {
+          System.out.print("= ");
+          System.out.println(className);
+        }
+      } catch (FileNotFoundException e) {
+        throw new UnexpectedException(e);
+      } catch (IOException e) {
+        System.out.print("E ");
+        System.out.println(className);
+      }
+    }
   }
 
   /**
@@ -36,10 +36,10 @@ import ca.eandb.util.auth.FileLoginManager;
 public final class ConsoleState extends Configuration {
 
   @ShellArgument
-  public final WorkerState worker = new WorkerState();
+  public final ServerState server = new ServerState();
 
   @ShellArgument
-  public final ServerState server = new ServerState();
+  public final WorkerState worker = new WorkerState(server);
 
   @ShellArgument
   public final HubState hub = new HubState();
@@ -34,6 +34,7 @@ import org.apache.log4j.Logger;
 
 import ca.eandb.jdcp.JdcpUtil;
 import ca.eandb.jdcp.hub.JobHub;
+import ca.eandb.jdcp.nio.NioJobServiceServer;
 import ca.eandb.jdcp.server.AuthenticationServer;
 import ca.eandb.util.args.CommandArgument;
 import ca.eandb.util.args.OptionArgument;
@@ -52,6 +53,12 @@ public final class HubState {
   /** The running <code>JobHub</code>. */
   private JobHub jobHub = null;
 
+  /**
+   * The server for the NIO transport, or <code>null</code> if it is not
+   * enabled.
+   */
+  private NioJobServiceServer nioServer = null;
+
   /**
    * Gets the RMI <code>Registry</code> to register the server with, creating
    * it if necessary.
@@ -89,6 +96,11 @@ public final class HubState {
       Registry registry = getRegistry();
       registry.bind("AuthenticationService", authServer);
 
+      if (JdcpUtil.isNioTransportEnabled()) {
+        logger.info("Starting NIO transport");
+        nioServer = new NioJobServiceServer(authServer, JdcpUtil.DEFAULT_NIO_PORT);
+      }
+
       logger.info("Hub ready");
       System.out.println("Hub started");
 
@@ -108,6 +120,10 @@ public final class HubState {
       jobHub = null;
       Registry registry = getRegistry();
       registry.unbind("AuthenticationService");
+      if (nioServer != null) {
+        nioServer.shutdown();
+        nioServer = null;
+      }
       System.out.println("Hub stopped");
     } catch (Exception e) {
       logger.error("An error occurred while stopping the hub", e);
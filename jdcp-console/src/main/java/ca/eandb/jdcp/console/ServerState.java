@@ -39,10 +39,11 @@ import org.apache.derby.jdbc.EmbeddedDataSource;
 import org.apache.log4j.Logger;
 
 import ca.eandb.jdcp.JdcpUtil;
+import ca.eandb.jdcp.nio.NioJobServiceServer;
 import ca.eandb.jdcp.server.AuthenticationServer;
 import ca.eandb.jdcp.server.JobServer;
 import ca.eandb.jdcp.server.classmanager.DbClassManager;
-import ca.eandb.jdcp.server.scheduling.PrioritySerialTaskScheduler;
+import ca.eandb.jdcp.server.scheduling.IndexedPriorityTaskScheduler;
 import ca.eandb.jdcp.server.scheduling.TaskScheduler;
 import ca.eandb.util.args.CommandArgument;
 import ca.eandb.util.progress.ProgressState;
@@ -69,6 +70,15 @@ public final class ServerState {
   /** The running <code>JobServer</code>. */
   private JobServer jobServer = null;
 
+  /**
+   * The server for the NIO transport, or <code>null</code> if it is not
+   * enabled.
+   */
+  private NioJobServiceServer nioServer = null;
+
+  /** The <code>DbClassManager</code> used by the running server. */
+  private DbClassManager classManager = null;
+
   /**
    * Gets the RMI <code>Registry</code> to register the server with, creating
    * it if necessary.
@@ -83,6 +93,15 @@ public final class ServerState {
     return registry;
   }
 
+  /**
+   * Gets the running <code>JobServer</code>.
+   * @return The running <code>JobServer</code>, or <code>null</code> if the
+   *     server has not been started.
+   */
+  JobServer getJobServer() {
+    return jobServer;
+  }
+
   /**
    * Removes completed and cancelled jobs from the stat list.
    */
@@ -126,10 +145,10 @@ public final class ServerState {
       jobsDirectory.mkdir();
 
       logger.info("Initializing service");
-      DbClassManager classManager = new DbClassManager(ds);
+      classManager = new DbClassManager(ds);
       classManager.prepareDataSource();
 
-      TaskScheduler scheduler = new PrioritySerialTaskScheduler();
+      TaskScheduler scheduler = new IndexedPriorityTaskScheduler();
       Executor executor = Executors.newCachedThreadPool();
       jobServer = new JobServer(jobsDirectory, factory, scheduler, classManager, executor);
       AuthenticationServer authServer = new AuthenticationServer(jobServer, JdcpUtil.DEFAULT_PORT);
@@ -138,6 +157,11 @@ public final class ServerState {
       Registry registry = getRegistry();
       registry.bind("AuthenticationService", authServer);
 
+      if (JdcpUtil.isNioTransportEnabled()) {
+        logger.info("Starting NIO transport");
+        nioServer = new NioJobServiceServer(authServer, JdcpUtil.DEFAULT_NIO_PORT, executor);
+      }
+
       logger.info("Server ready");
       System.out.println("Server started");
 
@@ -172,6 +196,14 @@ public final class ServerState {
     try {
       Registry registry = getRegistry();
       registry.unbind("AuthenticationService");
+      if (nioServer != null) {
+        nioServer.shutdown();
+        nioServer = null;
+      }
+      if (classManager != null) {
+        classManager.close();
+        classManager = null;
+      }
       this.jobProgressStates = null;
       System.out.println("Server stopped");
     } catch (Exception e) {
@@ -26,10 +26,9 @@
 package ca.eandb.jdcp.console;
 
 import java.io.File;
+import java.io.IOException;
 import java.rmi.NotBoundException;
 import java.rmi.RemoteException;
-import java.rmi.registry.LocateRegistry;
-import java.rmi.registry.Registry;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Iterator;
@@ -43,9 +42,11 @@ import org.apache.derby.jdbc.EmbeddedDataSource;
 import org.apache.log4j.Logger;
 
 import ca.eandb.jdcp.JdcpUtil;
-import ca.eandb.jdcp.remote.AuthenticationService;
 import ca.eandb.jdcp.remote.JobService;
 import ca.eandb.jdcp.remote.ProtocolVersionException;
+import ca.eandb.jdcp.server.JobServer;
+import ca.eandb.jdcp.worker.ClassDefinitionCache;
+import ca.eandb.jdcp.worker.ClassPackFile;
 import ca.eandb.jdcp.worker.JobServiceFactory;
 import ca.eandb.jdcp.worker.ThreadServiceWorker;
 import ca.eandb.jdcp.worker.policy.CourtesyMonitor;
@@ -85,17 +86,48 @@ public final class WorkerState {
    */
   private Thread workerThread = null;
 
+  /**
+   * The <code>ClassPackFile</code> in which the worker stores class
+   * definitions, or <code>null</code> if none is in use.
+   */
+  private ClassPackFile classPack = null;
+
   /**
    * The number of seconds until the next reconnection attempt is made.
    */
   private int reconnectCountdown = -1;
 
+  /**
+   * The <code>ServerState</code> for the server running in this process,
+   * which local workers connect to directly.
+   */
+  private final ServerState server;
+
+  /**
+   * Creates a new <code>WorkerState</code>.
+   * @param server The <code>ServerState</code> for the server running in
+   *     this process.
+   */
+  public WorkerState(ServerState server) {
+    this.server = server;
+  }
+
   /**
    * Starts the worker process.
    * @param numberOfCpus The number of worker threads to spawn.
    * @param host The name of the host to connect to.
    * @param username The user name to log in with.
    * @param password The password to log in with.
+   * @param local A value indicating whether to process tasks for the
+   *     server running in this process directly, rather than connecting
+   *     to <code>host</code>.
+   * @param classCacheMegabytes The capacity (in megabytes) of the
+   *     in-memory class cache used when the database is disabled, or zero
+   *     to use the default capacity.  If <code>classPackDirectory</code>
+   *     is specified, this is the capacity of the class pack instead.
+   * @param classPackDirectory The directory in which to keep a persistent,
+   *     memory-mapped class pack when the database is disabled, or
+   *     <code>null</code> to keep class definitions in memory only.
    */
   @CommandArgument
   public void start(
@@ -103,7 +135,10 @@ public final class WorkerState {
       @OptionArgument("host") final String host,
       @OptionArgument("username") final String username,
       @OptionArgument("password") final String password,
+      @OptionArgument(value="local", shortKey='l') final boolean local,
       @OptionArgument(value="nodb", shortKey='i') final boolean internal,
+      @OptionArgument(value="classCache", shortKey='C') int classCacheMegabytes,
+      @OptionArgument(value="classPack", shortKey='K') File classPackDirectory,
       @OptionArgument("courtesy") final String courtesyCommand,
       @OptionArgument(value="courtesyWorkingDirectory", shortKey='W') File courtesyWorkingDirectory,
       @OptionArgument(value="courtesyPollingInterval", shortKey='P') long courtesyPollingInterval
@@ -115,6 +150,12 @@ public final class WorkerState {
     }
     System.out.println("Starting worker with " + Integer.toString(numberOfCpus) + " cpus");
 
+    final JobServer jobServer = local ? server.getJobServer() : null;
+    if (local && jobServer == null) {
+      System.err.println("Server is not running");
+      return;
+    }
+
     if (worker != null) {
       logger.info("Shutting down worker");
       worker.shutdown();
@@ -122,12 +163,16 @@ public final class WorkerState {
         workerThread.join();
       } catch (InterruptedException e) {
       }
+      closeClassPack();
     }
 
     logger.info("Starting worker");
 
     JobServiceFactory serviceFactory = new JobServiceFactory() {
       public JobService connect() {
+        if (jobServer != null) {
+          return jobServer;
+        }
         return waitForService(
             host.equals("") ? "localhost" : host,
             username.equals("") ? "guest" : username,
@@ -155,6 +200,21 @@ public final class WorkerState {
 
     taskProgressStates = monitorFactory.getProgressStates();
 
+    if (internal && classPackDirectory != null) {
+      long capacity = (classCacheMegabytes > 0)
+          ? classCacheMegabytes * 1024L * 1024L
+          : ClassPackFile.DEFAULT_CAPACITY;
+      try {
+        classPackDirectory.mkdirs();
+        classPack = new ClassPackFile(classPackDirectory, capacity);
+        worker.setClassPack(classPack);
+      } catch (IOException e) {
+        logger.error("Could not open class pack, using in-memory cache.", e);
+      }
+    } else if (internal && classCacheMegabytes > 0) {
+      worker.setClassCache(new ClassDefinitionCache(classCacheMegabytes * 1024L * 1024L));
+    }
+
     if (!internal) {
       logger.info("Preparing data source");
       EmbeddedDataSource ds = null;
@@ -202,9 +262,7 @@ public final class WorkerState {
   private JobService connect(String host, String username, String password) {
     JobService service = null;
     try {
-      Registry registry = LocateRegistry.getRegistry(host, JdcpUtil.DEFAULT_PORT);
-      AuthenticationService auth = (AuthenticationService) registry.lookup("AuthenticationService");
-      service = auth.authenticate(username, password, JdcpUtil.PROTOCOL_VERSION_ID);
+      service = JdcpUtil.connect(host, username, password);
     } catch (NotBoundException e) {
       logger.error("Job service not found at remote host.", e);
     } catch (RemoteException e) {
@@ -252,6 +310,21 @@ public final class WorkerState {
     worker = null;
     workerThread = null;
     taskProgressStates = null;
+    closeClassPack();
+  }
+
+  /**
+   * Closes the <code>ClassPackFile</code> used by the worker, if any.
+   */
+  private void closeClassPack() {
+    if (classPack != null) {
+      try {
+        classPack.close();
+      } catch (IOException e) {
+        logger.error("Could not close class pack.", e);
+      }
+      classPack = null;
+    }
   }
 
   /**
@@ -37,6 +37,7 @@ import javax.security.auth.login.LoginException;
 import ca.eandb.jdcp.job.HostService;
 import ca.eandb.jdcp.job.JobExecutionException;
 import ca.eandb.jdcp.job.ParallelizableJob;
+import ca.eandb.jdcp.nio.NioJobServiceClient;
 import ca.eandb.jdcp.remote.AuthenticationService;
 import ca.eandb.jdcp.remote.JobService;
 import ca.eandb.jdcp.remote.ProtocolVersionException;
@@ -54,12 +55,26 @@ public final class JdcpUtil {
   /** The default port that a JDCP server listens on. */
   public static final int DEFAULT_PORT = 5327;
 
+  /**
+   * The default port that a JDCP server listens on for connections using
+   * the NIO transport.
+   */
+  public static final int DEFAULT_NIO_PORT = 5328;
+
+  /**
+   * The system property used to select the transport to use to connect to
+   * servers.  If set to "nio", the NIO transport is used (and servers
+   * listen for NIO connections in addition to RMI).  Otherwise, RMI is
+   * used.
+   */
+  public static final String TRANSPORT_PROPERTY = "jdcp.transport";
+
   /**
    * Uniquely identifies the protocol used for communication between clients
    * and a server.  This is used for verifying protocol compatibility when
    * authenticating with the server.
    */
-  public static final UUID PROTOCOL_VERSION_ID = UUID.fromString("E818C36E-2EA4-4BA4-B793-C96B818E85FF");
+  public static final UUID PROTOCOL_VERSION_ID = UUID.fromString("CBDB1F6F-55D5-47F9-94B9-F826D3D6C95E");
 
   /**
    * Connects to a JDCP server.
@@ -79,11 +94,24 @@ public final class JdcpUtil {
   public static JobService connect(String host, String username,
       String password) throws RemoteException, NotBoundException,
       LoginException, ProtocolVersionException {
+    if (isNioTransportEnabled()) {
+      return NioJobServiceClient.connect(host, DEFAULT_NIO_PORT, username,
+          password, PROTOCOL_VERSION_ID);
+    }
     Registry registry = LocateRegistry.getRegistry(host, DEFAULT_PORT);
     AuthenticationService auth = (AuthenticationService) registry.lookup("AuthenticationService");
     return auth.authenticate(username, password, PROTOCOL_VERSION_ID);
   }
 
+  /**
+   * Determines whether the NIO transport has been selected using the
+   * {@link #TRANSPORT_PROPERTY} system property.
+   * @return A value indicating whether to use the NIO transport.
+   */
+  public static boolean isNioTransportEnabled() {
+    return "nio".equalsIgnoreCase(System.getProperty(TRANSPORT_PROPERTY));
+  }
+
   /**
    * Submits a job to a server for processing.
    * @param job The <code>ParallelizableJob</code> to be processed.
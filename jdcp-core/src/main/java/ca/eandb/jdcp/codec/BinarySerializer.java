@@ -0,0 +1,1049 @@
+/*
+ * Copyright (c) 2026 Bradley W. Kimmel
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package ca.eandb.jdcp.codec;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InvalidClassException;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.io.StreamCorruptedException;
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import ca.eandb.util.UnexpectedException;
+
+/**
+ * A compact binary <code>Serializer</code>.  Primitive wrappers, strings,
+ * and arrays are written directly, with arrays of primitives copied in
+ * bulk.  Objects of registered classes are written field by field, with
+ * each class named only once per stream.  Objects of any other class are
+ * written using Java object serialization, so any <code>Serializable</code>
+ * object may be written, but only registered classes benefit.
+ *
+ * <p>Shared references to arrays and to objects of registered classes
+ * (including cycles) are preserved.  Each object of an unregistered class
+ * is written as a separate Java serialization stream, so references
+ * between such objects and the rest of the graph are not shared.
+ *
+ * <p>A stream names the classes of the objects it contains, so a reader
+ * only creates objects of classes that it has itself registered.  Classes
+ * must therefore be registered both where objects are written and where
+ * they are read (e.g., by both the <code>TaskWorker</code> and the
+ * <code>ParallelizableJob</code>).  Objects written using Java
+ * serialization are subject to the same trust as any other Java
+ * serialization stream received by the reader.
+ *
+ * @author Brad Kimmel
+ * @see #register(Class)
+ */
+public final class BinarySerializer implements Serializer {
+
+  /** The ID of this serializer. */
+  public static final int ID = 0xB1;
+
+  /** Tag for a <code>null</code> reference. */
+  private static final int NULL = 0;
+
+  /** Tag for a reference to an object already written to the stream. */
+  private static final int REF = 1;
+
+  /** Tag for an object written using Java object serialization. */
+  private static final int JAVA = 2;
+
+  /* Tags for primitive wrappers and strings. */
+  private static final int BOOLEAN = 3;
+  private static final int BYTE = 4;
+  private static final int SHORT = 5;
+  private static final int CHAR = 6;
+  private static final int INT = 7;
+  private static final int LONG = 8;
+  private static final int FLOAT = 9;
+  private static final int DOUBLE = 10;
+  private static final int STRING = 11;
+
+  /* Tags for arrays. */
+  private static final int BOOLEAN_ARRAY = 12;
+  private static final int BYTE_ARRAY = 13;
+  private static final int SHORT_ARRAY = 14;
+  private static final int CHAR_ARRAY = 15;
+  private static final int INT_ARRAY = 16;
+  private static final int LONG_ARRAY = 17;
+  private static final int FLOAT_ARRAY = 18;
+  private static final int DOUBLE_ARRAY = 19;
+  private static final int OBJECT_ARRAY = 20;
+
+  /** Tag for an object of a registered class. */
+  private static final int OBJECT = 21;
+
+  /** The size of the buffer used for reading and writing. */
+  private static final int BUFFER_SIZE = 8192;
+
+  /** The character set used to encode strings. */
+  private static final Charset UTF8 = Charset.forName("UTF-8");
+
+  /**
+   * The layouts of classes written field by field, computed on first
+   * use.
+   */
+  private static final ClassValue<ClassLayout> layouts = new ClassValue<ClassLayout>() {
+    protected ClassLayout computeValue(Class<?> type) {
+      return new ClassLayout(type);
+    }
+  };
+
+  /**
+   * A spare buffer for each thread, so that reading or writing a small
+   * object does not require allocating a new buffer.
+   */
+  private static final ThreadLocal<ByteBuffer> spareBuffers = new ThreadLocal<ByteBuffer>();
+
+  /**
+   * The registered classes.  Classes are held weakly so that the classes
+   * of completed jobs may be unloaded.
+   */
+  private final Map<Class<?>, Boolean> registered =
+      Collections.synchronizedMap(new WeakHashMap<Class<?>, Boolean>());
+
+  /**
+   * Registers a class to be written field by field.  The class must be
+   * <code>Serializable</code>, must have a no-argument constructor (which
+   * need not be public), and neither it nor its serializable superclasses
+   * may customize their serialized form (using <code>writeObject</code>,
+   * <code>readObject</code>, <code>writeReplace</code>, or
+   * <code>readResolve</code>).  When an object of the class is read, it is
+   * created using its no-argument constructor and its non-transient fields
+   * are then assigned.  Only the class itself is registered, not its
+   * subclasses.  Registration is required both where objects are written
+   * and where they are read.  If the members of the class cannot be made
+   * accessible (e.g., because its module does not open its package), the
+   * class is not registered and its objects continue to be written using
+   * Java serialization.
+   * @param type The <code>Class</code> to register.
+   * @return A value indicating whether <code>type</code> was registered.
+   * @throws IllegalArgumentException If <code>type</code> does not meet
+   *     the requirements above.
+   */
+  public boolean register(Class<?> type) {
+    ClassLayout layout = layouts.get(type);
+    if (layout.inaccessible) {
+      return false;
+    } else if (layout.error != null) {
+      throw new IllegalArgumentException(type.getName() + ": " + layout.error);
+    }
+    registered.put(type, Boolean.TRUE);
+    return true;
+  }
+
+  /**
+   * Determines whether a class has been registered.
+   * @param type The <code>Class</code> to check.
+   * @return A value indicating whether <code>type</code> is registered.
+   * @see #register(Class)
+   */
+  public boolean isRegistered(Class<?> type) {
+    return registered.containsKey(type);
+  }
+
+  /* (non-Javadoc)
+   * @see ca.eandb.jdcp.codec.Serializer#getId()
+   */
+  public int getId() {
+    return ID;
+  }
+
+  /* (non-Javadoc)
+   * @see ca.eandb.jdcp.codec.Serializer#getName()
+   */
+  public String getName() {
+    return "binary";
+  }
+
+  /* (non-Javadoc)
+   * @see ca.eandb.jdcp.codec.Serializer#writeObject(java.lang.Object, java.io.OutputStream)
+   */
+  public void writeObject(Object obj, OutputStream out) throws IOException {
+    ByteBuffer buffer = takeBuffer();
+    try {
+      Output output = new Output(out, buffer);
+      buffer.put((byte) ID);
+      output.writeValue(obj);
+      output.flush();
+    } finally {
+      spareBuffers.set(buffer);
+    }
+  }
+
+  /* (non-Javadoc)
+   * @see ca.eandb.jdcp.codec.Serializer#readObject(java.io.InputStream, java.lang.ClassLoader)
+   */
+  public Object readObject(InputStream in, ClassLoader loader)
+      throws IOException, ClassNotFoundException {
+    ByteBuffer buffer = takeBuffer();
+    try {
+      Input input = new Input(in, loader, buffer);
+      input.require(1);
+      int id = buffer.get() & 0xff;
+      if (id != ID) {
+        throw new StreamCorruptedException("Not a binary serialized object");
+      }
+      return input.readValue();
+    } finally {
+      spareBuffers.set(buffer);
+    }
+  }
+
+  /**
+   * Takes the spare buffer for the current thread, or allocates a new one
+   * if it is in use (e.g., if an object written using Java serialization
+   * itself uses this serializer).
+   * @return An empty buffer.
+   */
+  private static ByteBuffer takeBuffer() {
+    ByteBuffer buffer = spareBuffers.get();
+    if (buffer == null) {
+      return ByteBuffer.allocate(BUFFER_SIZE);
+    }
+    spareBuffers.set(null);
+    buffer.clear();
+    return buffer;
+  }
+
+  /**
+   * Describes how the fields of a class are written.
+   * @author Brad Kimmel
+   */
+  private static final class ClassLayout {
+
+    /** The no-argument constructor of the class. */
+    public final Constructor<?> constructor;
+
+    /** The fields to write, in order. */
+    public final Field[] fields;
+
+    /**
+     * The type of each field in {@link #fields}: the JVM type descriptor
+     * character for primitive fields, or 'L' for reference fields.
+     */
+    public final char[] types;
+
+    /**
+     * The reason that the class cannot be written field by field, or
+     * <code>null</code> if it can.
+     */
+    public final String error;
+
+    /**
+     * A value indicating whether the class meets the requirements for
+     * being written field by field, but its members cannot be made
+     * accessible.
+     */
+    public final boolean inaccessible;
+
+    /**
+     * Computes the layout of a class.
+     * @param type The <code>Class</code>.
+     */
+    public ClassLayout(Class<?> type) {
+      Constructor<?> constructor = null;
+      List<Field> fields = new ArrayList<Field>();
+      String error = null;
+      boolean inaccessible = false;
+
+      try {
+        error = check(type);
+        if (error == null) {
+          List<Class<?>> hierarchy = new ArrayList<Class<?>>();
+          for (Class<?> c = type; c != null && Serializable.class.isAssignableFrom(c); c = c.getSuperclass()) {
+            hierarchy.add(0, c);
+          }
+          for (Class<?> c : hierarchy) {
+            error = checkMethods(c);
+            if (error != null) {
+              break;
+            }
+            Field[] declared = c.getDeclaredFields();
+            Arrays.sort(declared, new Comparator<Field>() {
+              public int compare(Field a, Field b) {
+                return a.getName().compareTo(b.getName());
+              }
+            });
+            for (Field field : declared) {
+              int mod = field.getModifiers();
+              if (!Modifier.isStatic(mod) && !Modifier.isTransient(mod)) {
+                field.setAccessible(true);
+                fields.add(field);
+              }
+            }
+          }
+        }
+        if (error == null) {
+          constructor = type.getDeclaredConstructor();
+          constructor.setAccessible(true);
+        }
+      } catch (NoSuchMethodException e) {
+        error = "no no-argument constructor";
+      } catch (RuntimeException e) {
+        /* A SecurityException, or an InaccessibleObjectException on
+         * platforms with modules, means the fields cannot be accessed
+         * reflectively, so the class must be left to Java serialization.
+         */
+        error = "inaccessible: " + e;
+        inaccessible = true;
+      }
+
+      this.error = error;
+      this.inaccessible = inaccessible;
+      this.constructor = (error == null) ? constructor : null;
+      this.fields = (error == null) ? fields.toArray(new Field[fields.size()]) : null;
+      this.types = (error == null) ? new char[this.fields.length] : null;
+      if (error == null) {
+        for (int i = 0; i < this.fields.length; i++) {
+          Class<?> ft = this.fields[i].getType();
+          this.types[i] = !ft.isPrimitive() ? 'L'
+              : ft == boolean.class ? 'Z'
+              : ft == long.class ? 'J'
+              : Character.toUpperCase(ft.getName().charAt(0));
+        }
+      }
+    }
+
+    /**
+     * Determines whether a class is of a kind that may be written field by
+     * field.
+     * @param type The <code>Class</code> to check.
+     * @return The reason that <code>type</code> cannot be written field by
+     *     field, or <code>null</code> if it can.
+     */
+    private static String check(Class<?> type) {
+      if (type.isArray() || type.isPrimitive() || type.isInterface()
+          || type.isEnum() || Modifier.isAbstract(type.getModifiers())) {
+        return "not a concrete class";
+      } else if (!Serializable.class.isAssignableFrom(type)) {
+        return "not serializable";
+      } else if (Externalizable.class.isAssignableFrom(type)) {
+        return "externalizable";
+      }
+      return null;
+    }
+
+    /**
+     * Determines whether a class customizes its serialized form.
+     * @param c The <code>Class</code> to check.
+     * @return The reason that <code>c</code> cannot be written field by
+     *     field, or <code>null</code> if it can.
+     */
+    private static String checkMethods(Class<?> c) {
+      for (Method method : c.getDeclaredMethods()) {
+        String name = method.getName();
+        if (name.equals("writeObject") || name.equals("readObject")
+            || name.equals("readObjectNoData")
+            || name.equals("writeReplace") || name.equals("readResolve")) {
+          return c.getName() + " defines " + name;
+        }
+      }
+      return null;
+    }
+
+  }
+
+  /**
+   * Writes values to an <code>OutputStream</code> through a buffer.
+   * @author Brad Kimmel
+   */
+  private final class Output {
+
+    /** The <code>OutputStream</code> to write to. */
+    private final OutputStream out;
+
+    /** The buffer holding bytes not yet written to {@link #out}. */
+    private final ByteBuffer buffer;
+
+    /**
+     * The indices of the arrays and registered objects written so far,
+     * in the order that they were written.
+     */
+    private final Map<Object, Integer> refs = new IdentityHashMap<Object, Integer>();
+
+    /** The indices of the classes named so far. */
+    private final Map<Class<?>, Integer> classes = new HashMap<Class<?>, Integer>();
+
+    /**
+     * Creates a new <code>Output</code>.
+     * @param out The <code>OutputStream</code> to write to.
+     * @param buffer The empty buffer to use.
+     */
+    public Output(OutputStream out, ByteBuffer buffer) {
+      this.out = out;
+      this.buffer = buffer;
+    }
+
+    /**
+     * Writes the contents of the buffer to the stream.
+     * @throws IOException If an error occurs writing to the stream.
+     */
+    public void flush() throws IOException {
+      out.write(buffer.array(), 0, buffer.position());
+      buffer.clear();
+    }
+
+    /**
+     * Ensures that there is room in the buffer.
+     * @param n The number of bytes required.
+     * @throws IOException If an error occurs writing to the stream.
+     */
+    private void ensure(int n) throws IOException {
+      if (buffer.remaining() < n) {
+        flush();
+      }
+    }
+
+    /**
+     * Writes a non-negative integer using a variable length encoding.
+     * @param value The value to write.
+     * @throws IOException If an error occurs writing to the stream.
+     */
+    private void writeVarInt(int value) throws IOException {
+      ensure(5);
+      while ((value & ~0x7f) != 0) {
+        buffer.put((byte) ((value & 0x7f) | 0x80));
+        value >>>= 7;
+      }
+      buffer.put((byte) value);
+    }
+
+    /**
+     * Writes a tag byte.
+     * @param tag The tag to write.
+     * @throws IOException If an error occurs writing to the stream.
+     */
+    private void writeTag(int tag) throws IOException {
+      ensure(1);
+      buffer.put((byte) tag);
+    }
+
+    /**
+     * Writes a block of bytes.
+     * @param b The bytes to write.
+     * @param len The number of bytes to write.
+     * @throws IOException If an error occurs writing to the stream.
+     */
+    private void writeBytes(byte[] b, int len) throws IOException {
+      if (len <= buffer.remaining()) {
+        buffer.put(b, 0, len);
+      } else {
+        flush();
+        if (len < BUFFER_SIZE) {
+          buffer.put(b, 0, len);
+        } else {
+          out.write(b, 0, len);
+        }
+      }
+    }
+
+    /**
+     * Writes a string.
+     * @param s The string to write.
+     * @throws IOException If an error occurs writing to the stream.
+     */
+    private void writeString(String s) throws IOException {
+      byte[] b = s.getBytes(UTF8);
+      writeVarInt(b.length);
+      writeBytes(b, b.length);
+    }
+
+    /**
+     * Names a class, or refers to it by index if it has already been named.
+     * @param type The <code>Class</code> to write.
+     * @throws IOException If an error occurs writing to the stream.
+     */
+    private void writeClass(Class<?> type) throws IOException {
+      Integer index = classes.get(type);
+      if (index != null) {
+        writeVarInt(index + 1);
+      } else {
+        writeVarInt(0);
+        writeString(type.getName());
+        classes.put(type, classes.size());
+      }
+    }
+
+    /**
+     * Writes a value.
+     * @param obj The value to write.
+     * @throws IOException If an error occurs writing to the stream.
+     */
+    public void writeValue(Object obj) throws IOException {
+      if (obj == null) {
+        writeTag(NULL);
+        return;
+      }
+
+      Class<?> type = obj.getClass();
+      if (type == String.class) {
+        writeTag(STRING);
+        writeString((String) obj);
+      } else if (type == Integer.class) {
+        ensure(5);
+        buffer.put((byte) INT).putInt((Integer) obj);
+      } else if (type == Double.class) {
+        ensure(9);
+        buffer.put((byte) DOUBLE).putDouble((Double) obj);
+      } else if (type == Long.class) {
+        ensure(9);
+        buffer.put((byte) LONG).putLong((Long) obj);
+      } else if (type == Float.class) {
+        ensure(5);
+        buffer.put((byte) FLOAT).putFloat((Float) obj);
+      } else if (type == Boolean.class) {
+        ensure(2);
+        buffer.put((byte) BOOLEAN).put((byte) (((Boolean) obj) ? 1 : 0));
+      } else if (type == Byte.class) {
+        ensure(2);
+        buffer.put((byte) BYTE).put((Byte) obj);
+      } else if (type == Short.class) {
+        ensure(3);
+        buffer.put((byte) SHORT).putShort((Short) obj);
+      } else if (type == Character.class) {
+        ensure(3);
+        buffer.put((byte) CHAR).putChar((Character) obj);
+      } else if (type.isArray() || registered.containsKey(type)) {
+        Integer ref = refs.get(obj);
+        if (ref != null) {
+          writeTag(REF);
+          writeVarInt(ref);
+        } else {
+          refs.put(obj, refs.size());
+          if (type.isArray()) {
+            writeArray(obj, type.getComponentType());
+          } else {
+            writeFields(obj, type);
+          }
+        }
+      } else {
+        byte[] bytes = Serializers.serialize(obj, Serializers.JAVA);
+        writeTag(JAVA);
+        writeVarInt(bytes.length);
+        writeBytes(bytes, bytes.length);
+      }
+    }
+
+    /**
+     * Writes an array.
+     * @param array The array to write.
+     * @param component The component type of the array.
+     * @throws IOException If an error occurs writing to the stream.
+     */
+    private void writeArray(Object array, Class<?> component) throws IOException {
+      int length = Array.getLength(array);
+      if (component == double.class) {
+        writeTag(DOUBLE_ARRAY);
+        writeVarInt(length);
+        double[] a = (double[]) array;
+        for (int off = 0; off < length;) {
+          ensure(8);
+          int n = Math.min(length - off, buffer.remaining() / 8);
+          buffer.asDoubleBuffer().put(a, off, n);
+          buffer.position(buffer.position() + 8 * n);
+          off += n;
+        }
+      } else if (component == int.class) {
+        writeTag(INT_ARRAY);
+        writeVarInt(length);
+        int[] a = (int[]) array;
+        for (int off = 0; off < length;) {
+          ensure(4);
+          int n = Math.min(length - off, buffer.remaining() / 4);
+          buffer.asIntBuffer().put(a, off, n);
+          buffer.position(buffer.position() + 4 * n);
+          off += n;
+        }
+      } else if (component == float.class) {
+        writeTag(FLOAT_ARRAY);
+        writeVarInt(length);
+        float[] a = (float[]) array;
+        for (int off = 0; off < length;) {
+          ensure(4);
+          int n = Math.min(length - off, buffer.remaining() / 4);
+          buffer.asFloatBuffer().put(a, off, n);
+          buffer.position(buffer.position() + 4 * n);
+          off += n;
+        }
+      } else if (component == long.class) {
+        writeTag(LONG_ARRAY);
+        writeVarInt(length);
+        long[] a = (long[]) array;
+        for (int off = 0; off < length;) {
+          ensure(8);
+          int n = Math.min(length - off, buffer.remaining() / 8);
+          buffer.asLongBuffer().put(a, off, n);
+          buffer.position(buffer.position() + 8 * n);
+          off += n;
+        }
+      } else if (component == short.class) {
+        writeTag(SHORT_ARRAY);
+        writeVarInt(length);
+        short[] a = (short[]) array;
+        for (int off = 0; off < length;) {
+          ensure(2);
+          int n = Math.min(length - off, buffer.remaining() / 2);
+          buffer.asShortBuffer().put(a, off, n);
+          buffer.position(buffer.position() + 2 * n);
+          off += n;
+        }
+      } else if (component == char.class) {
+        writeTag(CHAR_ARRAY);
+        writeVarInt(length);
+        char[] a = (char[]) array;
+        for (int off = 0; off < length;) {
+          ensure(2);
+          int n = Math.min(length - off, buffer.remaining() / 2);
+          buffer.asCharBuffer().put(a, off, n);
+          buffer.position(buffer.position() + 2 * n);
+          off += n;
+        }
+      } else if (component == byte.class) {
+        writeTag(BYTE_ARRAY);
+        writeVarInt(length);
+        writeBytes((byte[]) array, length);
+      } else if (component == boolean.class) {
+        writeTag(BOOLEAN_ARRAY);
+        writeVarInt(length);
+        boolean[] a = (boolean[]) array;
+        for (int i = 0; i < length; i++) {
+          ensure(1);
+          buffer.put((byte) (a[i] ? 1 : 0));
+        }
+      } else {
+        writeTag(OBJECT_ARRAY);
+        writeClass(component);
+        writeVarInt(length);
+        Object[] a = (Object[]) array;
+        for (int i = 0; i < length; i++) {
+          writeValue(a[i]);
+        }
+      }
+    }
+
+    /**
+     * Writes an object of a registered class field by field.
+     * @param obj The object to write.
+     * @param type The class of <code>obj</code>.
+     * @throws IOException If an error occurs writing to the stream.
+     */
+    private void writeFields(Object obj, Class<?> type) throws IOException {
+      ClassLayout layout = layouts.get(type);
+      writeTag(OBJECT);
+      writeClass(type);
+      writeVarInt(layout.fields.length);
+      try {
+        for (int i = 0; i < layout.fields.length; i++) {
+          Field field = layout.fields[i];
+          switch (layout.types[i]) {
+          case 'Z': ensure(1); buffer.put((byte) (field.getBoolean(obj) ? 1 : 0)); break;
+          case 'B': ensure(1); buffer.put(field.getByte(obj)); break;
+          case 'S': ensure(2); buffer.putShort(field.getShort(obj)); break;
+          case 'C': ensure(2); buffer.putChar(field.getChar(obj)); break;
+          case 'I': ensure(4); buffer.putInt(field.getInt(obj)); break;
+          case 'J': ensure(8); buffer.putLong(field.getLong(obj)); break;
+          case 'F': ensure(4); buffer.putFloat(field.getFloat(obj)); break;
+          case 'D': ensure(8); buffer.putDouble(field.getDouble(obj)); break;
+          default: writeValue(field.get(obj)); break;
+          }
+        }
+      } catch (IllegalAccessException e) {
+        throw new UnexpectedException(e);
+      }
+    }
+
+  }
+
+  /**
+   * Reads values from an <code>InputStream</code> through a buffer.
+   * @author Brad Kimmel
+   */
+  private final class Input {
+
+    /** The <code>InputStream</code> to read from. */
+    private final InputStream in;
+
+    /**
+     * The <code>ClassLoader</code> to use to resolve classes, or
+     * <code>null</code> to use the default.
+     */
+    private final ClassLoader loader;
+
+    /** The buffer holding bytes read from {@link #in} but not yet used. */
+    private final ByteBuffer buffer;
+
+    /** The arrays and registered objects read so far, in order. */
+    private final List<Object> refs = new ArrayList<Object>();
+
+    /** The classes named so far, in order. */
+    private final List<Class<?>> classes = new ArrayList<Class<?>>();
+
+    /**
+     * Creates a new <code>Input</code>.
+     * @param in The <code>InputStream</code> to read from.
+     * @param loader The <code>ClassLoader</code> to use to resolve
+     *     classes, or <code>null</code> to use the default.
+     * @param buffer The empty buffer to use.
+     */
+    public Input(InputStream in, ClassLoader loader, ByteBuffer buffer) {
+      this.in = in;
+      this.loader = loader;
+      this.buffer = buffer;
+      this.buffer.flip();
+    }
+
+    /**
+     * Ensures that the buffer holds enough bytes.
+     * @param n The number of bytes required (at most
+     *     {@link BinarySerializer#BUFFER_SIZE}).
+     * @throws IOException If an error occurs reading from the stream, or
+     *     if the end of the stream is reached.
+     */
+    public void require(int n) throws IOException {
+      if (buffer.remaining() < n) {
+        buffer.compact();
+        while (buffer.position() < n) {
+          int read = in.read(buffer.array(), buffer.position(), buffer.remaining());
+          if (read < 0) {
+            throw new EOFException();
+          }
+          buffer.position(buffer.position() + read);
+        }
+        buffer.flip();
+      }
+    }
+
+    /**
+     * Reads a non-negative integer written using a variable length
+     * encoding.
+     * @return The value that was read.
+     * @throws IOException If an error occurs reading from the stream.
+     */
+    private int readVarInt() throws IOException {
+      int value = 0;
+      for (int shift = 0; shift < 32; shift += 7) {
+        require(1);
+        int b = buffer.get();
+        value |= (b & 0x7f) << shift;
+        if ((b & 0x80) == 0) {
+          if (value < 0) {
+            break;
+          }
+          return value;
+        }
+      }
+      throw new StreamCorruptedException("Invalid length");
+    }
+
+    /**
+     * Reads a block of bytes.
+     * @param b The array to read into.
+     * @throws IOException If an error occurs reading from the stream.
+     */
+    private void readBytes(byte[] b) throws IOException {
+      int n = Math.min(b.length, buffer.remaining());
+      buffer.get(b, 0, n);
+      while (n < b.length) {
+        int read = in.read(b, n, b.length - n);
+        if (read < 0) {
+          throw new EOFException();
+        }
+        n += read;
+      }
+    }
+
+    /**
+     * Reads a string.
+     * @return The string that was read.
+     * @throws IOException If an error occurs reading from the stream.
+     */
+    private String readString() throws IOException {
+      byte[] b = new byte[readVarInt()];
+      readBytes(b);
+      return new String(b, UTF8);
+    }
+
+    /**
+     * Reads a class written by {@link Output#writeClass(Class)}.
+     * @return The <code>Class</code> that was read.
+     * @throws IOException If an error occurs reading from the stream.
+     * @throws ClassNotFoundException If the class cannot be found.
+     */
+    private Class<?> readClass() throws IOException, ClassNotFoundException {
+      int index = readVarInt();
+      if (index == 0) {
+        String name = readString();
+        Class<?> type = null;
+        if (loader != null) {
+          try {
+            type = Class.forName(name, false, loader);
+          } catch (ClassNotFoundException e) {
+            /* fall back to the default. */
+          }
+        }
+        if (type == null) {
+          type = Class.forName(name, false, BinarySerializer.class.getClassLoader());
+        }
+        classes.add(type);
+        return type;
+      } else if (index <= classes.size()) {
+        return classes.get(index - 1);
+      }
+      throw new StreamCorruptedException("Invalid class reference");
+    }
+
+    /**
+     * Reads a value.
+     * @return The value that was read.
+     * @throws IOException If an error occurs reading from the stream.
+     * @throws ClassNotFoundException If a class of the value cannot be
+     *     found.
+     */
+    public Object readValue() throws IOException, ClassNotFoundException {
+      require(1);
+      int tag = buffer.get();
+      switch (tag) {
+      case NULL: return null;
+      case REF: {
+        int index = readVarInt();
+        if (index >= refs.size()) {
+          throw new StreamCorruptedException("Invalid reference");
+        }
+        return refs.get(index);
+      }
+      case JAVA: {
+        byte[] bytes = new byte[readVarInt()];
+        readBytes(bytes);
+        return Serializers.JAVA.readObject(new ByteArrayInputStream(bytes), loader);
+      }
+      case BOOLEAN: require(1); return Boolean.valueOf(buffer.get() != 0);
+      case BYTE: require(1); return Byte.valueOf(buffer.get());
+      case SHORT: require(2); return Short.valueOf(buffer.getShort());
+      case CHAR: require(2); return Character.valueOf(buffer.getChar());
+      case INT: require(4); return Integer.valueOf(buffer.getInt());
+      case LONG: require(8); return Long.valueOf(buffer.getLong());
+      case FLOAT: require(4); return Float.valueOf(buffer.getFloat());
+      case DOUBLE: require(8); return Double.valueOf(buffer.getDouble());
+      case STRING: return readString();
+      case OBJECT: return readFields();
+      default: return readArray(tag);
+      }
+    }
+
+    /**
+     * Reads an array.
+     * @param tag The tag identifying the type of array.
+     * @return The array that was read.
+     * @throws IOException If an error occurs reading from the stream.
+     * @throws ClassNotFoundException If the component type of the array
+     *     cannot be found.
+     */
+    private Object readArray(int tag) throws IOException, ClassNotFoundException {
+      switch (tag) {
+      case DOUBLE_ARRAY: {
+        double[] a = new double[readVarInt()];
+        refs.add(a);
+        for (int off = 0; off < a.length;) {
+          require(8);
+          int n = Math.min(a.length - off, buffer.remaining() / 8);
+          buffer.asDoubleBuffer().get(a, off, n);
+          buffer.position(buffer.position() + 8 * n);
+          off += n;
+        }
+        return a;
+      }
+      case INT_ARRAY: {
+        int[] a = new int[readVarInt()];
+        refs.add(a);
+        for (int off = 0; off < a.length;) {
+          require(4);
+          int n = Math.min(a.length - off, buffer.remaining() / 4);
+          buffer.asIntBuffer().get(a, off, n);
+          buffer.position(buffer.position() + 4 * n);
+          off += n;
+        }
+        return a;
+      }
+      case FLOAT_ARRAY: {
+        float[] a = new float[readVarInt()];
+        refs.add(a);
+        for (int off = 0; off < a.length;) {
+          require(4);
+          int n = Math.min(a.length - off, buffer.remaining() / 4);
+          buffer.asFloatBuffer().get(a, off, n);
+          buffer.position(buffer.position() + 4 * n);
+          off += n;
+        }
+        return a;
+      }
+      case LONG_ARRAY: {
+        long[] a = new long[readVarInt()];
+        refs.add(a);
+        for (int off = 0; off < a.length;) {
+          require(8);
+          int n = Math.min(a.length - off, buffer.remaining() / 8);
+          buffer.asLongBuffer().get(a, off, n);
+          buffer.position(buffer.position() + 8 * n);
+          off += n;
+        }
+        return a;
+      }
+      case SHORT_ARRAY: {
+        short[] a = new short[readVarInt()];
+        refs.add(a);
+        for (int off = 0; off < a.length;) {
+          require(2);
+          int n = Math.min(a.length - off, buffer.remaining() / 2);
+          buffer.asShortBuffer().get(a, off, n);
+          buffer.position(buffer.position() + 2 * n);
+          off += n;
+        }
+        return a;
+      }
+      case CHAR_ARRAY: {
+        char[] a = new char[readVarInt()];
+        refs.add(a);
+        for (int off = 0; off < a.length;) {
+          require(2);
+          int n = Math.min(a.length - off, buffer.remaining() / 2);
+          buffer.asCharBuffer().get(a, off, n);
+          buffer.position(buffer.position() + 2 * n);
+          off += n;
+        }
+        return a;
+      }
+      case BYTE_ARRAY: {
+        byte[] a = new byte[readVarInt()];
+        refs.add(a);
+        readBytes(a);
+        return a;
+      }
+      case BOOLEAN_ARRAY: {
+        boolean[] a = new boolean[readVarInt()];
+        refs.add(a);
+        for (int i = 0; i < a.length; i++) {
+          require(1);
+          a[i] = (buffer.get() != 0);
+        }
+        return a;
+      }
+      case OBJECT_ARRAY: {
+        Class<?> component = readClass();
+        if (component.isPrimitive()) {
+          throw new StreamCorruptedException("Invalid array type");
+        }
+        Object[] a = (Object[]) Array.newInstance(component, readVarInt());
+        refs.add(a);
+        try {
+          for (int i = 0; i < a.length; i++) {
+            a[i] = readValue();
+          }
+        } catch (ArrayStoreException e) {
+          throw new StreamCorruptedException("Invalid array element");
+        }
+        return a;
+      }
+      default:
+        throw new StreamCorruptedException("Invalid tag: " + tag);
+      }
+    }
+
+    /**
+     * Reads an object written field by field.
+     * @return The object that was read.
+     * @throws IOException If an error occurs reading from the stream.
+     * @throws ClassNotFoundException If a class cannot be found.
+     */
+    private Object readFields() throws IOException, ClassNotFoundException {
+      Class<?> type = readClass();
+      if (!registered.containsKey(type)) {
+        throw new InvalidClassException(type.getName(), "not registered");
+      }
+      ClassLayout layout = layouts.get(type);
+      if (layout.error != null) {
+        throw new InvalidClassException(type.getName(), layout.error);
+      }
+      if (readVarInt() != layout.fields.length) {
+        throw new InvalidClassException(type.getName(), "incompatible fields");
+      }
+
+      Object obj;
+      try {
+        obj = layout.constructor.newInstance();
+      } catch (Exception e) {
+        InvalidClassException ex = new InvalidClassException(type.getName(),
+            "cannot be instantiated");
+        ex.initCause(e);
+        throw ex;
+      }
+      refs.add(obj);
+
+      try {
+        for (int i = 0; i < layout.fields.length; i++) {
+          Field field = layout.fields[i];
+          switch (layout.types[i]) {
+          case 'Z': require(1); field.setBoolean(obj, buffer.get() != 0); break;
+          case 'B': require(1); field.setByte(obj, buffer.get()); break;
+          case 'S': require(2); field.setShort(obj, buffer.getShort()); break;
+          case 'C': require(2); field.setChar(obj, buffer.getChar()); break;
+          case 'I': require(4); field.setInt(obj, buffer.getInt()); break;
+          case 'J': require(8); field.setLong(obj, buffer.getLong()); break;
+          case 'F': require(4); field.setFloat(obj, buffer.getFloat()); break;
+          case 'D': require(8); field.setDouble(obj, buffer.getDouble()); break;
+          default: field.set(obj, readValue()); break;
+          }
+        }
+      } catch (IllegalAccessException e) {
+        throw new UnexpectedException(e);
+      } catch (IllegalArgumentException e) {
+        throw new InvalidClassException(type.getName(), "incompatible field value");
+      }
+      return obj;
+    }
+
+  }
+
+}
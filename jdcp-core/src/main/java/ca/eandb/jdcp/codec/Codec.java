@@ -0,0 +1,68 @@
+/*
+ * Copyright (c) 2026 Bradley W. Kimmel
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package ca.eandb.jdcp.codec;
+
+import java.io.IOException;
+
+/**
+ * Compresses and decompresses blocks of bytes.  Implementations must be
+ * thread-safe.
+ * @author Brad Kimmel
+ * @see Codecs
+ */
+public interface Codec {
+
+  /**
+   * Gets the ID that identifies this codec in a {@link CompressedPayload}.
+   * IDs are fixed by the protocol, so that every peer decodes a given ID
+   * the same way.
+   * @return The ID of this codec.
+   */
+  int getId();
+
+  /**
+   * Gets the name of this codec.
+   * @return The name of this codec.
+   */
+  String getName();
+
+  /**
+   * Compresses a block of bytes.
+   * @param data The bytes to compress.
+   * @return The compressed bytes.
+   */
+  byte[] encode(byte[] data);
+
+  /**
+   * Decompresses a block of bytes.
+   * @param data The compressed bytes.
+   * @param length The length of the uncompressed data.
+   * @return The uncompressed bytes.
+   * @throws IOException If <code>data</code> is not valid compressed data.
+   */
+  byte[] decode(byte[] data, int length) throws IOException;
+
+}
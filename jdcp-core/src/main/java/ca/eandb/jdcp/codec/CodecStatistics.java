@@ -0,0 +1,149 @@
+/*
+ * Copyright (c) 2026 Bradley W. Kimmel
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package ca.eandb.jdcp.codec;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Accumulates statistics about the use of a <code>Codec</code>: how much
+ * it compresses payloads, and how much CPU time it spends doing so.
+ * @author Brad Kimmel
+ * @see Codecs#getStatistics(Codec)
+ */
+public final class CodecStatistics {
+
+  /** The number of payloads encoded. */
+  private final AtomicLong payloadsEncoded = new AtomicLong();
+
+  /** The total size (in bytes) of the payloads before encoding. */
+  private final AtomicLong bytesIn = new AtomicLong();
+
+  /** The total size (in bytes) of the payloads after encoding. */
+  private final AtomicLong bytesOut = new AtomicLong();
+
+  /** The total CPU time (in nanoseconds) spent encoding. */
+  private final AtomicLong encodeNanos = new AtomicLong();
+
+  /** The number of payloads decoded. */
+  private final AtomicLong payloadsDecoded = new AtomicLong();
+
+  /** The total CPU time (in nanoseconds) spent decoding. */
+  private final AtomicLong decodeNanos = new AtomicLong();
+
+  /**
+   * Records that a payload was encoded.
+   * @param length The size (in bytes) of the payload before encoding.
+   * @param encodedLength The size (in bytes) of the encoded payload.
+   * @param nanos The CPU time (in nanoseconds) spent encoding.
+   */
+  void recordEncode(int length, int encodedLength, long nanos) {
+    payloadsEncoded.incrementAndGet();
+    bytesIn.addAndGet(length);
+    bytesOut.addAndGet(encodedLength);
+    encodeNanos.addAndGet(nanos);
+  }
+
+  /**
+   * Records that a payload was decoded.
+   * @param nanos The CPU time (in nanoseconds) spent decoding.
+   */
+  void recordDecode(long nanos) {
+    payloadsDecoded.incrementAndGet();
+    decodeNanos.addAndGet(nanos);
+  }
+
+  /**
+   * Gets the number of payloads encoded.
+   * @return The number of payloads encoded.
+   */
+  public long getPayloadsEncoded() {
+    return payloadsEncoded.get();
+  }
+
+  /**
+   * Gets the number of payloads decoded.
+   * @return The number of payloads decoded.
+   */
+  public long getPayloadsDecoded() {
+    return payloadsDecoded.get();
+  }
+
+  /**
+   * Gets the total size of the payloads encoded, before encoding.
+   * @return The total size, in bytes.
+   */
+  public long getBytesIn() {
+    return bytesIn.get();
+  }
+
+  /**
+   * Gets the total size of the payloads encoded, after encoding.
+   * @return The total size, in bytes.
+   */
+  public long getBytesOut() {
+    return bytesOut.get();
+  }
+
+  /**
+   * Gets the ratio of the size of the payloads encoded before encoding to
+   * their size after encoding.
+   * @return The compression ratio, or <code>Double.NaN</code> if no
+   *     payloads have been encoded.
+   */
+  public double getCompressionRatio() {
+    long out = bytesOut.get();
+    return (out > 0) ? (double) bytesIn.get() / (double) out : Double.NaN;
+  }
+
+  /**
+   * Gets the total CPU time spent encoding.
+   * @return The CPU time, in nanoseconds.
+   */
+  public long getEncodeNanos() {
+    return encodeNanos.get();
+  }
+
+  /**
+   * Gets the total CPU time spent decoding.
+   * @return The CPU time, in nanoseconds.
+   */
+  public long getDecodeNanos() {
+    return decodeNanos.get();
+  }
+
+  /* (non-Javadoc)
+   * @see java.lang.Object#toString()
+   */
+  @Override
+  public String toString() {
+    return String.format(
+        "encoded=%d (%d -> %d bytes, ratio %.2f, %.1f ms), decoded=%d (%.1f ms)",
+        getPayloadsEncoded(), getBytesIn(), getBytesOut(),
+        getCompressionRatio(), getEncodeNanos() / 1e6,
+        getPayloadsDecoded(), getDecodeNanos() / 1e6);
+  }
+
+}
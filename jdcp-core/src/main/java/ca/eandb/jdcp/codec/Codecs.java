@@ -0,0 +1,113 @@
+/*
+ * Copyright (c) 2026 Bradley W. Kimmel
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package ca.eandb.jdcp.codec;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * Static registry of the <code>Codec</code>s understood by every peer
+ * speaking the current protocol version.  A payload records the ID of the
+ * codec used to encode it, so the sender may choose any registered codec
+ * and the receiver decodes accordingly.
+ * @author Brad Kimmel
+ */
+public final class Codecs {
+
+  /** A <code>Codec</code> that leaves data unchanged. */
+  public static final Codec NONE = new NullCodec();
+
+  /** A <code>Codec</code> using the DEFLATE algorithm. */
+  public static final Codec DEFLATE = new DeflateCodec();
+
+  /** A fast LZ77-family <code>Codec</code>. */
+  public static final Codec LZ = new LzCodec();
+
+  /** The registered <code>Codec</code>s, indexed by ID. */
+  private static final Codec[] codecs = { NONE, DEFLATE, LZ };
+
+  /** The <code>CodecStatistics</code> for each codec, indexed by ID. */
+  private static final CodecStatistics[] statistics = {
+    new CodecStatistics(), new CodecStatistics(), new CodecStatistics() };
+
+  /** Used to measure CPU time spent encoding and decoding. */
+  private static final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+
+  /**
+   * Gets the <code>Codec</code> with the specified ID.
+   * @param id The ID of the <code>Codec</code>.
+   * @return The <code>Codec</code> with the specified ID.
+   * @throws IllegalArgumentException If there is no <code>Codec</code>
+   *     with the specified ID.
+   */
+  public static Codec forId(int id) {
+    if (id < 0 || id >= codecs.length) {
+      throw new IllegalArgumentException("Unknown codec ID: " + id);
+    }
+    return codecs[id];
+  }
+
+  /**
+   * Gets the <code>Codec</code> with the specified name.
+   * @param name The name of the <code>Codec</code> (e.g., "none",
+   *     "deflate", or "lz").
+   * @return The <code>Codec</code> with the specified name.
+   * @throws IllegalArgumentException If there is no <code>Codec</code>
+   *     with the specified name.
+   */
+  public static Codec forName(String name) {
+    for (Codec codec : codecs) {
+      if (codec.getName().equalsIgnoreCase(name)) {
+        return codec;
+      }
+    }
+    throw new IllegalArgumentException("Unknown codec: " + name);
+  }
+
+  /**
+   * Gets the statistics accumulated for a registered <code>Codec</code>.
+   * @param codec The <code>Codec</code>.
+   * @return The <code>CodecStatistics</code> for <code>codec</code>.
+   */
+  public static CodecStatistics getStatistics(Codec codec) {
+    return statistics[codec.getId()];
+  }
+
+  /**
+   * Gets the CPU time used by the current thread, if supported, or the
+   * elapsed time otherwise.
+   * @return The time, in nanoseconds.
+   */
+  static long cpuTime() {
+    return threads.isCurrentThreadCpuTimeSupported()
+        && threads.isThreadCpuTimeEnabled()
+        ? threads.getCurrentThreadCpuTime() : System.nanoTime();
+  }
+
+  /** This class contains only static utility methods. */
+  private Codecs() {}
+
+}
@@ -0,0 +1,245 @@
+/*
+ * Copyright (c) 2026 Bradley W. Kimmel
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package ca.eandb.jdcp.codec;
+
+import java.io.IOException;
+import java.io.Serializable;
+
+import ca.eandb.util.UnexpectedException;
+
+/**
+ * An envelope holding a compressed, serialized object.  Task and task
+ * result objects above a size threshold are wrapped in a
+ * <code>CompressedPayload</code> before being placed in a
+ * <code>Serialized</code> for transmission, and are unwrapped by the
+ * recipient using {@link #decompress(Object, ClassLoader)}.  The object
+ * may be serialized using any registered <code>Serializer</code>; the
+ * recipient determines which from the serialized bytes.
+ * @author Brad Kimmel
+ */
+public final class CompressedPayload implements Serializable {
+
+  /** Serialization version ID. */
+  private static final long serialVersionUID = -3216148710442369503L;
+
+  /**
+   * The default size (in bytes) of serialized objects below which they are
+   * sent uncompressed.
+   */
+  public static final int DEFAULT_THRESHOLD = 4096;
+
+  /** The ID of the <code>Codec</code> used to encode {@link #data}. */
+  private final int codecId;
+
+  /** The length of the serialized object before encoding. */
+  private final int length;
+
+  /** The encoded serialized object. */
+  private final byte[] data;
+
+  /**
+   * The original object, if this payload was created in this JVM.  This
+   * allows the sender to recover the original object, rather than a copy,
+   * without decoding.
+   */
+  private transient Object object;
+
+  /**
+   * Creates a new <code>CompressedPayload</code>.
+   * @param codecId The ID of the <code>Codec</code> used to encode
+   *     <code>data</code>.
+   * @param length The length of the serialized object before encoding.
+   * @param data The encoded serialized object.
+   * @param object The original object.
+   */
+  private CompressedPayload(int codecId, int length, byte[] data, Object object) {
+    this.codecId = codecId;
+    this.length = length;
+    this.data = data;
+    this.object = object;
+  }
+
+  /**
+   * Compresses an object if its serialized form is at least
+   * {@link #DEFAULT_THRESHOLD} bytes long.
+   * @param obj The object to compress.
+   * @param codec The <code>Codec</code> to use.
+   * @return A <code>CompressedPayload</code> holding <code>obj</code>, or
+   *     <code>obj</code> itself if compressing it is not worthwhile.
+   * @see #compress(Object, Codec, int)
+   */
+  public static Object compress(Object obj, Codec codec) {
+    return compress(obj, codec, DEFAULT_THRESHOLD);
+  }
+
+  /**
+   * Compresses an object if its serialized form is large enough.
+   * @param obj The object to compress.
+   * @param codec The <code>Codec</code> to use.
+   * @param threshold The size (in bytes) of the serialized object below
+   *     which the object is not compressed.
+   * @return A <code>CompressedPayload</code> holding <code>obj</code>, or
+   *     <code>obj</code> itself if it is smaller than
+   *     <code>threshold</code> when serialized, if <code>codec</code> is
+   *     {@link Codecs#NONE}, or if compressing it does not make it smaller.
+   */
+  public static Object compress(Object obj, Codec codec, int threshold) {
+    return compress(obj, Serializers.JAVA, codec, threshold);
+  }
+
+  /**
+   * Serializes an object using the specified <code>Serializer</code>, and
+   * compresses it if its serialized form is large enough.
+   * @param obj The object to compress.
+   * @param serializer The <code>Serializer</code> to use.
+   * @param codec The <code>Codec</code> to use.
+   * @param threshold The size (in bytes) of the serialized object below
+   *     which the object is not compressed.
+   * @return A <code>CompressedPayload</code> holding <code>obj</code>.  If
+   *     <code>serializer</code> is {@link Serializers#JAVA}, then
+   *     <code>obj</code> itself is returned where
+   *     {@link #compress(Object, Codec, int)} would do so, since it will be
+   *     serialized the same way when transmitted.
+   */
+  public static Object compress(Object obj, Serializer serializer,
+      Codec codec, int threshold) {
+    boolean java = (serializer.getId() == JavaSerializer.ID);
+    if (obj == null || obj instanceof CompressedPayload
+        || (java && codec.getId() == NullCodec.ID)) {
+      return obj;
+    }
+
+    byte[] bytes = serialize(obj, serializer);
+    if (java && bytes.length < threshold) {
+      return obj;
+    }
+
+    CompressedPayload payload = wrap(bytes, codec, threshold);
+    if (java && payload.codecId == NullCodec.ID) {
+      return obj;
+    }
+    payload.object = obj;
+    return payload;
+  }
+
+  /**
+   * Wraps an object that has already been serialized, compressing it if it
+   * is large enough.  Unlike {@link #compress(Object, Codec, int)}, this
+   * always returns a <code>CompressedPayload</code> (possibly using
+   * {@link Codecs#NONE}), so that the recipient can recover the object
+   * without the sender having to serialize it a second time.
+   * @param bytes The serialized object.
+   * @param codec The <code>Codec</code> to use.
+   * @param threshold The size (in bytes) of the serialized object below
+   *     which the object is not compressed.
+   * @return A <code>CompressedPayload</code> holding the object.
+   */
+  public static CompressedPayload wrap(byte[] bytes, Codec codec, int threshold) {
+    if (bytes.length >= threshold && codec.getId() != NullCodec.ID) {
+      long start = Codecs.cpuTime();
+      byte[] encoded = codec.encode(bytes);
+      Codecs.getStatistics(codec).recordEncode(bytes.length, encoded.length,
+          Codecs.cpuTime() - start);
+
+      if (encoded.length < bytes.length) {
+        return new CompressedPayload(codec.getId(), bytes.length, encoded, null);
+      }
+    }
+    return new CompressedPayload(NullCodec.ID, bytes.length, bytes, null);
+  }
+
+  /**
+   * Recovers an object that may have been compressed using
+   * {@link #compress(Object, Codec, int)}.
+   * @param obj The object, or a <code>CompressedPayload</code> holding it.
+   * @param loader The <code>ClassLoader</code> to use to resolve the
+   *     classes of the compressed object.
+   * @return The original object.
+   * @throws ClassNotFoundException If a class of the compressed object
+   *     could not be found.
+   */
+  public static Object decompress(Object obj, ClassLoader loader)
+      throws ClassNotFoundException {
+    return (obj instanceof CompressedPayload)
+        ? ((CompressedPayload) obj).getObject(loader)
+        : obj;
+  }
+
+  /**
+   * Gets the <code>Codec</code> used to encode this payload.
+   * @return The <code>Codec</code> used to encode this payload.
+   */
+  public Codec getCodec() {
+    return Codecs.forId(codecId);
+  }
+
+  /**
+   * Gets the size of the encoded data held by this payload.
+   * @return The size (in bytes) of the encoded data.
+   */
+  public int getSize() {
+    return data.length;
+  }
+
+  /**
+   * Decodes and deserializes the object held by this payload.
+   * @param loader The <code>ClassLoader</code> to use to resolve the
+   *     classes of the object.
+   * @return The object.
+   * @throws ClassNotFoundException If a class of the object could not be
+   *     found.
+   */
+  public synchronized Object getObject(ClassLoader loader)
+      throws ClassNotFoundException {
+    if (object == null) {
+      try {
+        Codec codec = getCodec();
+        long start = Codecs.cpuTime();
+        byte[] bytes = codec.decode(data, length);
+        Codecs.getStatistics(codec).recordDecode(Codecs.cpuTime() - start);
+        object = Serializers.deserialize(bytes, loader);
+      } catch (IOException e) {
+        throw new UnexpectedException(e);
+      }
+    }
+    return object;
+  }
+
+  /**
+   * Serializes an object.
+   * @param obj The object to serialize.
+   * @param serializer The <code>Serializer</code> to use.
+   * @return The serialized object.
+   */
+  private static byte[] serialize(Object obj, Serializer serializer) {
+    try {
+      return Serializers.serialize(obj, serializer);
+    } catch (IOException e) {
+      throw new UnexpectedException(e);
+    }
+  }
+
+}
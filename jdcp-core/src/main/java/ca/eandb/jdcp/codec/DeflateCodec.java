@@ -0,0 +1,125 @@
+/*
+ * Copyright (c) 2026 Bradley W. Kimmel
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package ca.eandb.jdcp.codec;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * A <code>Codec</code> that uses the DEFLATE algorithm (as in zlib).  This
+ * compresses well but is comparatively slow.
+ * @author Brad Kimmel
+ */
+public final class DeflateCodec implements Codec {
+
+  /** The ID of this codec. */
+  public static final int ID = 1;
+
+  /** The compression level (0-9) to use. */
+  private final int level;
+
+  /**
+   * Creates a new <code>DeflateCodec</code> that uses the default
+   * compression level.
+   */
+  public DeflateCodec() {
+    this(Deflater.DEFAULT_COMPRESSION);
+  }
+
+  /**
+   * Creates a new <code>DeflateCodec</code>.
+   * @param level The compression level (0-9), or
+   *     <code>Deflater.DEFAULT_COMPRESSION</code>.
+   */
+  public DeflateCodec(int level) {
+    this.level = level;
+  }
+
+  /* (non-Javadoc)
+   * @see ca.eandb.jdcp.codec.Codec#getId()
+   */
+  public int getId() {
+    return ID;
+  }
+
+  /* (non-Javadoc)
+   * @see ca.eandb.jdcp.codec.Codec#getName()
+   */
+  public String getName() {
+    return "deflate";
+  }
+
+  /* (non-Javadoc)
+   * @see ca.eandb.jdcp.codec.Codec#encode(byte[])
+   */
+  public byte[] encode(byte[] data) {
+    Deflater deflater = new Deflater(level);
+    try {
+      deflater.setInput(data);
+      deflater.finish();
+      byte[] buf = new byte[Math.max(64, data.length / 2)];
+      int n = 0;
+      while (!deflater.finished()) {
+        if (n == buf.length) {
+          buf = Arrays.copyOf(buf, 2 * buf.length);
+        }
+        n += deflater.deflate(buf, n, buf.length - n);
+      }
+      return Arrays.copyOf(buf, n);
+    } finally {
+      deflater.end();
+    }
+  }
+
+  /* (non-Javadoc)
+   * @see ca.eandb.jdcp.codec.Codec#decode(byte[], int)
+   */
+  public byte[] decode(byte[] data, int length) throws IOException {
+    Inflater inflater = new Inflater();
+    try {
+      inflater.setInput(data);
+      byte[] result = new byte[length];
+      int n = 0;
+      while (n < length) {
+        int count = inflater.inflate(result, n, length - n);
+        if (count == 0 && (inflater.finished() || inflater.needsInput()
+            || inflater.needsDictionary())) {
+          throw new IOException("Compressed data is truncated");
+        }
+        n += count;
+      }
+      return result;
+    } catch (DataFormatException e) {
+      throw new IOException("Compressed data is corrupt", e);
+    } finally {
+      inflater.end();
+    }
+  }
+
+}
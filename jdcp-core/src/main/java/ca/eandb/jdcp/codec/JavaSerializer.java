@@ -0,0 +1,75 @@
+/*
+ * Copyright (c) 2026 Bradley W. Kimmel
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package ca.eandb.jdcp.codec;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+
+/**
+ * A <code>Serializer</code> that uses Java object serialization.
+ * @author Brad Kimmel
+ */
+public final class JavaSerializer implements Serializer {
+
+  /**
+   * The ID of this serializer.  This is the first byte of the magic number
+   * that begins every Java object serialization stream.
+   */
+  public static final int ID = 0xAC;
+
+  /* (non-Javadoc)
+   * @see ca.eandb.jdcp.codec.Serializer#getId()
+   */
+  public int getId() {
+    return ID;
+  }
+
+  /* (non-Javadoc)
+   * @see ca.eandb.jdcp.codec.Serializer#getName()
+   */
+  public String getName() {
+    return "java";
+  }
+
+  /* (non-Javadoc)
+   * @see ca.eandb.jdcp.codec.Serializer#writeObject(java.lang.Object, java.io.OutputStream)
+   */
+  public void writeObject(Object obj, OutputStream out) throws IOException {
+    ObjectOutputStream oos = new ObjectOutputStream(out);
+    oos.writeObject(obj);
+    oos.flush();
+  }
+
+  /* (non-Javadoc)
+   * @see ca.eandb.jdcp.codec.Serializer#readObject(java.io.InputStream, java.lang.ClassLoader)
+   */
+  public Object readObject(InputStream in, ClassLoader loader)
+      throws IOException, ClassNotFoundException {
+    return new LoaderObjectInputStream(in, loader).readObject();
+  }
+
+}
@@ -0,0 +1,249 @@
+/*
+ * Copyright (c) 2026 Bradley W. Kimmel
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package ca.eandb.jdcp.codec;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * A fast LZ77-family <code>Codec</code>, similar to LZ4, implemented in
+ * pure Java.  It compresses less than {@link DeflateCodec} but costs a
+ * small fraction of the CPU time, which makes it suitable for compressing
+ * task results on workers that are busy performing tasks.
+ *
+ * <p>The compressed data is a sequence of runs.  Each run consists of a
+ * token byte whose high nibble is the number of literal bytes and whose low
+ * nibble is the match length less {@link #MIN_MATCH}, followed by the
+ * remainder of the literal length (if the nibble was 15), the literal
+ * bytes, the two-byte little-endian offset of the match, and the remainder
+ * of the match length (if the nibble was 15).  Lengths are continued in
+ * bytes of 255 terminated by a byte less than 255.  The final run has
+ * literals only.</p>
+ *
+ * @author Brad Kimmel
+ */
+public final class LzCodec implements Codec {
+
+  /** The ID of this codec. */
+  public static final int ID = 2;
+
+  /** The minimum length of a match. */
+  private static final int MIN_MATCH = 4;
+
+  /** The maximum distance back to a match. */
+  private static final int MAX_OFFSET = 65535;
+
+  /** The base-2 logarithm of the size of the hash table. */
+  private static final int HASH_BITS = 14;
+
+  /**
+   * The number of consecutive misses after which the encoder begins to
+   * skip ahead, so that incompressible data is passed over quickly.
+   */
+  private static final int SKIP_TRIGGER = 6;
+
+  /* (non-Javadoc)
+   * @see ca.eandb.jdcp.codec.Codec#getId()
+   */
+  public int getId() {
+    return ID;
+  }
+
+  /* (non-Javadoc)
+   * @see ca.eandb.jdcp.codec.Codec#getName()
+   */
+  public String getName() {
+    return "lz";
+  }
+
+  /* (non-Javadoc)
+   * @see ca.eandb.jdcp.codec.Codec#encode(byte[])
+   */
+  public byte[] encode(byte[] src) {
+    int n = src.length;
+    byte[] dst = new byte[n + n / 255 + 16];
+    int[] table = new int[1 << HASH_BITS];
+    int op = 0;
+    int anchor = 0;
+    int ip = 0;
+    int limit = n - MIN_MATCH;
+
+    while (ip <= limit) {
+      int seq = readInt(src, ip);
+      int h = hash(seq);
+      int ref = table[h] - 1;
+      table[h] = ip + 1;
+
+      if (ref >= 0 && ip - ref <= MAX_OFFSET && readInt(src, ref) == seq) {
+        int len = MIN_MATCH;
+        while (ip + len < n && src[ref + len] == src[ip + len]) {
+          len++;
+        }
+        op = writeRun(dst, op, src, anchor, ip - anchor, ip - ref, len);
+        ip += len;
+        anchor = ip;
+      } else {
+        ip += 1 + ((ip - anchor) >>> SKIP_TRIGGER);
+      }
+    }
+
+    op = writeRun(dst, op, src, anchor, n - anchor, 0, 0);
+    return Arrays.copyOf(dst, op);
+  }
+
+  /* (non-Javadoc)
+   * @see ca.eandb.jdcp.codec.Codec#decode(byte[], int)
+   */
+  public byte[] decode(byte[] src, int length) throws IOException {
+    byte[] dst = new byte[length];
+    int ip = 0;
+    int op = 0;
+
+    try {
+      while (true) {
+        int token = src[ip++] & 0xff;
+
+        int literals = token >>> 4;
+        if (literals == 15) {
+          int b;
+          do {
+            b = src[ip++] & 0xff;
+            literals += b;
+          } while (b == 255);
+        }
+        System.arraycopy(src, ip, dst, op, literals);
+        ip += literals;
+        op += literals;
+
+        if (op == length) {
+          break;
+        }
+
+        int offset = (src[ip] & 0xff) | ((src[ip + 1] & 0xff) << 8);
+        ip += 2;
+        int len = token & 0x0f;
+        if (len == 15) {
+          int b;
+          do {
+            b = src[ip++] & 0xff;
+            len += b;
+          } while (b == 255);
+        }
+        len += MIN_MATCH;
+
+        int ref = op - offset;
+        if (offset == 0 || ref < 0 || op + len > length) {
+          throw new IOException("Compressed data is corrupt");
+        }
+        if (offset >= len) {
+          System.arraycopy(dst, ref, dst, op, len);
+          op += len;
+        } else {
+          /* The match overlaps its own output, so copy byte by byte. */
+          for (int i = 0; i < len; i++) {
+            dst[op++] = dst[ref++];
+          }
+        }
+      }
+    } catch (IndexOutOfBoundsException e) {
+      throw new IOException("Compressed data is corrupt", e);
+    }
+
+    return dst;
+  }
+
+  /**
+   * Writes a run to the compressed output.
+   * @param dst The output buffer.
+   * @param op The position in <code>dst</code> at which to write.
+   * @param src The uncompressed data.
+   * @param start The position in <code>src</code> of the literals.
+   * @param literals The number of literal bytes.
+   * @param offset The distance back to the match.
+   * @param len The length of the match, or zero (0) if this is the final
+   *     run.
+   * @return The position in <code>dst</code> following the run.
+   */
+  private static int writeRun(byte[] dst, int op, byte[] src, int start,
+      int literals, int offset, int len) {
+    int matchCode = (len > 0) ? len - MIN_MATCH : 0;
+    int tokenPos = op++;
+    int token = (Math.min(literals, 15) << 4) | Math.min(matchCode, 15);
+    dst[tokenPos] = (byte) token;
+
+    if (literals >= 15) {
+      op = writeLength(dst, op, literals - 15);
+    }
+    System.arraycopy(src, start, dst, op, literals);
+    op += literals;
+
+    if (len > 0) {
+      dst[op++] = (byte) offset;
+      dst[op++] = (byte) (offset >>> 8);
+      if (matchCode >= 15) {
+        op = writeLength(dst, op, matchCode - 15);
+      }
+    }
+    return op;
+  }
+
+  /**
+   * Writes the remainder of a length that did not fit in a nibble.
+   * @param dst The output buffer.
+   * @param op The position in <code>dst</code> at which to write.
+   * @param remainder The remaining length.
+   * @return The position in <code>dst</code> following the length.
+   */
+  private static int writeLength(byte[] dst, int op, int remainder) {
+    while (remainder >= 255) {
+      dst[op++] = (byte) 255;
+      remainder -= 255;
+    }
+    dst[op++] = (byte) remainder;
+    return op;
+  }
+
+  /**
+   * Reads four bytes as a little-endian integer.
+   * @param buf The buffer to read from.
+   * @param pos The position of the first byte.
+   * @return The integer.
+   */
+  private static int readInt(byte[] buf, int pos) {
+    return (buf[pos] & 0xff) | ((buf[pos + 1] & 0xff) << 8)
+        | ((buf[pos + 2] & 0xff) << 16) | ((buf[pos + 3] & 0xff) << 24);
+  }
+
+  /**
+   * Computes the hash table index for a four-byte sequence.
+   * @param seq The four-byte sequence.
+   * @return The hash table index.
+   */
+  private static int hash(int seq) {
+    return (seq * -1640531535) >>> (32 - HASH_BITS);
+  }
+
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright (c) 2026 Bradley W. Kimmel
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package ca.eandb.jdcp.codec;
+
+/**
+ * A <code>Codec</code> that leaves data unchanged.
+ * @author Brad Kimmel
+ */
+public final class NullCodec implements Codec {
+
+  /** The ID of this codec. */
+  public static final int ID = 0;
+
+  /* (non-Javadoc)
+   * @see ca.eandb.jdcp.codec.Codec#getId()
+   */
+  public int getId() {
+    return ID;
+  }
+
+  /* (non-Javadoc)
+   * @see ca.eandb.jdcp.codec.Codec#getName()
+   */
+  public String getName() {
+    return "none";
+  }
+
+  /* (non-Javadoc)
+   * @see ca.eandb.jdcp.codec.Codec#encode(byte[])
+   */
+  public byte[] encode(byte[] data) {
+    return data;
+  }
+
+  /* (non-Javadoc)
+   * @see ca.eandb.jdcp.codec.Codec#decode(byte[], int)
+   */
+  public byte[] decode(byte[] data, int length) {
+    return data;
+  }
+
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright (c) 2026 Bradley W. Kimmel
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package ca.eandb.jdcp.codec;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Converts objects to and from streams of bytes.  Every stream written by
+ * a <code>Serializer</code> begins with its ID, so that the recipient can
+ * tell which serializer to use to read it (see
+ * {@link Serializers#readObject(InputStream, ClassLoader)}).
+ * Implementations must be thread-safe.
+ * @author Brad Kimmel
+ * @see Serializers
+ */
+public interface Serializer {
+
+  /**
+   * Gets the ID that identifies this serializer.  This is the first byte of
+   * every stream written by this serializer, and is fixed by the protocol.
+   * @return The ID of this serializer.
+   */
+  int getId();
+
+  /**
+   * Gets the name of this serializer.
+   * @return The name of this serializer.
+   */
+  String getName();
+
+  /**
+   * Writes an object to a stream.  The stream is not closed.
+   * @param obj The object to write.
+   * @param out The <code>OutputStream</code> to write to.
+   * @throws IOException If an error occurs writing to <code>out</code>,
+   *     or if <code>obj</code> cannot be serialized.
+   */
+  void writeObject(Object obj, OutputStream out) throws IOException;
+
+  /**
+   * Reads an object from a stream.  The stream is not closed.
+   * @param in The <code>InputStream</code> to read from.
+   * @param loader The <code>ClassLoader</code> to use to resolve classes,
+   *     or <code>null</code> to use the default.
+   * @return The object that was read.
+   * @throws IOException If an error occurs reading from <code>in</code>,
+   *     or if it does not hold a valid serialized object.
+   * @throws ClassNotFoundException If a class of the object could not be
+   *     found.
+   */
+  Object readObject(InputStream in, ClassLoader loader)
+      throws IOException, ClassNotFoundException;
+
+}
@@ -0,0 +1,166 @@
+/*
+ * Copyright (c) 2026 Bradley W. Kimmel
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package ca.eandb.jdcp.codec;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.io.StreamCorruptedException;
+
+/**
+ * Static registry of the <code>Serializer</code>s understood by every peer
+ * speaking the current protocol version.  A serialized object begins with
+ * the ID of the serializer that wrote it, so the sender may choose any
+ * registered serializer and the receiver reads accordingly.
+ * @author Brad Kimmel
+ */
+public final class Serializers {
+
+  /** A <code>Serializer</code> that uses Java object serialization. */
+  public static final Serializer JAVA = new JavaSerializer();
+
+  /**
+   * A compact binary <code>Serializer</code> for primitives, strings,
+   * arrays, and registered classes.
+   * @see BinarySerializer#register(Class)
+   */
+  public static final BinarySerializer BINARY = new BinarySerializer();
+
+  /** The registered <code>Serializer</code>s. */
+  private static final Serializer[] serializers = { JAVA, BINARY };
+
+  /**
+   * Gets the <code>Serializer</code> with the specified ID.
+   * @param id The ID of the <code>Serializer</code>.
+   * @return The <code>Serializer</code> with the specified ID.
+   * @throws IllegalArgumentException If there is no
+   *     <code>Serializer</code> with the specified ID.
+   */
+  public static Serializer forId(int id) {
+    for (Serializer serializer : serializers) {
+      if (serializer.getId() == id) {
+        return serializer;
+      }
+    }
+    throw new IllegalArgumentException("Unknown serializer ID: " + id);
+  }
+
+  /**
+   * Gets the <code>Serializer</code> with the specified name.
+   * @param name The name of the <code>Serializer</code> (e.g., "java" or
+   *     "binary").
+   * @return The <code>Serializer</code> with the specified name.
+   * @throws IllegalArgumentException If there is no
+   *     <code>Serializer</code> with the specified name.
+   */
+  public static Serializer forName(String name) {
+    for (Serializer serializer : serializers) {
+      if (serializer.getName().equalsIgnoreCase(name)) {
+        return serializer;
+      }
+    }
+    throw new IllegalArgumentException("Unknown serializer: " + name);
+  }
+
+  /**
+   * Serializes an object.
+   * @param obj The object to serialize.
+   * @param serializer The <code>Serializer</code> to use.
+   * @return The serialized object.
+   * @throws IOException If <code>obj</code> cannot be serialized.
+   */
+  public static byte[] serialize(Object obj, Serializer serializer)
+      throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    serializer.writeObject(obj, bytes);
+    return bytes.toByteArray();
+  }
+
+  /**
+   * Deserializes an object written by any registered
+   * <code>Serializer</code>.
+   * @param bytes The serialized object.
+   * @param loader The <code>ClassLoader</code> to use to resolve classes,
+   *     or <code>null</code> to use the default.
+   * @return The deserialized object.
+   * @throws IOException If <code>bytes</code> does not contain a valid
+   *     serialized object.
+   * @throws ClassNotFoundException If a class of the object could not be
+   *     found.
+   */
+  public static Object deserialize(byte[] bytes, ClassLoader loader)
+      throws IOException, ClassNotFoundException {
+    if (bytes.length == 0) {
+      throw new EOFException();
+    }
+    return getSerializer(bytes[0] & 0xff).readObject(
+        new ByteArrayInputStream(bytes), loader);
+  }
+
+  /**
+   * Reads an object written by any registered <code>Serializer</code>.
+   * @param in The <code>InputStream</code> to read from.
+   * @param loader The <code>ClassLoader</code> to use to resolve classes,
+   *     or <code>null</code> to use the default.
+   * @return The object that was read.
+   * @throws IOException If an error occurs reading from <code>in</code>,
+   *     or if it does not hold a valid serialized object.
+   * @throws ClassNotFoundException If a class of the object could not be
+   *     found.
+   */
+  public static Object readObject(InputStream in, ClassLoader loader)
+      throws IOException, ClassNotFoundException {
+    PushbackInputStream pin = new PushbackInputStream(in);
+    int id = pin.read();
+    if (id < 0) {
+      throw new EOFException();
+    }
+    pin.unread(id);
+    return getSerializer(id).readObject(pin, loader);
+  }
+
+  /**
+   * Gets the <code>Serializer</code> that wrote a stream.
+   * @param id The first byte of the stream.
+   * @return The <code>Serializer</code> with the specified ID.
+   * @throws StreamCorruptedException If there is no
+   *     <code>Serializer</code> with the specified ID.
+   */
+  private static Serializer getSerializer(int id)
+      throws StreamCorruptedException {
+    try {
+      return forId(id);
+    } catch (IllegalArgumentException e) {
+      throw new StreamCorruptedException(e.getMessage());
+    }
+  }
+
+  /** This class contains only static utility methods. */
+  private Serializers() {}
+
+}
@@ -25,6 +25,9 @@
 
 package ca.eandb.jdcp.job;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
 import java.io.ObjectInput;
 import java.io.ObjectOutput;
 
@@ -135,12 +138,55 @@ public final class JobExecutionWrapper implements ParallelizableJob {
   public void submitTaskResults(Object task, Object results,
       ProgressMonitor monitor) throws JobExecutionException {
     try {
-      job.submitTaskResults(task, results, monitor);
+      if (results instanceof StreamableResult && isStreaming()) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ((StreamableResult) results).writeTo(bytes);
+        submitTaskResults(task,
+            new ByteArrayInputStream(bytes.toByteArray()), monitor);
+      } else {
+        job.submitTaskResults(task, results, monitor);
+      }
+    } catch (JobExecutionException e) {
+      throw e;
     } catch (Exception e) {
       throw new JobExecutionException(e);
     }
   }
 
+  /**
+   * Submits the results of a task as a stream.
+   * @param task The <code>Object</code> describing the task for which
+   *     results are being submitted.
+   * @param results The <code>InputStream</code> from which to read the
+   *     results.
+   * @param monitor The <code>ProgressMonitor</code> to update with the
+   *     progress of this <code>Job</code>.
+   * @throws JobExecutionException If the inner job throws an exception,
+   *     or if it is not a <code>StreamingParallelizableJob</code>.
+   * @see StreamingParallelizableJob#submitTaskResults(Object, InputStream, ProgressMonitor)
+   */
+  public void submitTaskResults(Object task, InputStream results,
+      ProgressMonitor monitor) throws JobExecutionException {
+    if (!isStreaming()) {
+      throw new JobExecutionException(new UnsupportedOperationException(
+          "Job does not accept streamed task results"));
+    }
+    try {
+      ((StreamingParallelizableJob) job).submitTaskResults(task, results, monitor);
+    } catch (Exception e) {
+      throw new JobExecutionException(e);
+    }
+  }
+
+  /**
+   * Determines whether the inner job accepts streamed task results.
+   * @return A value indicating whether the inner job is a
+   *     <code>StreamingParallelizableJob</code>.
+   */
+  public boolean isStreaming() {
+    return job instanceof StreamingParallelizableJob;
+  }
+
   /* (non-Javadoc)
    * @see ca.eandb.jdcp.job.ParallelizableJob#worker()
    */
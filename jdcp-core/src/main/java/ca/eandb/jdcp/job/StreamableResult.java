@@ -0,0 +1,50 @@
+/*
+ * Copyright (c) 2026 Bradley W. Kimmel
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package ca.eandb.jdcp.job;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * The results of a task that are written out as a stream of bytes rather
+ * than serialized.  A <code>TaskWorker</code> may return a
+ * <code>StreamableResult</code> from
+ * {@link TaskWorker#performTask(Object, ca.eandb.util.progress.ProgressMonitor)}
+ * for a {@link StreamingParallelizableJob}, in which case the bytes are
+ * uploaded in fixed-size chunks as they are written and handed to the job
+ * as an <code>InputStream</code>.
+ * @author Brad Kimmel
+ * @see StreamingParallelizableJob
+ */
+public interface StreamableResult {
+
+  /**
+   * Writes the results to a stream.
+   * @param out The <code>OutputStream</code> to write to.
+   * @throws IOException If an error occurs writing to <code>out</code>.
+   */
+  void writeTo(OutputStream out) throws IOException;
+
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright (c) 2026 Bradley W. Kimmel
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package ca.eandb.jdcp.job;
+
+import java.io.InputStream;
+
+import ca.eandb.util.progress.ProgressMonitor;
+
+/**
+ * A <code>ParallelizableJob</code> that can accept the results of a task as
+ * a stream of bytes, rather than as a single object.  Task results are
+ * delivered this way when the <code>TaskWorker</code> returns a
+ * {@link StreamableResult}, allowing results that are too large to hold in
+ * memory comfortably to be consumed incrementally.  Results that are not
+ * <code>StreamableResult</code>s are still delivered using
+ * {@link ParallelizableJob#submitTaskResults(Object, Object, ProgressMonitor)}.
+ * @author Brad Kimmel
+ * @see StreamableResult
+ */
+public interface StreamingParallelizableJob extends ParallelizableJob {
+
+  /**
+   * Submits the results of a task as a stream.
+   * @param task The <code>Object</code> describing the task for which
+   *     results are being submitted (must have been obtained from a
+   *     previous call to {@link #getNextTask()}.
+   * @param results The <code>InputStream</code> from which to read the
+   *     bytes written by {@link StreamableResult#writeTo(java.io.OutputStream)}.
+   *     The stream is only valid for the duration of this call.
+   * @param monitor The <code>ProgressMonitor</code> to update with the
+   *     progress of this <code>Job</code>.
+   * @see #getNextTask()
+   * @throws Exception If an error occurs performing the operation.
+   */
+  void submitTaskResults(Object task, InputStream results, ProgressMonitor monitor) throws Exception;
+
+}
@@ -0,0 +1,361 @@
+/*
+ * Copyright (c) 2026 Bradley W. Kimmel
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package ca.eandb.jdcp.nio;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.rmi.ConnectException;
+import java.rmi.MarshalException;
+import java.rmi.RemoteException;
+import java.rmi.UnmarshalException;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.security.auth.login.LoginException;
+
+import org.apache.log4j.Logger;
+
+import ca.eandb.jdcp.remote.JobService;
+import ca.eandb.jdcp.remote.ProtocolVersionException;
+
+/**
+ * The client end of the NIO transport.  All calls made through a
+ * <code>JobService</code> obtained from
+ * {@link #connect(String, int, String, String, UUID)} share a single
+ * socket.  Calls from several threads may be outstanding at once: each is
+ * written as soon as it is made, and a dedicated thread routes replies
+ * back to the waiting callers as they arrive.
+ * <p>
+ * Remote objects cannot be passed as arguments over this transport, so
+ * {@link JobService#registerTaskService(String, ca.eandb.jdcp.remote.TaskService)}
+ * fails with a <code>MarshalException</code>.
+ * @author Brad Kimmel
+ * @see NioJobServiceServer
+ */
+public final class NioJobServiceClient implements InvocationHandler {
+
+  /** The <code>Logger</code> for this class. */
+  private static final Logger logger = Logger.getLogger(NioJobServiceClient.class);
+
+  /** The <code>SocketChannel</code> connected to the server. */
+  private final SocketChannel channel;
+
+  /** The ID to assign to the next call. */
+  private final AtomicLong nextCallId = new AtomicLong();
+
+  /** The calls awaiting replies, keyed by call ID. */
+  private final Map<Long, PendingCall> pending = new ConcurrentHashMap<Long, PendingCall>();
+
+  /** The <code>Thread</code> reading replies from the server. */
+  private final Thread reader;
+
+  /**
+   * The exception that caused the connection to fail, or <code>null</code>
+   * if the connection is still open.
+   */
+  private volatile IOException failure = null;
+
+  /**
+   * A call that is awaiting a reply.
+   * @author Brad Kimmel
+   */
+  private static final class PendingCall {
+
+    /** The type of the reply frame, or zero if no reply has arrived. */
+    private byte type = 0;
+
+    /** The payload of the reply frame. */
+    private byte[] payload;
+
+    /** The exception that prevented a reply from arriving. */
+    private IOException failure;
+
+    /**
+     * Records the reply to the call.
+     * @param type The type of the reply frame.
+     * @param payload The payload of the reply frame.
+     */
+    public synchronized void complete(byte type, byte[] payload) {
+      this.type = type;
+      this.payload = payload;
+      notifyAll();
+    }
+
+    /**
+     * Records that no reply will arrive.
+     * @param failure The exception that caused the connection to fail.
+     */
+    public synchronized void fail(IOException failure) {
+      this.failure = failure;
+      notifyAll();
+    }
+
+    /**
+     * Waits for the reply.
+     * @return The type of the reply frame.
+     * @throws IOException If the connection failed before a reply arrived.
+     * @throws InterruptedException If the thread was interrupted while
+     *     waiting.
+     */
+    public synchronized byte await() throws IOException, InterruptedException {
+      while (type == 0 && failure == null) {
+        wait();
+      }
+      if (type == 0) {
+        throw failure;
+      }
+      return type;
+    }
+
+  }
+
+  /**
+   * Creates a new <code>NioJobServiceClient</code>.
+   * @param channel The <code>SocketChannel</code> connected to the server.
+   */
+  private NioJobServiceClient(SocketChannel channel) {
+    this.channel = channel;
+    this.reader = new Thread(new Runnable() {
+      public void run() {
+        readReplies();
+      }
+    }, "NIO JobService client");
+    this.reader.setDaemon(true);
+    this.reader.start();
+  }
+
+  /**
+   * Connects to a server using the NIO transport.
+   * @param host The host name of the server.
+   * @param port The port that the server is listening on.
+   * @param username The user name to use to authenticate with the server.
+   * @param password The password to use to authenticate with the server.
+   * @param protocolVersionId The <code>UUID</code> identifying the protocol
+   *     version of the client.
+   * @return The <code>JobService</code> to use to communicate with the
+   *     server.
+   * @throws RemoteException If a failure occurs in attempting to
+   *     communicate with the server.
+   * @throws LoginException If the login attempt fails.
+   * @throws ProtocolVersionException If this client is incompatible with
+   *     the server.
+   */
+  public static JobService connect(String host, int port, String username,
+      String password, UUID protocolVersionId) throws RemoteException,
+      LoginException, ProtocolVersionException {
+    SocketChannel channel;
+    try {
+      channel = SocketChannel.open(new InetSocketAddress(host, port));
+      channel.socket().setTcpNoDelay(true);
+    } catch (IOException e) {
+      throw new ConnectException("Could not connect to " + host + ":" + port, e);
+    }
+
+    NioJobServiceClient client = new NioJobServiceClient(channel);
+    try {
+      client.call(NioProtocol.AUTHENTICATE,
+          NioProtocol.marshalCredentials(username, password, protocolVersionId));
+    } catch (LoginException e) {
+      client.close();
+      throw e;
+    } catch (ProtocolVersionException e) {
+      client.close();
+      throw e;
+    } catch (RemoteException e) {
+      client.close();
+      throw e;
+    } catch (Throwable e) {
+      client.close();
+      throw new RemoteException("Authentication failed", e);
+    }
+
+    return (JobService) Proxy.newProxyInstance(
+        JobService.class.getClassLoader(),
+        new Class<?>[]{ JobService.class }, client);
+  }
+
+  /**
+   * Closes the connection.  Calls that are awaiting replies fail with a
+   * <code>RemoteException</code>.
+   */
+  public void close() {
+    try {
+      channel.close();
+    } catch (IOException e) {
+      logger.warn("Error closing connection", e);
+    }
+  }
+
+  /**
+   * Gets the <code>NioJobServiceClient</code> underlying a
+   * <code>JobService</code> returned by
+   * {@link #connect(String, int, String, String, UUID)}.
+   * @param service The <code>JobService</code>.
+   * @return The <code>NioJobServiceClient</code>, or <code>null</code> if
+   *     <code>service</code> does not use the NIO transport.
+   */
+  public static NioJobServiceClient getClient(JobService service) {
+    if (Proxy.isProxyClass(service.getClass())) {
+      InvocationHandler handler = Proxy.getInvocationHandler(service);
+      if (handler instanceof NioJobServiceClient) {
+        return (NioJobServiceClient) handler;
+      }
+    }
+    return null;
+  }
+
+  /* (non-Javadoc)
+   * @see java.lang.reflect.InvocationHandler#invoke(java.lang.Object, java.lang.reflect.Method, java.lang.Object[])
+   */
+  public Object invoke(Object proxy, Method method, Object[] args)
+      throws Throwable {
+    if (method.getDeclaringClass() == Object.class) {
+      String name = method.getName();
+      if (name.equals("equals")) {
+        return proxy == args[0];
+      } else if (name.equals("hashCode")) {
+        return System.identityHashCode(proxy);
+      } else {
+        return "NioJobServiceClient[" + channel.socket().getRemoteSocketAddress() + "]";
+      }
+    }
+
+    int index = NioProtocol.indexOf(method);
+    byte[] payload;
+    try {
+      payload = NioProtocol.marshalInvocation(index, args);
+    } catch (IOException e) {
+      throw new MarshalException("Cannot marshal arguments for " + method.getName(), e);
+    }
+    return call(NioProtocol.INVOKE, payload);
+  }
+
+  /**
+   * Sends a request and waits for the reply.
+   * @param type The frame type of the request.
+   * @param payload The payload of the request.
+   * @return The value returned by the server.
+   * @throws Throwable The exception thrown by the server, or a
+   *     <code>RemoteException</code> if a communication error occurs.
+   */
+  private Object call(byte type, byte[] payload) throws Throwable {
+    long callId = nextCallId.incrementAndGet();
+    PendingCall call = new PendingCall();
+    pending.put(callId, call);
+    try {
+      if (failure != null) {
+        throw new ConnectException("Connection closed", failure);
+      }
+      try {
+        ByteBuffer frame = NioProtocol.frame(type, callId, payload);
+        synchronized (channel) {
+          while (frame.hasRemaining()) {
+            channel.write(frame);
+          }
+        }
+      } catch (IOException e) {
+        close();
+        throw new ConnectException("Error sending request", e);
+      }
+
+      byte replyType;
+      try {
+        replyType = call.await();
+      } catch (IOException e) {
+        throw new ConnectException("Connection closed", e);
+      }
+
+      Object result;
+      try {
+        result = NioProtocol.unmarshal(call.payload);
+      } catch (Exception e) {
+        throw new UnmarshalException("Cannot unmarshal reply", e);
+      }
+      if (replyType == NioProtocol.THROW) {
+        throw (Throwable) result;
+      }
+      return result;
+    } finally {
+      pending.remove(callId);
+    }
+  }
+
+  /**
+   * Reads replies from the server and hands them to the waiting callers
+   * until the connection is closed.
+   */
+  private void readReplies() {
+    ByteBuffer header = ByteBuffer.allocate(NioProtocol.HEADER_SIZE);
+    try {
+      while (true) {
+        header.clear();
+        readFully(header);
+        header.flip();
+        int length = header.getInt();
+        byte type = header.get();
+        long callId = header.getLong();
+        if (length < 0 || length > NioProtocol.MAX_PAYLOAD_SIZE) {
+          throw new IOException("Invalid frame length: " + length);
+        }
+
+        ByteBuffer payload = ByteBuffer.allocate(length);
+        readFully(payload);
+
+        PendingCall call = pending.get(callId);
+        if (call != null) {
+          call.complete(type, payload.array());
+        }
+      }
+    } catch (IOException e) {
+      failure = e;
+      close();
+      for (PendingCall call : pending.values()) {
+        call.fail(e);
+      }
+    }
+  }
+
+  /**
+   * Fills a buffer from the channel.
+   * @param buffer The <code>ByteBuffer</code> to fill.
+   * @throws IOException If the channel is closed or an error occurs.
+   */
+  private void readFully(ByteBuffer buffer) throws IOException {
+    while (buffer.hasRemaining()) {
+      if (channel.read(buffer) < 0) {
+        throw new EOFException("Connection closed by server");
+      }
+    }
+  }
+
+}
@@ -0,0 +1,439 @@
+/*
+ * Copyright (c) 2026 Bradley W. Kimmel
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package ca.eandb.jdcp.nio;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.rmi.MarshalException;
+import java.rmi.NoSuchObjectException;
+import java.rmi.server.RemoteObject;
+import java.rmi.server.UnicastRemoteObject;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+import org.apache.log4j.Logger;
+
+import ca.eandb.jdcp.remote.AuthenticationService;
+import ca.eandb.jdcp.remote.JobService;
+
+/**
+ * The server end of the NIO transport.  A single thread accepts
+ * connections and reads and writes frames for all of them, so an idle
+ * connection does not tie up a thread.  Each request is carried out on an
+ * <code>Executor</code>, so that long-running calls (such as those that
+ * wait for tasks or events) do not hold up other calls on the same
+ * connection.
+ * @author Brad Kimmel
+ * @see NioJobServiceClient
+ */
+public final class NioJobServiceServer {
+
+  /** The <code>Logger</code> for this class. */
+  private static final Logger logger = Logger.getLogger(NioJobServiceServer.class);
+
+  /** The <code>AuthenticationService</code> used to log clients in. */
+  private final AuthenticationService auth;
+
+  /** The <code>Executor</code> on which to carry out requests. */
+  private final Executor executor;
+
+  /** The <code>ServerSocketChannel</code> to accept connections on. */
+  private final ServerSocketChannel serverChannel;
+
+  /** The <code>Selector</code> for all channels. */
+  private final Selector selector;
+
+  /** Connections that have replies waiting to be written. */
+  private final Queue<Connection> writable = new ConcurrentLinkedQueue<Connection>();
+
+  /** The <code>Thread</code> servicing the channels. */
+  private final Thread thread;
+
+  /** A value indicating whether the server is shutting down. */
+  private volatile boolean shutdown = false;
+
+  /**
+   * Creates a new <code>NioJobServiceServer</code>.
+   * @param auth The <code>AuthenticationService</code> to use to log
+   *     clients in.  The <code>JobService</code>s it returns are used
+   *     locally, and are unexported if they were exported for RMI.
+   * @param port The port to listen on.
+   * @throws IOException If the server socket cannot be opened.
+   */
+  public NioJobServiceServer(AuthenticationService auth, int port)
+      throws IOException {
+    this(auth, port, Executors.newCachedThreadPool());
+  }
+
+  /**
+   * Creates a new <code>NioJobServiceServer</code>.
+   * @param auth The <code>AuthenticationService</code> to use to log
+   *     clients in.  The <code>JobService</code>s it returns are used
+   *     locally, and are unexported if they were exported for RMI.
+   * @param port The port to listen on.
+   * @param executor The <code>Executor</code> on which to carry out
+   *     requests.
+   * @throws IOException If the server socket cannot be opened.
+   */
+  public NioJobServiceServer(AuthenticationService auth, int port,
+      Executor executor) throws IOException {
+    this.auth = auth;
+    this.executor = executor;
+    this.selector = Selector.open();
+    this.serverChannel = ServerSocketChannel.open();
+    this.serverChannel.socket().setReuseAddress(true);
+    this.serverChannel.socket().bind(new InetSocketAddress(port));
+    this.serverChannel.configureBlocking(false);
+    this.serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+    this.thread = new Thread(new Runnable() {
+      public void run() {
+        serviceChannels();
+      }
+    }, "NIO JobService server");
+    this.thread.setDaemon(true);
+    this.thread.start();
+  }
+
+  /**
+   * Gets the port that the server is listening on.
+   * @return The port that the server is listening on.
+   */
+  public int getPort() {
+    return serverChannel.socket().getLocalPort();
+  }
+
+  /** Stops accepting connections and closes all open connections. */
+  public void shutdown() {
+    shutdown = true;
+    selector.wakeup();
+  }
+
+  /**
+   * Accepts connections and reads and writes frames until the server is
+   * shut down.
+   */
+  private void serviceChannels() {
+    try {
+      while (!shutdown) {
+        selector.select();
+
+        Connection conn;
+        while ((conn = writable.poll()) != null) {
+          conn.enableWrite();
+        }
+
+        Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+        while (keys.hasNext()) {
+          SelectionKey key = keys.next();
+          keys.remove();
+          try {
+            if (!key.isValid()) {
+              continue;
+            }
+            if (key.isAcceptable()) {
+              accept();
+            }
+            if (key.isReadable()) {
+              ((Connection) key.attachment()).read();
+            }
+            if (key.isValid() && key.isWritable()) {
+              ((Connection) key.attachment()).write();
+            }
+          } catch (IOException e) {
+            if (logger.isDebugEnabled()) {
+              logger.debug("Closing connection", e);
+            }
+            key.cancel();
+            key.channel().close();
+          }
+        }
+      }
+    } catch (IOException e) {
+      logger.error("NIO JobService server failed", e);
+    } finally {
+      for (SelectionKey key : selector.keys()) {
+        try {
+          key.channel().close();
+        } catch (IOException e) {
+          logger.warn("Error closing channel", e);
+        }
+      }
+      try {
+        selector.close();
+      } catch (IOException e) {
+        logger.warn("Error closing selector", e);
+      }
+    }
+  }
+
+  /**
+   * Accepts a new connection.
+   * @throws IOException If an error occurs accepting the connection.
+   */
+  private void accept() throws IOException {
+    SocketChannel channel = serverChannel.accept();
+    if (channel != null) {
+      channel.configureBlocking(false);
+      channel.socket().setTcpNoDelay(true);
+      SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+      key.attach(new Connection(channel, key));
+    }
+  }
+
+  /**
+   * The state of a connection to a client.
+   * @author Brad Kimmel
+   */
+  private final class Connection {
+
+    /** The <code>SocketChannel</code> connected to the client. */
+    private final SocketChannel channel;
+
+    /** The <code>SelectionKey</code> for {@link #channel}. */
+    private final SelectionKey key;
+
+    /** The header of the frame being read. */
+    private final ByteBuffer header = ByteBuffer.allocate(NioProtocol.HEADER_SIZE);
+
+    /**
+     * The payload of the frame being read, or <code>null</code> if the
+     * header is still being read.
+     */
+    private ByteBuffer payload = null;
+
+    /** The type of the frame being read. */
+    private byte type;
+
+    /** The call ID of the frame being read. */
+    private long callId;
+
+    /** Frames waiting to be written, in order. */
+    private final Queue<ByteBuffer> replies = new LinkedList<ByteBuffer>();
+
+    /**
+     * The <code>JobService</code> to invoke methods on, or
+     * <code>null</code> if the client has not authenticated.
+     */
+    private volatile JobService service = null;
+
+    /**
+     * Creates a new <code>Connection</code>.
+     * @param channel The <code>SocketChannel</code> connected to the
+     *     client.
+     * @param key The <code>SelectionKey</code> for <code>channel</code>.
+     */
+    public Connection(SocketChannel channel, SelectionKey key) {
+      this.channel = channel;
+      this.key = key;
+    }
+
+    /**
+     * Reads as much as is available from the channel, dispatching any
+     * frames that are completed.
+     * @throws IOException If the channel is closed or an error occurs.
+     */
+    public void read() throws IOException {
+      while (true) {
+        if (payload == null) {
+          if (channel.read(header) < 0) {
+            throw new ClosedChannelException();
+          }
+          if (header.hasRemaining()) {
+            return;
+          }
+          header.flip();
+          int length = header.getInt();
+          type = header.get();
+          callId = header.getLong();
+          header.clear();
+          if (service == null) {
+            /* Until the client has logged in, accept only small
+             * authentication requests, so that an unauthenticated client
+             * cannot make the server allocate large buffers or decode
+             * arbitrary objects.
+             */
+            if (type != NioProtocol.AUTHENTICATE) {
+              throw new IOException("Client not authenticated");
+            }
+            if (length < 0 || length > NioProtocol.MAX_AUTHENTICATE_PAYLOAD_SIZE) {
+              throw new IOException("Invalid authentication frame length: " + length);
+            }
+          } else if (length < 0 || length > NioProtocol.MAX_PAYLOAD_SIZE) {
+            throw new IOException("Invalid frame length: " + length);
+          }
+          payload = ByteBuffer.allocate(length);
+        }
+        if (payload.hasRemaining() && channel.read(payload) < 0) {
+          throw new ClosedChannelException();
+        }
+        if (payload.hasRemaining()) {
+          return;
+        }
+        dispatch(type, callId, payload.array());
+        payload = null;
+      }
+    }
+
+    /**
+     * Writes as many waiting replies as the channel will accept.
+     * @throws IOException If an error occurs writing to the channel.
+     */
+    public void write() throws IOException {
+      synchronized (replies) {
+        while (!replies.isEmpty()) {
+          ByteBuffer frame = replies.peek();
+          channel.write(frame);
+          if (frame.hasRemaining()) {
+            return;
+          }
+          replies.remove();
+        }
+        key.interestOps(SelectionKey.OP_READ);
+      }
+    }
+
+    /**
+     * Registers interest in writing to the channel.  This must be called
+     * on the thread servicing the channels.
+     */
+    public void enableWrite() {
+      if (key.isValid()) {
+        key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+      }
+    }
+
+    /**
+     * Queues a reply to be written.
+     * @param type The frame type of the reply.
+     * @param callId The ID of the call being replied to.
+     * @param result The value to send.
+     */
+    private void reply(byte type, long callId, Object result) {
+      byte[] bytes;
+      try {
+        bytes = NioProtocol.marshal(result);
+      } catch (IOException e) {
+        logger.error("Cannot marshal reply", e);
+        try {
+          type = NioProtocol.THROW;
+          bytes = NioProtocol.marshal(
+              new MarshalException("Cannot marshal reply", e));
+        } catch (IOException e1) {
+          throw new IllegalStateException(e1);
+        }
+      }
+      synchronized (replies) {
+        replies.add(NioProtocol.frame(type, callId, bytes));
+      }
+      writable.add(this);
+      selector.wakeup();
+    }
+
+    /**
+     * Carries out a request on the <code>Executor</code>.
+     * @param type The frame type of the request.
+     * @param callId The ID of the call.
+     * @param payload The payload of the request.
+     */
+    private void dispatch(final byte type, final long callId,
+        final byte[] payload) {
+      executor.execute(new Runnable() {
+        public void run() {
+          try {
+            Object result = (type == NioProtocol.AUTHENTICATE)
+                ? authenticate(payload)
+                : invoke(payload);
+            reply(NioProtocol.RETURN, callId, result);
+          } catch (Throwable e) {
+            reply(NioProtocol.THROW, callId, e);
+          }
+        }
+      });
+    }
+
+    /**
+     * Logs the client in.
+     * @param payload The payload of the request.
+     * @return <code>null</code>.
+     * @throws Exception If the login attempt fails.
+     */
+    private Object authenticate(byte[] payload) throws Exception {
+      NioProtocol.Credentials credentials = NioProtocol.unmarshalCredentials(payload);
+      JobService service = auth.authenticate(credentials.username,
+          credentials.password, credentials.protocolVersionId);
+      if (service instanceof RemoteObject) {
+        try {
+          UnicastRemoteObject.unexportObject(service, true);
+        } catch (NoSuchObjectException e) {
+          /* nothing to do. */
+        }
+      }
+      this.service = service;
+      return null;
+    }
+
+    /**
+     * Invokes a method on the <code>JobService</code>.
+     * @param payload The payload of the request.
+     * @return The value returned by the method.
+     * @throws Throwable The exception thrown by the method.
+     */
+    private Object invoke(byte[] payload) throws Throwable {
+      JobService service = this.service;
+      if (service == null) {
+        throw new SecurityException("Not authenticated");
+      }
+
+      ObjectInputStream in = NioProtocol.openInvocation(payload);
+      Method method = NioProtocol.getMethod(in.readShort());
+      Object[] args = (Object[]) in.readObject();
+      in.close();
+      if (method == null) {
+        throw new UnsupportedOperationException("Unknown method");
+      }
+
+      try {
+        return method.invoke(service, args);
+      } catch (InvocationTargetException e) {
+        throw e.getCause();
+      }
+    }
+
+  }
+
+}
@@ -0,0 +1,282 @@
+/*
+ * Copyright (c) 2026 Bradley W. Kimmel
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package ca.eandb.jdcp.nio;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+import ca.eandb.jdcp.remote.JobService;
+
+/**
+ * Constants and helpers for the framing used by the NIO transport.  Each
+ * frame consists of a header made up of the length of the payload (an
+ * <code>int</code>), the frame type (a <code>byte</code>), and the ID of
+ * the call that the frame belongs to (a <code>long</code>), followed by the
+ * payload.  Calls are identified so that several may be outstanding on a
+ * single connection at once, and so that their results may arrive in any
+ * order.
+ * @author Brad Kimmel
+ */
+/* package */ final class NioProtocol {
+
+  /**
+   * Frame type for a request to authenticate.  The payload holds the user
+   * name and password (as modified UTF-8 strings) followed by the protocol
+   * version ID (as two <code>long</code>s).  Java serialization is not
+   * used, since the client has not yet been authenticated.
+   * @see #marshalCredentials(String, String, UUID)
+   */
+  public static final byte AUTHENTICATE = 1;
+
+  /**
+   * Frame type for a request to invoke a <code>JobService</code> method.
+   * The payload is the index of the method (a <code>short</code>) followed
+   * by the serialized array of arguments.
+   */
+  public static final byte INVOKE = 2;
+
+  /** Frame type for a reply holding the serialized return value. */
+  public static final byte RETURN = 3;
+
+  /** Frame type for a reply holding the serialized exception thrown. */
+  public static final byte THROW = 4;
+
+  /** The size (in bytes) of the frame header. */
+  public static final int HEADER_SIZE = 4 + 1 + 8;
+
+  /** The largest payload (in bytes) that will be accepted. */
+  public static final int MAX_PAYLOAD_SIZE = 256 * 1024 * 1024;
+
+  /**
+   * The largest payload (in bytes) that will be accepted from a client
+   * that has not yet authenticated.
+   */
+  public static final int MAX_AUTHENTICATE_PAYLOAD_SIZE = 4 * 1024;
+
+  /**
+   * The methods of <code>JobService</code>, in a fixed order so that they
+   * may be referred to by index.
+   */
+  private static final Method[] METHODS = JobService.class.getMethods();
+
+  /** The index of each method in {@link #METHODS}. */
+  private static final Map<Method, Integer> METHOD_INDEX = new HashMap<Method, Integer>();
+
+  static {
+    Arrays.sort(METHODS, new Comparator<Method>() {
+      public int compare(Method a, Method b) {
+        return a.toString().compareTo(b.toString());
+      }
+    });
+    for (int i = 0; i < METHODS.length; i++) {
+      METHOD_INDEX.put(METHODS[i], i);
+    }
+  }
+
+  /**
+   * Gets the index of a <code>JobService</code> method.
+   * @param method The <code>Method</code>.
+   * @return The index of the method, or -1 if it is not a method of
+   *     <code>JobService</code>.
+   */
+  public static int indexOf(Method method) {
+    Integer index = METHOD_INDEX.get(method);
+    return (index != null) ? index : -1;
+  }
+
+  /**
+   * Gets a <code>JobService</code> method by index.
+   * @param index The index of the method.
+   * @return The <code>Method</code>, or <code>null</code> if the index is
+   *     out of range.
+   */
+  public static Method getMethod(int index) {
+    return (index >= 0 && index < METHODS.length) ? METHODS[index] : null;
+  }
+
+  /**
+   * Creates a frame.
+   * @param type The frame type.
+   * @param callId The ID of the call that the frame belongs to.
+   * @param payload The payload.
+   * @return A <code>ByteBuffer</code> holding the frame, ready to be
+   *     written.
+   */
+  public static ByteBuffer frame(byte type, long callId, byte[] payload) {
+    ByteBuffer frame = ByteBuffer.allocate(HEADER_SIZE + payload.length);
+    frame.putInt(payload.length).put(type).putLong(callId).put(payload);
+    frame.flip();
+    return frame;
+  }
+
+  /**
+   * Serializes an object.
+   * @param obj The object to serialize.
+   * @return The serialized object.
+   * @throws IOException If the object cannot be serialized.
+   */
+  public static byte[] marshal(Object obj) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    ObjectOutputStream out = new ObjectOutputStream(bytes);
+    out.writeObject(obj);
+    out.close();
+    return bytes.toByteArray();
+  }
+
+  /**
+   * Serializes an invocation of a <code>JobService</code> method.
+   * @param index The index of the method.
+   * @param args The arguments to pass to the method.
+   * @return The serialized invocation.
+   * @throws IOException If the arguments cannot be serialized.
+   */
+  public static byte[] marshalInvocation(int index, Object[] args)
+      throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    ObjectOutputStream out = new ObjectOutputStream(bytes);
+    out.writeShort(index);
+    out.writeObject(args);
+    out.close();
+    return bytes.toByteArray();
+  }
+
+  /**
+   * Encodes the payload of an <code>AUTHENTICATE</code> frame.
+   * @param username The user name.
+   * @param password The password.
+   * @param protocolVersionId The protocol version ID of the client.
+   * @return The encoded credentials.
+   * @throws IOException If the credentials cannot be encoded (e.g., if
+   *     they are too long).
+   */
+  public static byte[] marshalCredentials(String username, String password,
+      UUID protocolVersionId) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(bytes);
+    out.writeUTF(username);
+    out.writeUTF(password);
+    out.writeLong(protocolVersionId.getMostSignificantBits());
+    out.writeLong(protocolVersionId.getLeastSignificantBits());
+    out.close();
+    if (bytes.size() > MAX_AUTHENTICATE_PAYLOAD_SIZE) {
+      throw new IOException("Credentials too long");
+    }
+    return bytes.toByteArray();
+  }
+
+  /**
+   * Decodes the payload of an <code>AUTHENTICATE</code> frame.
+   * @param payload The encoded credentials.
+   * @return The decoded <code>Credentials</code>.
+   * @throws IOException If the payload is malformed.
+   */
+  public static Credentials unmarshalCredentials(byte[] payload)
+      throws IOException {
+    DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+    String username = in.readUTF();
+    String password = in.readUTF();
+    UUID protocolVersionId = new UUID(in.readLong(), in.readLong());
+    if (in.read() >= 0) {
+      throw new IOException("Unexpected data following credentials");
+    }
+    return new Credentials(username, password, protocolVersionId);
+  }
+
+  /**
+   * The credentials sent by a client in an <code>AUTHENTICATE</code>
+   * frame.
+   */
+  public static final class Credentials {
+
+    /** The user name. */
+    public final String username;
+
+    /** The password. */
+    public final String password;
+
+    /** The protocol version ID of the client. */
+    public final UUID protocolVersionId;
+
+    /**
+     * Creates a new <code>Credentials</code>.
+     * @param username The user name.
+     * @param password The password.
+     * @param protocolVersionId The protocol version ID of the client.
+     */
+    public Credentials(String username, String password, UUID protocolVersionId) {
+      this.username = username;
+      this.password = password;
+      this.protocolVersionId = protocolVersionId;
+    }
+
+  }
+
+  /**
+   * Deserializes an object.
+   * @param payload The serialized object.
+   * @return The object.
+   * @throws IOException If the payload is malformed.
+   * @throws ClassNotFoundException If a class of the object could not be
+   *     found.
+   */
+  public static Object unmarshal(byte[] payload) throws IOException,
+      ClassNotFoundException {
+    ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(payload));
+    try {
+      return in.readObject();
+    } finally {
+      in.close();
+    }
+  }
+
+  /**
+   * Opens a serialized invocation for reading.  The caller should read the
+   * method index using {@link ObjectInputStream#readShort()}, followed by
+   * the array of arguments.
+   * @param payload The serialized invocation.
+   * @return The <code>ObjectInputStream</code> to read from.
+   * @throws IOException If the payload is malformed.
+   */
+  public static ObjectInputStream openInvocation(byte[] payload)
+      throws IOException {
+    return new ObjectInputStream(new ByteArrayInputStream(payload));
+  }
+
+  /** This constructor is private to prevent instances from being created. */
+  private NioProtocol() {}
+
+}
@@ -0,0 +1,220 @@
+/*
+ * Copyright (c) 2026 Bradley W. Kimmel
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package ca.eandb.jdcp.remote;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import ca.eandb.jdcp.codec.Codec;
+import ca.eandb.jdcp.codec.Codecs;
+import ca.eandb.jdcp.codec.NullCodec;
+import ca.eandb.util.UnexpectedException;
+
+/**
+ * A compressed archive of the class definitions associated with a job.
+ * This allows a worker to obtain all of the classes it needs for a job in a
+ * single call, rather than making two calls for each class as it is loaded.
+ * A definition may be omitted from the archive if the recipient indicated
+ * that it already has it, in which case only the name and digest of the
+ * class are included.
+ * @author Brad Kimmel
+ * @see TaskService#getClassBundle(java.util.UUID, java.util.Map)
+ */
+public final class ClassBundle implements Serializable {
+
+  /** Serialization version ID. */
+  private static final long serialVersionUID = 2714839203527916184L;
+
+  /** The ID of the <code>Codec</code> used to encode {@link #data}. */
+  private final int codecId;
+
+  /** The length of the archive before encoding. */
+  private final int length;
+
+  /** The encoded archive. */
+  private final byte[] data;
+
+  /**
+   * Creates a new <code>ClassBundle</code>.
+   * @param codecId The ID of the <code>Codec</code> used to encode
+   *     <code>data</code>.
+   * @param length The length of the archive before encoding.
+   * @param data The encoded archive.
+   */
+  private ClassBundle(int codecId, int length, byte[] data) {
+    this.codecId = codecId;
+    this.length = length;
+    this.data = data;
+  }
+
+  /**
+   * Creates a <code>ClassBundle</code> holding the specified entries.
+   * @param entries The <code>Entry</code>s to include in the bundle.
+   * @param codec The <code>Codec</code> to use to compress the bundle.  If
+   *     compressing the bundle does not make it smaller, it is left
+   *     uncompressed.
+   * @return The new <code>ClassBundle</code>.
+   */
+  public static ClassBundle create(Collection<Entry> entries, Codec codec) {
+    byte[] bytes;
+    try {
+      ByteArrayOutputStream bytesOut = new ByteArrayOutputStream();
+      DataOutputStream out = new DataOutputStream(bytesOut);
+      out.writeInt(entries.size());
+      for (Entry entry : entries) {
+        out.writeUTF(entry.name);
+        out.writeShort(entry.digest.length);
+        out.write(entry.digest);
+        if (entry.definition != null) {
+          out.writeInt(entry.definition.length);
+          out.write(entry.definition);
+        } else {
+          out.writeInt(-1);
+        }
+      }
+      out.flush();
+      bytes = bytesOut.toByteArray();
+    } catch (IOException e) {
+      throw new UnexpectedException(e);
+    }
+
+    if (codec.getId() != NullCodec.ID) {
+      byte[] encoded = codec.encode(bytes);
+      if (encoded.length < bytes.length) {
+        return new ClassBundle(codec.getId(), bytes.length, encoded);
+      }
+    }
+    return new ClassBundle(NullCodec.ID, bytes.length, bytes);
+  }
+
+  /**
+   * Gets the <code>Codec</code> used to encode this bundle.
+   * @return The <code>Codec</code> used to encode this bundle.
+   */
+  public Codec getCodec() {
+    return Codecs.forId(codecId);
+  }
+
+  /**
+   * Decodes the entries in this bundle.
+   * @return The <code>List</code> of <code>Entry</code>s in this bundle.
+   */
+  public List<Entry> getEntries() {
+    try {
+      byte[] bytes = getCodec().decode(data, length);
+
+      DataInputStream in = new DataInputStream(
+          new ByteArrayInputStream(bytes));
+      int count = in.readInt();
+      if (count == 0) {
+        return Collections.emptyList();
+      }
+
+      List<Entry> entries = new ArrayList<Entry>(count);
+      for (int i = 0; i < count; i++) {
+        String name = in.readUTF();
+        byte[] digest = new byte[in.readUnsignedShort()];
+        in.readFully(digest);
+        int size = in.readInt();
+        byte[] definition = null;
+        if (size >= 0) {
+          definition = new byte[size];
+          in.readFully(definition);
+        }
+        entries.add(new Entry(name, digest, definition));
+      }
+      return entries;
+    } catch (IOException e) {
+      throw new UnexpectedException(e);
+    }
+  }
+
+  /**
+   * A class included in a <code>ClassBundle</code>.
+   */
+  public static final class Entry {
+
+    /** The fully qualified name of the class. */
+    private final String name;
+
+    /** The MD5 digest of the class definition. */
+    private final byte[] digest;
+
+    /**
+     * The class definition, or <code>null</code> if the recipient already
+     * has it.
+     */
+    private final byte[] definition;
+
+    /**
+     * Creates a new <code>Entry</code>.
+     * @param name The fully qualified name of the class.
+     * @param digest The MD5 digest of the class definition.
+     * @param definition The class definition, or <code>null</code> if the
+     *     recipient already has it.
+     */
+    public Entry(String name, byte[] digest, byte[] definition) {
+      this.name = name;
+      this.digest = digest;
+      this.definition = definition;
+    }
+
+    /**
+     * Gets the fully qualified name of the class.
+     * @return The fully qualified name of the class.
+     */
+    public String getName() {
+      return name;
+    }
+
+    /**
+     * Gets the MD5 digest of the class definition.
+     * @return The MD5 digest of the class definition.
+     */
+    public byte[] getDigest() {
+      return digest;
+    }
+
+    /**
+     * Gets the class definition.
+     * @return The class definition, or <code>null</code> if it was omitted
+     *     because the recipient already has it.
+     */
+    public byte[] getDefinition() {
+      return definition;
+    }
+
+  }
+
+}
@@ -127,6 +127,23 @@ public interface JobService extends TaskService {
   byte[] getClassDigest(String name) throws SecurityException,
       RemoteException;
 
+  /**
+   * Gets the MD5 digests for the most recent definitions of several
+   * classes.  This is equivalent to calling {@link #getClassDigest(String)}
+   * for each class, but requires only a single call.
+   * @param names The fully qualified names of the classes whose digests to
+   *     obtain.
+   * @return An array of the MD5 digests for the most recent definitions of
+   *     the given classes, in the same order as <code>names</code>.  An
+   *     element is <code>null</code> if there is no definition for the
+   *     corresponding class.
+   * @throws SecurityException If the caller does not have permission to
+   *     obtain class digests.
+   * @throws RemoteException If a communication error occurs.
+   */
+  byte[][] getClassDigests(String[] names) throws SecurityException,
+      RemoteException;
+
   /**
    * Sets the class definition for the specified class.
    * @param name The fully qualified name of the class whose definition is
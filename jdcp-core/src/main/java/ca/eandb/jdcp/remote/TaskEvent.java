@@ -0,0 +1,115 @@
+/*
+ * Copyright (c) 2026 Bradley W. Kimmel
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package ca.eandb.jdcp.remote;
+
+import java.io.Serializable;
+import java.util.UUID;
+
+/**
+ * Indicates that a task, or an entire job, has finished and that workers
+ * processing it should stop.
+ * @author Brad Kimmel
+ * @see TaskService#waitForTaskEvents(long, long)
+ */
+public final class TaskEvent implements Serializable {
+
+  /** Serialization version ID. */
+  private static final long serialVersionUID = 5306617218461263474L;
+
+  /**
+   * The <code>UUID</code> identifying the job, or <code>null</code> if
+   * this is a reset event.
+   */
+  private final UUID jobId;
+
+  /** The ID of the task, or zero (0) if the job as a whole has finished. */
+  private final int taskId;
+
+  /** An ID uniquely identifying this event. */
+  private final long eventId;
+
+  /**
+   * Creates a new <code>TaskEvent</code>.
+   * @param jobId The <code>UUID</code> identifying the job, or
+   *     <code>null</code> to indicate that the recipient may have missed
+   *     events.
+   * @param taskId The ID of the task that finished, or zero (0) if the job
+   *     as a whole has finished.
+   * @param eventId An ID uniquely identifying this event.
+   */
+  public TaskEvent(UUID jobId, int taskId, long eventId) {
+    this.jobId = jobId;
+    this.taskId = taskId;
+    this.eventId = eventId;
+  }
+
+  /**
+   * Gets the <code>UUID</code> identifying the job.
+   * @return The <code>UUID</code> identifying the job, or
+   *     <code>null</code> if this is a reset event.
+   */
+  public UUID getJobId() {
+    return jobId;
+  }
+
+  /**
+   * Gets the ID of the task that finished.
+   * @return The ID of the task that finished, or zero (0) if the job as a
+   *     whole has finished.
+   */
+  public int getTaskId() {
+    return taskId;
+  }
+
+  /**
+   * Gets the event ID.  Callers pass the ID of the last event they have
+   * seen to {@link TaskService#waitForTaskEvents(long, long)}.
+   * @return The event ID.
+   */
+  public long getEventId() {
+    return eventId;
+  }
+
+  /**
+   * Gets a value indicating if the job as a whole has finished.
+   * @return A value indicating if the job as a whole has finished.
+   */
+  public boolean isJobFinished() {
+    return jobId != null && taskId == 0;
+  }
+
+  /**
+   * Gets a value indicating whether this is a reset event.  A reset event
+   * indicates that the recipient may have missed events (for example,
+   * because the server was restarted), and should check its outstanding
+   * tasks using {@link TaskService#getFinishedTasks(UUID[], int[])}.
+   * @return A value indicating whether this is a reset event.
+   */
+  public boolean isReset() {
+    return jobId == null;
+  }
+
+}
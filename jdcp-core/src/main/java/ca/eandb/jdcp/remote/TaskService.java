@@ -3,6 +3,7 @@ package ca.eandb.jdcp.remote;
 import java.rmi.Remote;
 import java.rmi.RemoteException;
 import java.util.BitSet;
+import java.util.Map;
 import java.util.UUID;
 
 import ca.eandb.jdcp.job.TaskDescription;
@@ -46,6 +47,45 @@ public interface TaskService extends Remote {
    */
   TaskDescription requestTask() throws SecurityException, RemoteException;
 
+  /**
+   * Gets up to the specified number of tasks to perform.
+   * @param maxTasks The maximum number of tasks to return.
+   * @param waitMillis The maximum amount of time (in milliseconds) that the
+   *     caller is willing to wait for a task to become available if there
+   *     are none immediately.  The service may return sooner.
+   * @return A non-empty array of <code>TaskDescription</code>s describing
+   *     the tasks to be performed.  If there are no tasks to be performed,
+   *     the array contains a single <code>TaskDescription</code> indicating
+   *     that the caller should idle, as {@link #requestTask()} would.  If
+   *     the service waited before returning, the idle time may be reduced
+   *     by the time spent waiting (possibly to zero).
+   * @throws IllegalArgumentException If <code>maxTasks</code> is not
+   *     positive.
+   * @throws SecurityException If the caller does not have permission to
+   *     request tasks.
+   * @throws RemoteException If a communication error occurs.
+   */
+  TaskDescription[] requestTasks(int maxTasks, long waitMillis)
+      throws IllegalArgumentException, SecurityException, RemoteException;
+
+  /**
+   * Returns tasks that the caller has obtained but will not perform (for
+   * example, tasks that were prefetched by a worker that is shutting down),
+   * so that they may be handed out again right away rather than once their
+   * leases expire.
+   * @param jobIds An array indicating the <code>UUID</code>s of the jobs
+   *     for which the tasks were obtained.
+   * @param taskIds An array indicating the IDs of the tasks to return (must
+   *     be the same length as <code>jobIds</code>).
+   * @throws IllegalArgumentException If
+   *     <code>jobIds.length != taskIds.length</code>.
+   * @throws SecurityException If the caller does not have permission to
+   *     request tasks.
+   * @throws RemoteException If a communication error occurs.
+   */
+  void releaseTasks(UUID[] jobIds, int[] taskIds)
+      throws IllegalArgumentException, SecurityException, RemoteException;
+
   /**
    * Submits the results of a task.
    * @param jobId The <code>UUID</code> identifying the job for which the
@@ -59,6 +99,108 @@ public interface TaskService extends Remote {
   void submitTaskResults(UUID jobId, int taskId, Serialized<Object> results)
       throws SecurityException, RemoteException;
 
+  /**
+   * Submits the results of several tasks.
+   * @param jobIds An array of <code>UUID</code>s identifying the jobs for
+   *     which the tasks were performed.
+   * @param taskIds An array of the IDs of the tasks that were performed
+   *     (must be the same length as <code>jobIds</code>).
+   * @param results An array of the results of the tasks (must be the same
+   *     length as <code>jobIds</code>).
+   * @return A <code>BitSet</code> indicating which of the results were
+   *     accepted.  A result is not accepted if the task is no longer
+   *     outstanding (for example, if another worker has already submitted
+   *     results for it, or if the job was cancelled).  If any of the
+   *     arguments is null, an empty <code>BitSet</code> is returned.
+   * @throws IllegalArgumentException If the arrays are not all of the same
+   *     length.
+   * @throws SecurityException If the caller does not have permission to
+   *     submit task results.
+   * @throws RemoteException If a communication error occurs.
+   */
+  BitSet submitTaskResultsBatch(UUID[] jobIds, int[] taskIds,
+      Serialized<Object>[] results) throws IllegalArgumentException,
+      SecurityException, RemoteException;
+
+  /**
+   * Begins uploading the results of a task as a stream of chunks.  This
+   * allows results that are too large to be transmitted comfortably in a
+   * single call to {@link #submitTaskResults(UUID, int, Serialized)} to be
+   * sent without either end holding them in memory all at once.  The
+   * results are sent using {@link #writeResultChunk(UUID, long, byte[])}
+   * and delivered to the job by {@link #commitResultStream(UUID, long)}.
+   * @param jobId The <code>UUID</code> identifying the job for which the
+   *     task was performed.
+   * @param taskId The ID of the task that was performed.
+   * @param raw A value indicating whether the stream contains the bytes
+   *     written by a <code>StreamableResult</code>, which are to be handed
+   *     to the job as is.  Otherwise, the stream contains the serialized
+   *     results object.
+   * @return A <code>UUID</code> identifying the new result stream, or
+   *     <code>null</code> if the task is no longer outstanding.
+   * @throws UnsupportedOperationException If <code>raw</code> is set and
+   *     the job is not a <code>StreamingParallelizableJob</code>.  In this
+   *     case, the results should be submitted as a serialized object
+   *     instead.
+   * @throws SecurityException If the caller does not have permission to
+   *     submit task results.
+   * @throws RemoteException If a communication error occurs.
+   * @see ca.eandb.jdcp.job.StreamableResult
+   * @see ca.eandb.jdcp.job.StreamingParallelizableJob
+   */
+  UUID openResultStream(UUID jobId, int taskId, boolean raw)
+      throws UnsupportedOperationException, SecurityException,
+      RemoteException;
+
+  /**
+   * Appends a chunk of data to a result stream.  Chunks must be written in
+   * order.  A chunk that has already been written (for example, if the
+   * caller is retrying after a communication error) is ignored.
+   * @param streamId The <code>UUID</code> identifying the result stream,
+   *     as returned by {@link #openResultStream(UUID, int, boolean)}.
+   * @param offset The position in the stream of the first byte of
+   *     <code>data</code>.
+   * @param data The chunk of data to append.
+   * @throws IllegalArgumentException If there is no open result stream
+   *     with the specified <code>UUID</code>, or if <code>offset</code> is
+   *     past the end of the data written so far.
+   * @throws SecurityException If the caller does not have permission to
+   *     submit task results.
+   * @throws RemoteException If a communication error occurs.
+   */
+  void writeResultChunk(UUID streamId, long offset, byte[] data)
+      throws IllegalArgumentException, SecurityException, RemoteException;
+
+  /**
+   * Completes a result stream and submits its contents as the results of
+   * the task for which it was opened.
+   * @param streamId The <code>UUID</code> identifying the result stream,
+   *     as returned by {@link #openResultStream(UUID, int, boolean)}.
+   * @param length The total number of bytes written to the stream.
+   * @return A value indicating whether the results were accepted.  The
+   *     results are not accepted if the task is no longer outstanding.
+   * @throws IllegalArgumentException If there is no open result stream
+   *     with the specified <code>UUID</code>, or if <code>length</code>
+   *     does not match the amount of data received.
+   * @throws SecurityException If the caller does not have permission to
+   *     submit task results.
+   * @throws RemoteException If a communication error occurs.
+   */
+  boolean commitResultStream(UUID streamId, long length)
+      throws IllegalArgumentException, SecurityException, RemoteException;
+
+  /**
+   * Discards a result stream.  This method does nothing if there is no
+   * open result stream with the specified <code>UUID</code>.
+   * @param streamId The <code>UUID</code> identifying the result stream,
+   *     as returned by {@link #openResultStream(UUID, int, boolean)}.
+   * @throws SecurityException If the caller does not have permission to
+   *     submit task results.
+   * @throws RemoteException If a communication error occurs.
+   */
+  void abortResultStream(UUID streamId)
+      throws SecurityException, RemoteException;
+
   /**
    * Report that an exception was thrown during the execution of an assigned
    * task.
@@ -95,6 +237,29 @@ public interface TaskService extends Remote {
   BitSet getFinishedTasks(UUID[] jobIds, int[] taskIds)
       throws IllegalArgumentException, SecurityException, RemoteException;
 
+  /**
+   * Waits for tasks or jobs to finish.  This allows callers to learn that
+   * work they are doing is no longer needed as soon as that happens, rather
+   * than on their next call to {@link #getFinishedTasks(UUID[], int[])}.
+   * Events are only generated for tasks that may be being processed by
+   * more than one worker, and for jobs that complete or are cancelled.
+   * @param lastEventId The ID of the last <code>TaskEvent</code> that the
+   *     caller has seen.  Callers that have not yet seen any events may
+   *     pass <code>Long.MIN_VALUE</code>.
+   * @param timeoutMillis The maximum amount of time (in milliseconds) to
+   *     wait for an event.  The service may return sooner.
+   * @return The events that occurred after <code>lastEventId</code>, in
+   *     order, or an empty array if no events occurred before the timeout
+   *     elapsed.  If the service cannot determine which events the caller
+   *     has missed, a single event with a <code>null</code> job ID is
+   *     returned (see {@link TaskEvent#isReset()}).
+   * @throws SecurityException If the caller does not have permission to get
+   *     the completion status of tasks.
+   * @throws RemoteException If a communication error occurs.
+   */
+  TaskEvent[] waitForTaskEvents(long lastEventId, long timeoutMillis)
+      throws SecurityException, RemoteException;
+
   /**
    * Gets the MD5 digest for the definition of the given class associated
    * with the specified job.
@@ -114,6 +279,29 @@ public interface TaskService extends Remote {
   byte[] getClassDigest(String name, UUID jobId) throws DelegationException,
       SecurityException, RemoteException;
 
+  /**
+   * Gets the MD5 digests for the definitions of several classes associated
+   * with the specified job.  This is equivalent to calling
+   * {@link #getClassDigest(String, UUID)} for each class, but requires
+   * only a single call.
+   * @param names The fully qualified names of the classes whose digests to
+   *     obtain.
+   * @param jobId The <code>UUID</code> identifying the job for which to
+   *     get the class digests.
+   * @return An array of the MD5 digests for the definitions of the given
+   *     classes associated with the specified job, in the same order as
+   *     <code>names</code>.  An element is <code>null</code> if there is
+   *     no definition for the corresponding class.
+   * @throws DelegationException If this <code>JobService</code> could not
+   *     communicate with the provider of the classes whose digests are
+   *     being requested.
+   * @throws SecurityException If the caller does not have permission to
+   *     obtain class digests.
+   * @throws RemoteException If a communication error occurs.
+   */
+  byte[][] getClassDigests(String[] names, UUID jobId)
+      throws DelegationException, SecurityException, RemoteException;
+
   /**
    * Gets the definition of the given class associated with the specified
    * job.
@@ -133,4 +321,74 @@ public interface TaskService extends Remote {
   byte[] getClassDefinition(String name, UUID jobId)
       throws DelegationException, SecurityException, RemoteException;
 
+  /**
+   * Gets the definitions of the classes associated with the specified job
+   * in a single compressed archive.  This allows a worker to populate its
+   * class cache before it deserializes the task worker, rather than
+   * calling {@link #getClassDigest(String, UUID)} and
+   * {@link #getClassDefinition(String, UUID)} for each class as it is
+   * loaded.  The bundle includes the classes that the job is known to
+   * require, which may not be all of them, so the caller must still be
+   * prepared to request individual classes.
+   * @param jobId The <code>UUID</code> identifying the job for which to
+   *     get the class definitions.
+   * @param digests A <code>Map</code> of the MD5 digests of the class
+   *     definitions that the caller already has, keyed by class name, or
+   *     <code>null</code> if the caller has none.  The definitions of
+   *     classes whose digests match are omitted from the bundle.
+   * @return The <code>ClassBundle</code> holding the class definitions
+   *     associated with the specified job.
+   * @throws DelegationException If this <code>JobService</code> could not
+   *     communicate with the provider of the classes being requested.
+   * @throws IllegalArgumentException If there is no job on the server with
+   *     the specified <code>UUID</code>.
+   * @throws SecurityException If the caller does not have permission to
+   *     obtain class definitions.
+   * @throws RemoteException If a communication error occurs.
+   */
+  ClassBundle getClassBundle(UUID jobId, Map<String, byte[]> digests)
+      throws DelegationException, IllegalArgumentException,
+      SecurityException, RemoteException;
+
+  /**
+   * Gets the names of the classes that would be included in a
+   * <code>ClassBundle</code> for the specified job.  A caller may use these
+   * to limit the digests it passes to {@link #getClassBundle(UUID, Map)}
+   * to those of the classes that the job needs.
+   * @param jobId The <code>UUID</code> identifying the job for which to
+   *     get the class names.
+   * @return The fully qualified names of the classes that the job is known
+   *     to require.
+   * @throws DelegationException If this <code>JobService</code> could not
+   *     communicate with the provider of the classes being requested.
+   * @throws IllegalArgumentException If there is no job on the server with
+   *     the specified <code>UUID</code>.
+   * @throws SecurityException If the caller does not have permission to
+   *     obtain class definitions.
+   * @throws RemoteException If a communication error occurs.
+   * @see #getClassBundle(UUID, Map)
+   */
+  String[] getClassManifest(UUID jobId) throws DelegationException,
+      IllegalArgumentException, SecurityException, RemoteException;
+
+  /**
+   * Reports the classes that a worker loaded to process tasks for a job,
+   * in the order in which they were loaded.  The service records these
+   * classes against the job and includes them in the
+   * <code>ClassBundle</code>s subsequently returned by
+   * {@link #getClassBundle(UUID, Map)}, so that later workers can obtain
+   * them before they are needed.  A worker need only report the classes
+   * that were not included in the bundle it received.  This method does
+   * nothing if there is no job with the specified <code>UUID</code>.
+   * @param jobId The <code>UUID</code> identifying the job for which the
+   *     classes were loaded.
+   * @param classNames The fully qualified names of the classes that were
+   *     loaded.
+   * @throws SecurityException If the caller does not have permission to
+   *     report class manifests.
+   * @throws RemoteException If a communication error occurs.
+   */
+  void reportClassManifest(UUID jobId, String[] classNames)
+      throws SecurityException, RemoteException;
+
 }
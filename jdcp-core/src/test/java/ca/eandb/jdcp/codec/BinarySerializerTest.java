@@ -0,0 +1,320 @@
+/*
+ * Copyright (c) 2026 Bradley W. Kimmel
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package ca.eandb.jdcp.codec;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InvalidClassException;
+import java.io.Serializable;
+import java.io.StreamCorruptedException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.testng.annotations.Test;
+
+/**
+ * Tests for {@link BinarySerializer}.
+ * @author Brad Kimmel
+ */
+public class BinarySerializerTest {
+
+  /** A registrable class with fields of every kind. */
+  static class Node implements Serializable {
+    private static final long serialVersionUID = 1L;
+    boolean z;
+    byte b;
+    short s;
+    char c;
+    int i;
+    long j;
+    float f;
+    double d;
+    String name;
+    int[] values;
+    Object next;
+    transient Object scratch;
+  }
+
+  /** A registrable subclass, whose inherited fields must also be written. */
+  static class Leaf extends Node {
+    private static final long serialVersionUID = 1L;
+    String label;
+  }
+
+  /** A class that customizes its serialized form. */
+  static class Custom implements Serializable {
+    private static final long serialVersionUID = 1L;
+    private void writeObject(java.io.ObjectOutputStream out)
+        throws IOException {
+      out.defaultWriteObject();
+    }
+  }
+
+  /** A class that has no no-argument constructor. */
+  static class NoDefaultConstructor implements Serializable {
+    private static final long serialVersionUID = 1L;
+    NoDefaultConstructor(int x) {}
+  }
+
+  private static Object roundTrip(BinarySerializer writer,
+      BinarySerializer reader, Object obj) throws IOException,
+      ClassNotFoundException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    writer.writeObject(obj, bytes);
+    return reader.readObject(new ByteArrayInputStream(bytes.toByteArray()),
+        BinarySerializerTest.class.getClassLoader());
+  }
+
+  private static Object roundTrip(BinarySerializer serializer, Object obj)
+      throws IOException, ClassNotFoundException {
+    return roundTrip(serializer, serializer, obj);
+  }
+
+  private static BinarySerializer registered() {
+    BinarySerializer serializer = new BinarySerializer();
+    assertTrue(serializer.register(Node.class));
+    assertTrue(serializer.register(Leaf.class));
+    return serializer;
+  }
+
+  @Test
+  public void testPrimitivesAndStrings() throws Exception {
+    BinarySerializer serializer = new BinarySerializer();
+    Object[] values = { null, Boolean.TRUE, (byte) -3, (short) 1234,
+        'x', -7, Long.MIN_VALUE, 1.5f, Math.PI, "", "h\u00e9llo \u4e16\u754c" };
+    for (Object value : values) {
+      assertEquals(roundTrip(serializer, value), value);
+    }
+  }
+
+  @Test
+  public void testPrimitiveArrays() throws Exception {
+    BinarySerializer serializer = new BinarySerializer();
+    int[] ints = new int[10000];
+    for (int i = 0; i < ints.length; i++) {
+      ints[i] = i * 31;
+    }
+    assertTrue(Arrays.equals((int[]) roundTrip(serializer, ints), ints));
+
+    double[] doubles = { 0.0, -1.0, Double.NaN };
+    assertTrue(Arrays.equals((double[]) roundTrip(serializer, doubles),
+        doubles));
+    boolean[] booleans = { true, false, true };
+    assertTrue(Arrays.equals((boolean[]) roundTrip(serializer, booleans),
+        booleans));
+    char[] chars = "chars".toCharArray();
+    assertTrue(Arrays.equals((char[]) roundTrip(serializer, chars), chars));
+    byte[] empty = new byte[0];
+    assertEquals((byte[]) roundTrip(serializer, empty), empty);
+  }
+
+  @Test
+  public void testRegisteredObject() throws Exception {
+    BinarySerializer serializer = registered();
+    Leaf leaf = new Leaf();
+    leaf.z = true;
+    leaf.b = 1;
+    leaf.s = 2;
+    leaf.c = 'c';
+    leaf.i = 3;
+    leaf.j = 4L;
+    leaf.f = 5.0f;
+    leaf.d = 6.0;
+    leaf.name = "leaf";
+    leaf.values = new int[]{ 7, 8 };
+    leaf.label = "label";
+    leaf.scratch = "transient";
+
+    Leaf copy = (Leaf) roundTrip(serializer, leaf);
+    assertNotSame(copy, leaf);
+    assertTrue(copy.z);
+    assertEquals(copy.b, 1);
+    assertEquals(copy.s, 2);
+    assertEquals(copy.c, 'c');
+    assertEquals(copy.i, 3);
+    assertEquals(copy.j, 4L);
+    assertEquals(copy.f, 5.0f, 0.0);
+    assertEquals(copy.d, 6.0, 0.0);
+    assertEquals(copy.name, "leaf");
+    assertTrue(Arrays.equals(copy.values, leaf.values));
+    assertEquals(copy.label, "label");
+    assertNull(copy.scratch);
+    assertNull(copy.next);
+  }
+
+  @Test
+  public void testSharedReferences() throws Exception {
+    BinarySerializer serializer = registered();
+    Node shared = new Node();
+    shared.values = new int[]{ 1 };
+    Node a = new Node();
+    a.next = shared;
+    a.values = shared.values;
+    Object[] graph = { a, shared, shared.values, a };
+
+    Object[] copy = (Object[]) roundTrip(serializer, graph);
+    Node copyA = (Node) copy[0];
+    assertSame(copy[3], copyA);
+    assertSame(copyA.next, copy[1]);
+    assertSame(copyA.values, ((Node) copy[1]).values);
+    assertSame(copy[2], copyA.values);
+  }
+
+  @Test
+  public void testCycles() throws Exception {
+    BinarySerializer serializer = registered();
+    Node a = new Node();
+    Node b = new Node();
+    a.next = b;
+    b.next = a;
+    Node copy = (Node) roundTrip(serializer, a);
+    assertSame(((Node) copy.next).next, copy);
+
+    Object[] array = new Object[2];
+    array[0] = array;
+    array[1] = a;
+    Object[] arrayCopy = (Object[]) roundTrip(serializer, array);
+    assertSame(arrayCopy[0], arrayCopy);
+  }
+
+  @Test
+  public void testLongChainDoesNotOverflow() throws Exception {
+    BinarySerializer serializer = registered();
+    Object[] head = new Object[1];
+    Object[] tail = head;
+    for (int i = 0; i < 1000; i++) {
+      Object[] next = new Object[1];
+      tail[0] = next;
+      tail = next;
+    }
+    assertTrue(roundTrip(serializer, head) instanceof Object[]);
+  }
+
+  @Test
+  public void testUnregisteredClassUsesJavaSerialization() throws Exception {
+    BinarySerializer serializer = new BinarySerializer();
+    List<Object> list = new ArrayList<Object>();
+    list.add("a");
+    list.add(42);
+    assertEquals(roundTrip(serializer, list), list);
+
+    Node node = new Node();
+    node.name = "java";
+    Object copy = roundTrip(serializer, node);
+    assertEquals(((Node) copy).name, "java");
+  }
+
+  @Test
+  public void testUnregisteredClassIsRejectedOnRead() throws Exception {
+    BinarySerializer writer = registered();
+    BinarySerializer reader = new BinarySerializer();
+    assertFalse(reader.isRegistered(Node.class));
+    try {
+      roundTrip(writer, reader, new Node());
+      fail("Expected InvalidClassException");
+    } catch (InvalidClassException e) {
+      assertEquals(e.classname, Node.class.getName());
+    }
+  }
+
+  @Test
+  public void testRegistrationIsNotInherited() throws Exception {
+    BinarySerializer writer = registered();
+    BinarySerializer reader = new BinarySerializer();
+    reader.register(Node.class);
+    try {
+      roundTrip(writer, reader, new Leaf());
+      fail("Expected InvalidClassException");
+    } catch (InvalidClassException e) {
+      assertEquals(e.classname, Leaf.class.getName());
+    }
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testRegisterCustomClass() {
+    new BinarySerializer().register(Custom.class);
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testRegisterClassWithoutDefaultConstructor() {
+    new BinarySerializer().register(NoDefaultConstructor.class);
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testRegisterNonSerializableClass() {
+    new BinarySerializer().register(Object.class);
+  }
+
+  @Test(expectedExceptions = StreamCorruptedException.class)
+  public void testWrongHeader() throws Exception {
+    new BinarySerializer().readObject(
+        new ByteArrayInputStream(new byte[]{ 0, 0 }), null);
+  }
+
+  @Test
+  public void testTruncatedStream() throws Exception {
+    BinarySerializer serializer = registered();
+    Leaf leaf = new Leaf();
+    leaf.name = "truncated";
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    serializer.writeObject(leaf, bytes);
+    byte[] data = bytes.toByteArray();
+    for (int n = 0; n < data.length; n++) {
+      try {
+        serializer.readObject(new ByteArrayInputStream(data, 0, n),
+            getClass().getClassLoader());
+        fail("Read succeeded on " + n + " of " + data.length + " bytes");
+      } catch (IOException e) {
+        /* expected. */
+      }
+    }
+  }
+
+  @Test
+  public void testDispatchedBySerializers() throws Exception {
+    Node node = new Node();
+    node.name = "dispatch";
+    byte[] bytes = Serializers.serialize(node, Serializers.BINARY);
+    Node copy = (Node) Serializers.deserialize(bytes,
+        getClass().getClassLoader());
+    assertEquals(copy.name, "dispatch");
+
+    /* Java serialization streams are recognized as well. */
+    bytes = Serializers.serialize("java", Serializers.JAVA);
+    assertEquals(Serializers.deserialize(bytes, null), "java");
+  }
+
+}
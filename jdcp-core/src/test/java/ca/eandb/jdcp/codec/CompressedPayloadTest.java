@@ -0,0 +1,148 @@
+/*
+ * Copyright (c) 2026 Bradley W. Kimmel
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package ca.eandb.jdcp.codec;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Random;
+
+import org.testng.annotations.Test;
+
+/**
+ * Tests for {@link CompressedPayload}.
+ * @author Brad Kimmel
+ */
+public class CompressedPayloadTest {
+
+  /** Creates a compressible object whose serialized form is large. */
+  private static ArrayList<Integer> largeObject() {
+    ArrayList<Integer> list = new ArrayList<Integer>();
+    for (int i = 0; i < 5000; i++) {
+      list.add(i % 10);
+    }
+    return list;
+  }
+
+  /** Sends an object through Java serialization and back. */
+  private static Object transmit(Object obj) throws Exception {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    ObjectOutputStream out = new ObjectOutputStream(bytes);
+    out.writeObject(obj);
+    out.close();
+    ObjectInputStream in = new ObjectInputStream(
+        new ByteArrayInputStream(bytes.toByteArray()));
+    return in.readObject();
+  }
+
+  @Test
+  public void testSmallObjectIsNotCompressed() {
+    String obj = "small";
+    assertSame(CompressedPayload.compress(obj, Codecs.LZ), obj);
+  }
+
+  @Test
+  public void testNullCodecDoesNotCompress() {
+    Object obj = largeObject();
+    assertSame(CompressedPayload.compress(obj, Codecs.NONE, 0), obj);
+  }
+
+  @Test
+  public void testNull() throws ClassNotFoundException {
+    assertNull(CompressedPayload.compress(null, Codecs.LZ, 0));
+    assertNull(CompressedPayload.decompress(null, null));
+  }
+
+  @Test
+  public void testRoundTrip() throws Exception {
+    for (Codec codec : new Codec[]{ Codecs.LZ, Codecs.DEFLATE }) {
+      ArrayList<Integer> obj = largeObject();
+      Object wrapped = CompressedPayload.compress(obj, codec, 0);
+      assertTrue(wrapped instanceof CompressedPayload);
+      assertEquals(((CompressedPayload) wrapped).getCodec().getId(),
+          codec.getId());
+
+      /* The sender recovers the original object without decoding. */
+      assertSame(CompressedPayload.decompress(wrapped, null), obj);
+
+      Object received = transmit(wrapped);
+      Object result = CompressedPayload.decompress(received,
+          getClass().getClassLoader());
+      assertNotSame(result, obj);
+      assertEquals(result, obj);
+    }
+  }
+
+  @Test
+  public void testBinarySerializerRoundTrip() throws Exception {
+    ArrayList<Integer> obj = largeObject();
+    Object wrapped = CompressedPayload.compress(obj, Serializers.BINARY,
+        Codecs.LZ, Integer.MAX_VALUE);
+    assertTrue(wrapped instanceof CompressedPayload);
+    assertEquals(CompressedPayload.decompress(transmit(wrapped),
+        getClass().getClassLoader()), obj);
+  }
+
+  @Test
+  public void testIncompressibleDataIsStored() throws Exception {
+    byte[] obj = new byte[10000];
+    new Random(1).nextBytes(obj);
+    byte[] bytes = Serializers.serialize(obj, Serializers.JAVA);
+
+    assertSame(CompressedPayload.compress(obj, Codecs.LZ, 0), obj);
+
+    CompressedPayload payload = CompressedPayload.wrap(bytes, Codecs.LZ, 0);
+    assertEquals(payload.getCodec().getId(), NullCodec.ID);
+    assertEquals(payload.getSize(), bytes.length);
+    assertEquals((byte[]) payload.getObject(getClass().getClassLoader()),
+        obj);
+  }
+
+  @Test
+  public void testWrapBelowThreshold() throws IOException,
+      ClassNotFoundException {
+    byte[] bytes = Serializers.serialize(largeObject(), Serializers.JAVA);
+    CompressedPayload payload = CompressedPayload.wrap(bytes, Codecs.LZ,
+        bytes.length + 1);
+    assertEquals(payload.getCodec().getId(), NullCodec.ID);
+    assertEquals(payload.getObject(getClass().getClassLoader()),
+        largeObject());
+
+    payload = CompressedPayload.wrap(bytes, Codecs.LZ, bytes.length);
+    assertEquals(payload.getCodec().getId(), LzCodec.ID);
+    assertTrue(payload.getSize() < bytes.length);
+  }
+
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright (c) 2026 Bradley W. Kimmel
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package ca.eandb.jdcp.codec;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.testng.annotations.Test;
+
+/**
+ * Tests for {@link LzCodec}.
+ * @author Brad Kimmel
+ */
+public class LzCodecTest {
+
+  /** The codec under test. */
+  private final Codec codec = new LzCodec();
+
+  private void assertRoundTrip(byte[] data) throws IOException {
+    byte[] encoded = codec.encode(data);
+    assertEquals(codec.decode(encoded, data.length), data);
+  }
+
+  /** Generates compressible data resembling serialized objects. */
+  private static byte[] text(int length, long seed) {
+    Random rnd = new Random(seed);
+    String[] words = { "ca.eandb.jdcp", "Task", "Result", "java.lang",
+        "Integer", "value", "\u0000\u0000\u0000\u0001", "x" };
+    byte[] data = new byte[length];
+    int pos = 0;
+    while (pos < length) {
+      byte[] word = words[rnd.nextInt(words.length)].getBytes();
+      int n = Math.min(word.length, length - pos);
+      System.arraycopy(word, 0, data, pos, n);
+      pos += n;
+    }
+    return data;
+  }
+
+  @Test
+  public void testEmpty() throws IOException {
+    assertRoundTrip(new byte[0]);
+  }
+
+  @Test
+  public void testShortInputs() throws IOException {
+    for (int n = 1; n < 32; n++) {
+      assertRoundTrip(text(n, n));
+    }
+  }
+
+  @Test
+  public void testCompressibleData() throws IOException {
+    byte[] data = text(100000, 1);
+    byte[] encoded = codec.encode(data);
+    assertTrue(encoded.length < data.length / 2);
+    assertEquals(codec.decode(encoded, data.length), data);
+  }
+
+  @Test
+  public void testRandomData() throws IOException {
+    byte[] data = new byte[100000];
+    new Random(2).nextBytes(data);
+    assertRoundTrip(data);
+  }
+
+  @Test
+  public void testLongRuns() throws IOException {
+    /* Exercises overlapping matches and long length continuations. */
+    byte[] data = new byte[70000];
+    Arrays.fill(data, 0, 30000, (byte) 7);
+    for (int i = 30000; i < data.length; i++) {
+      data[i] = (byte) (i % 3);
+    }
+    assertRoundTrip(data);
+  }
+
+  @Test
+  public void testLongLiteralRuns() throws IOException {
+    byte[] data = new byte[1000];
+    new Random(3).nextBytes(data);
+    byte[] repeated = new byte[3000];
+    for (int i = 0; i < 3; i++) {
+      System.arraycopy(data, 0, repeated, i * 1000, 1000);
+    }
+    assertRoundTrip(repeated);
+  }
+
+  @Test(expectedExceptions = IOException.class)
+  public void testTruncatedInput() throws IOException {
+    byte[] data = text(10000, 4);
+    byte[] encoded = codec.encode(data);
+    codec.decode(Arrays.copyOf(encoded, encoded.length / 2), data.length);
+  }
+
+  @Test(expectedExceptions = IOException.class)
+  public void testEmptyInputForNonEmptyOutput() throws IOException {
+    codec.decode(new byte[0], 10);
+  }
+
+  @Test(expectedExceptions = IOException.class)
+  public void testZeroOffset() throws IOException {
+    /* One literal followed by a match with an offset of zero. */
+    byte[] encoded = { 0x10, 'a', 0x00, 0x00, 0x00 };
+    codec.decode(encoded, 10);
+  }
+
+  @Test(expectedExceptions = IOException.class)
+  public void testOffsetBeforeStart() throws IOException {
+    /* One literal followed by a match reaching back two bytes. */
+    byte[] encoded = { 0x10, 'a', 0x02, 0x00, 0x00 };
+    codec.decode(encoded, 10);
+  }
+
+  @Test(expectedExceptions = IOException.class)
+  public void testMatchPastEnd() throws IOException {
+    byte[] data = text(10000, 5);
+    codec.decode(codec.encode(data), data.length - 100);
+  }
+
+}
@@ -0,0 +1,188 @@
+/*
+ * Copyright (c) 2026 Bradley W. Kimmel
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package ca.eandb.jdcp.codec;
+
+import java.io.IOException;
+import java.io.Serializable;
+
+/**
+ * Compares the time taken by each <code>Serializer</code> to serialize and
+ * deserialize typical task and result objects, and the size of the
+ * serialized form.
+ *
+ * <p>Usage: <code>SerializerBenchmark [iterations]</code>
+ *
+ * @author Brad Kimmel
+ */
+public final class SerializerBenchmark {
+
+  /** The number of times to serialize each object by default. */
+  private static final int DEFAULT_ITERATIONS = 20000;
+
+  /**
+   * A task describing a block of work, typical of numeric jobs.
+   * @author Brad Kimmel
+   */
+  private static final class Tile implements Serializable {
+
+    /** Serialization version ID. */
+    private static final long serialVersionUID = 1L;
+
+    /** The bounds of the tile. */
+    private int x, y, width, height;
+
+    /** The number of samples to take. */
+    private long samples;
+
+    /** Creates an empty <code>Tile</code>. */
+    public Tile() {}
+
+    /**
+     * Creates a new <code>Tile</code>.
+     * @param x The left edge of the tile.
+     * @param y The top edge of the tile.
+     * @param width The width of the tile.
+     * @param height The height of the tile.
+     * @param samples The number of samples to take.
+     */
+    public Tile(int x, int y, int width, int height, long samples) {
+      this.x = x;
+      this.y = y;
+      this.width = width;
+      this.height = height;
+      this.samples = samples;
+    }
+
+  }
+
+  /**
+   * The results of a task, typical of numeric jobs.
+   * @author Brad Kimmel
+   */
+  private static final class TileResult implements Serializable {
+
+    /** Serialization version ID. */
+    private static final long serialVersionUID = 1L;
+
+    /** The tile that was rendered. */
+    private Tile tile;
+
+    /** The pixel values. */
+    private double[] pixels;
+
+    /** Creates an empty <code>TileResult</code>. */
+    public TileResult() {}
+
+    /**
+     * Creates a new <code>TileResult</code>.
+     * @param tile The tile that was rendered.
+     * @param pixels The pixel values.
+     */
+    public TileResult(Tile tile, double[] pixels) {
+      this.tile = tile;
+      this.pixels = pixels;
+    }
+
+  }
+
+  /**
+   * Runs the benchmark.
+   * @param args Command line arguments: the number of times to serialize
+   *     each object.
+   * @throws Exception If an error occurs.
+   */
+  public static void main(String[] args) throws Exception {
+    int iterations = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_ITERATIONS;
+
+    Serializers.BINARY.register(Tile.class);
+    Serializers.BINARY.register(TileResult.class);
+
+    Tile tile = new Tile(64, 128, 32, 32, 1000);
+    Object[] objects = {
+        tile,
+        new TileResult(tile, new double[32 * 32 * 3]),
+        new double[256 * 256],
+        new int[]{ 1, 2, 3, 4 } };
+    String[] names = { "task", "result (24 KB)", "double[65536]", "int[4]" };
+    Serializer[] serializers = { Serializers.JAVA, Serializers.BINARY };
+
+    System.out.printf("%-16s %-8s %10s %14s %14s%n",
+        "object", "format", "bytes", "write (us)", "read (us)");
+    for (int i = 0; i < objects.length; i++) {
+      /* Scale down the number of iterations for large objects. */
+      int n = Math.max(iterations / (1 + sizeOf(objects[i]) / 4096), 10);
+      for (Serializer serializer : serializers) {
+        /* Warm up before taking any measurements. */
+        measure(objects[i], serializer, n);
+        long[] times = measure(objects[i], serializer, n);
+        System.out.printf("%-16s %-8s %10d %14.2f %14.2f%n", names[i],
+            serializer.getName(),
+            Serializers.serialize(objects[i], serializer).length,
+            times[0] / 1e3 / n, times[1] / 1e3 / n);
+      }
+    }
+  }
+
+  /**
+   * Gets the size of the Java serialized form of an object.
+   * @param obj The object.
+   * @return The size of the serialized object, in bytes.
+   * @throws IOException If the object cannot be serialized.
+   */
+  private static int sizeOf(Object obj) throws IOException {
+    return Serializers.serialize(obj, Serializers.JAVA).length;
+  }
+
+  /**
+   * Serializes and deserializes an object repeatedly.
+   * @param obj The object to serialize.
+   * @param serializer The <code>Serializer</code> to use.
+   * @param n The number of times to serialize the object.
+   * @return The total time spent serializing and the total time spent
+   *     deserializing, in nanoseconds.
+   * @throws Exception If an error occurs.
+   */
+  private static long[] measure(Object obj, Serializer serializer, int n)
+      throws Exception {
+    byte[] bytes = null;
+    long start = System.nanoTime();
+    for (int i = 0; i < n; i++) {
+      bytes = Serializers.serialize(obj, serializer);
+    }
+    long write = System.nanoTime() - start;
+
+    start = System.nanoTime();
+    for (int i = 0; i < n; i++) {
+      Serializers.deserialize(bytes, null);
+    }
+    long read = System.nanoTime() - start;
+
+    return new long[]{ write, read };
+  }
+
+  /** This class contains only static methods and is not instantiable. */
+  private SerializerBenchmark() {}
+
+}
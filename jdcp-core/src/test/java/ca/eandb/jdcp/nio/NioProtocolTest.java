@@ -0,0 +1,280 @@
+/*
+ * Copyright (c) 2026 Bradley W. Kimmel
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package ca.eandb.jdcp.nio;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.ByteBuffer;
+import java.rmi.RemoteException;
+import java.util.Arrays;
+import java.util.UUID;
+
+import javax.security.auth.login.LoginException;
+
+import org.testng.annotations.Test;
+
+import ca.eandb.jdcp.JdcpUtil;
+import ca.eandb.jdcp.remote.AuthenticationService;
+import ca.eandb.jdcp.remote.JobService;
+import ca.eandb.jdcp.remote.ProtocolVersionException;
+
+/**
+ * Tests for {@link NioProtocol}, and for the framing used by
+ * {@link NioJobServiceServer} and {@link NioJobServiceClient}.
+ * @author Brad Kimmel
+ */
+public class NioProtocolTest {
+
+  @Test
+  public void testFrameLayout() {
+    byte[] payload = { 1, 2, 3 };
+    ByteBuffer frame = NioProtocol.frame(NioProtocol.RETURN, 42L, payload);
+    assertEquals(frame.remaining(), NioProtocol.HEADER_SIZE + payload.length);
+    assertEquals(frame.getInt(), payload.length);
+    assertEquals(frame.get(), NioProtocol.RETURN);
+    assertEquals(frame.getLong(), 42L);
+    byte[] rest = new byte[frame.remaining()];
+    frame.get(rest);
+    assertEquals(rest, payload);
+  }
+
+  @Test
+  public void testMethodIndex() {
+    for (Method method : JobService.class.getMethods()) {
+      int index = NioProtocol.indexOf(method);
+      assertTrue(index >= 0);
+      assertEquals(NioProtocol.getMethod(index), method);
+    }
+    assertNull(NioProtocol.getMethod(-1));
+    assertNull(NioProtocol.getMethod(JobService.class.getMethods().length));
+  }
+
+  @Test
+  public void testMethodIndexIgnoresForeignMethods() throws Exception {
+    assertEquals(NioProtocol.indexOf(Object.class.getMethod("hashCode")), -1);
+  }
+
+  @Test
+  public void testInvocationRoundTrip() throws Exception {
+    Object[] args = { "name", UUID.randomUUID(), new byte[]{ 1, 2 } };
+    byte[] payload = NioProtocol.marshalInvocation(7, args);
+    ObjectInputStream in = NioProtocol.openInvocation(payload);
+    assertEquals(in.readShort(), 7);
+    Object[] result = (Object[]) in.readObject();
+    assertEquals(result.length, 3);
+    assertEquals(result[0], args[0]);
+    assertEquals(result[1], args[1]);
+    assertEquals((byte[]) result[2], (byte[]) args[2]);
+  }
+
+  @Test
+  public void testMarshalRoundTrip() throws Exception {
+    assertEquals(NioProtocol.unmarshal(NioProtocol.marshal("hello")), "hello");
+    assertNull(NioProtocol.unmarshal(NioProtocol.marshal(null)));
+  }
+
+  @Test
+  public void testCredentialsRoundTrip() throws IOException {
+    UUID version = UUID.randomUUID();
+    NioProtocol.Credentials credentials = NioProtocol.unmarshalCredentials(
+        NioProtocol.marshalCredentials("user", "p\u00e4ss", version));
+    assertEquals(credentials.username, "user");
+    assertEquals(credentials.password, "p\u00e4ss");
+    assertEquals(credentials.protocolVersionId, version);
+  }
+
+  @Test(expectedExceptions = IOException.class)
+  public void testCredentialsTooLong() throws IOException {
+    char[] name = new char[NioProtocol.MAX_AUTHENTICATE_PAYLOAD_SIZE];
+    Arrays.fill(name, 'x');
+    NioProtocol.marshalCredentials(new String(name), "", UUID.randomUUID());
+  }
+
+  @Test(expectedExceptions = IOException.class)
+  public void testCredentialsTruncated() throws IOException {
+    byte[] payload = NioProtocol.marshalCredentials("user", "pass",
+        UUID.randomUUID());
+    NioProtocol.unmarshalCredentials(
+        Arrays.copyOf(payload, payload.length - 1));
+  }
+
+  @Test(expectedExceptions = IOException.class)
+  public void testCredentialsTrailingData() throws IOException {
+    byte[] payload = NioProtocol.marshalCredentials("user", "pass",
+        UUID.randomUUID());
+    NioProtocol.unmarshalCredentials(
+        Arrays.copyOf(payload, payload.length + 1));
+  }
+
+  /**
+   * Creates a <code>JobService</code> that answers
+   * {@link JobService#getClassDigest(String)} by echoing the name, and
+   * throws from {@link JobService#cancelJob(UUID)}.
+   */
+  private static JobService createService() {
+    return (JobService) Proxy.newProxyInstance(
+        JobService.class.getClassLoader(),
+        new Class<?>[]{ JobService.class }, new InvocationHandler() {
+          public Object invoke(Object proxy, Method method, Object[] args) {
+            if (method.getName().equals("getClassDigest")) {
+              return ((String) args[0]).getBytes();
+            } else if (method.getName().equals("cancelJob")) {
+              throw new IllegalArgumentException("No such job");
+            }
+            return null;
+          }
+        });
+  }
+
+  /** Creates an <code>AuthenticationService</code> admitting "user". */
+  private static AuthenticationService createAuthenticationService(
+      final JobService service) {
+    return new AuthenticationService() {
+      public JobService authenticate(String username, String password,
+          UUID protocolVersionId) throws RemoteException, LoginException,
+          ProtocolVersionException {
+        if (!username.equals("user")) {
+          throw new LoginException("Unknown user");
+        }
+        return service;
+      }
+    };
+  }
+
+  @Test
+  public void testCallsOverLoopback() throws Exception {
+    NioJobServiceServer server = new NioJobServiceServer(
+        createAuthenticationService(createService()), 0);
+    try {
+      final JobService client = NioJobServiceClient.connect("localhost",
+          server.getPort(), "user", "", JdcpUtil.PROTOCOL_VERSION_ID);
+      try {
+        assertEquals(client.getClassDigest("abc"), "abc".getBytes());
+
+        try {
+          client.cancelJob(UUID.randomUUID());
+          fail("Expected IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+          assertEquals(e.getMessage(), "No such job");
+        }
+
+        /* Concurrent calls on one connection get their own replies. */
+        final Throwable[] failure = new Throwable[1];
+        Thread[] callers = new Thread[8];
+        for (int i = 0; i < callers.length; i++) {
+          final String name = "class" + i;
+          callers[i] = new Thread(new Runnable() {
+            public void run() {
+              try {
+                for (int j = 0; j < 50; j++) {
+                  assertEquals(client.getClassDigest(name), name.getBytes());
+                }
+              } catch (Throwable e) {
+                failure[0] = e;
+              }
+            }
+          });
+          callers[i].start();
+        }
+        for (Thread caller : callers) {
+          caller.join();
+        }
+        assertNull(failure[0]);
+      } finally {
+        NioJobServiceClient.getClient(client).close();
+      }
+    } finally {
+      server.shutdown();
+    }
+  }
+
+  @Test(expectedExceptions = LoginException.class)
+  public void testLoginFailure() throws Exception {
+    NioJobServiceServer server = new NioJobServiceServer(
+        createAuthenticationService(createService()), 0);
+    try {
+      NioJobServiceClient.connect("localhost", server.getPort(), "intruder",
+          "", JdcpUtil.PROTOCOL_VERSION_ID);
+    } finally {
+      server.shutdown();
+    }
+  }
+
+  @Test
+  public void testUnauthenticatedFramesCloseConnection() throws Exception {
+    NioJobServiceServer server = new NioJobServiceServer(
+        createAuthenticationService(createService()), 0);
+    try {
+      assertClosedAfter(server, NioProtocol.frame(NioProtocol.INVOKE, 1L,
+          NioProtocol.marshalInvocation(0, new Object[0])));
+
+      /* An oversized authentication frame is refused from its header. */
+      ByteBuffer header = ByteBuffer.allocate(NioProtocol.HEADER_SIZE);
+      header.putInt(NioProtocol.MAX_AUTHENTICATE_PAYLOAD_SIZE + 1)
+          .put(NioProtocol.AUTHENTICATE).putLong(1L);
+      header.flip();
+      assertClosedAfter(server, header);
+    } finally {
+      server.shutdown();
+    }
+  }
+
+  /**
+   * Sends raw bytes to a server and checks that it closes the connection.
+   */
+  private static void assertClosedAfter(NioJobServiceServer server,
+      ByteBuffer frame) throws IOException {
+    Socket socket = new Socket("localhost", server.getPort());
+    try {
+      socket.setSoTimeout(5000);
+      byte[] bytes = new byte[frame.remaining()];
+      frame.get(bytes);
+      socket.getOutputStream().write(bytes);
+      socket.getOutputStream().flush();
+      InputStream in = socket.getInputStream();
+      try {
+        assertEquals(in.read(), -1);
+      } catch (SocketException e) {
+        /* connection reset: also closed. */
+      }
+    } finally {
+      socket.close();
+    }
+  }
+
+}
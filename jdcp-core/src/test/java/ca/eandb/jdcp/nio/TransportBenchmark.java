@@ -0,0 +1,207 @@
+/*
+ * Copyright (c) 2026 Bradley W. Kimmel
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package ca.eandb.jdcp.nio;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.rmi.RemoteException;
+import java.rmi.server.UnicastRemoteObject;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicReference;
+
+import ca.eandb.jdcp.JdcpUtil;
+import ca.eandb.jdcp.remote.AuthenticationService;
+import ca.eandb.jdcp.remote.JobService;
+
+/**
+ * Compares the round-trip latency and throughput of the RMI and NIO
+ * transports over the loopback interface.  Both transports serve the same
+ * trivial <code>JobService</code>, so the timings reflect only the cost of
+ * the transport.
+ *
+ * <p>Usage: <code>TransportBenchmark [calls [threads]]</code>
+ *
+ * @author Brad Kimmel
+ */
+public final class TransportBenchmark {
+
+  /** The number of calls to make for each measurement by default. */
+  private static final int DEFAULT_CALLS = 2000;
+
+  /** The number of concurrent callers to use by default. */
+  private static final int DEFAULT_THREADS = 8;
+
+  /** The payload sizes (in bytes) to measure. */
+  private static final int[] PAYLOAD_SIZES = { 0, 1024, 64 * 1024, 1024 * 1024 };
+
+  /**
+   * Runs the benchmark.
+   * @param args Command line arguments: the number of calls to make for
+   *     each measurement and the number of concurrent callers to use.
+   * @throws Exception If an error occurs.
+   */
+  public static void main(String[] args) throws Exception {
+    int calls = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_CALLS;
+    int threads = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_THREADS;
+
+    JobService target = createService();
+
+    JobService rmi = (JobService) UnicastRemoteObject.exportObject(target, 0);
+    NioJobServiceServer server = new NioJobServiceServer(
+        createAuthenticationService(target), 0);
+    JobService nio = NioJobServiceClient.connect("localhost",
+        server.getPort(), "", "", JdcpUtil.PROTOCOL_VERSION_ID);
+
+    try {
+      /* Warm up both transports before taking any measurements. */
+      run(rmi, 0, calls, 1);
+      run(nio, 0, calls, 1);
+
+      System.out.printf("%-8s %10s %8s %12s %12s%n",
+          "", "payload", "threads", "calls/s", "MB/s");
+      for (int size : PAYLOAD_SIZES) {
+        for (int t : new int[]{ 1, threads }) {
+          report("RMI", size, t, run(rmi, size, calls, t), calls);
+          report("NIO", size, t, run(nio, size, calls, t), calls);
+        }
+      }
+    } finally {
+      NioJobServiceClient.getClient(nio).close();
+      server.shutdown();
+      UnicastRemoteObject.unexportObject(target, true);
+    }
+  }
+
+  /**
+   * Prints the result of a measurement.
+   * @param transport The name of the transport measured.
+   * @param size The size of the payload sent with each call.
+   * @param threads The number of concurrent callers.
+   * @param nanos The elapsed time, in nanoseconds.
+   * @param calls The number of calls made.
+   */
+  private static void report(String transport, int size, int threads,
+      long nanos, int calls) {
+    double seconds = nanos / 1e9;
+    System.out.printf("%-8s %10d %8d %12.0f %12.1f%n", transport, size,
+        threads, calls / seconds, (double) size * calls / seconds / 1e6);
+  }
+
+  /**
+   * Makes calls to a <code>JobService</code> and measures the time taken.
+   * Calls with no payload use {@link JobService#getClassDigest(String)},
+   * otherwise {@link JobService#writeResultChunk(UUID, long, byte[])} is
+   * used.
+   * @param service The <code>JobService</code> to call.
+   * @param size The size of the payload to send with each call.
+   * @param calls The total number of calls to make.
+   * @param threads The number of concurrent callers.
+   * @return The elapsed time, in nanoseconds.
+   * @throws Exception If a call fails.
+   */
+  private static long run(final JobService service, int size,
+      final int calls, int threads) throws Exception {
+    final byte[] data = size > 0 ? new byte[size] : null;
+    final UUID streamId = UUID.randomUUID();
+    final AtomicReference<Exception> failure = new AtomicReference<Exception>();
+    Thread[] callers = new Thread[threads];
+
+    for (int i = 0; i < threads; i++) {
+      final int count = calls / threads + (i < calls % threads ? 1 : 0);
+      callers[i] = new Thread(new Runnable() {
+        public void run() {
+          try {
+            for (int j = 0; j < count; j++) {
+              if (data != null) {
+                service.writeResultChunk(streamId, 0, data);
+              } else {
+                service.getClassDigest("Benchmark");
+              }
+            }
+          } catch (Exception e) {
+            failure.compareAndSet(null, e);
+          }
+        }
+      });
+    }
+
+    long start = System.nanoTime();
+    for (Thread caller : callers) {
+      caller.start();
+    }
+    for (Thread caller : callers) {
+      caller.join();
+    }
+    long elapsed = System.nanoTime() - start;
+
+    if (failure.get() != null) {
+      throw failure.get();
+    }
+    return elapsed;
+  }
+
+  /**
+   * Creates a <code>JobService</code> that does no work, so that only the
+   * cost of the transport is measured.
+   * @return The new <code>JobService</code>.
+   */
+  private static JobService createService() {
+    final byte[] digest = new byte[16];
+    return (JobService) Proxy.newProxyInstance(
+        JobService.class.getClassLoader(),
+        new Class<?>[]{ JobService.class }, new InvocationHandler() {
+          public Object invoke(Object proxy, Method method, Object[] args) {
+            if (method.getName().equals("getClassDigest")) {
+              return digest;
+            } else if (method.getReturnType() == boolean.class) {
+              return Boolean.FALSE;
+            } else if (method.getReturnType() == int.class) {
+              return Integer.valueOf(0);
+            }
+            return null;
+          }
+        });
+  }
+
+  /**
+   * Creates an <code>AuthenticationService</code> that admits any user.
+   * @param service The <code>JobService</code> to hand out.
+   * @return The new <code>AuthenticationService</code>.
+   */
+  private static AuthenticationService createAuthenticationService(
+      final JobService service) {
+    return new AuthenticationService() {
+      public JobService authenticate(String username, String password,
+          UUID protocolVersionId) throws RemoteException {
+        return service;
+      }
+    };
+  }
+
+  /** This class contains only static methods and is not instantiable. */
+  private TransportBenchmark() {}
+
+}
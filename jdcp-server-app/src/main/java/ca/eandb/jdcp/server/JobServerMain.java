@@ -43,8 +43,10 @@ import javax.swing.JFrame;
 import org.apache.derby.jdbc.EmbeddedDataSource;
 
 import ca.eandb.jdcp.JdcpUtil;
+import ca.eandb.jdcp.nio.NioJobServiceServer;
 import ca.eandb.jdcp.server.classmanager.DbClassManager;
-import ca.eandb.jdcp.server.scheduling.PrioritySerialTaskScheduler;
+import ca.eandb.jdcp.server.scheduling.FairShareTaskScheduler;
+import ca.eandb.jdcp.server.scheduling.IndexedPriorityTaskScheduler;
 import ca.eandb.jdcp.server.scheduling.TaskScheduler;
 import ca.eandb.util.progress.ProgressPanel;
 
@@ -101,10 +103,12 @@ public final class JobServerMain {
       System.err.println("OK");
 
       System.err.print("Initializing service...");
-      DbClassManager classManager = new DbClassManager(ds);
+      final DbClassManager classManager = new DbClassManager(ds);
       classManager.prepareDataSource();
 
-      TaskScheduler scheduler = new PrioritySerialTaskScheduler();
+      TaskScheduler scheduler = pref.getBoolean("fairShare", false)
+          ? new FairShareTaskScheduler()
+          : new IndexedPriorityTaskScheduler();
       Executor executor = Executors.newCachedThreadPool();
       JobServer jobServer = new JobServer(jobsDirectory, panel, scheduler, classManager, executor);
       AuthenticationServer authServer = new AuthenticationServer(jobServer, JdcpUtil.DEFAULT_PORT);
@@ -120,6 +124,12 @@ public final class JobServerMain {
       registry.bind("AuthenticationService", authServer);
       System.err.println("OK");
 
+      if (JdcpUtil.isNioTransportEnabled()) {
+        System.err.print("Starting NIO transport...");
+        new NioJobServiceServer(authServer, JdcpUtil.DEFAULT_NIO_PORT, executor);
+        System.err.println("OK");
+      }
+
       System.err.println("Server ready");
 
       JFrame frame = new JFrame("JDCP Server");
@@ -133,6 +143,7 @@ public final class JobServerMain {
           System.err.print("Shutting down...");
           try {
             registry.unbind("AuthenticationService");
+            classManager.close();
             System.err.println("OK");
           } catch (Exception e) {
             e.printStackTrace();
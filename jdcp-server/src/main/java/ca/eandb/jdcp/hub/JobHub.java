@@ -27,9 +27,13 @@ package ca.eandb.jdcp.hub;
 
 import java.rmi.RemoteException;
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.BitSet;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
 import java.util.Queue;
 import java.util.UUID;
@@ -48,9 +52,12 @@ import ca.eandb.jdcp.job.JobExecutionException;
 import ca.eandb.jdcp.job.ParallelizableJob;
 import ca.eandb.jdcp.job.TaskDescription;
 import ca.eandb.jdcp.job.TaskWorker;
+import ca.eandb.jdcp.remote.ClassBundle;
 import ca.eandb.jdcp.remote.JobService;
 import ca.eandb.jdcp.remote.JobStatus;
+import ca.eandb.jdcp.remote.TaskEvent;
 import ca.eandb.jdcp.remote.TaskService;
+import ca.eandb.jdcp.server.TaskEventLog;
 import ca.eandb.util.concurrent.BackgroundThreadFactory;
 import ca.eandb.util.rmi.Serialized;
 
@@ -68,11 +75,24 @@ public final class JobHub implements JobService {
 
   private static final TimeUnit POLLING_UNITS = TimeUnit.SECONDS;
 
+  /**
+   * The maximum amount of time (in milliseconds) for which a call to
+   * {@link #requestTasks(int, long)} is held waiting for a task to become
+   * available.
+   */
+  private static final long MAX_TASK_WAIT_MILLIS = 60000;
+
   private TaskDescription idleTask = new TaskDescription(null, 0, DEFAULT_IDLE_SECONDS);
 
+  /**
+   * The amount of time (in seconds) that workers are instructed to idle for
+   * if there are no tasks to be processed.
+   */
+  private volatile int idleSeconds = DEFAULT_IDLE_SECONDS;
+
   private final Queue<ServiceInfo> services = new LinkedList<ServiceInfo>();
 
-  private final Map<UUID, ServiceInfo> routes = new WeakHashMap<UUID, ServiceInfo>();
+  private final Map<UUID, ServiceInfo> routes = Collections.synchronizedMap(new WeakHashMap<UUID, ServiceInfo>());
 
   private final Map<String, ServiceInfo> hosts = new HashMap<String, ServiceInfo>();
 
@@ -82,6 +102,8 @@ public final class JobHub implements JobService {
 
   private final DataSource dataSource;
 
+  private final TaskEventLog taskEvents = new TaskEventLog();
+
   public JobHub(DataSource dataSource) {
     this.dataSource = dataSource;
     Runnable poller = new Runnable() {
@@ -112,7 +134,7 @@ public final class JobHub implements JobService {
       disconnect(hostname);
     }
     ServiceInfo info = new ServiceInfo(hostname, username, password,
-        dataSource, executor);
+        dataSource, executor, taskEvents);
     hosts.put(hostname, info);
     services.add(info);
   }
@@ -122,9 +144,12 @@ public final class JobHub implements JobService {
     if (info != null) {
       hosts.remove(hostname);
       services.remove(info);
-      for (Entry<UUID, ServiceInfo> entry : routes.entrySet()) {
-        if (entry.getValue() == info) {
-          routes.remove(entry.getKey());
+      synchronized (routes) {
+        Iterator<ServiceInfo> i = routes.values().iterator();
+        while (i.hasNext()) {
+          if (i.next() == info) {
+            i.remove();
+          }
         }
       }
       info.shutdown();
@@ -142,6 +167,57 @@ public final class JobHub implements JobService {
     return info.getClassDefinition(name, jobId);
   }
 
+  /* (non-Javadoc)
+   * @see ca.eandb.jdcp.remote.TaskService#getClassBundle(java.util.UUID, java.util.Map)
+   */
+  public ClassBundle getClassBundle(UUID jobId, Map<String, byte[]> digests) {
+    ServiceInfo info = routes.get(jobId);
+    if (info == null) {
+      throw new IllegalArgumentException("No route for specified job ID");
+    }
+    return info.getClassBundle(jobId, digests);
+  }
+
+  /* (non-Javadoc)
+   * @see ca.eandb.jdcp.remote.TaskService#getClassManifest(java.util.UUID)
+   */
+  public String[] getClassManifest(UUID jobId) {
+    ServiceInfo info = routes.get(jobId);
+    if (info == null) {
+      throw new IllegalArgumentException("No route for specified job ID");
+    }
+    return info.getClassManifest(jobId);
+  }
+
+  /* (non-Javadoc)
+   * @see ca.eandb.jdcp.remote.TaskService#reportClassManifest(java.util.UUID, java.lang.String[])
+   */
+  public void reportClassManifest(final UUID jobId, final String[] classNames) {
+    final ServiceInfo info = routes.get(jobId);
+    if (info != null) {
+      executor.execute(new Runnable() {
+        public void run() {
+          try {
+            info.reportClassManifest(jobId, classNames);
+          } catch (Exception e) {
+            logger.error("Cannot report class manifest", e);
+          }
+        }
+      });
+    }
+  }
+
+  /* (non-Javadoc)
+   * @see ca.eandb.jdcp.remote.TaskService#getClassDigests(java.lang.String[], java.util.UUID)
+   */
+  public byte[][] getClassDigests(String[] names, UUID jobId) {
+    ServiceInfo info = routes.get(jobId);
+    if (info == null) {
+      throw new IllegalArgumentException("No route for specified job ID");
+    }
+    return info.getClassDigests(names, jobId);
+  }
+
   /* (non-Javadoc)
    * @see ca.eandb.jdcp.remote.JobService#getClassDigest(java.lang.String, java.util.UUID)
    */
@@ -172,6 +248,18 @@ public final class JobHub implements JobService {
     return finished;
   }
 
+  /* (non-Javadoc)
+   * @see ca.eandb.jdcp.remote.TaskService#waitForTaskEvents(long, long)
+   */
+  public TaskEvent[] waitForTaskEvents(long lastEventId, long timeoutMillis) {
+    try {
+      return taskEvents.waitForEvents(lastEventId, timeoutMillis);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return new TaskEvent[0];
+    }
+  }
+
   /* (non-Javadoc)
    * @see ca.eandb.jdcp.remote.JobService#getTaskWorker(java.util.UUID)
    */
@@ -185,6 +273,54 @@ public final class JobHub implements JobService {
     return info.getTaskWorker(jobId);
   }
 
+  /* (non-Javadoc)
+   * @see ca.eandb.jdcp.remote.TaskService#releaseTasks(java.util.UUID[], int[])
+   */
+  public void releaseTasks(UUID[] jobIds, int[] taskIds)
+      throws IllegalArgumentException {
+
+    if (jobIds == null || taskIds == null) {
+      return;
+    }
+
+    if (jobIds.length != taskIds.length) {
+      throw new IllegalArgumentException("jobIds.length != taskIds.length");
+    }
+
+    Map<ServiceInfo, List<Integer>> forward = new HashMap<ServiceInfo, List<Integer>>();
+
+    for (int i = 0; i < jobIds.length; i++) {
+      ServiceInfo info = routes.get(jobIds[i]);
+      if (info != null) {
+        List<Integer> entries = forward.get(info);
+        if (entries == null) {
+          entries = new ArrayList<Integer>();
+          forward.put(info, entries);
+        }
+        entries.add(i);
+      }
+    }
+
+    for (Entry<ServiceInfo, List<Integer>> entry : forward.entrySet()) {
+      ServiceInfo info = entry.getKey();
+      List<Integer> entries = entry.getValue();
+      int n = entries.size();
+      UUID[] fwdJobIds = new UUID[n];
+      int[] fwdTaskIds = new int[n];
+      for (int j = 0; j < n; j++) {
+        int i = entries.get(j);
+        fwdJobIds[j] = jobIds[i];
+        fwdTaskIds[j] = taskIds[i];
+      }
+      try {
+        info.releaseTasks(fwdJobIds, fwdTaskIds);
+      } catch (Exception e) {
+        logger.warn("Cannot release tasks", e);
+      }
+    }
+
+  }
+
   /* (non-Javadoc)
    * @see ca.eandb.jdcp.remote.JobService#reportException(java.util.UUID, int, java.lang.Exception)
    */
@@ -235,11 +371,76 @@ public final class JobHub implements JobService {
     return idleTask;
   }
 
+  /* (non-Javadoc)
+   * @see ca.eandb.jdcp.remote.TaskService#requestTasks(int, long)
+   */
+  public TaskDescription[] requestTasks(int maxTasks, long waitMillis) {
+    if (maxTasks <= 0) {
+      throw new IllegalArgumentException("maxTasks must be positive.");
+    }
+
+    long start = System.currentTimeMillis();
+    List<TaskDescription> tasks = new ArrayList<TaskDescription>();
+    ServiceInfo[] serv;
+    synchronized (this) {
+      serv = (ServiceInfo[]) services.toArray(new ServiceInfo[services.size()]);
+      if (serv.length > 1) {
+        services.add(services.remove());
+      }
+    }
+
+    /* Ask each connected server in turn for as many tasks as are still
+     * needed, in a single call per server, starting with a different
+     * server each time so that the load is spread among them.
+     */
+    for (ServiceInfo info : serv) {
+      if (tasks.size() >= maxTasks) {
+        break;
+      }
+      try {
+        for (TaskDescription task : info.requestTasks(maxTasks - tasks.size(), 0)) {
+          routes.put(task.getJobId(), info);
+          tasks.add(task);
+        }
+      } catch (Exception e) {
+        logger.error("Failed to request tasks from server", e);
+      }
+    }
+
+    /* Nothing to do -- let every server hold the request until it has a
+     * task for us, if the caller is willing to wait, and take whichever
+     * tasks turn up first.
+     */
+    long wait = Math.min(waitMillis, MAX_TASK_WAIT_MILLIS);
+    if (tasks.isEmpty() && wait > 0 && serv.length > 0) {
+      TaskRequest request = new TaskRequest(serv.length);
+      for (ServiceInfo info : serv) {
+        request.submit(info, maxTasks, wait);
+      }
+      tasks.addAll(request.await(wait));
+    }
+
+    if (!tasks.isEmpty()) {
+      return tasks.toArray(new TaskDescription[tasks.size()]);
+    }
+
+    /* The caller has already waited for some time, so it does not need to
+     * idle for as long before asking again.
+     */
+    long waitedSeconds = (System.currentTimeMillis() - start) / 1000;
+    if (waitedSeconds <= 0) {
+      return new TaskDescription[]{ idleTask };
+    }
+    int seconds = (int) Math.max(idleSeconds - waitedSeconds, 0);
+    return new TaskDescription[]{ new TaskDescription(null, 0, seconds) };
+  }
+
   /* (non-Javadoc)
    * @see ca.eandb.jdcp.remote.JobService#setIdleTime(int)
    */
   public void setIdleTime(int idleSeconds) throws IllegalArgumentException {
     idleTask = new TaskDescription(null, 0, idleSeconds);
+    this.idleSeconds = idleSeconds;
   }
 
   /* (non-Javadoc)
@@ -261,6 +462,115 @@ public final class JobHub implements JobService {
     }
   }
 
+  /* (non-Javadoc)
+   * @see ca.eandb.jdcp.remote.TaskService#openResultStream(java.util.UUID, int, boolean)
+   */
+  public UUID openResultStream(UUID jobId, int taskId, boolean raw) {
+    ServiceInfo info = routes.get(jobId);
+    return (info != null) ? info.openResultStream(jobId, taskId, raw) : null;
+  }
+
+  /* (non-Javadoc)
+   * @see ca.eandb.jdcp.remote.TaskService#writeResultChunk(java.util.UUID, long, byte[])
+   */
+  public void writeResultChunk(UUID streamId, long offset, byte[] data)
+      throws IllegalArgumentException {
+    getResultStreamRoute(streamId).writeResultChunk(streamId, offset, data);
+  }
+
+  /* (non-Javadoc)
+   * @see ca.eandb.jdcp.remote.TaskService#commitResultStream(java.util.UUID, long)
+   */
+  public boolean commitResultStream(UUID streamId, long length)
+      throws IllegalArgumentException {
+    return getResultStreamRoute(streamId).commitResultStream(streamId, length);
+  }
+
+  /* (non-Javadoc)
+   * @see ca.eandb.jdcp.remote.TaskService#abortResultStream(java.util.UUID)
+   */
+  public void abortResultStream(UUID streamId) {
+    try {
+      getResultStreamRoute(streamId).abortResultStream(streamId);
+    } catch (IllegalArgumentException e) {
+      /* nothing to do. */
+    }
+  }
+
+  /**
+   * Finds the server to which a result stream is being forwarded.
+   * @param streamId The <code>UUID</code> identifying the result stream.
+   * @return The <code>ServiceInfo</code> for the server.
+   * @throws IllegalArgumentException If there is no such result stream.
+   */
+  private synchronized ServiceInfo getResultStreamRoute(UUID streamId) {
+    for (ServiceInfo info : hosts.values()) {
+      if (info.hasResultStream(streamId)) {
+        return info;
+      }
+    }
+    throw new IllegalArgumentException("No such result stream");
+  }
+
+  /* (non-Javadoc)
+   * @see ca.eandb.jdcp.remote.TaskService#submitTaskResultsBatch(java.util.UUID[], int[], ca.eandb.util.rmi.Serialized[])
+   */
+  public BitSet submitTaskResultsBatch(UUID[] jobIds, int[] taskIds,
+      Serialized<Object>[] results) throws IllegalArgumentException {
+    if (jobIds == null || taskIds == null || results == null) {
+      return new BitSet(0);
+    }
+    if (jobIds.length != taskIds.length || jobIds.length != results.length) {
+      throw new IllegalArgumentException("jobIds, taskIds, and results must be the same length");
+    }
+
+    BitSet accepted = new BitSet(jobIds.length);
+    Map<ServiceInfo, List<Integer>> forward = new HashMap<ServiceInfo, List<Integer>>();
+    for (int i = 0; i < jobIds.length; i++) {
+      ServiceInfo info = routes.get(jobIds[i]);
+      if (info != null) {
+        List<Integer> entries = forward.get(info);
+        if (entries == null) {
+          entries = new ArrayList<Integer>();
+          forward.put(info, entries);
+        }
+        entries.add(i);
+      }
+    }
+
+    for (Entry<ServiceInfo, List<Integer>> entry : forward.entrySet()) {
+      ServiceInfo info = entry.getKey();
+      List<Integer> entries = entry.getValue();
+      int n = entries.size();
+      UUID[] fwdJobIds = new UUID[n];
+      int[] fwdTaskIds = new int[n];
+      @SuppressWarnings("unchecked")
+      Serialized<Object>[] fwdResults = (Serialized<Object>[]) new Serialized<?>[n];
+      for (int j = 0; j < n; j++) {
+        int i = entries.get(j);
+        fwdJobIds[j] = jobIds[i];
+        fwdTaskIds[j] = taskIds[i];
+        fwdResults[j] = results[i];
+      }
+
+      /* Forward synchronously, so that a result is reported as accepted
+       * only once the server that owns the job has accepted it.  If the
+       * forward fails, the results are reported as not accepted and the
+       * tasks remain outstanding on that server.
+       */
+      try {
+        BitSet fwdAccepted = info.submitTaskResultsBatch(fwdJobIds, fwdTaskIds, fwdResults);
+        for (int j = fwdAccepted.nextSetBit(0); j >= 0 && j < n; j = fwdAccepted.nextSetBit(j + 1)) {
+          accepted.set(entries.get(j));
+        }
+      } catch (Exception e) {
+        logger.error("Cannot submit task results", e);
+      }
+    }
+
+    return accepted;
+  }
+
   ///////////////////////////////////////////////////////////////////////////
   // The following operations are not supported
 
@@ -288,6 +598,14 @@ public final class JobHub implements JobService {
     throw new UnsupportedOperationException();
   }
 
+  /* (non-Javadoc)
+   * @see ca.eandb.jdcp.remote.JobService#getClassDigests(java.lang.String[])
+   */
+  public byte[][] getClassDigests(String[] names) throws SecurityException,
+      RemoteException {
+    throw new UnsupportedOperationException();
+  }
+
   /* (non-Javadoc)
    * @see ca.eandb.jdcp.remote.JobService#setClassDefinition(java.lang.String, byte[])
    */
@@ -374,4 +692,129 @@ public final class JobHub implements JobService {
     throw new UnsupportedOperationException();
   }
 
+  /**
+   * Returns tasks obtained from a server that will not be handed out to a
+   * worker, so that the server may hand them out again right away.
+   * @param info The <code>ServiceInfo</code> for the server from which the
+   *     tasks were obtained.
+   * @param tasks The tasks to return.
+   */
+  private void releaseTasks(ServiceInfo info, List<TaskDescription> tasks) {
+    int n = tasks.size();
+    UUID[] jobIds = new UUID[n];
+    int[] taskIds = new int[n];
+    for (int i = 0; i < n; i++) {
+      TaskDescription task = tasks.get(i);
+      jobIds[i] = task.getJobId();
+      taskIds[i] = task.getTaskId();
+    }
+    try {
+      info.releaseTasks(jobIds, taskIds);
+    } catch (Exception e) {
+      logger.warn("Cannot release tasks", e);
+    }
+  }
+
+  /**
+   * A request for tasks that is made of several servers at once.  The
+   * first non-empty batch of tasks returned by any of the servers is
+   * accepted, and any tasks returned by the other servers after that are
+   * released back to them.
+   * @author Brad Kimmel
+   */
+  private final class TaskRequest {
+
+    /** The tasks accepted, or <code>null</code> if none have been. */
+    private List<TaskDescription> tasks = null;
+
+    /** The number of servers that have not yet responded. */
+    private int outstanding;
+
+    /** A value indicating whether no more tasks are to be accepted. */
+    private boolean closed = false;
+
+    /**
+     * Creates a new <code>TaskRequest</code>.
+     * @param servers The number of servers that will be asked for tasks.
+     */
+    public TaskRequest(int servers) {
+      this.outstanding = servers;
+    }
+
+    /**
+     * Asks a server for tasks in the background.
+     * @param info The <code>ServiceInfo</code> for the server to ask.
+     * @param maxTasks The maximum number of tasks to request.
+     * @param waitMillis The maximum amount of time (in milliseconds) that
+     *     the server may hold the request if it has no tasks.
+     */
+    public void submit(final ServiceInfo info, final int maxTasks,
+        final long waitMillis) {
+      executor.execute(new Runnable() {
+        public void run() {
+          List<TaskDescription> batch = Collections.emptyList();
+          try {
+            batch = info.requestTasks(maxTasks, waitMillis);
+          } catch (Exception e) {
+            logger.error("Failed to request tasks from server", e);
+          }
+          offer(info, batch);
+        }
+      });
+    }
+
+    /**
+     * Accepts a batch of tasks from a server if no tasks have been accepted
+     * yet, or releases them back to the server otherwise.
+     * @param info The <code>ServiceInfo</code> for the server that
+     *     responded.
+     * @param batch The tasks returned by the server (possibly none).
+     */
+    private void offer(ServiceInfo info, List<TaskDescription> batch) {
+      synchronized (this) {
+        outstanding--;
+        if (!closed && !batch.isEmpty()) {
+          for (TaskDescription task : batch) {
+            routes.put(task.getJobId(), info);
+          }
+          tasks = batch;
+          closed = true;
+          batch = Collections.emptyList();
+        }
+        notifyAll();
+      }
+      if (!batch.isEmpty()) {
+        releaseTasks(info, batch);
+      }
+    }
+
+    /**
+     * Waits for a server to return tasks.  Once this method returns, any
+     * tasks that are returned later are released.
+     * @param timeoutMillis The maximum amount of time (in milliseconds) to
+     *     wait.
+     * @return The tasks accepted (possibly none).
+     */
+    public synchronized List<TaskDescription> await(long timeoutMillis) {
+      long deadline = System.currentTimeMillis() + timeoutMillis;
+      try {
+        while (tasks == null && outstanding > 0) {
+          long remaining = deadline - System.currentTimeMillis();
+          if (remaining <= 0) {
+            break;
+          }
+          wait(remaining);
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      closed = true;
+      if (tasks == null) {
+        return Collections.emptyList();
+      }
+      return tasks;
+    }
+
+  }
+
 }
@@ -28,13 +28,16 @@ package ca.eandb.jdcp.hub;
 import java.nio.ByteBuffer;
 import java.sql.SQLException;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.Executor;
 
 import javax.sql.DataSource;
 
+import ca.eandb.jdcp.codec.Codecs;
 import ca.eandb.jdcp.job.TaskWorker;
+import ca.eandb.jdcp.remote.ClassBundle;
 import ca.eandb.jdcp.worker.CachingJobServiceClassLoaderStrategy;
 import ca.eandb.jdcp.worker.DbCachingJobServiceClassLoaderStrategy;
 import ca.eandb.util.rmi.Serialized;
@@ -79,11 +82,27 @@ final class JobInfo {
     return classCache.getClassDigest(name);
   }
 
+  public byte[][] getClassDigests(String[] names) {
+    return classCache.getClassDigests(names);
+  }
+
   public byte[] getClassDefinition(String name) {
     ByteBuffer buf = classCache.getClassDefinition(name);
     return (buf != null) ? buf.array() : null;
   }
 
+  public ClassBundle getClassBundle(Map<String, byte[]> digests) {
+    return classCache.getClassBundle(digests, Codecs.LZ);
+  }
+
+  public String[] getClassManifest() {
+    return classCache.getClassManifest();
+  }
+
+  public void reportClassManifest(String[] classNames) {
+    service.reportClassManifest(id, classNames);
+  }
+
   public synchronized Serialized<TaskWorker> getTaskWorker() {
     if (worker == null) {
       worker = service.getTaskWorker(id);
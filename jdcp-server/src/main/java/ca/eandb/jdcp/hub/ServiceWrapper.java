@@ -32,10 +32,9 @@ import java.rmi.NoSuchObjectException;
 import java.rmi.RemoteException;
 import java.rmi.UnknownHostException;
 import java.rmi.UnmarshalException;
-import java.rmi.registry.LocateRegistry;
-import java.rmi.registry.Registry;
 import java.util.BitSet;
 import java.util.Date;
+import java.util.Map;
 import java.util.UUID;
 
 import org.apache.log4j.Logger;
@@ -45,10 +44,11 @@ import ca.eandb.jdcp.job.JobExecutionException;
 import ca.eandb.jdcp.job.ParallelizableJob;
 import ca.eandb.jdcp.job.TaskDescription;
 import ca.eandb.jdcp.job.TaskWorker;
-import ca.eandb.jdcp.remote.AuthenticationService;
+import ca.eandb.jdcp.remote.ClassBundle;
 import ca.eandb.jdcp.remote.DelegationException;
 import ca.eandb.jdcp.remote.JobService;
 import ca.eandb.jdcp.remote.JobStatus;
+import ca.eandb.jdcp.remote.TaskEvent;
 import ca.eandb.jdcp.remote.TaskService;
 import ca.eandb.util.rmi.Serialized;
 
@@ -179,12 +179,8 @@ final class ServiceWrapper implements JobService {
     Date now = new Date();
     if (now.after(idleUntil)) {
       try {
-        logger.info("Locating registry");
-        Registry registry = LocateRegistry.getRegistry(host, JdcpUtil.DEFAULT_PORT);
-        logger.info("Looking up AuthenticationService");
-        AuthenticationService auth = (AuthenticationService) registry.lookup("AuthenticationService");
-        logger.info("Authenticating");
-        return auth.authenticate(username, password, JdcpUtil.PROTOCOL_VERSION_ID);
+        logger.info("Connecting");
+        return JdcpUtil.connect(host, username, password);
       } catch (Exception e) {
         logger.error("Job service not found at remote host.", e);
         throw new DelegationException("Could not connect to remote host", e);
@@ -224,6 +220,59 @@ final class ServiceWrapper implements JobService {
     });
   }
 
+  /* (non-Javadoc)
+   * @see ca.eandb.jdcp.remote.TaskService#getClassBundle(java.util.UUID, java.util.Map)
+   */
+  public ClassBundle getClassBundle(final UUID jobId,
+      final Map<String, byte[]> digests) throws DelegationException {
+    return run(new ServiceOperation<ClassBundle>() {
+      public ClassBundle run(JobService service) throws RemoteException,
+          SecurityException {
+        return service.getClassBundle(jobId, digests);
+      }
+    });
+  }
+
+  /* (non-Javadoc)
+   * @see ca.eandb.jdcp.remote.TaskService#getClassManifest(java.util.UUID)
+   */
+  public String[] getClassManifest(final UUID jobId)
+      throws DelegationException {
+    return run(new ServiceOperation<String[]>() {
+      public String[] run(JobService service) throws RemoteException,
+          SecurityException {
+        return service.getClassManifest(jobId);
+      }
+    });
+  }
+
+  /* (non-Javadoc)
+   * @see ca.eandb.jdcp.remote.TaskService#reportClassManifest(java.util.UUID, java.lang.String[])
+   */
+  public void reportClassManifest(final UUID jobId, final String[] classNames)
+      throws DelegationException {
+    run(new ServiceOperation<Object>() {
+      public Object run(JobService service) throws RemoteException,
+          SecurityException {
+        service.reportClassManifest(jobId, classNames);
+        return null;
+      }
+    });
+  }
+
+  /* (non-Javadoc)
+   * @see ca.eandb.jdcp.remote.TaskService#getClassDigests(java.lang.String[], java.util.UUID)
+   */
+  public byte[][] getClassDigests(final String[] names, final UUID jobId)
+      throws DelegationException {
+    return run(new ServiceOperation<byte[][]>() {
+      public byte[][] run(JobService service) throws RemoteException,
+          SecurityException {
+        return service.getClassDigests(names, jobId);
+      }
+    });
+  }
+
   /* (non-Javadoc)
    * @see ca.eandb.jdcp.remote.JobService#getClassDigest(java.lang.String, java.util.UUID)
    */
@@ -245,6 +294,14 @@ final class ServiceWrapper implements JobService {
     throw new UnsupportedOperationException();
   }
 
+  /* (non-Javadoc)
+   * @see ca.eandb.jdcp.remote.JobService#getClassDigests(java.lang.String[])
+   */
+  public byte[][] getClassDigests(String[] names) throws SecurityException,
+      RemoteException {
+    throw new UnsupportedOperationException();
+  }
+
   /* (non-Javadoc)
    * @see ca.eandb.jdcp.remote.JobService#getFinishedTasks(java.util.UUID[], int[])
    */
@@ -258,6 +315,19 @@ final class ServiceWrapper implements JobService {
     });
   }
 
+  /* (non-Javadoc)
+   * @see ca.eandb.jdcp.remote.TaskService#waitForTaskEvents(long, long)
+   */
+  public TaskEvent[] waitForTaskEvents(final long lastEventId,
+      final long timeoutMillis) throws DelegationException {
+    return run(new ServiceOperation<TaskEvent[]>() {
+      public TaskEvent[] run(JobService service) throws RemoteException,
+          SecurityException {
+        return service.waitForTaskEvents(lastEventId, timeoutMillis);
+      }
+    });
+  }
+
   /* (non-Javadoc)
    * @see ca.eandb.jdcp.remote.JobService#getTaskWorker(java.util.UUID)
    */
@@ -297,6 +367,19 @@ final class ServiceWrapper implements JobService {
     });
   }
 
+  /* (non-Javadoc)
+   * @see ca.eandb.jdcp.remote.TaskService#requestTasks(int, long)
+   */
+  public TaskDescription[] requestTasks(final int maxTasks, final long waitMillis)
+      throws DelegationException {
+    return run(new ServiceOperation<TaskDescription[]>() {
+      public TaskDescription[] run(JobService service) throws RemoteException,
+          SecurityException {
+        return service.requestTasks(maxTasks, waitMillis);
+      }
+    });
+  }
+
   /* (non-Javadoc)
    * @see ca.eandb.jdcp.remote.JobService#setClassDefinition(java.lang.String, byte[])
    */
@@ -347,6 +430,88 @@ final class ServiceWrapper implements JobService {
     throw new UnsupportedOperationException();
   }
 
+  /* (non-Javadoc)
+   * @see ca.eandb.jdcp.remote.TaskService#openResultStream(java.util.UUID, int, boolean)
+   */
+  public UUID openResultStream(final UUID jobId, final int taskId,
+      final boolean raw) throws DelegationException {
+    return run(new ServiceOperation<UUID>() {
+      public UUID run(JobService service) throws RemoteException,
+          SecurityException {
+        return service.openResultStream(jobId, taskId, raw);
+      }
+    });
+  }
+
+  /* (non-Javadoc)
+   * @see ca.eandb.jdcp.remote.TaskService#writeResultChunk(java.util.UUID, long, byte[])
+   */
+  public void writeResultChunk(final UUID streamId, final long offset,
+      final byte[] data) throws DelegationException {
+    run(new ServiceOperation<Object>() {
+      public Object run(JobService service) throws RemoteException,
+          SecurityException {
+        service.writeResultChunk(streamId, offset, data);
+        return null;
+      }
+    });
+  }
+
+  /* (non-Javadoc)
+   * @see ca.eandb.jdcp.remote.TaskService#commitResultStream(java.util.UUID, long)
+   */
+  public boolean commitResultStream(final UUID streamId, final long length)
+      throws DelegationException {
+    Boolean accepted = run(new ServiceOperation<Boolean>() {
+      public Boolean run(JobService service) throws RemoteException,
+          SecurityException {
+        return service.commitResultStream(streamId, length);
+      }
+    });
+    return accepted != null && accepted;
+  }
+
+  /* (non-Javadoc)
+   * @see ca.eandb.jdcp.remote.TaskService#releaseTasks(java.util.UUID[], int[])
+   */
+  public void releaseTasks(final UUID[] jobIds, final int[] taskIds)
+      throws DelegationException {
+    run(new ServiceOperation<Object>() {
+      public Object run(JobService service) throws RemoteException,
+          SecurityException {
+        service.releaseTasks(jobIds, taskIds);
+        return null;
+      }
+    });
+  }
+
+  /* (non-Javadoc)
+   * @see ca.eandb.jdcp.remote.TaskService#abortResultStream(java.util.UUID)
+   */
+  public void abortResultStream(final UUID streamId)
+      throws DelegationException {
+    run(new ServiceOperation<Object>() {
+      public Object run(JobService service) throws RemoteException,
+          SecurityException {
+        service.abortResultStream(streamId);
+        return null;
+      }
+    });
+  }
+
+  /* (non-Javadoc)
+   * @see ca.eandb.jdcp.remote.TaskService#submitTaskResultsBatch(java.util.UUID[], int[], ca.eandb.util.rmi.Serialized[])
+   */
+  public BitSet submitTaskResultsBatch(final UUID[] jobIds, final int[] taskIds,
+      final Serialized<Object>[] results) throws DelegationException {
+    return run(new ServiceOperation<BitSet>() {
+      public BitSet run(JobService service) throws RemoteException,
+          SecurityException {
+        return service.submitTaskResultsBatch(jobIds, taskIds, results);
+      }
+    });
+  }
+
   /* (non-Javadoc)
    * @see ca.eandb.jdcp.remote.JobService#submitTaskResults(java.util.UUID, int, ca.eandb.util.rmi.Serialized)
    */
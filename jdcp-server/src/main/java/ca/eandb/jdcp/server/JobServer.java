@@ -29,49 +29,70 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.PrintStream;
 import java.io.RandomAccessFile;
 import java.nio.ByteBuffer;
 import java.rmi.RemoteException;
+import java.security.AccessControlContext;
 import java.security.AccessController;
+import java.security.Principal;
 import java.security.PrivilegedAction;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.BitSet;
 import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Queue;
-import java.util.Random;
+import java.util.Set;
 import java.util.SortedMap;
 import java.util.TreeMap;
 import java.util.UUID;
 import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executor;
 import java.util.concurrent.Executors;
 import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import javax.security.auth.Subject;
 import javax.sql.DataSource;
 
 import org.apache.log4j.Logger;
 
+import ca.eandb.jdcp.codec.Codec;
+import ca.eandb.jdcp.codec.Codecs;
+import ca.eandb.jdcp.codec.CompressedPayload;
+import ca.eandb.jdcp.codec.Serializer;
+import ca.eandb.jdcp.codec.Serializers;
 import ca.eandb.jdcp.job.HostService;
 import ca.eandb.jdcp.job.JobExecutionException;
 import ca.eandb.jdcp.job.JobExecutionWrapper;
 import ca.eandb.jdcp.job.ParallelizableJob;
 import ca.eandb.jdcp.job.TaskDescription;
 import ca.eandb.jdcp.job.TaskWorker;
+import ca.eandb.jdcp.remote.ClassBundle;
 import ca.eandb.jdcp.remote.JobService;
 import ca.eandb.jdcp.remote.JobState;
 import ca.eandb.jdcp.remote.JobStatus;
+import ca.eandb.jdcp.remote.TaskEvent;
 import ca.eandb.jdcp.remote.TaskService;
+import ca.eandb.jdcp.server.ResultStreamTable.ResultStream;
 import ca.eandb.jdcp.server.classmanager.ChildClassManager;
 import ca.eandb.jdcp.server.classmanager.ParentClassManager;
+import ca.eandb.jdcp.server.scheduling.FairShareTaskScheduler;
 import ca.eandb.jdcp.server.scheduling.TaskScheduler;
+import ca.eandb.jdcp.worker.LocalTaskService;
 import ca.eandb.util.UnexpectedException;
+import ca.eandb.util.classloader.ClassLoaderStrategy;
 import ca.eandb.util.classloader.StrategyClassLoader;
 import ca.eandb.util.concurrent.BackgroundThreadFactory;
 import ca.eandb.util.io.FileUtil;
@@ -81,10 +102,13 @@ import ca.eandb.util.progress.ProgressMonitorFactory;
 import ca.eandb.util.rmi.Serialized;
 
 /**
- * A <code>JobService</code> implementation.
+ * A <code>JobService</code> implementation.  A <code>JobServer</code> may
+ * also be used directly by a <code>ThreadServiceWorker</code> in the same
+ * JVM (by returning it from a <code>JobServiceFactory</code>), in which
+ * case tasks and results are passed between them without serialization.
  * @author Brad Kimmel
  */
-public final class JobServer implements JobService {
+public final class JobServer implements JobService, LocalTaskService {
 
   /**
    * The default amount of time (in seconds) to instruct workers to idle for
@@ -92,12 +116,35 @@ public final class JobServer implements JobService {
    */
   private static final int DEFAULT_IDLE_SECONDS = 10;
 
+  /**
+   * The default minimum amount of time (in milliseconds) for which a task
+   * is leased to a worker before it may be handed out again.
+   */
+  private static final long DEFAULT_TASK_LEASE_MILLIS = 60000;
+
+  /**
+   * The default maximum number of workers that may concurrently be
+   * processing the same task.
+   */
+  private static final int DEFAULT_MAX_TASK_COPIES = 2;
+
+  /**
+   * The maximum amount of time (in milliseconds) for which a call to
+   * {@link #requestTasks(int, long)} is held waiting for a task to become
+   * available.
+   */
+  private static final long MAX_TASK_WAIT_MILLIS = 60000;
+
+  /**
+   * The maximum number of classes to record as being required by a job.
+   * This bounds the size of the class bundles sent to workers, and the
+   * memory used to record the classes that workers report having loaded.
+   */
+  private static final int MAX_REQUIRED_CLASSES = 8192;
+
   /** The <code>Logger</code> for this class. */
   private static final Logger logger = Logger.getLogger(JobServer.class);
 
-  /** The <code>Random</code> number generator (for generating task IDs). */
-  private static final Random rand = new Random();
-
   /**
    * The <code>ProgressMonitorFactory</code> to use to create
    * <code>ProgressMonitor</code>s for reporting overall progress of
@@ -129,7 +176,7 @@ public final class JobServer implements JobService {
    * by the corresponding job ID.
    * @see ca.eandb.jdcp.server.JobServer.ScheduledJob
    */
-  private final Map<UUID, ScheduledJob> jobs = Collections.synchronizedMap(new HashMap<UUID, ScheduledJob>());
+  private final Map<UUID, ScheduledJob> jobs = new ConcurrentHashMap<UUID, ScheduledJob>();
 
   /** An <code>Executor</code> to use to run asynchronous tasks. */
   private final Executor executor;
@@ -140,6 +187,64 @@ public final class JobServer implements JobService {
    */
   private TaskDescription idleTask = new TaskDescription(null, 0, DEFAULT_IDLE_SECONDS);
 
+  /**
+   * The amount of time (in seconds) that workers are instructed to idle for
+   * if there are no tasks to be processed.
+   */
+  private volatile int idleSeconds = DEFAULT_IDLE_SECONDS;
+
+  /**
+   * Notified when tasks are added to the schedule, to wake callers of
+   * {@link #requestTasks(int, long)} that are waiting for a task.
+   */
+  private final Object taskAvailable = new Object();
+
+  /**
+   * The number of times that tasks have been added to the schedule.  Used
+   * to detect tasks added while a caller was not yet waiting.  Guarded by
+   * {@link #taskAvailable}.
+   */
+  private long taskEpoch = 0;
+
+  /**
+   * The <code>TaskEventLog</code> used to notify workers when tasks they
+   * may be processing are finished.
+   */
+  private final TaskEventLog taskEvents = new TaskEventLog();
+
+  /** Task results that are being uploaded in chunks. */
+  private final ResultStreamTable resultStreams;
+
+  /** The <code>Codec</code> to use to compress large tasks. */
+  private volatile Codec taskCodec = Codecs.LZ;
+
+  /**
+   * The size (in bytes) of serialized tasks below which they are sent
+   * uncompressed.
+   */
+  private volatile int compressionThreshold = CompressedPayload.DEFAULT_THRESHOLD;
+
+  /** The <code>Serializer</code> to use to serialize tasks. */
+  private volatile Serializer taskSerializer = Serializers.JAVA;
+
+  /**
+   * The minimum amount of time (in milliseconds) for which a task is leased
+   * to a worker before it may be handed out again.
+   */
+  private volatile long taskLeaseMillis = DEFAULT_TASK_LEASE_MILLIS;
+
+  /**
+   * The maximum number of workers that may concurrently be processing the
+   * same task.
+   */
+  private volatile int maxTaskCopies = DEFAULT_MAX_TASK_COPIES;
+
+  /**
+   * A value indicating whether workers in this JVM are given copies of
+   * tasks rather than the tasks themselves.
+   */
+  private volatile boolean copyLocalTasks = true;
+
   private static final long POLLING_INTERVAL = 10;
 
   private static final TimeUnit POLLING_UNITS = TimeUnit.SECONDS;
@@ -175,10 +280,13 @@ public final class JobServer implements JobService {
     this.scheduler = scheduler;
     this.classManager = classManager;
     this.executor = executor;
+    this.resultStreams = new ResultStreamTable(new File(outputDirectory, ".streams"));
 
     Runnable poll = new Runnable() {
       public void run() {
         pollActiveTasks();
+        expireTaskLeases();
+        resultStreams.expire(System.currentTimeMillis());
       }
     };
     poller.scheduleAtFixedRate(poll, POLLING_INTERVAL,
@@ -207,6 +315,94 @@ public final class JobServer implements JobService {
     }
   }
 
+  /**
+   * Returns tasks whose leases have expired to the schedule so that they
+   * may be handed out to other workers.
+   */
+  private final void expireTaskLeases() {
+    long now = System.currentTimeMillis();
+    for (ScheduledJob sched : jobs.values()) {
+      sched.expireLeases(now);
+      sched.speculate(now);
+    }
+  }
+
+  /**
+   * Sets the minimum amount of time for which a task is leased to a worker.
+   * A task is not handed out again while its lease is held unless the
+   * worker fails to report that it is still processing the task before the
+   * lease expires.  Workers report on the tasks they are processing each
+   * time they poll for finished tasks.
+   * @param millis The minimum lease time, in milliseconds.
+   * @throws IllegalArgumentException If <code>millis</code> is not
+   *     positive.
+   */
+  public void setTaskLeaseTime(long millis) {
+    if (millis <= 0) {
+      throw new IllegalArgumentException("millis must be positive.");
+    }
+    taskLeaseMillis = millis;
+  }
+
+  /**
+   * Sets the maximum number of workers that may concurrently be processing
+   * the same task.  Once a task whose lease has expired has been handed out
+   * this many times, it will not be handed out again until an additional
+   * lease period elapses without any worker reporting that it is processing
+   * the task.
+   * @param copies The maximum number of concurrent copies of a task.
+   * @throws IllegalArgumentException If <code>copies</code> is less than
+   *     one.
+   */
+  public void setMaxTaskCopies(int copies) {
+    if (copies < 1) {
+      throw new IllegalArgumentException("copies must be at least one.");
+    }
+    maxTaskCopies = copies;
+  }
+
+  /**
+   * Sets the <code>Codec</code> to use to compress tasks sent to workers.
+   * Workers decode tasks using whichever codec is recorded with them, so
+   * this may be changed at any time.
+   * @param codec The <code>Codec</code> to use to compress tasks.
+   * @param threshold The size (in bytes) of serialized tasks below which
+   *     they are sent uncompressed.
+   * @see ca.eandb.jdcp.codec.Codecs
+   */
+  public void setTaskCodec(Codec codec, int threshold) {
+    taskCodec = codec;
+    compressionThreshold = threshold;
+  }
+
+  /**
+   * Sets the <code>Serializer</code> to use to serialize tasks sent to
+   * workers.  Workers read tasks using whichever serializer wrote them, so
+   * this may be changed at any time.
+   * @param serializer The <code>Serializer</code> to use to serialize
+   *     tasks.
+   * @see ca.eandb.jdcp.codec.Serializers
+   */
+  public void setTaskSerializer(Serializer serializer) {
+    taskSerializer = serializer;
+  }
+
+  /**
+   * Sets whether workers in this JVM are given their own copies of tasks.
+   * By default, each such worker receives a copy deserialized from the
+   * form that would be sent to a remote worker, because the same task may
+   * be handed to more than one worker and is passed back to the job along
+   * with its results.  If the tasks generated by the hosted jobs are never
+   * modified by their workers, this may be disabled so that tasks are
+   * passed by reference.
+   * @param copy A value indicating whether to copy tasks for workers in
+   *     this JVM.
+   * @see LocalTaskService#getLocalTask(TaskDescription)
+   */
+  public void setCopyLocalTasks(boolean copy) {
+    copyLocalTasks = copy;
+  }
+
   /* (non-Javadoc)
    * @see ca.eandb.jdcp.remote.JobService#createJob(java.lang.String)
    */
@@ -215,6 +411,7 @@ public final class JobServer implements JobService {
     ScheduledJob sched = new ScheduledJob(description, monitor);
     jobs.put(sched.id, sched);
     monitor.addCancelListener(new JobCancelListener(sched.id));
+    assignJobGroup(sched.id);
 
     if (logger.isInfoEnabled()) {
       logger.info("Job created (" + sched.id.toString() + "): " + description);
@@ -223,6 +420,39 @@ public final class JobServer implements JobService {
     return sched.id;
   }
 
+  /**
+   * Assigns a newly created job to the group for the user on whose behalf
+   * it was created, if the <code>TaskScheduler</code> apportions tasks
+   * among groups of jobs.
+   * @param jobId The <code>UUID</code> identifying the job.
+   * @see FairShareTaskScheduler#setJobGroup(UUID, String)
+   */
+  private void assignJobGroup(UUID jobId) {
+    if (scheduler instanceof FairShareTaskScheduler) {
+      ((FairShareTaskScheduler) scheduler).setJobGroup(jobId, getCurrentUserName());
+    }
+  }
+
+  /**
+   * Gets the name of the user on whose behalf the current thread is acting.
+   * @return The name of the first <code>Principal</code> of the current
+   *     <code>Subject</code>, or <code>null</code> if there is none.
+   */
+  private static String getCurrentUserName() {
+    final AccessControlContext context = AccessController.getContext();
+    Subject user = AccessController.doPrivileged(new PrivilegedAction<Subject>() {
+      public Subject run() {
+        return Subject.getSubject(context);
+      }
+    });
+    if (user != null) {
+      for (Principal principal : user.getPrincipals()) {
+        return principal.getName();
+      }
+    }
+    return null;
+  }
+
   /* (non-Javadoc)
    * @see ca.eandb.jdcp.remote.JobService#submitJob(ca.eandb.util.rmi.Envelope, java.util.UUID)
    */
@@ -258,6 +488,7 @@ public final class JobServer implements JobService {
     ScheduledJob sched = new ScheduledJob(description, monitor);
     jobs.put(sched.id, sched);
     monitor.addCancelListener(new JobCancelListener(sched.id));
+    assignJobGroup(sched.id);
 
     try {
       ServerUtil.setHostService(sched);
@@ -307,33 +538,67 @@ public final class JobServer implements JobService {
     throw new IllegalArgumentException("No submitted job with provided Job ID");
   }
 
+  /* (non-Javadoc)
+   * @see ca.eandb.jdcp.worker.LocalTaskService#getLocalTaskWorker(java.util.UUID)
+   */
+  public TaskWorker getLocalTaskWorker(UUID jobId) {
+    ScheduledJob sched = jobs.get(jobId);
+    return (sched != null) ? sched.taskWorker : null;
+  }
+
+  /* (non-Javadoc)
+   * @see ca.eandb.jdcp.worker.LocalTaskService#getLocalTask(ca.eandb.jdcp.job.TaskDescription)
+   */
+  public Object getLocalTask(TaskDescription taskDesc)
+      throws ClassNotFoundException {
+    ScheduledJob sched = jobs.get(taskDesc.getJobId());
+    if (sched == null) {
+      return null;
+    }
+
+    ClassLoader cl = sched.classLoader;
+    Object task = copyLocalTasks ? taskDesc.getTask().deserialize(cl)
+        : taskDesc.getTask().get();
+    return CompressedPayload.decompress(task, cl);
+  }
+
+  /* (non-Javadoc)
+   * @see ca.eandb.jdcp.worker.LocalTaskService#submitLocalTaskResults(java.util.UUID, int, java.lang.Object)
+   */
+  public boolean submitLocalTaskResults(UUID jobId, int taskId,
+      Object results) {
+    ScheduledJob sched = jobs.get(jobId);
+    if (sched == null) {
+      return false;
+    }
+
+    try {
+      ServerUtil.setHostService(sched);
+      sched.submitLocalTaskResults(taskId, results);
+    } finally {
+      ServerUtil.clearHostService();
+    }
+    return true;
+  }
+
   /* (non-Javadoc)
    * @see ca.eandb.jdcp.remote.JobService#requestTask()
    */
-  public synchronized TaskDescription requestTask() throws SecurityException {
-    TaskDescription taskDesc = scheduler.getNextTask();
+  public TaskDescription requestTask() throws SecurityException {
+    TaskDescription taskDesc = nextScheduledTask();
     if (taskDesc != null) {
-      ScheduledJob sched = jobs.get(taskDesc.getJobId());
-      try {
-        ServerUtil.setHostService(sched);
-        sched.scheduleNextTask();
-      } catch (JobExecutionException e) {
-        handleJobExecutionException(e, sched.id);
-      } finally {
-        ServerUtil.clearHostService();
-      }
       return taskDesc;
     }
 
     int n = services.size();
     if (n > 0) {
       ServiceInfo[] serv;
-      synchronized (this) {
+      synchronized (services) {
         serv = (ServiceInfo[]) services.toArray(new ServiceInfo[n]);
       }
       for (ServiceInfo info : serv) {
         try {
-          synchronized (this) {
+          synchronized (services) {
             if (services.remove(info)) {
               services.add(info);
             }
@@ -353,6 +618,104 @@ public final class JobServer implements JobService {
     return idleTask;
   }
 
+  /* (non-Javadoc)
+   * @see ca.eandb.jdcp.remote.TaskService#requestTasks(int, long)
+   */
+  public TaskDescription[] requestTasks(int maxTasks, long waitMillis)
+      throws IllegalArgumentException, SecurityException {
+    if (maxTasks <= 0) {
+      throw new IllegalArgumentException("maxTasks must be positive.");
+    }
+
+    long start = System.currentTimeMillis();
+    long deadline = start + Math.min(Math.max(waitMillis, 0), MAX_TASK_WAIT_MILLIS);
+    long epoch;
+
+    while (true) {
+      synchronized (taskAvailable) {
+        epoch = taskEpoch;
+      }
+
+      List<TaskDescription> tasks = new ArrayList<TaskDescription>();
+      while (tasks.size() < maxTasks) {
+        TaskDescription taskDesc = nextScheduledTask();
+        if (taskDesc == null) {
+          break;
+        }
+        tasks.add(taskDesc);
+      }
+
+      if (!tasks.isEmpty()) {
+        return tasks.toArray(new TaskDescription[tasks.size()]);
+      }
+
+      TaskDescription taskDesc = requestTask();
+      if (taskDesc.getJobId() != null) {
+        return new TaskDescription[]{ taskDesc };
+      }
+
+      /* Nothing to do -- wait for a task to be scheduled. */
+      long remaining = deadline - System.currentTimeMillis();
+      if (remaining <= 0) {
+        break;
+      }
+      synchronized (taskAvailable) {
+        if (taskEpoch == epoch) {
+          try {
+            taskAvailable.wait(remaining);
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            break;
+          }
+        }
+      }
+    }
+
+    /* The caller has already waited for some time, so it does not need to
+     * idle for as long before asking again.
+     */
+    long waitedSeconds = (System.currentTimeMillis() - start) / 1000;
+    if (waitedSeconds <= 0) {
+      return new TaskDescription[]{ idleTask };
+    }
+    int seconds = (int) Math.max(idleSeconds - waitedSeconds, 0);
+    return new TaskDescription[]{ new TaskDescription(null, 0, seconds) };
+  }
+
+  /**
+   * Wakes up callers of {@link #requestTasks(int, long)} that are waiting
+   * for a task to become available.
+   */
+  private void notifyTaskAvailable() {
+    synchronized (taskAvailable) {
+      taskEpoch++;
+      taskAvailable.notifyAll();
+    }
+  }
+
+  /**
+   * Takes the next task from the schedule of jobs hosted by this server and
+   * leases it to the caller.
+   * @return The <code>TaskDescription</code> for the next task, or
+   *     <code>null</code> if there are no scheduled tasks.
+   */
+  private TaskDescription nextScheduledTask() {
+    while (true) {
+      TaskDescription taskDesc = scheduler.takeNextTask();
+      if (taskDesc == null) {
+        return null;
+      }
+      ScheduledJob sched = jobs.get(taskDesc.getJobId());
+      if (sched == null) {
+        return taskDesc;
+      }
+      if (sched.leaseTask(taskDesc)) {
+        sched.requestRefill();
+        return taskDesc;
+      }
+    }
+  }
+
   /* (non-Javadoc)
    * @see ca.eandb.jdcp.remote.JobService#submitTaskResults(java.util.UUID, int, ca.eandb.util.rmi.Envelope)
    */
@@ -383,6 +746,237 @@ public final class JobServer implements JobService {
     }
   }
 
+  /* (non-Javadoc)
+   * @see ca.eandb.jdcp.remote.TaskService#submitTaskResultsBatch(java.util.UUID[], int[], ca.eandb.util.rmi.Serialized[])
+   */
+  public BitSet submitTaskResultsBatch(UUID[] jobIds, int[] taskIds,
+      Serialized<Object>[] results) throws IllegalArgumentException,
+      SecurityException {
+
+    if (jobIds == null || taskIds == null || results == null) {
+      return new BitSet(0);
+    }
+
+    if (jobIds.length != taskIds.length || jobIds.length != results.length) {
+      throw new IllegalArgumentException("jobIds, taskIds, and results must be the same length");
+    }
+
+    BitSet accepted = new BitSet(jobIds.length);
+    Map<ServiceInfo, List<Integer>> forward = new HashMap<ServiceInfo, List<Integer>>();
+
+    for (int i = 0; i < jobIds.length; i++) {
+      ScheduledJob sched = jobs.get(jobIds[i]);
+      if (sched != null) {
+        try {
+          ServerUtil.setHostService(sched);
+          accepted.set(i, sched.submitTaskResults(taskIds[i], results[i]));
+        } finally {
+          ServerUtil.clearHostService();
+        }
+      } else {
+        ServiceInfo info = routes.get(jobIds[i]);
+        if (info != null) {
+          List<Integer> entries = forward.get(info);
+          if (entries == null) {
+            entries = new ArrayList<Integer>();
+            forward.put(info, entries);
+          }
+          entries.add(i);
+        }
+      }
+    }
+
+    for (Entry<ServiceInfo, List<Integer>> entry : forward.entrySet()) {
+      ServiceInfo info = entry.getKey();
+      List<Integer> entries = entry.getValue();
+      int n = entries.size();
+      UUID[] fwdJobIds = new UUID[n];
+      int[] fwdTaskIds = new int[n];
+      @SuppressWarnings("unchecked")
+      Serialized<Object>[] fwdResults = (Serialized<Object>[]) new Serialized<?>[n];
+      for (int j = 0; j < n; j++) {
+        int i = entries.get(j);
+        fwdJobIds[j] = jobIds[i];
+        fwdTaskIds[j] = taskIds[i];
+        fwdResults[j] = results[i];
+      }
+
+      /* Forward synchronously, so that a result is reported as accepted
+       * only once the server that owns the job has accepted it.  If the
+       * forward fails, the results are reported as not accepted and the
+       * tasks remain outstanding on that server.
+       */
+      try {
+        BitSet fwdAccepted = info.submitTaskResultsBatch(fwdJobIds, fwdTaskIds, fwdResults);
+        for (int j = fwdAccepted.nextSetBit(0); j >= 0 && j < n; j = fwdAccepted.nextSetBit(j + 1)) {
+          accepted.set(entries.get(j));
+        }
+      } catch (Exception e) {
+        logger.error("Cannot submit task results", e);
+      }
+    }
+
+    return accepted;
+
+  }
+
+  /* (non-Javadoc)
+   * @see ca.eandb.jdcp.remote.TaskService#releaseTasks(java.util.UUID[], int[])
+   */
+  public void releaseTasks(UUID[] jobIds, int[] taskIds)
+      throws IllegalArgumentException, SecurityException {
+
+    if (jobIds == null || taskIds == null) {
+      return;
+    }
+
+    if (jobIds.length != taskIds.length) {
+      throw new IllegalArgumentException("jobIds.length != taskIds.length");
+    }
+
+    Map<ServiceInfo, List<Integer>> forward = new HashMap<ServiceInfo, List<Integer>>();
+
+    for (int i = 0; i < jobIds.length; i++) {
+      ScheduledJob sched = jobs.get(jobIds[i]);
+      if (sched != null) {
+        sched.releaseLease(taskIds[i]);
+        continue;
+      }
+      ServiceInfo info = routes.get(jobIds[i]);
+      if (info != null) {
+        List<Integer> entries = forward.get(info);
+        if (entries == null) {
+          entries = new ArrayList<Integer>();
+          forward.put(info, entries);
+        }
+        entries.add(i);
+      }
+    }
+
+    for (Entry<ServiceInfo, List<Integer>> entry : forward.entrySet()) {
+      ServiceInfo info = entry.getKey();
+      List<Integer> entries = entry.getValue();
+      int n = entries.size();
+      UUID[] fwdJobIds = new UUID[n];
+      int[] fwdTaskIds = new int[n];
+      for (int j = 0; j < n; j++) {
+        int i = entries.get(j);
+        fwdJobIds[j] = jobIds[i];
+        fwdTaskIds[j] = taskIds[i];
+      }
+      try {
+        info.releaseTasks(fwdJobIds, fwdTaskIds);
+      } catch (Exception e) {
+        logger.warn("Cannot release tasks", e);
+      }
+    }
+
+  }
+
+  /* (non-Javadoc)
+   * @see ca.eandb.jdcp.remote.TaskService#openResultStream(java.util.UUID, int, boolean)
+   */
+  public UUID openResultStream(UUID jobId, int taskId, boolean raw)
+      throws SecurityException {
+    ScheduledJob sched = jobs.get(jobId);
+    if (sched != null) {
+      if (sched.isTaskComplete(taskId)) {
+        return null;
+      }
+      if (raw && !sched.job.isStreaming()) {
+        throw new UnsupportedOperationException(
+            "Job does not accept streamed task results");
+      }
+      try {
+        return resultStreams.open(jobId, taskId, raw);
+      } catch (IOException e) {
+        logger.error("Cannot open result stream", e);
+        throw new IllegalStateException("Cannot open result stream", e);
+      }
+    }
+
+    ServiceInfo info = routes.get(jobId);
+    if (info != null) {
+      return info.openResultStream(jobId, taskId, raw);
+    }
+    return null;
+  }
+
+  /* (non-Javadoc)
+   * @see ca.eandb.jdcp.remote.TaskService#writeResultChunk(java.util.UUID, long, byte[])
+   */
+  public void writeResultChunk(UUID streamId, long offset, byte[] data)
+      throws IllegalArgumentException, SecurityException {
+    if (resultStreams.contains(streamId)) {
+      try {
+        resultStreams.write(streamId, offset, data);
+      } catch (IOException e) {
+        logger.error("Cannot write to result stream", e);
+        throw new IllegalStateException("Cannot write to result stream", e);
+      }
+      return;
+    }
+
+    getResultStreamRoute(streamId).writeResultChunk(streamId, offset, data);
+  }
+
+  /* (non-Javadoc)
+   * @see ca.eandb.jdcp.remote.TaskService#commitResultStream(java.util.UUID, long)
+   */
+  public boolean commitResultStream(UUID streamId, long length)
+      throws IllegalArgumentException, SecurityException {
+    if (resultStreams.contains(streamId)) {
+      ResultStream stream = resultStreams.commit(streamId, length);
+      ScheduledJob sched = jobs.get(stream.getJobId());
+      if (sched != null) {
+        try {
+          ServerUtil.setHostService(sched);
+          if (sched.submitTaskResults(stream.getTaskId(), stream)) {
+            return true;
+          }
+        } finally {
+          ServerUtil.clearHostService();
+        }
+      }
+      stream.delete();
+      return false;
+    }
+
+    return getResultStreamRoute(streamId).commitResultStream(streamId, length);
+  }
+
+  /* (non-Javadoc)
+   * @see ca.eandb.jdcp.remote.TaskService#abortResultStream(java.util.UUID)
+   */
+  public void abortResultStream(UUID streamId) throws SecurityException {
+    if (resultStreams.contains(streamId)) {
+      resultStreams.abort(streamId);
+      return;
+    }
+
+    for (ServiceInfo info : hosts.values()) {
+      if (info.hasResultStream(streamId)) {
+        info.abortResultStream(streamId);
+        break;
+      }
+    }
+  }
+
+  /**
+   * Finds the remote service to which a result stream is being forwarded.
+   * @param streamId The <code>UUID</code> identifying the result stream.
+   * @return The <code>ServiceInfo</code> for the remote service.
+   * @throws IllegalArgumentException If there is no such result stream.
+   */
+  private ServiceInfo getResultStreamRoute(UUID streamId) {
+    for (ServiceInfo info : hosts.values()) {
+      if (info.hasResultStream(streamId)) {
+        return info;
+      }
+    }
+    throw new IllegalArgumentException("No such result stream");
+  }
+
   /* (non-Javadoc)
    * @see ca.eandb.jdcp.remote.JobService#reportException(java.util.UUID, int, java.lang.Exception)
    */
@@ -390,7 +984,158 @@ public final class JobServer implements JobService {
       throws SecurityException, RemoteException {
     ScheduledJob sched = jobs.get(jobId);
     if (sched != null) {
-      sched.reportException(taskId, e);
+      sched.reportException(taskId, e);
+    }
+
+    final ServiceInfo info = routes.get(jobId);
+    if (info != null) {
+      executor.execute(new Runnable() {
+        public void run() {
+          try {
+            info.reportException(jobId, taskId, e);
+          } catch (Exception e1) {
+            logger.error("Cannot report exception", e1);
+          }
+        }
+      });
+    }
+  }
+
+  /* (non-Javadoc)
+   * @see ca.eandb.jdcp.remote.JobService#getFinishedTasks(java.util.UUID[], int[])
+   */
+  public BitSet getFinishedTasks(UUID[] jobIds, int[] taskIds)
+      throws IllegalArgumentException, SecurityException, RemoteException {
+
+    if (jobIds == null || taskIds == null) {
+      return new BitSet(0);
+    }
+
+    if (jobIds.length != taskIds.length) {
+      throw new IllegalArgumentException("jobIds.length != taskIds.length");
+    }
+
+    BitSet finished = new BitSet(jobIds.length);
+
+    for (int i = 0; i < jobIds.length; i++) {
+      UUID jobId = jobIds[i];
+      int taskId = taskIds[i];
+      if (jobId == null) {
+        finished.set(i);
+      } else if (taskId != 0) {
+        ScheduledJob sched = jobs.get(jobId);
+        if (sched != null) {
+          boolean complete = sched.isTaskComplete(taskId);
+          if (!complete) {
+            sched.renewLease(taskId);
+          }
+          finished.set(i, complete);
+        } else {
+          ServiceInfo info = routes.get(jobId);
+          finished.set(i, (info == null) || info.isTaskComplete(jobId, taskId));
+        }
+      } else {
+        ScheduledJob sched = jobs.get(jobId);
+        if (sched != null) {
+          try {
+            finished.set(i, sched.job.isComplete());
+          } catch (JobExecutionException e) {
+            sched.reportException(0, e);
+          }
+        } else {
+          finished.set(i, !routes.containsKey(jobId));
+        }
+      }
+    }
+
+    return finished;
+
+  }
+
+  /* (non-Javadoc)
+   * @see ca.eandb.jdcp.remote.TaskService#waitForTaskEvents(long, long)
+   */
+  public TaskEvent[] waitForTaskEvents(long lastEventId, long timeoutMillis)
+      throws SecurityException {
+    try {
+      return taskEvents.waitForEvents(lastEventId, timeoutMillis);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return new TaskEvent[0];
+    }
+  }
+
+  /* (non-Javadoc)
+   * @see ca.eandb.jdcp.remote.JobService#getClassDefinition(java.lang.String, java.util.UUID)
+   */
+  public byte[] getClassDefinition(String name, UUID jobId)
+      throws SecurityException {
+    ScheduledJob sched = jobs.get(jobId);
+    if (sched != null) {
+      ByteBuffer def = sched.classManager.getClassDefinition(name);
+      if (def != null) {
+        sched.recordClass(name);
+      }
+      return toByteArray(def);
+    }
+
+    ServiceInfo info = routes.get(jobId);
+    if (info != null) {
+      return info.getClassDefinition(name, jobId);
+    }
+
+    throw new IllegalArgumentException("No job with provided Job ID");
+  }
+
+  /* (non-Javadoc)
+   * @see ca.eandb.jdcp.remote.TaskService#getClassBundle(java.util.UUID, java.util.Map)
+   */
+  public ClassBundle getClassBundle(UUID jobId, Map<String, byte[]> digests)
+      throws IllegalArgumentException, SecurityException {
+    ScheduledJob sched = jobs.get(jobId);
+    if (sched != null) {
+      return sched.getClassBundle(digests);
+    }
+
+    ServiceInfo info = routes.get(jobId);
+    if (info != null) {
+      return info.getClassBundle(jobId, digests);
+    }
+
+    throw new IllegalArgumentException("No job with provided Job ID");
+  }
+
+  /* (non-Javadoc)
+   * @see ca.eandb.jdcp.remote.TaskService#getClassManifest(java.util.UUID)
+   */
+  public String[] getClassManifest(UUID jobId)
+      throws IllegalArgumentException, SecurityException {
+    ScheduledJob sched = jobs.get(jobId);
+    if (sched != null) {
+      return sched.getClassManifest();
+    }
+
+    ServiceInfo info = routes.get(jobId);
+    if (info != null) {
+      return info.getClassManifest(jobId);
+    }
+
+    throw new IllegalArgumentException("No job with provided Job ID");
+  }
+
+  /* (non-Javadoc)
+   * @see ca.eandb.jdcp.remote.TaskService#reportClassManifest(java.util.UUID, java.lang.String[])
+   */
+  public void reportClassManifest(final UUID jobId, final String[] classNames)
+      throws SecurityException {
+    if (classNames == null) {
+      return;
+    }
+
+    ScheduledJob sched = jobs.get(jobId);
+    if (sched != null) {
+      sched.recordReportedClasses(classNames);
+      return;
     }
 
     final ServiceInfo info = routes.get(jobId);
@@ -398,97 +1143,71 @@ public final class JobServer implements JobService {
       executor.execute(new Runnable() {
         public void run() {
           try {
-            info.reportException(jobId, taskId, e);
-          } catch (Exception e1) {
-            logger.error("Cannot report exception", e1);
+            info.reportClassManifest(jobId, classNames);
+          } catch (Exception e) {
+            logger.error("Cannot report class manifest", e);
           }
         }
       });
     }
   }
 
-  /* (non-Javadoc)
-   * @see ca.eandb.jdcp.remote.JobService#getFinishedTasks(java.util.UUID[], int[])
+  /**
+   * Gets the contents of a <code>ByteBuffer</code> as an array.
+   * @param buf The <code>ByteBuffer</code> (may be <code>null</code>).
+   * @return The remaining contents of <code>buf</code>, or
+   *     <code>null</code> if <code>buf</code> is <code>null</code>.  The
+   *     backing array of <code>buf</code> is returned if it holds exactly
+   *     that.
    */
-  public BitSet getFinishedTasks(UUID[] jobIds, int[] taskIds)
-      throws IllegalArgumentException, SecurityException, RemoteException {
-
-    if (jobIds == null || taskIds == null) {
-      return new BitSet(0);
-    }
-
-    if (jobIds.length != taskIds.length) {
-      throw new IllegalArgumentException("jobIds.length != taskIds.length");
-    }
-
-    BitSet finished = new BitSet(jobIds.length);
-
-    for (int i = 0; i < jobIds.length; i++) {
-      UUID jobId = jobIds[i];
-      int taskId = taskIds[i];
-      if (taskId != 0) {
-        if (jobs.containsKey(jobId)) {
-          finished.set(i, jobId == null || !scheduler.contains(jobId, taskId));
-        } else {
-          ServiceInfo info = routes.get(jobId);
-          finished.set(i, (info == null) || info.isTaskComplete(jobId, taskId));
-        }
-      } else {
-        ScheduledJob sched = jobs.get(jobId);
-        if (sched != null) {
-          try {
-            finished.set(i, sched.job.isComplete());
-          } catch (JobExecutionException e) {
-            sched.reportException(0, e);
-          }
-        } else {
-          finished.set(i, !routes.containsKey(jobId));
-        }
-      }
+  private static byte[] toByteArray(ByteBuffer buf) {
+    if (buf == null) {
+      return null;
+    } else if (buf.hasArray() && buf.arrayOffset() == 0
+        && buf.position() == 0 && buf.remaining() == buf.array().length) {
+      return buf.array();
+    } else {
+      byte[] bytes = new byte[buf.remaining()];
+      buf.duplicate().get(bytes);
+      return bytes;
     }
-
-    return finished;
-
   }
 
   /* (non-Javadoc)
-   * @see ca.eandb.jdcp.remote.JobService#getClassDefinition(java.lang.String, java.util.UUID)
+   * @see ca.eandb.jdcp.remote.JobService#getClassDigest(java.lang.String, java.util.UUID)
    */
-  public byte[] getClassDefinition(String name, UUID jobId)
+  public byte[] getClassDigest(String name, UUID jobId)
       throws SecurityException {
     ScheduledJob sched = jobs.get(jobId);
     if (sched != null) {
-      ByteBuffer def = sched.classManager.getClassDefinition(name);
-      if (def.hasArray() && def.arrayOffset() == 0) {
-        return def.array();
-      } else {
-        byte[] bytes = new byte[def.remaining()];
-        def.get(bytes);
-        return bytes;
-      }
+      return sched.classManager.getClassDigest(name);
     }
 
     ServiceInfo info = routes.get(jobId);
     if (info != null) {
-      return info.getClassDefinition(name, jobId);
+      return info.getClassDigest(name, jobId);
     }
 
     throw new IllegalArgumentException("No job with provided Job ID");
   }
 
   /* (non-Javadoc)
-   * @see ca.eandb.jdcp.remote.JobService#getClassDigest(java.lang.String, java.util.UUID)
+   * @see ca.eandb.jdcp.remote.TaskService#getClassDigests(java.lang.String[], java.util.UUID)
    */
-  public byte[] getClassDigest(String name, UUID jobId)
+  public byte[][] getClassDigests(String[] names, UUID jobId)
       throws SecurityException {
     ScheduledJob sched = jobs.get(jobId);
     if (sched != null) {
-      return sched.classManager.getClassDigest(name);
+      byte[][] digests = new byte[names.length][];
+      for (int i = 0; i < names.length; i++) {
+        digests[i] = sched.classManager.getClassDigest(names[i]);
+      }
+      return digests;
     }
 
     ServiceInfo info = routes.get(jobId);
     if (info != null) {
-      return info.getClassDigest(name, jobId);
+      return info.getClassDigests(names, jobId);
     }
 
     throw new IllegalArgumentException("No job with provided Job ID");
@@ -501,6 +1220,17 @@ public final class JobServer implements JobService {
     return classManager.getClassDigest(name);
   }
 
+  /* (non-Javadoc)
+   * @see ca.eandb.jdcp.remote.JobService#getClassDigests(java.lang.String[])
+   */
+  public byte[][] getClassDigests(String[] names) throws SecurityException {
+    byte[][] digests = new byte[names.length][];
+    for (int i = 0; i < names.length; i++) {
+      digests[i] = classManager.getClassDigest(names[i]);
+    }
+    return digests;
+  }
+
   /* (non-Javadoc)
    * @see ca.eandb.jdcp.remote.JobService#setClassDefinition(java.lang.String, byte[])
    */
@@ -537,6 +1267,7 @@ public final class JobServer implements JobService {
   public void setIdleTime(int idleSeconds) throws IllegalArgumentException,
       SecurityException {
     idleTask = new TaskDescription(null, 0, idleSeconds);
+    this.idleSeconds = idleSeconds;
     if (logger.isInfoEnabled()) {
       logger.info("Idle time set to " + Integer.toString(idleSeconds));
     }
@@ -558,6 +1289,22 @@ public final class JobServer implements JobService {
     }
   }
 
+  /**
+   * Takes a snapshot of the progress of a job.
+   * @param jobId The <code>UUID</code> identifying the job.
+   * @return A <code>BitSet</code> in which the bits corresponding to the
+   *     IDs of the completed tasks for the job are set.
+   * @throws IllegalArgumentException If there is no job with the specified
+   *     <code>UUID</code>.
+   */
+  public BitSet getCompletedTasks(UUID jobId) throws IllegalArgumentException {
+    ScheduledJob sched = jobs.get(jobId);
+    if (sched == null) {
+      throw new IllegalArgumentException("No job with provided Job ID");
+    }
+    return sched.leases.getCompleted();
+  }
+
   /**
    * Handles a <code>JobExcecutionException</code> thrown by a job managed
    * by this server.
@@ -583,6 +1330,8 @@ public final class JobServer implements JobService {
         sched.notifyComplete();
         if (logger.isInfoEnabled()) {
           logger.info("Job complete (" + jobId.toString() + ")");
+          logger.info("Task compression (" + taskCodec.getName() + "): "
+              + Codecs.getStatistics(taskCodec));
         }
       } else {
         sched.notifyCancelled();
@@ -592,6 +1341,8 @@ public final class JobServer implements JobService {
       }
       jobs.remove(jobId);
       scheduler.removeJob(jobId);
+      taskEvents.post(jobId, 0);
+      resultStreams.abortJob(jobId);
       sched.classManager.release();
     }
   }
@@ -604,9 +1355,12 @@ public final class JobServer implements JobService {
     if (hosts.containsKey(name)) {
       unregisterTaskService(name);
     }
-    ServiceInfo info = new ServiceInfo(service, dataSource, executor);
+    ServiceInfo info = new ServiceInfo(service, dataSource, executor, taskEvents);
     hosts.put(name, info);
-    services.add(info);
+    synchronized (services) {
+      services.add(info);
+    }
+    notifyTaskAvailable();
   }
 
   /* (non-Javadoc)
@@ -617,7 +1371,9 @@ public final class JobServer implements JobService {
     ServiceInfo info = hosts.get(name);
     if (info != null) {
       hosts.remove(name);
-      services.remove(info);
+      synchronized (services) {
+        services.remove(info);
+      }
       synchronized (routes) {
         for (Entry<UUID, ServiceInfo> entry : routes.entrySet()) {
           if (entry.getValue() == info) {
@@ -648,6 +1404,12 @@ public final class JobServer implements JobService {
     /** The <code>TaskWorker</code> to use to process tasks for the job. */
     public Serialized<TaskWorker>      worker;
 
+    /**
+     * The <code>TaskWorker</code> to use to process tasks for the job in
+     * this JVM.
+     */
+    public TaskWorker            taskWorker;
+
     /**
      * The <code>ProgressMonitor</code> to use to monitor the progress of
      * the <code>Job</code>.
@@ -666,8 +1428,43 @@ public final class JobServer implements JobService {
     /** The <code>ClassLoader</code> to use to deserialize this job. */
     public ClassLoader            classLoader;
 
+    /**
+     * The names of the classes that this job is known to require, in the
+     * order in which they were first loaded.  This includes the classes
+     * loaded to deserialize the job on the server, those requested by
+     * workers, and those that workers report having loaded.  Changes must
+     * be synchronized on this set.
+     * @see #getClassBundle(Map)
+     */
+    private final Set<String>        requiredClasses = new LinkedHashSet<String>();
+
     /** A value indicating if the last attempt to obtain a task failed. */
-    private boolean              stalled = false;
+    private volatile boolean          stalled = false;
+
+    /**
+     * The <code>TaskLeaseTable</code> keeping track of the tasks for this
+     * job that have been handed out to workers.
+     */
+    private final TaskLeaseTable leases;
+
+    /** The ID to assign to the next task generated for this job. */
+    private final AtomicInteger        nextTaskId = new AtomicInteger(1);
+
+    /**
+     * The number of tasks that have been handed out for this job for which
+     * a replacement task has not yet been generated.
+     */
+    private final AtomicInteger        pendingRefills = new AtomicInteger();
+
+    /**
+     * Generates replacement tasks for this job in the background.
+     * @see #requestRefill()
+     */
+    private final Runnable          refill = new Runnable() {
+      public void run() {
+        refillTasks();
+      }
+    };
 
     /**
      * Initializes the scheduled job.
@@ -679,6 +1476,7 @@ public final class JobServer implements JobService {
 
       this.id          = UUID.randomUUID();
       this.description    = description;
+      this.leases      = new TaskLeaseTable(id, scheduler);
 
       //String title      = String.format("%s (%s)", this.job.getClass().getSimpleName(), this.id.toString());
       this.monitor      = monitor;
@@ -746,6 +1544,92 @@ public final class JobServer implements JobService {
 
     }
 
+    /**
+     * Records that this job requires the specified class.  Nothing is
+     * recorded once {@link #MAX_REQUIRED_CLASSES} classes have been.
+     * @param name The fully qualified name of the class.
+     * @return A value indicating whether there is room to record more
+     *     classes.
+     */
+    public boolean recordClass(String name) {
+      synchronized (requiredClasses) {
+        if (requiredClasses.size() < MAX_REQUIRED_CLASSES) {
+          requiredClasses.add(name);
+        }
+        return requiredClasses.size() < MAX_REQUIRED_CLASSES;
+      }
+    }
+
+    /**
+     * Records the classes that a worker reports having loaded for this job.
+     * Names that this job's class manager cannot resolve are ignored, since
+     * they cannot be included in a class bundle anyway.
+     * @param names The fully qualified names of the classes.
+     * @see ca.eandb.jdcp.remote.TaskService#reportClassManifest(UUID, String[])
+     */
+    public void recordReportedClasses(String[] names) {
+      for (String name : names) {
+        if (name == null) {
+          continue;
+        }
+        synchronized (requiredClasses) {
+          if (requiredClasses.size() >= MAX_REQUIRED_CLASSES) {
+            break;
+          }
+          if (requiredClasses.contains(name)) {
+            continue;
+          }
+        }
+        if (classManager.getClassDigest(name) != null && !recordClass(name)) {
+          break;
+        }
+      }
+    }
+
+    /**
+     * Gets the names of the classes that this job is known to require.
+     * @return The fully qualified names of the classes.
+     * @see ca.eandb.jdcp.remote.TaskService#getClassManifest(UUID)
+     */
+    public String[] getClassManifest() {
+      synchronized (requiredClasses) {
+        return requiredClasses.toArray(new String[requiredClasses.size()]);
+      }
+    }
+
+    /**
+     * Gets the definitions of the classes that this job is known to
+     * require.
+     * @param digests A <code>Map</code> of the MD5 digests of the class
+     *     definitions that the caller already has, keyed by class name, or
+     *     <code>null</code> if the caller has none.
+     * @return The <code>ClassBundle</code> holding the class definitions.
+     * @see ca.eandb.jdcp.remote.TaskService#getClassBundle(UUID, Map)
+     */
+    public ClassBundle getClassBundle(Map<String, byte[]> digests) {
+      String[] names = getClassManifest();
+
+      List<ClassBundle.Entry> entries = new ArrayList<ClassBundle.Entry>(names.length);
+      for (String name : names) {
+        byte[] digest = classManager.getClassDigest(name);
+        if (digest == null) {
+          continue;
+        }
+
+        byte[] known = (digests != null) ? digests.get(name) : null;
+        if (known != null && Arrays.equals(known, digest)) {
+          entries.add(new ClassBundle.Entry(name, digest, null));
+        } else {
+          ByteBuffer def = classManager.getClassDefinition(name);
+          if (def != null) {
+            entries.add(new ClassBundle.Entry(name, digest, toByteArray(def)));
+          }
+        }
+      }
+
+      return ClassBundle.create(entries, taskCodec);
+    }
+
     /**
      * Deserializes the job and prepares it to be managed by the host
      * machine.
@@ -755,9 +1639,18 @@ public final class JobServer implements JobService {
      * @throws JobExecutionException If the job throws an exception.
      */
     public void initializeJob(Serialized<ParallelizableJob> job) throws ClassNotFoundException, JobExecutionException {
-      this.classLoader  = new StrategyClassLoader(classManager, JobServer.class.getClassLoader());
+      this.classLoader  = new StrategyClassLoader(new ClassLoaderStrategy() {
+        public ByteBuffer getClassDefinition(String name) {
+          ByteBuffer def = classManager.getClassDefinition(name);
+          if (def != null) {
+            recordClass(name);
+          }
+          return def;
+        }
+      }, JobServer.class.getClassLoader());
       this.job      = new JobExecutionWrapper(job.deserialize(classLoader));
-      this.worker      = new Serialized<TaskWorker>(this.job.worker());
+      this.taskWorker    = this.job.worker();
+      this.worker      = new Serialized<TaskWorker>(this.taskWorker);
       notifyStatusChanged("");
 
       this.workingDirectory.mkdir();
@@ -785,20 +1678,88 @@ public final class JobServer implements JobService {
      * Submits the results for a task associated with this job.
      * @param taskId The ID of the task whose results are being submitted.
      * @param results The serialized results.
+     * @return A value indicating whether the results were accepted (i.e.,
+     *     whether the task was still outstanding).
      */
-    public void submitTaskResults(int taskId, Serialized<Object> results) {
-      TaskDescription taskDesc = scheduler.remove(id, taskId);
+    public boolean submitTaskResults(int taskId, Serialized<Object> results) {
+      TaskDescription taskDesc = completeTask(taskId);
       if (taskDesc != null) {
         Object task = taskDesc.getTask().get();
-        Runnable command = new TaskResultSubmitter(this, task, results, this);
-        try {
-          executor.execute(command);
-        } catch (RejectedExecutionException e) {
-          command.run();
-        }
+        submit(new TaskResultSubmitter(this, task, results, this));
+        return true;
+      }
+      return false;
+    }
+
+    /**
+     * Submits the results for a task associated with this job that was
+     * performed in this JVM.
+     * @param taskId The ID of the task whose results are being submitted.
+     * @param results The task results.
+     * @return A value indicating whether the results were accepted (i.e.,
+     *     whether the task was still outstanding).
+     */
+    public boolean submitLocalTaskResults(int taskId, Object results) {
+      TaskDescription taskDesc = completeTask(taskId);
+      if (taskDesc != null) {
+        Object task = taskDesc.getTask().get();
+        submit(new TaskResultSubmitter(this, task, results, this));
+        return true;
+      }
+      return false;
+    }
+
+    /**
+     * Submits the results for a task associated with this job that were
+     * uploaded in chunks.
+     * @param taskId The ID of the task whose results are being submitted.
+     * @param stream The <code>ResultStream</code> holding the results.  If
+     *     the results are accepted, the stream is deleted once they have
+     *     been read.
+     * @return A value indicating whether the results were accepted (i.e.,
+     *     whether the task was still outstanding).
+     */
+    public boolean submitTaskResults(int taskId, ResultStream stream) {
+      TaskDescription taskDesc = completeTask(taskId);
+      if (taskDesc != null) {
+        Object task = taskDesc.getTask().get();
+        submit(new TaskResultSubmitter(this, task, stream, this));
+        return true;
+      }
+      return false;
+    }
+
+    /**
+     * Runs a <code>TaskResultSubmitter</code>, in the background if
+     * possible.
+     * @param command The <code>TaskResultSubmitter</code> to run.
+     */
+    private void submit(TaskResultSubmitter command) {
+      try {
+        executor.execute(command);
+      } catch (RejectedExecutionException e) {
+        command.run();
       }
     }
 
+    /**
+     * Marks a task as complete and releases its lease.
+     * @param taskId The ID of the task that has been completed.
+     * @return The <code>TaskDescription</code> for the task, or
+     *     <code>null</code> if the task was not outstanding.
+     */
+    private TaskDescription completeTask(int taskId) {
+      TaskLeaseTable.TaskLease lease = leases.complete(taskId,
+          System.currentTimeMillis());
+      if (lease == null) {
+        return null;
+      }
+      if (lease.duplicated) {
+        taskEvents.post(id, taskId);
+      }
+      return lease.task;
+    }
+
     /**
      * Reports an exception thrown by a worker while processing a task for
      * this job.
@@ -829,15 +1790,83 @@ public final class JobServer implements JobService {
     }
 
     /**
-     * Generates a unique task identifier.
+     * Generates a unique task identifier.  Task IDs are assigned
+     * sequentially starting from one, so that the completed tasks may be
+     * tracked using a dense bitmap.
      * @return The generated task ID.
      */
     private int generateTaskId() {
-      int taskId;
-      do {
-        taskId = rand.nextInt();
-      } while (taskId != 0 && scheduler.contains(id, taskId));
-      return taskId;
+      return nextTaskId.getAndIncrement();
+    }
+
+    /**
+     * Determines if the specified task for this job has been completed.
+     * Tasks that were never generated for this job are reported as
+     * complete, so that workers holding them will abandon them.
+     * @param taskId The ID of the task.
+     * @return A value indicating whether the task has been completed.
+     */
+    public boolean isTaskComplete(int taskId) {
+      return taskId <= 0 || taskId >= nextTaskId.get() || leases.isComplete(taskId);
+    }
+
+    /**
+     * Records that a task for this job has been handed out to a worker.
+     * The task must already have been taken from the schedule.
+     * @param task The <code>TaskDescription</code> for the task that was
+     *     handed out.
+     * @return A value indicating whether the task was leased.  The task is
+     *     not leased if it is no longer outstanding.
+     * @see TaskLeaseTable#lease(TaskDescription, long, long)
+     */
+    public boolean leaseTask(TaskDescription task) {
+      return leases.lease(task, System.currentTimeMillis(), taskLeaseMillis);
+    }
+
+    /**
+     * Renews the lease on a task for this job, indicating that a worker is
+     * still processing it.
+     * @param taskId The ID of the task for which to renew the lease.
+     */
+    public void renewLease(int taskId) {
+      leases.renew(taskId, System.currentTimeMillis(), taskLeaseMillis);
+    }
+
+    /**
+     * Returns a task for this job that a worker has obtained but will not
+     * perform to the schedule, so that it may be handed out again right
+     * away.
+     * @param taskId The ID of the task to return.
+     * @see TaskLeaseTable#release(int)
+     */
+    public void releaseLease(int taskId) {
+      if (leases.release(taskId)) {
+        notifyTaskAvailable();
+      }
+    }
+
+    /**
+     * Returns tasks for this job whose leases have expired to the schedule.
+     * @param now The current time, in milliseconds.
+     * @see TaskLeaseTable#expire(long, long, int)
+     */
+    public void expireLeases(long now) {
+      if (leases.expire(now, taskLeaseMillis, maxTaskCopies)) {
+        notifyTaskAvailable();
+      }
+    }
+
+    /**
+     * Launches backup copies of straggling tasks for this job.  Whichever
+     * copy finishes first wins, and the remaining workers are told that the
+     * task is finished the next time they poll for finished tasks.
+     * @param now The current time, in milliseconds.
+     * @see TaskLeaseTable#speculate(long, int, boolean)
+     */
+    public void speculate(long now) {
+      if (leases.speculate(now, maxTaskCopies, stalled)) {
+        notifyTaskAvailable();
+      }
     }
 
     /**
@@ -850,8 +1879,50 @@ public final class JobServer implements JobService {
       stalled = (task == null);
       if (!stalled) {
         int taskId = generateTaskId();
-        TaskDescription desc = new TaskDescription(id, taskId, task);
-        scheduler.add(desc);
+        TaskDescription desc = new TaskDescription(id, taskId,
+            CompressedPayload.compress(task, taskSerializer, taskCodec,
+                compressionThreshold));
+        leases.schedule(desc);
+        notifyTaskAvailable();
+      }
+    }
+
+    /**
+     * Requests that a new task be generated for this job.  The task is
+     * generated asynchronously so that the caller (typically a worker
+     * requesting a task) is not held up by the job.  At most one thread
+     * generates tasks for a given job at any time.
+     */
+    public void requestRefill() {
+      if (pendingRefills.getAndIncrement() == 0) {
+        try {
+          executor.execute(refill);
+        } catch (RejectedExecutionException e) {
+          refill.run();
+        }
+      }
+    }
+
+    /**
+     * Generates tasks for this job until all pending refill requests have
+     * been satisfied.
+     * @see #requestRefill()
+     */
+    private void refillTasks() {
+      try {
+        ServerUtil.setHostService(this);
+        do {
+          if (jobs.get(id) != this) {
+            pendingRefills.set(0);
+            break;
+          }
+          scheduleNextTask();
+        } while (pendingRefills.decrementAndGet() > 0);
+      } catch (JobExecutionException e) {
+        pendingRefills.set(0);
+        handleJobExecutionException(e, id);
+      } finally {
+        ServerUtil.clearHostService();
       }
     }
 
@@ -1038,6 +2109,18 @@ public final class JobServer implements JobService {
     /** The serialized task results. */
     private final Serialized<Object> results;
 
+    /**
+     * The task results, if the task was performed in this JVM and the
+     * results were not serialized.
+     */
+    private final Object localResults;
+
+    /**
+     * The <code>ResultStream</code> holding the task results, if they were
+     * uploaded in chunks.
+     */
+    private final ResultStream stream;
+
     /** The <code>ProgressMonitor</code> to report job progress to. */
     private final ProgressMonitor monitor;
 
@@ -1056,9 +2139,78 @@ public final class JobServer implements JobService {
       this.sched = sched;
       this.task = task;
       this.results = results;
+      this.localResults = null;
+      this.stream = null;
+      this.monitor = monitor;
+    }
+
+    /**
+     * Creates a new <code>TaskResultSubmitter</code> for results of a task
+     * that was performed in this JVM.
+     * @param sched The <code>ScheduledJob</code> associated with the task
+     *     whose results are being submitted.
+     * @param task The <code>Object</code> describing the task whose
+     *     results are being submitted.
+     * @param results The task results.
+     * @param monitor The <code>ProgressMonitor</code> to report job
+     *     progress to.
+     */
+    public TaskResultSubmitter(ScheduledJob sched, Object task,
+        Object results, ProgressMonitor monitor) {
+      this.sched = sched;
+      this.task = task;
+      this.results = null;
+      this.localResults = results;
+      this.stream = null;
+      this.monitor = monitor;
+    }
+
+    /**
+     * Creates a new <code>TaskResultSubmitter</code> for results that were
+     * uploaded in chunks.
+     * @param sched The <code>ScheduledJob</code> associated with the task
+     *     whose results are being submitted.
+     * @param task The <code>Object</code> describing the task whose
+     *     results are being submitted.
+     * @param stream The <code>ResultStream</code> holding the task
+     *     results.  The stream is deleted once the results are submitted.
+     * @param monitor The <code>ProgressMonitor</code> to report job
+     *     progress to.
+     */
+    public TaskResultSubmitter(ScheduledJob sched, Object task,
+        ResultStream stream, ProgressMonitor monitor) {
+      this.sched = sched;
+      this.task = task;
+      this.results = null;
+      this.localResults = null;
+      this.stream = stream;
       this.monitor = monitor;
     }
 
+    /**
+     * Submits results that were uploaded in chunks to the job, reading
+     * them directly from the spool file.
+     * @param task The <code>Object</code> describing the task whose
+     *     results are being submitted.
+     * @throws Exception If the results cannot be read, or if the job
+     *     throws an exception.
+     */
+    private void submitStreamedResults(Object task) throws Exception {
+      ClassLoader cl = sched.classLoader;
+      InputStream in = stream.openInputStream();
+      try {
+        if (stream.isRaw()) {
+          sched.job.submitTaskResults(task, in, monitor);
+        } else {
+          Object obj = Serializers.readObject(in, cl);
+          sched.job.submitTaskResults(task,
+              CompressedPayload.decompress(obj, cl), monitor);
+        }
+      } finally {
+        in.close();
+      }
+    }
+
     /* (non-Javadoc)
      * @see java.lang.Runnable#run()
      */
@@ -1067,18 +2219,21 @@ public final class JobServer implements JobService {
       if (task != null) {
         try {
           ServerUtil.setHostService(sched);
-          sched.job.submitTaskResults(task,
-              results.deserialize(cl), monitor);
+          if (stream != null) {
+            submitStreamedResults(CompressedPayload.decompress(task, cl));
+          } else if (results == null) {
+            sched.job.submitTaskResults(CompressedPayload.decompress(task, cl),
+                localResults, monitor);
+          } else {
+            sched.job.submitTaskResults(CompressedPayload.decompress(task, cl),
+                CompressedPayload.decompress(results.deserialize(cl), cl), monitor);
+          }
 
           if (sched.job.isComplete()) {
             sched.finalizeJob();
             removeScheduledJob(sched.id, true);
-          } else {
-            synchronized (sched) {
-              if (sched.stalled) {
-                sched.scheduleNextTask();
-              }
-            }
+          } else if (sched.stalled) {
+            sched.requestRefill();
           }
         } catch (JobExecutionException e) {
           handleJobExecutionException(e, sched.id);
@@ -1094,6 +2249,9 @@ public final class JobServer implements JobService {
           removeScheduledJob(sched.id, false);
         } finally {
           ServerUtil.clearHostService();
+          if (stream != null) {
+            stream.delete();
+          }
         }
       }
     }
@@ -31,6 +31,7 @@ import java.security.AccessController;
 import java.security.PrivilegedActionException;
 import java.security.PrivilegedExceptionAction;
 import java.util.BitSet;
+import java.util.Map;
 import java.util.UUID;
 
 import javax.security.auth.Subject;
@@ -40,8 +41,10 @@ import ca.eandb.jdcp.job.JobExecutionException;
 import ca.eandb.jdcp.job.ParallelizableJob;
 import ca.eandb.jdcp.job.TaskDescription;
 import ca.eandb.jdcp.job.TaskWorker;
+import ca.eandb.jdcp.remote.ClassBundle;
 import ca.eandb.jdcp.remote.JobService;
 import ca.eandb.jdcp.remote.JobStatus;
+import ca.eandb.jdcp.remote.TaskEvent;
 import ca.eandb.jdcp.remote.TaskService;
 import ca.eandb.jdcp.security.JdcpPermission;
 import ca.eandb.util.UnexpectedException;
@@ -161,6 +164,116 @@ public final class JobServiceProxy extends UnicastRemoteObject implements JobSer
 
   }
 
+  /* (non-Javadoc)
+   * @see ca.eandb.jdcp.remote.TaskService#getClassBundle(java.util.UUID, java.util.Map)
+   */
+  public ClassBundle getClassBundle(final UUID jobId,
+      final Map<String, byte[]> digests) throws SecurityException,
+      RemoteException {
+
+    try {
+      return (ClassBundle) Subject.doAsPrivileged(user, new PrivilegedExceptionAction<ClassBundle>() {
+
+        public ClassBundle run() throws Exception {
+          AccessController.checkPermission(new JdcpPermission("getJobClassDefinition"));
+          return service.getClassBundle(jobId, digests);
+        }
+
+      }, null);
+    } catch (PrivilegedActionException e) {
+      if (e.getException() instanceof SecurityException) {
+        throw (SecurityException) e.getException();
+      } else if (e.getException() instanceof RemoteException) {
+        throw (RemoteException) e.getException();
+      } else {
+        throw new UnexpectedException(e);
+      }
+    }
+
+  }
+
+  /* (non-Javadoc)
+   * @see ca.eandb.jdcp.remote.TaskService#getClassManifest(java.util.UUID)
+   */
+  public String[] getClassManifest(final UUID jobId)
+      throws SecurityException, RemoteException {
+
+    try {
+      return (String[]) Subject.doAsPrivileged(user, new PrivilegedExceptionAction<String[]>() {
+
+        public String[] run() throws Exception {
+          AccessController.checkPermission(new JdcpPermission("getJobClassDefinition"));
+          return service.getClassManifest(jobId);
+        }
+
+      }, null);
+    } catch (PrivilegedActionException e) {
+      if (e.getException() instanceof SecurityException) {
+        throw (SecurityException) e.getException();
+      } else if (e.getException() instanceof RemoteException) {
+        throw (RemoteException) e.getException();
+      } else {
+        throw new UnexpectedException(e);
+      }
+    }
+
+  }
+
+  /* (non-Javadoc)
+   * @see ca.eandb.jdcp.remote.TaskService#reportClassManifest(java.util.UUID, java.lang.String[])
+   */
+  public void reportClassManifest(final UUID jobId, final String[] classNames)
+      throws SecurityException, RemoteException {
+
+    try {
+      Subject.doAsPrivileged(user, new PrivilegedExceptionAction<Object>() {
+
+        public Object run() throws Exception {
+          AccessController.checkPermission(new JdcpPermission("submitTaskResults"));
+          service.reportClassManifest(jobId, classNames);
+          return null;
+        }
+
+      }, null);
+    } catch (PrivilegedActionException e) {
+      if (e.getException() instanceof SecurityException) {
+        throw (SecurityException) e.getException();
+      } else if (e.getException() instanceof RemoteException) {
+        throw (RemoteException) e.getException();
+      } else {
+        throw new UnexpectedException(e);
+      }
+    }
+
+  }
+
+  /* (non-Javadoc)
+   * @see ca.eandb.jdcp.remote.TaskService#getClassDigests(java.lang.String[], java.util.UUID)
+   */
+  public byte[][] getClassDigests(final String[] names, final UUID jobId)
+      throws SecurityException, RemoteException {
+
+    try {
+      return (byte[][]) Subject.doAsPrivileged(user, new PrivilegedExceptionAction<byte[][]>() {
+
+        public byte[][] run() throws Exception {
+          AccessController.checkPermission(new JdcpPermission("getJobClassDigest"));
+          return service.getClassDigests(names, jobId);
+        }
+
+      }, null);
+    } catch (PrivilegedActionException e) {
+      if (e.getException() instanceof SecurityException) {
+        throw (SecurityException) e.getException();
+      } else if (e.getException() instanceof RemoteException) {
+        throw (RemoteException) e.getException();
+      } else {
+        throw new UnexpectedException(e);
+      }
+    }
+
+  }
+
   /* (non-Javadoc)
    * @see ca.eandb.jdcp.remote.JobService#getClassDigest(java.lang.String, java.util.UUID)
    */
@@ -188,6 +301,33 @@ public final class JobServiceProxy extends UnicastRemoteObject implements JobSer
 
   }
 
+  /* (non-Javadoc)
+   * @see ca.eandb.jdcp.remote.JobService#getClassDigests(java.lang.String[])
+   */
+  public byte[][] getClassDigests(final String[] names)
+      throws SecurityException, RemoteException {
+
+    try {
+      return (byte[][]) Subject.doAsPrivileged(user, new PrivilegedExceptionAction<byte[][]>() {
+
+        public byte[][] run() throws Exception {
+          AccessController.checkPermission(new JdcpPermission("getGlobalClassDigest"));
+          return service.getClassDigests(names);
+        }
+
+      }, null);
+    } catch (PrivilegedActionException e) {
+      if (e.getException() instanceof SecurityException) {
+        throw (SecurityException) e.getException();
+      } else if (e.getException() instanceof RemoteException) {
+        throw (RemoteException) e.getException();
+      } else {
+        throw new UnexpectedException(e);
+      }
+    }
+
+  }
+
   /* (non-Javadoc)
    * @see ca.eandb.jdcp.remote.JobService#getClassDigest(java.lang.String)
    */
@@ -271,6 +411,35 @@ public final class JobServiceProxy extends UnicastRemoteObject implements JobSer
 
   }
 
+  /* (non-Javadoc)
+   * @see ca.eandb.jdcp.remote.TaskService#requestTasks(int, long)
+   */
+  public TaskDescription[] requestTasks(final int maxTasks, final long waitMillis)
+      throws IllegalArgumentException, SecurityException, RemoteException {
+
+    try {
+      return (TaskDescription[]) Subject.doAsPrivileged(user, new PrivilegedExceptionAction<TaskDescription[]>() {
+
+        public TaskDescription[] run() throws Exception {
+          AccessController.checkPermission(new JdcpPermission("requestTask"));
+          return service.requestTasks(maxTasks, waitMillis);
+        }
+
+      }, null);
+    } catch (PrivilegedActionException e) {
+      if (e.getException() instanceof IllegalArgumentException) {
+        throw (IllegalArgumentException) e.getException();
+      } else if (e.getException() instanceof SecurityException) {
+        throw (SecurityException) e.getException();
+      } else if (e.getException() instanceof RemoteException) {
+        throw (RemoteException) e.getException();
+      } else {
+        throw new UnexpectedException(e);
+      }
+    }
+
+  }
+
   /* (non-Javadoc)
    * @see ca.eandb.jdcp.remote.JobService#setClassDefinition(java.lang.String, byte[])
    */
@@ -488,6 +657,181 @@ public final class JobServiceProxy extends UnicastRemoteObject implements JobSer
 
   }
 
+  /* (non-Javadoc)
+   * @see ca.eandb.jdcp.remote.TaskService#openResultStream(java.util.UUID, int, boolean)
+   */
+  public UUID openResultStream(final UUID jobId, final int taskId,
+      final boolean raw) throws SecurityException, RemoteException {
+
+    try {
+      return (UUID) Subject.doAsPrivileged(user, new PrivilegedExceptionAction<UUID>() {
+
+        public UUID run() throws Exception {
+          AccessController.checkPermission(new JdcpPermission("submitTaskResults"));
+          return service.openResultStream(jobId, taskId, raw);
+        }
+
+      }, null);
+    } catch (PrivilegedActionException e) {
+      if (e.getException() instanceof SecurityException) {
+        throw (SecurityException) e.getException();
+      } else if (e.getException() instanceof RemoteException) {
+        throw (RemoteException) e.getException();
+      } else {
+        throw new UnexpectedException(e);
+      }
+    }
+
+  }
+
+  /* (non-Javadoc)
+   * @see ca.eandb.jdcp.remote.TaskService#writeResultChunk(java.util.UUID, long, byte[])
+   */
+  public void writeResultChunk(final UUID streamId, final long offset,
+      final byte[] data) throws IllegalArgumentException, SecurityException,
+      RemoteException {
+
+    try {
+      Subject.doAsPrivileged(user, new PrivilegedExceptionAction<Object>() {
+
+        public Object run() throws Exception {
+          AccessController.checkPermission(new JdcpPermission("submitTaskResults"));
+          service.writeResultChunk(streamId, offset, data);
+          return null;
+        }
+
+      }, null);
+    } catch (PrivilegedActionException e) {
+      if (e.getException() instanceof IllegalArgumentException) {
+        throw (IllegalArgumentException) e.getException();
+      } else if (e.getException() instanceof SecurityException) {
+        throw (SecurityException) e.getException();
+      } else if (e.getException() instanceof RemoteException) {
+        throw (RemoteException) e.getException();
+      } else {
+        throw new UnexpectedException(e);
+      }
+    }
+
+  }
+
+  /* (non-Javadoc)
+   * @see ca.eandb.jdcp.remote.TaskService#commitResultStream(java.util.UUID, long)
+   */
+  public boolean commitResultStream(final UUID streamId, final long length)
+      throws IllegalArgumentException, SecurityException, RemoteException {
+
+    try {
+      return (Boolean) Subject.doAsPrivileged(user, new PrivilegedExceptionAction<Boolean>() {
+
+        public Boolean run() throws Exception {
+          AccessController.checkPermission(new JdcpPermission("submitTaskResults"));
+          return service.commitResultStream(streamId, length);
+        }
+
+      }, null);
+    } catch (PrivilegedActionException e) {
+      if (e.getException() instanceof IllegalArgumentException) {
+        throw (IllegalArgumentException) e.getException();
+      } else if (e.getException() instanceof SecurityException) {
+        throw (SecurityException) e.getException();
+      } else if (e.getException() instanceof RemoteException) {
+        throw (RemoteException) e.getException();
+      } else {
+        throw new UnexpectedException(e);
+      }
+    }
+
+  }
+
+  /* (non-Javadoc)
+   * @see ca.eandb.jdcp.remote.TaskService#releaseTasks(java.util.UUID[], int[])
+   */
+  public void releaseTasks(final UUID[] jobIds, final int[] taskIds)
+      throws IllegalArgumentException, SecurityException, RemoteException {
+
+    try {
+      Subject.doAsPrivileged(user, new PrivilegedExceptionAction<Object>() {
+
+        public Object run() throws Exception {
+          AccessController.checkPermission(new JdcpPermission("requestTask"));
+          service.releaseTasks(jobIds, taskIds);
+          return null;
+        }
+
+      }, null);
+    } catch (PrivilegedActionException e) {
+      if (e.getException() instanceof IllegalArgumentException) {
+        throw (IllegalArgumentException) e.getException();
+      } else if (e.getException() instanceof SecurityException) {
+        throw (SecurityException) e.getException();
+      } else if (e.getException() instanceof RemoteException) {
+        throw (RemoteException) e.getException();
+      } else {
+        throw new UnexpectedException(e);
+      }
+    }
+
+  }
+
+  /* (non-Javadoc)
+   * @see ca.eandb.jdcp.remote.TaskService#abortResultStream(java.util.UUID)
+   */
+  public void abortResultStream(final UUID streamId)
+      throws SecurityException, RemoteException {
+
+    try {
+      Subject.doAsPrivileged(user, new PrivilegedExceptionAction<Object>() {
+
+        public Object run() throws Exception {
+          AccessController.checkPermission(new JdcpPermission("submitTaskResults"));
+          service.abortResultStream(streamId);
+          return null;
+        }
+
+      }, null);
+    } catch (PrivilegedActionException e) {
+      if (e.getException() instanceof SecurityException) {
+        throw (SecurityException) e.getException();
+      } else if (e.getException() instanceof RemoteException) {
+        throw (RemoteException) e.getException();
+      } else {
+        throw new UnexpectedException(e);
+      }
+    }
+
+  }
+
+  /* (non-Javadoc)
+   * @see ca.eandb.jdcp.remote.TaskService#submitTaskResultsBatch(java.util.UUID[], int[], ca.eandb.util.rmi.Serialized[])
+   */
+  public BitSet submitTaskResultsBatch(final UUID[] jobIds, final int[] taskIds,
+      final Serialized<Object>[] results) throws IllegalArgumentException,
+      SecurityException, RemoteException {
+
+    try {
+      return (BitSet) Subject.doAsPrivileged(user, new PrivilegedExceptionAction<BitSet>() {
+
+        public BitSet run() throws Exception {
+          AccessController.checkPermission(new JdcpPermission("submitTaskResults"));
+          return service.submitTaskResultsBatch(jobIds, taskIds, results);
+        }
+
+      }, null);
+    } catch (PrivilegedActionException e) {
+      if (e.getException() instanceof IllegalArgumentException) {
+        throw (IllegalArgumentException) e.getException();
+      } else if (e.getException() instanceof SecurityException) {
+        throw (SecurityException) e.getException();
+      } else if (e.getException() instanceof RemoteException) {
+        throw (RemoteException) e.getException();
+      } else {
+        throw new UnexpectedException(e);
+      }
+    }
+
+  }
+
   /* (non-Javadoc)
    * @see ca.eandb.jdcp.remote.JobService#reportException(java.util.UUID, int, java.lang.Exception)
    */
@@ -546,6 +890,33 @@ public final class JobServiceProxy extends UnicastRemoteObject implements JobSer
 
   }
 
+  /* (non-Javadoc)
+   * @see ca.eandb.jdcp.remote.TaskService#waitForTaskEvents(long, long)
+   */
+  public TaskEvent[] waitForTaskEvents(final long lastEventId,
+      final long timeoutMillis) throws SecurityException, RemoteException {
+
+    try {
+      return (TaskEvent[]) Subject.doAsPrivileged(user, new PrivilegedExceptionAction<TaskEvent[]>() {
+
+        public TaskEvent[] run() throws Exception {
+          AccessController.checkPermission(new JdcpPermission("getFinishedTasks"));
+          return service.waitForTaskEvents(lastEventId, timeoutMillis);
+        }
+
+      }, null);
+    } catch (PrivilegedActionException e) {
+      if (e.getException() instanceof SecurityException) {
+        throw (SecurityException) e.getException();
+      } else if (e.getException() instanceof RemoteException) {
+        throw (RemoteException) e.getException();
+      } else {
+        throw new UnexpectedException(e);
+      }
+    }
+
+  }
+
   /* (non-Javadoc)
    * @see ca.eandb.jdcp.remote.JobService#registerTaskService(java.lang.String, ca.eandb.jdcp.remote.TaskService)
    */
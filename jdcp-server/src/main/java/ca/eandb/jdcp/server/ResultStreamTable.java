@@ -0,0 +1,365 @@
+/*
+ * Copyright (c) 2026 Bradley W. Kimmel
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package ca.eandb.jdcp.server;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Keeps track of task results that are being uploaded in chunks.  The
+ * chunks are spooled to temporary files as they arrive, so that large
+ * results need never be held in memory all at once.
+ * @author Brad Kimmel
+ * @see ca.eandb.jdcp.remote.TaskService#openResultStream(UUID, int, boolean)
+ */
+/* package */ final class ResultStreamTable {
+
+  /** The <code>Logger</code> for this class. */
+  private static final Logger logger = Logger.getLogger(ResultStreamTable.class);
+
+  /**
+   * The amount of time (in milliseconds) after which a stream that has not
+   * been written to is discarded.
+   */
+  static final long STREAM_TIMEOUT_MILLIS = 10 * 60 * 1000;
+
+  /** The prefix of the names of the files to spool results to. */
+  private static final String SPOOL_PREFIX = "jdcp-result-";
+
+  /** The suffix of the names of the files to spool results to. */
+  private static final String SPOOL_SUFFIX = ".part";
+
+  /**
+   * The directory in which to create spool files, or <code>null</code> to
+   * use the system default temporary directory.
+   */
+  private final File directory;
+
+  /** The open streams, keyed by stream ID. */
+  private final Map<UUID, ResultStream> streams = new ConcurrentHashMap<UUID, ResultStream>();
+
+  /**
+   * The results of a task that are being (or have been) uploaded.
+   * @author Brad Kimmel
+   */
+  public static final class ResultStream {
+
+    /** The <code>UUID</code> of the job for which the task was performed. */
+    private final UUID jobId;
+
+    /** The ID of the task that was performed. */
+    private final int taskId;
+
+    /**
+     * A value indicating whether the stream holds the bytes written by a
+     * <code>StreamableResult</code>, rather than a serialized object.
+     */
+    private final boolean raw;
+
+    /** The file to which the stream is spooled. */
+    private final File file;
+
+    /** The <code>OutputStream</code> for writing to {@link #file}. */
+    private OutputStream out;
+
+    /** The number of bytes written so far. */
+    private long length = 0;
+
+    /** The time (in milliseconds) at which the stream was last written. */
+    private long lastAccess = System.currentTimeMillis();
+
+    /**
+     * Creates a new <code>ResultStream</code>.
+     * @param jobId The <code>UUID</code> of the job for which the task was
+     *     performed.
+     * @param taskId The ID of the task that was performed.
+     * @param raw A value indicating whether the stream holds the bytes
+     *     written by a <code>StreamableResult</code>.
+     * @param file The file to spool the stream to.
+     * @throws IOException If the file cannot be opened.
+     */
+    private ResultStream(UUID jobId, int taskId, boolean raw, File file)
+        throws IOException {
+      this.jobId = jobId;
+      this.taskId = taskId;
+      this.raw = raw;
+      this.file = file;
+      this.out = new FileOutputStream(file);
+    }
+
+    /**
+     * Gets the <code>UUID</code> of the job for which the task was
+     * performed.
+     * @return The <code>UUID</code> of the job.
+     */
+    public UUID getJobId() {
+      return jobId;
+    }
+
+    /**
+     * Gets the ID of the task that was performed.
+     * @return The ID of the task.
+     */
+    public int getTaskId() {
+      return taskId;
+    }
+
+    /**
+     * Determines whether the stream holds the bytes written by a
+     * <code>StreamableResult</code>, rather than a serialized object.
+     * @return A value indicating whether the stream is raw.
+     */
+    public boolean isRaw() {
+      return raw;
+    }
+
+    /**
+     * Opens the spooled results for reading.
+     * @return An <code>InputStream</code> for reading the results.
+     * @throws IOException If the spool file cannot be opened.
+     */
+    public InputStream openInputStream() throws IOException {
+      return new BufferedInputStream(new FileInputStream(file));
+    }
+
+    /** Closes and deletes the spool file. */
+    public synchronized void delete() {
+      close();
+      if (!file.delete() && file.exists()) {
+        logger.warn("Could not delete " + file);
+      }
+    }
+
+    /**
+     * Appends a chunk to the stream.
+     * @param offset The position in the stream of the first byte of
+     *     <code>data</code>.
+     * @param data The chunk to append.
+     * @throws IllegalArgumentException If <code>offset</code> is past the
+     *     end of the data written so far.
+     * @throws IOException If the chunk cannot be written.
+     */
+    private synchronized void write(long offset, byte[] data)
+        throws IOException {
+      if (out == null) {
+        throw new IllegalArgumentException("Result stream is closed");
+      }
+      if (offset > length) {
+        throw new IllegalArgumentException("Missing data in result stream");
+      }
+      lastAccess = System.currentTimeMillis();
+      long end = offset + data.length;
+      if (end > length) {
+        int skip = (int) (length - offset);
+        out.write(data, skip, data.length - skip);
+        length = end;
+      }
+    }
+
+    /**
+     * Closes the spool file.
+     * @return The number of bytes written to the stream.
+     */
+    private synchronized long close() {
+      if (out != null) {
+        try {
+          out.close();
+        } catch (IOException e) {
+          logger.warn("Could not close " + file, e);
+        }
+        out = null;
+      }
+      return length;
+    }
+
+  }
+
+  /**
+   * Creates a new <code>ResultStreamTable</code> that spools results to the
+   * system default temporary directory.
+   */
+  public ResultStreamTable() {
+    this(null);
+  }
+
+  /**
+   * Creates a new <code>ResultStreamTable</code>.
+   * @param directory The directory in which to spool results, or
+   *     <code>null</code> to use the system default temporary directory.
+   */
+  public ResultStreamTable(File directory) {
+    this.directory = directory;
+  }
+
+  /**
+   * Opens a new result stream.
+   * @param jobId The <code>UUID</code> of the job for which the task was
+   *     performed.
+   * @param taskId The ID of the task that was performed.
+   * @param raw A value indicating whether the stream holds the bytes
+   *     written by a <code>StreamableResult</code>.
+   * @return The <code>UUID</code> identifying the new stream.
+   * @throws IOException If a spool file cannot be created.
+   */
+  public UUID open(UUID jobId, int taskId, boolean raw) throws IOException {
+    if (directory != null) {
+      directory.mkdirs();
+    }
+    File file = File.createTempFile(SPOOL_PREFIX, SPOOL_SUFFIX, directory);
+    UUID streamId = UUID.randomUUID();
+    streams.put(streamId, new ResultStream(jobId, taskId, raw, file));
+    return streamId;
+  }
+
+  /**
+   * Determines whether there is an open stream with the specified ID.
+   * @param streamId The <code>UUID</code> identifying the stream.
+   * @return A value indicating whether the stream is open.
+   */
+  public boolean contains(UUID streamId) {
+    return streams.containsKey(streamId);
+  }
+
+  /**
+   * Appends a chunk to a stream.  If the chunk cannot be written, the
+   * stream is discarded.
+   * @param streamId The <code>UUID</code> identifying the stream.
+   * @param offset The position in the stream of the first byte of
+   *     <code>data</code>.
+   * @param data The chunk to append.
+   * @throws IllegalArgumentException If there is no open stream with the
+   *     specified ID, or if <code>offset</code> is past the end of the data
+   *     written so far.
+   * @throws IOException If the chunk cannot be written.
+   */
+  public void write(UUID streamId, long offset, byte[] data)
+      throws IOException {
+    ResultStream stream = get(streamId);
+    try {
+      stream.write(offset, data);
+    } catch (IOException e) {
+      abort(streamId);
+      throw e;
+    }
+  }
+
+  /**
+   * Closes a stream so that its contents may be read.  The stream is no
+   * longer considered open, and the caller is responsible for calling
+   * {@link ResultStream#delete()} when done with it.
+   * @param streamId The <code>UUID</code> identifying the stream.
+   * @param length The number of bytes that the caller has written to the
+   *     stream.
+   * @return The closed <code>ResultStream</code>.
+   * @throws IllegalArgumentException If there is no open stream with the
+   *     specified ID, or if <code>length</code> does not match the number
+   *     of bytes received.  In the latter case, the stream is discarded.
+   */
+  public ResultStream commit(UUID streamId, long length) {
+    ResultStream stream = streams.remove(streamId);
+    if (stream == null) {
+      throw new IllegalArgumentException("No such result stream");
+    }
+    if (stream.close() != length) {
+      stream.delete();
+      throw new IllegalArgumentException("Result stream is incomplete");
+    }
+    return stream;
+  }
+
+  /**
+   * Discards a stream.  This method does nothing if there is no open
+   * stream with the specified ID.
+   * @param streamId The <code>UUID</code> identifying the stream.
+   */
+  public void abort(UUID streamId) {
+    ResultStream stream = streams.remove(streamId);
+    if (stream != null) {
+      stream.delete();
+    }
+  }
+
+  /**
+   * Discards all open streams for a job.
+   * @param jobId The <code>UUID</code> identifying the job.
+   */
+  public void abortJob(UUID jobId) {
+    Iterator<ResultStream> i = streams.values().iterator();
+    while (i.hasNext()) {
+      ResultStream stream = i.next();
+      if (stream.getJobId().equals(jobId)) {
+        i.remove();
+        stream.delete();
+      }
+    }
+  }
+
+  /**
+   * Discards streams that have not been written to recently.
+   * @param now The current time (in milliseconds).
+   */
+  public void expire(long now) {
+    Iterator<ResultStream> i = streams.values().iterator();
+    while (i.hasNext()) {
+      ResultStream stream = i.next();
+      synchronized (stream) {
+        if (now - stream.lastAccess < STREAM_TIMEOUT_MILLIS) {
+          continue;
+        }
+      }
+      i.remove();
+      logger.warn("Discarding abandoned results for task " + stream.getTaskId()
+          + " of job " + stream.getJobId());
+      stream.delete();
+    }
+  }
+
+  /**
+   * Gets an open stream.
+   * @param streamId The <code>UUID</code> identifying the stream.
+   * @return The <code>ResultStream</code>.
+   * @throws IllegalArgumentException If there is no open stream with the
+   *     specified ID.
+   */
+  private ResultStream get(UUID streamId) {
+    ResultStream stream = streams.get(streamId);
+    if (stream == null) {
+      throw new IllegalArgumentException("No such result stream");
+    }
+    return stream;
+  }
+
+}
@@ -30,11 +30,12 @@ import java.util.ArrayList;
 import java.util.BitSet;
 import java.util.Calendar;
 import java.util.Date;
-import java.util.HashMap;
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.Map;
 import java.util.Queue;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executor;
 
 import javax.sql.DataSource;
@@ -43,8 +44,11 @@ import org.apache.log4j.Logger;
 
 import ca.eandb.jdcp.job.TaskDescription;
 import ca.eandb.jdcp.job.TaskWorker;
+import ca.eandb.jdcp.remote.ClassBundle;
+import ca.eandb.jdcp.remote.TaskEvent;
 import ca.eandb.jdcp.remote.TaskService;
 import ca.eandb.util.UnexpectedException;
+import ca.eandb.util.concurrent.BackgroundThreadFactory;
 import ca.eandb.util.rmi.Serialized;
 
 /**
@@ -55,13 +59,42 @@ final class ServiceInfo {
 
   private static final Logger logger = Logger.getLogger(ServiceInfo.class);
 
+  /**
+   * The maximum amount of time (in milliseconds) to wait for task events
+   * from the remote service in a single call.
+   */
+  private static final long TASK_EVENT_TIMEOUT_MILLIS = 60000;
+
+  /**
+   * The amount of time (in milliseconds) to wait before listening for task
+   * events again after a failure.
+   */
+  private static final long TASK_EVENT_RETRY_MILLIS = 10000;
+
   private final Executor executor;
   private final ServiceWrapper service;
-  private final Map<UUID, JobInfo> jobs = new HashMap<UUID, JobInfo>();
+  private final Map<UUID, JobInfo> jobs = new ConcurrentHashMap<UUID, JobInfo>();
   private boolean lastPollOk = true;
   private final DataSource dataSource;
   private final Queue<TaskDescription> pendingTasks = new LinkedList<TaskDescription>();
 
+  /**
+   * The tasks for which results are being streamed to the remote service,
+   * keyed by the <code>UUID</code> of the result stream.
+   */
+  private final Map<UUID, StreamTarget> resultStreams = new ConcurrentHashMap<UUID, StreamTarget>();
+
+  /**
+   * The <code>TaskEventLog</code> to which to relay the events for tasks
+   * obtained from the remote service.
+   */
+  private final TaskEventLog taskEvents;
+
+  /** The <code>Thread</code> listening for task events. */
+  private final Thread eventListener;
+
+  private volatile boolean shutdown = false;
+
   private final Runnable getNextTask = new Runnable() {
     public void run() {
       TaskDescription task = null;
@@ -91,19 +124,99 @@ final class ServiceInfo {
 
   private Date idleUntil = new Date(0);
 
-  public ServiceInfo(TaskService service, DataSource dataSource, Executor executor) {
+  public ServiceInfo(TaskService service, DataSource dataSource, Executor executor, TaskEventLog taskEvents) {
     this.service = new ServiceWrapper(service);
     this.dataSource = dataSource;
     this.executor = executor;
+    this.taskEvents = taskEvents;
+    this.eventListener = startEventListener();
   }
 
   public static void prepareDataSource(DataSource ds) throws SQLException {
     JobInfo.prepareDataSource(ds);
   }
   public void shutdown() {
+    shutdown = true;
+    eventListener.interrupt();
     service.shutdown();
   }
 
+  private Thread startEventListener() {
+    Thread thread = new BackgroundThreadFactory().newThread(new Runnable() {
+      public void run() {
+        listenForTaskEvents();
+      }
+    });
+    thread.start();
+    return thread;
+  }
+
+  /**
+   * Waits for tasks and jobs obtained from the remote service to finish,
+   * and relays the corresponding events to {@link #taskEvents} so that
+   * they reach the workers processing them.
+   */
+  private void listenForTaskEvents() {
+    long lastEventId = Long.MIN_VALUE;
+    boolean lastListenOk = true;
+    while (!shutdown) {
+      try {
+        TaskEvent[] events = service.waitForTaskEvents(lastEventId, TASK_EVENT_TIMEOUT_MILLIS);
+        for (TaskEvent event : events) {
+          lastEventId = event.getEventId();
+          if (event.isReset()) {
+            pollActiveTasks();
+          } else if (event.isJobFinished()) {
+            finishJob(event.getJobId());
+          } else {
+            finishTask(event.getJobId(), event.getTaskId());
+          }
+        }
+        lastListenOk = true;
+      } catch (Exception e) {
+        if (shutdown) {
+          break;
+        }
+        if (lastListenOk) {
+          logger.error("Could not listen for task events", e);
+          lastListenOk = false;
+        }
+        try {
+          Thread.sleep(TASK_EVENT_RETRY_MILLIS);
+        } catch (InterruptedException ie) {
+          /* nothing to do. */
+        }
+      }
+    }
+  }
+
+  /**
+   * Records that a task obtained from the remote service is finished.
+   * @param jobId The <code>UUID</code> of the job.
+   * @param taskId The ID of the task.
+   */
+  private void finishTask(UUID jobId, int taskId) {
+    JobInfo job = jobs.get(jobId);
+    if (job != null && !job.isTaskComplete(taskId)) {
+      job.removeTask(taskId);
+      taskEvents.post(jobId, taskId);
+    }
+  }
+
+  /**
+   * Records that a job hosted by the remote service is finished.
+   * @param jobId The <code>UUID</code> of the job.
+   */
+  private void finishJob(UUID jobId) {
+    JobInfo job;
+    synchronized (this) {
+      job = jobs.remove(jobId);
+    }
+    if (job != null) {
+      taskEvents.post(jobId, 0);
+    }
+  }
+
   public void pollActiveTasks() {
     ArrayList<UUID> jobIdList = new ArrayList<UUID>();
     ArrayList<Integer> taskIdList = new ArrayList<Integer>();
@@ -127,12 +240,9 @@ final class ServiceInfo {
         BitSet finished = service.getFinishedTasks(jobIds, taskIds);
         for (int i = finished.nextSetBit(0); i >= 0; i = finished.nextSetBit(i + 1)) {
           if (taskIds[i] != 0) {
-            JobInfo job = jobs.get(jobIds[i]);
-            if (job != null) {
-              job.removeTask(taskIds[i]);
-            }
+            finishTask(jobIds[i], taskIds[i]);
           } else {
-            jobs.remove(jobIds[i]);
+            finishJob(jobIds[i]);
             jobRemoved = true;
           }
         }
@@ -181,6 +291,26 @@ final class ServiceInfo {
     return job.getClassDefinition(name);
   }
 
+  public ClassBundle getClassBundle(UUID jobId, Map<String, byte[]> digests) {
+    JobInfo job = getJobInfo(jobId);
+    return job.getClassBundle(digests);
+  }
+
+  public String[] getClassManifest(UUID jobId) {
+    JobInfo job = getJobInfo(jobId);
+    return job.getClassManifest();
+  }
+
+  public void reportClassManifest(UUID jobId, String[] classNames) {
+    JobInfo job = getJobInfo(jobId);
+    job.reportClassManifest(classNames);
+  }
+
+  public byte[][] getClassDigests(String[] names, UUID jobId) {
+    JobInfo job = getJobInfo(jobId);
+    return job.getClassDigests(names);
+  }
+
   public byte[] getClassDigest(String name, UUID jobId) {
     JobInfo job = getJobInfo(jobId);
     return job.getClassDigest(name);
@@ -215,4 +345,131 @@ final class ServiceInfo {
     job.submitTaskResults(taskId, results);
   }
 
+  public UUID openResultStream(UUID jobId, int taskId, boolean raw) {
+    expireResultStreams(System.currentTimeMillis());
+    UUID streamId = service.openResultStream(jobId, taskId, raw);
+    if (streamId != null) {
+      resultStreams.put(streamId, new StreamTarget(jobId, taskId));
+    }
+    return streamId;
+  }
+
+  /**
+   * Forgets the routes of result streams that have not been written to
+   * recently.  The remote service discards such streams after the same
+   * amount of time.
+   * @param now The current time (in milliseconds).
+   * @see ResultStreamTable#STREAM_TIMEOUT_MILLIS
+   */
+  private void expireResultStreams(long now) {
+    Iterator<StreamTarget> i = resultStreams.values().iterator();
+    while (i.hasNext()) {
+      if (now - i.next().lastAccess >= ResultStreamTable.STREAM_TIMEOUT_MILLIS) {
+        i.remove();
+      }
+    }
+  }
+
+  public boolean hasResultStream(UUID streamId) {
+    return resultStreams.containsKey(streamId);
+  }
+
+  public void writeResultChunk(UUID streamId, long offset, byte[] data) {
+    StreamTarget target = resultStreams.get(streamId);
+    if (target != null) {
+      target.lastAccess = System.currentTimeMillis();
+    }
+    service.writeResultChunk(streamId, offset, data);
+  }
+
+  public boolean commitResultStream(UUID streamId, long length) {
+    /* Keep the route until the remote service has responded, so that the
+     * commit may be retried if it fails.
+     */
+    boolean accepted = service.commitResultStream(streamId, length);
+    StreamTarget target = resultStreams.remove(streamId);
+    if (target != null) {
+      JobInfo job = jobs.get(target.jobId);
+      if (job != null) {
+        job.removeTask(target.taskId);
+      }
+    }
+    return accepted;
+  }
+
+  public void abortResultStream(UUID streamId) {
+    resultStreams.remove(streamId);
+    service.abortResultStream(streamId);
+  }
+
+  /**
+   * Returns tasks obtained from the remote service that will not be
+   * performed, so that the remote service may hand them out again.
+   * @param jobIds The <code>UUID</code>s of the jobs for which the tasks
+   *     were obtained.
+   * @param taskIds The IDs of the tasks to return.
+   */
+  public void releaseTasks(UUID[] jobIds, int[] taskIds) {
+    for (int i = 0; i < jobIds.length; i++) {
+      JobInfo job = jobs.get(jobIds[i]);
+      if (job != null) {
+        job.removeTask(taskIds[i]);
+      }
+    }
+    service.releaseTasks(jobIds, taskIds);
+  }
+
+  /**
+   * Submits a batch of task results to the remote service.  Only the tasks
+   * whose results the remote service accepts are removed.
+   * @param jobIds The <code>UUID</code>s of the jobs for which the tasks
+   *     were performed.
+   * @param taskIds The IDs of the tasks that were performed.
+   * @param results The results of the tasks.
+   * @return A <code>BitSet</code> indicating which results the remote
+   *     service accepted.
+   */
+  public BitSet submitTaskResultsBatch(UUID[] jobIds, int[] taskIds,
+      Serialized<Object>[] results) {
+    BitSet accepted = service.submitTaskResultsBatch(jobIds, taskIds, results);
+    if (accepted == null) {
+      return new BitSet(0);
+    }
+    for (int i = accepted.nextSetBit(0); i >= 0 && i < jobIds.length; i = accepted.nextSetBit(i + 1)) {
+      JobInfo job = jobs.get(jobIds[i]);
+      if (job != null) {
+        job.removeTask(taskIds[i]);
+      }
+    }
+    return accepted;
+  }
+
+  /**
+   * Identifies the task for which results are being streamed.
+   * @author Brad Kimmel
+   */
+  private static final class StreamTarget {
+
+    /** The <code>UUID</code> of the job for which the task was performed. */
+    public final UUID jobId;
+
+    /** The ID of the task that was performed. */
+    public final int taskId;
+
+    /** The time (in milliseconds) at which the stream was last written to. */
+    public volatile long lastAccess = System.currentTimeMillis();
+
+    /**
+     * Creates a new <code>StreamTarget</code>.
+     * @param jobId The <code>UUID</code> of the job for which the task was
+     *     performed.
+     * @param taskId The ID of the task that was performed.
+     */
+    public StreamTarget(UUID jobId, int taskId) {
+      this.jobId = jobId;
+      this.taskId = taskId;
+    }
+
+  }
+
 }
@@ -34,13 +34,16 @@ import java.rmi.UnknownHostException;
 import java.rmi.UnmarshalException;
 import java.util.BitSet;
 import java.util.Date;
+import java.util.Map;
 import java.util.UUID;
 
 import org.apache.log4j.Logger;
 
 import ca.eandb.jdcp.job.TaskDescription;
 import ca.eandb.jdcp.job.TaskWorker;
+import ca.eandb.jdcp.remote.ClassBundle;
 import ca.eandb.jdcp.remote.DelegationException;
+import ca.eandb.jdcp.remote.TaskEvent;
 import ca.eandb.jdcp.remote.TaskService;
 import ca.eandb.util.rmi.Serialized;
 
@@ -110,6 +113,59 @@ final class ServiceWrapper implements TaskService {
     });
   }
 
+  /* (non-Javadoc)
+   * @see ca.eandb.jdcp.remote.TaskService#getClassBundle(java.util.UUID, java.util.Map)
+   */
+  public ClassBundle getClassBundle(final UUID jobId,
+      final Map<String, byte[]> digests) throws DelegationException {
+    return run(new ServiceOperation<ClassBundle>() {
+      public ClassBundle run(TaskService service) throws RemoteException,
+          SecurityException {
+        return service.getClassBundle(jobId, digests);
+      }
+    });
+  }
+
+  /* (non-Javadoc)
+   * @see ca.eandb.jdcp.remote.TaskService#getClassManifest(java.util.UUID)
+   */
+  public String[] getClassManifest(final UUID jobId)
+      throws DelegationException {
+    return run(new ServiceOperation<String[]>() {
+      public String[] run(TaskService service) throws RemoteException,
+          SecurityException {
+        return service.getClassManifest(jobId);
+      }
+    });
+  }
+
+  /* (non-Javadoc)
+   * @see ca.eandb.jdcp.remote.TaskService#reportClassManifest(java.util.UUID, java.lang.String[])
+   */
+  public void reportClassManifest(final UUID jobId, final String[] classNames)
+      throws DelegationException {
+    run(new ServiceOperation<Object>() {
+      public Object run(TaskService service) throws RemoteException,
+          SecurityException {
+        service.reportClassManifest(jobId, classNames);
+        return null;
+      }
+    });
+  }
+
+  /* (non-Javadoc)
+   * @see ca.eandb.jdcp.remote.TaskService#getClassDigests(java.lang.String[], java.util.UUID)
+   */
+  public byte[][] getClassDigests(final String[] names, final UUID jobId)
+      throws DelegationException {
+    return run(new ServiceOperation<byte[][]>() {
+      public byte[][] run(TaskService service) throws RemoteException,
+          SecurityException {
+        return service.getClassDigests(names, jobId);
+      }
+    });
+  }
+
   /* (non-Javadoc)
    * @see ca.eandb.jdcp.remote.TaskService#getClassDigest(java.lang.String, java.util.UUID)
    */
@@ -136,6 +192,19 @@ final class ServiceWrapper implements TaskService {
     });
   }
 
+  /* (non-Javadoc)
+   * @see ca.eandb.jdcp.remote.TaskService#waitForTaskEvents(long, long)
+   */
+  public TaskEvent[] waitForTaskEvents(final long lastEventId,
+      final long timeoutMillis) throws DelegationException {
+    return run(new ServiceOperation<TaskEvent[]>() {
+      public TaskEvent[] run(TaskService service) throws RemoteException,
+          SecurityException {
+        return service.waitForTaskEvents(lastEventId, timeoutMillis);
+      }
+    });
+  }
+
   /* (non-Javadoc)
    * @see ca.eandb.jdcp.remote.TaskService#getTaskWorker(java.util.UUID)
    */
@@ -175,6 +244,101 @@ final class ServiceWrapper implements TaskService {
     });
   }
 
+  /* (non-Javadoc)
+   * @see ca.eandb.jdcp.remote.TaskService#requestTasks(int, long)
+   */
+  public TaskDescription[] requestTasks(final int maxTasks, final long waitMillis)
+      throws DelegationException {
+    return run(new ServiceOperation<TaskDescription[]>() {
+      public TaskDescription[] run(TaskService service) throws RemoteException,
+          SecurityException {
+        return service.requestTasks(maxTasks, waitMillis);
+      }
+    });
+  }
+
+  /* (non-Javadoc)
+   * @see ca.eandb.jdcp.remote.TaskService#openResultStream(java.util.UUID, int, boolean)
+   */
+  public UUID openResultStream(final UUID jobId, final int taskId,
+      final boolean raw) throws DelegationException {
+    return run(new ServiceOperation<UUID>() {
+      public UUID run(TaskService service) throws RemoteException,
+          SecurityException {
+        return service.openResultStream(jobId, taskId, raw);
+      }
+    });
+  }
+
+  /* (non-Javadoc)
+   * @see ca.eandb.jdcp.remote.TaskService#writeResultChunk(java.util.UUID, long, byte[])
+   */
+  public void writeResultChunk(final UUID streamId, final long offset,
+      final byte[] data) throws DelegationException {
+    run(new ServiceOperation<Object>() {
+      public Object run(TaskService service) throws RemoteException,
+          SecurityException {
+        service.writeResultChunk(streamId, offset, data);
+        return null;
+      }
+    });
+  }
+
+  /* (non-Javadoc)
+   * @see ca.eandb.jdcp.remote.TaskService#commitResultStream(java.util.UUID, long)
+   */
+  public boolean commitResultStream(final UUID streamId, final long length)
+      throws DelegationException {
+    Boolean accepted = run(new ServiceOperation<Boolean>() {
+      public Boolean run(TaskService service) throws RemoteException,
+          SecurityException {
+        return service.commitResultStream(streamId, length);
+      }
+    });
+    return accepted != null && accepted;
+  }
+
+  /* (non-Javadoc)
+   * @see ca.eandb.jdcp.remote.TaskService#releaseTasks(java.util.UUID[], int[])
+   */
+  public void releaseTasks(final UUID[] jobIds, final int[] taskIds)
+      throws DelegationException {
+    run(new ServiceOperation<Object>() {
+      public Object run(TaskService service) throws RemoteException,
+          SecurityException {
+        service.releaseTasks(jobIds, taskIds);
+        return null;
+      }
+    });
+  }
+
+  /* (non-Javadoc)
+   * @see ca.eandb.jdcp.remote.TaskService#abortResultStream(java.util.UUID)
+   */
+  public void abortResultStream(final UUID streamId)
+      throws DelegationException {
+    run(new ServiceOperation<Object>() {
+      public Object run(TaskService service) throws RemoteException,
+          SecurityException {
+        service.abortResultStream(streamId);
+        return null;
+      }
+    });
+  }
+
+  /* (non-Javadoc)
+   * @see ca.eandb.jdcp.remote.TaskService#submitTaskResultsBatch(java.util.UUID[], int[], ca.eandb.util.rmi.Serialized[])
+   */
+  public BitSet submitTaskResultsBatch(final UUID[] jobIds, final int[] taskIds,
+      final Serialized<Object>[] results) throws DelegationException {
+    return run(new ServiceOperation<BitSet>() {
+      public BitSet run(TaskService service) throws RemoteException,
+          SecurityException {
+        return service.submitTaskResultsBatch(jobIds, taskIds, results);
+      }
+    });
+  }
+
   /* (non-Javadoc)
    * @see ca.eandb.jdcp.remote.TaskService#submitTaskResults(java.util.UUID, int, ca.eandb.util.rmi.Serialized)
    */
@@ -0,0 +1,99 @@
+/*
+ * Copyright (c) 2026 Bradley W. Kimmel
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package ca.eandb.jdcp.server;
+
+import java.util.BitSet;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A growable bitmap indexed by task ID, used to record which tasks for a
+ * job have been completed.  Task IDs are assigned sequentially, so the
+ * bitmap is dense.  Reads do not lock and touch a single word.  Writes are
+ * serialized, but are infrequent (once per completed task).
+ * @author Brad Kimmel
+ */
+/* package */ final class TaskBitmap {
+
+  /** The base two logarithm of the number of bits in a word. */
+  private static final int ADDRESS_BITS_PER_WORD = 6;
+
+  /** The words holding the bits.  Replaced (under lock) when growing. */
+  private volatile AtomicLongArray words = new AtomicLongArray(1);
+
+  /**
+   * Gets the specified bit.
+   * @param index The index of the bit to get.
+   * @return The value of the specified bit, or <code>false</code> if
+   *     <code>index</code> is negative or beyond the end of the bitmap.
+   */
+  public boolean get(int index) {
+    if (index < 0) {
+      return false;
+    }
+    AtomicLongArray w = words;
+    int word = index >>> ADDRESS_BITS_PER_WORD;
+    return word < w.length() && (w.get(word) & (1L << index)) != 0;
+  }
+
+  /**
+   * Sets the specified bit, growing the bitmap if necessary.
+   * @param index The index of the bit to set.
+   * @return A value indicating if the bit was previously clear.
+   * @throws IndexOutOfBoundsException If <code>index</code> is negative.
+   */
+  public synchronized boolean set(int index) {
+    if (index < 0) {
+      throw new IndexOutOfBoundsException("index < 0: " + index);
+    }
+    int word = index >>> ADDRESS_BITS_PER_WORD;
+    AtomicLongArray w = words;
+    if (word >= w.length()) {
+      AtomicLongArray grown = new AtomicLongArray(Math.max(word + 1, 2 * w.length()));
+      for (int i = 0, n = w.length(); i < n; i++) {
+        grown.set(i, w.get(i));
+      }
+      words = w = grown;
+    }
+    long mask = 1L << index;
+    long bits = w.get(word);
+    w.set(word, bits | mask);
+    return (bits & mask) == 0;
+  }
+
+  /**
+   * Takes a snapshot of this bitmap.
+   * @return A <code>BitSet</code> having the same bits set as this bitmap.
+   */
+  public BitSet toBitSet() {
+    AtomicLongArray w = words;
+    long[] bits = new long[w.length()];
+    for (int i = 0; i < bits.length; i++) {
+      bits[i] = w.get(i);
+    }
+    return BitSet.valueOf(bits);
+  }
+
+}
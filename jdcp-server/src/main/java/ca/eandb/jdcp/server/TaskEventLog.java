@@ -0,0 +1,150 @@
+/*
+ * Copyright (c) 2026 Bradley W. Kimmel
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package ca.eandb.jdcp.server;
+
+import java.util.Random;
+import java.util.UUID;
+
+import ca.eandb.jdcp.remote.TaskEvent;
+
+/**
+ * A bounded log of <code>TaskEvent</code>s, supporting callers that wait
+ * for new events to be posted.  Only the most recent events are retained.
+ * Callers that have fallen further behind than that are sent a reset
+ * event, indicating that they must re-synchronize by other means.
+ * @author Brad Kimmel
+ * @see ca.eandb.jdcp.remote.TaskService#waitForTaskEvents(long, long)
+ */
+public final class TaskEventLog {
+
+  /** The default number of events to retain. */
+  private static final int DEFAULT_CAPACITY = 4096;
+
+  /**
+   * The maximum amount of time (in milliseconds) for which a caller may be
+   * held waiting for an event.
+   */
+  private static final long MAX_WAIT_MILLIS = 60000;
+
+  /** The retained events, in a circular buffer indexed by event ID. */
+  private final TaskEvent[] events;
+
+  /**
+   * The ID to assign to the next event.  The first ID is chosen at random
+   * so that event IDs obtained from a previous instance (e.g., before a
+   * server was restarted) are unlikely to be mistaken for current ones.
+   */
+  private long nextEventId = (new Random()).nextLong() >>> 2;
+
+  /** The ID of the oldest retained event. */
+  private long firstEventId = nextEventId;
+
+  /**
+   * Creates a new <code>TaskEventLog</code>.
+   */
+  public TaskEventLog() {
+    this(DEFAULT_CAPACITY);
+  }
+
+  /**
+   * Creates a new <code>TaskEventLog</code>.
+   * @param capacity The maximum number of events to retain.
+   */
+  public TaskEventLog(int capacity) {
+    if (capacity <= 0) {
+      throw new IllegalArgumentException("capacity must be positive.");
+    }
+    this.events = new TaskEvent[capacity];
+  }
+
+  /**
+   * Records that a task or job has finished, and wakes up callers waiting
+   * for events.
+   * @param jobId The <code>UUID</code> identifying the job.
+   * @param taskId The ID of the task that finished, or zero (0) if the job
+   *     as a whole has finished.
+   */
+  public synchronized void post(UUID jobId, int taskId) {
+    long eventId = nextEventId++;
+    events[index(eventId)] = new TaskEvent(jobId, taskId, eventId);
+    if (nextEventId - firstEventId > events.length) {
+      firstEventId = nextEventId - events.length;
+    }
+    notifyAll();
+  }
+
+  /**
+   * Waits for events to be posted.
+   * @param lastEventId The ID of the last event that the caller has seen.
+   * @param timeoutMillis The maximum amount of time (in milliseconds) to
+   *     wait.
+   * @return The events posted after <code>lastEventId</code>, an empty
+   *     array if none were posted before the timeout elapsed, or a single
+   *     reset event if the events following <code>lastEventId</code> are
+   *     not known.
+   * @throws InterruptedException If the thread is interrupted while
+   *     waiting.
+   * @see ca.eandb.jdcp.remote.TaskService#waitForTaskEvents(long, long)
+   */
+  public synchronized TaskEvent[] waitForEvents(long lastEventId,
+      long timeoutMillis) throws InterruptedException {
+    if (lastEventId < firstEventId - 1 || lastEventId >= nextEventId) {
+      return new TaskEvent[]{ new TaskEvent(null, 0, nextEventId - 1) };
+    }
+
+    long end = System.currentTimeMillis()
+        + Math.min(Math.max(timeoutMillis, 0), MAX_WAIT_MILLIS);
+    while (lastEventId == nextEventId - 1) {
+      long remaining = end - System.currentTimeMillis();
+      if (remaining <= 0) {
+        return new TaskEvent[0];
+      }
+      wait(remaining);
+    }
+
+    /* Events may have been dropped from the log while we were waiting. */
+    if (lastEventId < firstEventId - 1) {
+      return new TaskEvent[]{ new TaskEvent(null, 0, nextEventId - 1) };
+    }
+
+    TaskEvent[] result = new TaskEvent[(int) (nextEventId - lastEventId - 1)];
+    for (int i = 0; i < result.length; i++) {
+      result[i] = events[index(lastEventId + 1 + i)];
+    }
+    return result;
+  }
+
+  /**
+   * Gets the index into {@link #events} at which to store the event with
+   * the specified ID.
+   * @param eventId The event ID.
+   * @return The index into {@link #events}.
+   */
+  private int index(long eventId) {
+    return (int) (eventId % events.length);
+  }
+
+}
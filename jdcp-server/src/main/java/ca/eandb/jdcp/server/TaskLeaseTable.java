@@ -0,0 +1,392 @@
+/*
+ * Copyright (c) 2026 Bradley W. Kimmel
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package ca.eandb.jdcp.server;
+
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+import org.apache.log4j.Logger;
+
+import ca.eandb.jdcp.job.TaskDescription;
+import ca.eandb.jdcp.server.scheduling.TaskScheduler;
+
+/**
+ * Keeps track of the tasks for a single job that have been handed out to
+ * workers.  Each task handed out is leased for a period of time, after
+ * which it is returned to the schedule unless the worker has reported that
+ * it is still processing the task.  All changes to the leases, and the
+ * corresponding changes to the schedule, are synchronized on this object,
+ * so that callers for different jobs do not contend with one another.
+ * @author Brad Kimmel
+ */
+final class TaskLeaseTable {
+
+  /**
+   * The multiple of the average observed time to complete a task for which
+   * tasks are leased, if that exceeds the minimum lease time.
+   */
+  private static final int LEASE_TIME_FACTOR = 3;
+
+  /**
+   * The number of task results that must be received before the task times
+   * are considered reliable enough to identify stragglers.
+   */
+  private static final int MIN_SPECULATION_SAMPLES = 5;
+
+  /**
+   * The number of mean deviations beyond the average task time after which
+   * a task is considered to be a straggler.
+   */
+  private static final int STRAGGLER_DEVIATIONS = 4;
+
+  /** The <code>Logger</code> for this class. */
+  private static final Logger logger = Logger.getLogger(TaskLeaseTable.class);
+
+  /** The <code>UUID</code> of the job whose tasks are leased. */
+  private final UUID jobId;
+
+  /** The <code>TaskScheduler</code> holding the tasks to be handed out. */
+  private final TaskScheduler scheduler;
+
+  /**
+   * A <code>Map</code> of the <code>TaskLease</code>s for tasks that have
+   * been handed out to workers, keyed by task ID.
+   */
+  private final Map<Integer, TaskLease> leases = new HashMap<Integer, TaskLease>();
+
+  /**
+   * The number of tasks in the schedule that have never been handed out.
+   */
+  private int queuedTasks = 0;
+
+  /** The number of task results received. */
+  private int completedTasks = 0;
+
+  /**
+   * A running average of the time (in milliseconds) between a task being
+   * handed out and its results being received, or zero if no results have
+   * been received yet.
+   */
+  private volatile long averageTaskMillis = 0;
+
+  /**
+   * A running average of the absolute deviation of the time taken to
+   * complete tasks from {@link #averageTaskMillis}.
+   */
+  private long taskMillisDeviation = 0;
+
+  /** A bitmap indicating which tasks have been completed. */
+  private final TaskBitmap completed = new TaskBitmap();
+
+  /**
+   * Records that a task has been handed out to one or more workers.
+   * @author Brad Kimmel
+   */
+  static final class TaskLease {
+
+    /** The <code>TaskDescription</code> for the leased task. */
+    public final TaskDescription task;
+
+    /** The time (in milliseconds) at which the task was first handed out. */
+    public long dispatchTime;
+
+    /** The time (in milliseconds) at which the lease expires. */
+    public long expiry;
+
+    /**
+     * The number of times that the task has been handed out since it was
+     * last presumed lost.
+     */
+    public int copies = 0;
+
+    /**
+     * A value indicating whether the lease has expired and the task has
+     * been returned to the schedule.
+     */
+    public boolean offered = false;
+
+    /**
+     * A value indicating whether the task was returned to the schedule in
+     * order to launch a backup copy of a straggling task, rather than
+     * because the lease expired.
+     */
+    public boolean speculative = false;
+
+    /**
+     * A value indicating whether the task has been handed out more than
+     * once, so that other workers may need to be told when it is finished.
+     */
+    public boolean duplicated = false;
+
+    /**
+     * Creates a new <code>TaskLease</code>.
+     * @param task The <code>TaskDescription</code> for the leased task.
+     */
+    public TaskLease(TaskDescription task) {
+      this.task = task;
+    }
+
+  }
+
+  /**
+   * Creates a new <code>TaskLeaseTable</code>.
+   * @param jobId The <code>UUID</code> of the job whose tasks are leased.
+   * @param scheduler The <code>TaskScheduler</code> holding the tasks to be
+   *     handed out.
+   */
+  public TaskLeaseTable(UUID jobId, TaskScheduler scheduler) {
+    this.jobId = jobId;
+    this.scheduler = scheduler;
+  }
+
+  /**
+   * Adds a newly generated task to the schedule.
+   * @param task The <code>TaskDescription</code> for the task.
+   */
+  public synchronized void schedule(TaskDescription task) {
+    scheduler.add(task);
+    queuedTasks++;
+  }
+
+  /**
+   * Gets the amount of time for which to lease tasks.
+   * @param minLeaseMillis The minimum lease time, in milliseconds.
+   * @return The lease time, in milliseconds.
+   */
+  private long getLeaseMillis(long minLeaseMillis) {
+    return Math.max(minLeaseMillis, LEASE_TIME_FACTOR * averageTaskMillis);
+  }
+
+  /**
+   * Records that a task has been handed out to a worker.  The task must
+   * already have been taken from the schedule (see
+   * {@link TaskScheduler#takeNextTask()}).  The time at which the task was
+   * first handed out is kept when further copies are handed out, so that
+   * the task is still recognized as straggling.
+   * @param task The <code>TaskDescription</code> for the task that was
+   *     handed out.
+   * @param now The current time, in milliseconds.
+   * @param minLeaseMillis The minimum lease time, in milliseconds.
+   * @return A value indicating whether the task was leased.  The task is
+   *     not leased if it has already been completed.
+   */
+  public synchronized boolean lease(TaskDescription task, long now,
+      long minLeaseMillis) {
+    int taskId = task.getTaskId();
+    TaskLease lease = leases.get(taskId);
+    if (lease == null) {
+      if (completed.get(taskId)) {
+        /* The results for the task arrived before we got here. */
+        return false;
+      }
+      lease = new TaskLease(task);
+      lease.dispatchTime = now;
+      leases.put(taskId, lease);
+      queuedTasks--;
+    } else {
+      lease.duplicated = true;
+    }
+    lease.expiry = now + getLeaseMillis(minLeaseMillis);
+    lease.offered = false;
+    lease.speculative = false;
+    lease.copies++;
+    return true;
+  }
+
+  /**
+   * Marks a task as complete and releases its lease.
+   * @param taskId The ID of the task that has been completed.
+   * @param now The current time, in milliseconds.
+   * @return The <code>TaskLease</code> that was held on the task, a new
+   *     <code>TaskLease</code> with no copies out if the task had not yet
+   *     been handed out, or <code>null</code> if the task was not
+   *     outstanding.
+   */
+  public synchronized TaskLease complete(int taskId, long now) {
+    TaskDescription taskDesc = scheduler.remove(jobId, taskId);
+    TaskLease lease = leases.remove(taskId);
+    if (lease != null) {
+      recordTaskTime(now - lease.dispatchTime);
+    } else if (taskDesc != null) {
+      queuedTasks--;
+      lease = new TaskLease(taskDesc);
+    }
+    if (lease != null) {
+      completed.set(taskId);
+    }
+    return lease;
+  }
+
+  /**
+   * Determines if the specified task has been completed.
+   * @param taskId The ID of the task.
+   * @return A value indicating whether the task has been completed.
+   */
+  public boolean isComplete(int taskId) {
+    return completed.get(taskId);
+  }
+
+  /**
+   * Gets the set of tasks that have been completed.
+   * @return A <code>BitSet</code> having a bit set for each completed task.
+   */
+  public BitSet getCompleted() {
+    return completed.toBitSet();
+  }
+
+  /**
+   * Renews the lease on a task, indicating that a worker is still
+   * processing it.
+   * @param taskId The ID of the task for which to renew the lease.
+   * @param now The current time, in milliseconds.
+   * @param minLeaseMillis The minimum lease time, in milliseconds.
+   */
+  public synchronized void renew(int taskId, long now, long minLeaseMillis) {
+    TaskLease lease = leases.get(taskId);
+    if (lease == null) {
+      return;
+    }
+    if (lease.offered && !lease.speculative) {
+      scheduler.remove(jobId, taskId);
+      lease.offered = false;
+    }
+    lease.expiry = now + getLeaseMillis(minLeaseMillis);
+  }
+
+  /**
+   * Returns a task that a worker has obtained but will not perform to the
+   * schedule, so that it may be handed out again right away.  If other
+   * copies of the task are out, they are left to finish it.
+   * @param taskId The ID of the task to return.
+   * @return A value indicating whether the task was returned to the
+   *     schedule.
+   */
+  public synchronized boolean release(int taskId) {
+    TaskLease lease = leases.get(taskId);
+    if (lease == null || lease.offered) {
+      return false;
+    }
+    if (lease.copies > 1) {
+      lease.copies--;
+      return false;
+    }
+    scheduler.add(lease.task);
+    lease.offered = true;
+    lease.copies = 0;
+    return true;
+  }
+
+  /**
+   * Returns tasks whose leases have expired to the schedule.  If a task has
+   * already been handed out the maximum number of times, its workers are
+   * given one more lease period to report in before the task is handed out
+   * again.
+   * @param now The current time, in milliseconds.
+   * @param minLeaseMillis The minimum lease time, in milliseconds.
+   * @param maxCopies The maximum number of workers that may concurrently
+   *     be processing the same task.
+   * @return A value indicating whether any tasks were returned to the
+   *     schedule.
+   */
+  public synchronized boolean expire(long now, long minLeaseMillis,
+      int maxCopies) {
+    boolean added = false;
+    for (TaskLease lease : leases.values()) {
+      if (!lease.offered && lease.expiry <= now) {
+        if (lease.copies < maxCopies) {
+          scheduler.add(lease.task);
+          lease.offered = true;
+          added = true;
+        } else {
+          lease.copies = 0;
+          lease.expiry = now + getLeaseMillis(minLeaseMillis);
+        }
+      }
+    }
+    return added;
+  }
+
+  /**
+   * Launches backup copies of straggling tasks.  This is only done near the
+   * end of the job -- that is, once the job has stopped generating new
+   * tasks and every remaining task has been handed out -- so that backup
+   * copies do not displace tasks that have not been started.  A task is
+   * considered to be straggling if it has been out for much longer than the
+   * typical time to complete a task.
+   * @param now The current time, in milliseconds.
+   * @param maxCopies The maximum number of workers that may concurrently
+   *     be processing the same task.
+   * @param stalled A value indicating whether the job has stopped
+   *     generating new tasks.
+   * @return A value indicating whether any tasks were returned to the
+   *     schedule.
+   */
+  public synchronized boolean speculate(long now, int maxCopies,
+      boolean stalled) {
+    if (!stalled || queuedTasks > 0 || completedTasks < MIN_SPECULATION_SAMPLES) {
+      return false;
+    }
+    boolean added = false;
+    long average = averageTaskMillis;
+    long threshold = Math.max(2 * average, average
+        + STRAGGLER_DEVIATIONS * taskMillisDeviation);
+    for (TaskLease lease : leases.values()) {
+      if (!lease.offered && lease.copies < maxCopies
+          && now - lease.dispatchTime > threshold) {
+        if (logger.isInfoEnabled()) {
+          logger.info("Speculatively rescheduling task "
+              + Integer.toString(lease.task.getTaskId()) + " for job "
+              + jobId.toString());
+        }
+        scheduler.add(lease.task);
+        lease.offered = true;
+        lease.speculative = true;
+        added = true;
+      }
+    }
+    return added;
+  }
+
+  /**
+   * Updates the running statistics on the time taken to complete tasks.
+   * Must be called while synchronized on this object.
+   * @param elapsed The time (in milliseconds) between a task being handed
+   *     out and its results being received.
+   */
+  private void recordTaskTime(long elapsed) {
+    long average = averageTaskMillis;
+    if (completedTasks++ == 0) {
+      averageTaskMillis = elapsed;
+      taskMillisDeviation = elapsed / 2;
+    } else {
+      taskMillisDeviation += (Math.abs(elapsed - average) - taskMillisDeviation) / 4;
+      averageTaskMillis = average + (elapsed - average) / 8;
+    }
+  }
+
+}
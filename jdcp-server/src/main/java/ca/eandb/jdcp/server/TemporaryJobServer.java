@@ -27,27 +27,37 @@ package ca.eandb.jdcp.server;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.rmi.RemoteException;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
 import java.util.BitSet;
-import java.util.HashMap;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
-import java.util.Random;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executor;
 import java.util.concurrent.Executors;
 import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.log4j.Logger;
 
+import ca.eandb.jdcp.codec.Codecs;
+import ca.eandb.jdcp.codec.CompressedPayload;
+import ca.eandb.jdcp.codec.Serializers;
 import ca.eandb.jdcp.job.JobExecutionException;
 import ca.eandb.jdcp.job.JobExecutionWrapper;
 import ca.eandb.jdcp.job.ParallelizableJob;
 import ca.eandb.jdcp.job.TaskDescription;
 import ca.eandb.jdcp.job.TaskWorker;
+import ca.eandb.jdcp.remote.ClassBundle;
+import ca.eandb.jdcp.remote.TaskEvent;
 import ca.eandb.jdcp.remote.TaskService;
-import ca.eandb.jdcp.server.scheduling.PrioritySerialTaskScheduler;
+import ca.eandb.jdcp.server.ResultStreamTable.ResultStream;
+import ca.eandb.jdcp.server.scheduling.IndexedPriorityTaskScheduler;
 import ca.eandb.jdcp.server.scheduling.TaskScheduler;
 import ca.eandb.util.ClassUtil;
 import ca.eandb.util.UnexpectedException;
@@ -71,12 +81,16 @@ public final class TemporaryJobServer implements TaskService {
    */
   private static final int DEFAULT_IDLE_SECONDS = 10;
 
+  /**
+   * The maximum amount of time (in milliseconds) for which a call to
+   * {@link #requestTasks(int, long)} is held waiting for a task to become
+   * available.
+   */
+  private static final long MAX_TASK_WAIT_MILLIS = 60000;
+
   /** The <code>Logger</code> for this class. */
   private static final Logger logger = Logger.getLogger(TemporaryJobServer.class);
 
-  /** The <code>Random</code> number generator (for generating task IDs). */
-  private static final Random rand = new Random();
-
   /**
    * The <code>ProgressMonitorFactory</code> to use to create
    * <code>ProgressMonitor</code>s for reporting overall progress of
@@ -96,7 +110,7 @@ public final class TemporaryJobServer implements TaskService {
    * by the corresponding job ID.
    * @see ca.eandb.jdcp.server.TemporaryJobServer.ScheduledJob
    */
-  private final Map<UUID, ScheduledJob> jobs = new HashMap<UUID, ScheduledJob>();
+  private final Map<UUID, ScheduledJob> jobs = new ConcurrentHashMap<UUID, ScheduledJob>();
 
   /** An <code>Executor</code> to use to run asynchronous tasks. */
   private final Executor executor;
@@ -107,6 +121,34 @@ public final class TemporaryJobServer implements TaskService {
    */
   private TaskDescription idleTask = new TaskDescription(null, 0, DEFAULT_IDLE_SECONDS);
 
+  /**
+   * The amount of time (in seconds) that workers are instructed to idle for
+   * if there are no tasks to be processed.
+   */
+  private volatile int idleSeconds = DEFAULT_IDLE_SECONDS;
+
+  /**
+   * Notified when tasks are added to the schedule, to wake callers of
+   * {@link #requestTasks(int, long)} that are waiting for a task.
+   */
+  private final Object taskAvailable = new Object();
+
+  /**
+   * The number of times that tasks have been added to the schedule.  Used
+   * to detect tasks added while a caller was not yet waiting.  Guarded by
+   * {@link #taskAvailable}.
+   */
+  private long taskEpoch = 0;
+
+  /**
+   * The <code>TaskEventLog</code> used to notify workers when jobs are
+   * finished.
+   */
+  private final TaskEventLog taskEvents = new TaskEventLog();
+
+  /** Task results that are being uploaded in chunks. */
+  private final ResultStreamTable resultStreams = new ResultStreamTable();
+
   /**
    * Creates a new <code>JobServer</code>.
    * @param monitorFactory The <code>ProgressMonitorFactory</code> to use to
@@ -141,7 +183,7 @@ public final class TemporaryJobServer implements TaskService {
    *     create <code>ProgressMonitor</code>s for individual jobs.
    */
   public TemporaryJobServer(ProgressMonitorFactory monitorFactory) throws IllegalArgumentException {
-    this(monitorFactory, new PrioritySerialTaskScheduler());
+    this(monitorFactory, new IndexedPriorityTaskScheduler());
   }
 
 
@@ -206,18 +248,95 @@ public final class TemporaryJobServer implements TaskService {
   /* (non-Javadoc)
    * @see ca.eandb.jdcp.remote.JobService#requestTask()
    */
-  public synchronized TaskDescription requestTask() throws SecurityException {
+  public TaskDescription requestTask() throws SecurityException {
+    TaskDescription taskDesc = nextScheduledTask();
+    return (taskDesc != null) ? taskDesc : idleTask;
+  }
+
+  /* (non-Javadoc)
+   * @see ca.eandb.jdcp.remote.TaskService#requestTasks(int, long)
+   */
+  public TaskDescription[] requestTasks(int maxTasks, long waitMillis)
+      throws IllegalArgumentException, SecurityException {
+    if (maxTasks <= 0) {
+      throw new IllegalArgumentException("maxTasks must be positive.");
+    }
+
+    long start = System.currentTimeMillis();
+    long deadline = start + Math.min(Math.max(waitMillis, 0), MAX_TASK_WAIT_MILLIS);
+    long epoch;
+
+    while (true) {
+      synchronized (taskAvailable) {
+        epoch = taskEpoch;
+      }
+
+      List<TaskDescription> tasks = new ArrayList<TaskDescription>();
+      while (tasks.size() < maxTasks) {
+        TaskDescription taskDesc = nextScheduledTask();
+        if (taskDesc == null) {
+          break;
+        }
+        tasks.add(taskDesc);
+      }
+
+      if (!tasks.isEmpty()) {
+        return tasks.toArray(new TaskDescription[tasks.size()]);
+      }
+
+      /* Nothing to do -- wait for a task to be scheduled. */
+      long remaining = deadline - System.currentTimeMillis();
+      if (remaining <= 0) {
+        break;
+      }
+      synchronized (taskAvailable) {
+        if (taskEpoch == epoch) {
+          try {
+            taskAvailable.wait(remaining);
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            break;
+          }
+        }
+      }
+    }
+
+    /* The caller has already waited for some time, so it does not need to
+     * idle for as long before asking again.
+     */
+    long waitedSeconds = (System.currentTimeMillis() - start) / 1000;
+    if (waitedSeconds <= 0) {
+      return new TaskDescription[]{ idleTask };
+    }
+    int seconds = (int) Math.max(idleSeconds - waitedSeconds, 0);
+    return new TaskDescription[]{ new TaskDescription(null, 0, seconds) };
+  }
+
+  /**
+   * Wakes up callers of {@link #requestTasks(int, long)} that are waiting
+   * for a task to become available.
+   */
+  private void notifyTaskAvailable() {
+    synchronized (taskAvailable) {
+      taskEpoch++;
+      taskAvailable.notifyAll();
+    }
+  }
+
+  /**
+   * Takes the next task from the schedule.
+   * @return The <code>TaskDescription</code> for the next task, or
+   *     <code>null</code> if there are no scheduled tasks.
+   */
+  private TaskDescription nextScheduledTask() {
     TaskDescription taskDesc = scheduler.getNextTask();
     if (taskDesc != null) {
       ScheduledJob sched = jobs.get(taskDesc.getJobId());
-      try {
-        sched.scheduleNextTask();
-      } catch (JobExecutionException e) {
-        handleJobExecutionException(e, sched.id);
+      if (sched != null) {
+        sched.requestRefill();
       }
-      return taskDesc;
     }
-    return idleTask;
+    return taskDesc;
   }
 
   /* (non-Javadoc)
@@ -231,6 +350,95 @@ public final class TemporaryJobServer implements TaskService {
     }
   }
 
+  /* (non-Javadoc)
+   * @see ca.eandb.jdcp.remote.TaskService#submitTaskResultsBatch(java.util.UUID[], int[], ca.eandb.util.rmi.Serialized[])
+   */
+  public BitSet submitTaskResultsBatch(UUID[] jobIds, int[] taskIds,
+      Serialized<Object>[] results) throws IllegalArgumentException,
+      SecurityException {
+
+    if (jobIds == null || taskIds == null || results == null) {
+      return new BitSet(0);
+    }
+
+    if (jobIds.length != taskIds.length || jobIds.length != results.length) {
+      throw new IllegalArgumentException("jobIds, taskIds, and results must be the same length");
+    }
+
+    BitSet accepted = new BitSet(jobIds.length);
+    for (int i = 0; i < jobIds.length; i++) {
+      ScheduledJob sched = jobs.get(jobIds[i]);
+      accepted.set(i, sched != null && sched.submitTaskResults(taskIds[i], results[i]));
+    }
+    return accepted;
+
+  }
+
+  /* (non-Javadoc)
+   * @see ca.eandb.jdcp.remote.TaskService#openResultStream(java.util.UUID, int, boolean)
+   */
+  public UUID openResultStream(UUID jobId, int taskId, boolean raw)
+      throws SecurityException {
+    ScheduledJob sched = jobs.get(jobId);
+    if (sched == null || sched.isTaskComplete(taskId)) {
+      return null;
+    }
+    if (raw && !sched.job.isStreaming()) {
+      throw new UnsupportedOperationException(
+          "Job does not accept streamed task results");
+    }
+    try {
+      return resultStreams.open(jobId, taskId, raw);
+    } catch (IOException e) {
+      logger.error("Cannot open result stream", e);
+      throw new IllegalStateException("Cannot open result stream", e);
+    }
+  }
+
+  /* (non-Javadoc)
+   * @see ca.eandb.jdcp.remote.TaskService#writeResultChunk(java.util.UUID, long, byte[])
+   */
+  public void writeResultChunk(UUID streamId, long offset, byte[] data)
+      throws IllegalArgumentException, SecurityException {
+    try {
+      resultStreams.write(streamId, offset, data);
+    } catch (IOException e) {
+      logger.error("Cannot write to result stream", e);
+      throw new IllegalStateException("Cannot write to result stream", e);
+    }
+  }
+
+  /* (non-Javadoc)
+   * @see ca.eandb.jdcp.remote.TaskService#commitResultStream(java.util.UUID, long)
+   */
+  public boolean commitResultStream(UUID streamId, long length)
+      throws IllegalArgumentException, SecurityException {
+    ResultStream stream = resultStreams.commit(streamId, length);
+    ScheduledJob sched = jobs.get(stream.getJobId());
+    if (sched != null && sched.submitTaskResults(stream.getTaskId(), stream)) {
+      return true;
+    }
+    stream.delete();
+    return false;
+  }
+
+  /* (non-Javadoc)
+   * @see ca.eandb.jdcp.remote.TaskService#abortResultStream(java.util.UUID)
+   */
+  public void abortResultStream(UUID streamId) throws SecurityException {
+    resultStreams.abort(streamId);
+  }
+
+  /* (non-Javadoc)
+   * @see ca.eandb.jdcp.remote.TaskService#releaseTasks(java.util.UUID[], int[])
+   */
+  public void releaseTasks(UUID[] jobIds, int[] taskIds)
+      throws IllegalArgumentException, SecurityException {
+    /* Tasks stay in the schedule until their results are submitted, so
+     * there is nothing to return.
+     */
+  }
+
   /* (non-Javadoc)
    * @see ca.eandb.jdcp.remote.JobService#reportException(java.util.UUID, int, java.lang.Exception)
    */
@@ -261,8 +469,11 @@ public final class TemporaryJobServer implements TaskService {
     for (int i = 0; i < jobIds.length; i++) {
       UUID jobId = jobIds[i];
       int taskId = taskIds[i];
-      if (taskId != 0) {
-        finished.set(i, jobId == null || !scheduler.contains(jobId, taskId));
+      if (jobId == null) {
+        finished.set(i);
+      } else if (taskId != 0) {
+        ScheduledJob sched = jobs.get(jobId);
+        finished.set(i, sched == null || sched.isTaskComplete(taskId));
       } else {
         ScheduledJob sched = jobs.get(jobId);
         try {
@@ -277,6 +488,19 @@ public final class TemporaryJobServer implements TaskService {
 
   }
 
+  /* (non-Javadoc)
+   * @see ca.eandb.jdcp.remote.TaskService#waitForTaskEvents(long, long)
+   */
+  public TaskEvent[] waitForTaskEvents(long lastEventId, long timeoutMillis)
+      throws SecurityException {
+    try {
+      return taskEvents.waitForEvents(lastEventId, timeoutMillis);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return new TaskEvent[0];
+    }
+  }
+
   /* (non-Javadoc)
    * @see ca.eandb.jdcp.remote.JobService#getClassDefinition(java.lang.String, java.util.UUID)
    */
@@ -285,6 +509,31 @@ public final class TemporaryJobServer implements TaskService {
     return getClassDefinition(name);
   }
 
+  /* (non-Javadoc)
+   * @see ca.eandb.jdcp.remote.TaskService#getClassBundle(java.util.UUID, java.util.Map)
+   */
+  public ClassBundle getClassBundle(UUID jobId, Map<String, byte[]> digests) {
+    /* Classes are loaded from this JVM's class path, so there is nothing
+     * to be gained by sending them in advance.
+     */
+    return ClassBundle.create(Collections.<ClassBundle.Entry>emptyList(),
+        Codecs.NONE);
+  }
+
+  /* (non-Javadoc)
+   * @see ca.eandb.jdcp.remote.TaskService#getClassManifest(java.util.UUID)
+   */
+  public String[] getClassManifest(UUID jobId) {
+    return new String[0];
+  }
+
+  /* (non-Javadoc)
+   * @see ca.eandb.jdcp.remote.TaskService#reportClassManifest(java.util.UUID, java.lang.String[])
+   */
+  public void reportClassManifest(UUID jobId, String[] classNames) {
+    /* nothing to do. */
+  }
+
   /* (non-Javadoc)
    * @see ca.eandb.jdcp.remote.JobService#getClassDigest(java.lang.String, java.util.UUID)
    */
@@ -292,6 +541,17 @@ public final class TemporaryJobServer implements TaskService {
     return getClassDigest(name);
   }
 
+  /* (non-Javadoc)
+   * @see ca.eandb.jdcp.remote.TaskService#getClassDigests(java.lang.String[], java.util.UUID)
+   */
+  public byte[][] getClassDigests(String[] names, UUID jobId) {
+    byte[][] digests = new byte[names.length][];
+    for (int i = 0; i < names.length; i++) {
+      digests[i] = getClassDigest(names[i]);
+    }
+    return digests;
+  }
+
   private byte[] getClassDigest(String name) {
     try {
       MessageDigest md5 = MessageDigest.getInstance("MD5");
@@ -324,6 +584,7 @@ public final class TemporaryJobServer implements TaskService {
   public void setIdleTime(int idleSeconds) throws IllegalArgumentException,
       SecurityException {
     idleTask = new TaskDescription(null, 0, idleSeconds);
+    this.idleSeconds = idleSeconds;
     if (logger.isInfoEnabled()) {
       logger.info("Idle time set to " + Integer.toString(idleSeconds));
     }
@@ -379,6 +640,8 @@ public final class TemporaryJobServer implements TaskService {
       }
       jobs.remove(jobId);
       scheduler.removeJob(jobId);
+      taskEvents.post(jobId, 0);
+      resultStreams.abortJob(jobId);
     }
     if (jobs.isEmpty()) {
       synchronized (this.complete) {
@@ -412,6 +675,28 @@ public final class TemporaryJobServer implements TaskService {
      */
     public final ProgressMonitor      monitor;
 
+    /**
+     * The number of tasks that have been handed out for this job for which
+     * a replacement task has not yet been generated.
+     */
+    private final AtomicInteger        pendingRefills = new AtomicInteger();
+
+    /** The ID to assign to the next task generated for this job. */
+    private final AtomicInteger        nextTaskId = new AtomicInteger(1);
+
+    /** A bitmap indicating which tasks for this job have been completed. */
+    private final TaskBitmap          completed = new TaskBitmap();
+
+    /**
+     * Generates replacement tasks for this job in the background.
+     * @see #requestRefill()
+     */
+    private final Runnable          refill = new Runnable() {
+      public void run() {
+        refillTasks();
+      }
+    };
+
     /**
      * Initializes the scheduled job.
      * @param job The <code>ParallelizableJob</code> to run.
@@ -439,17 +724,51 @@ public final class TemporaryJobServer implements TaskService {
      * Submits the results for a task associated with this job.
      * @param taskId The ID of the task whose results are being submitted.
      * @param results The serialized results.
+     * @return A value indicating whether the results were accepted (i.e.,
+     *     whether the task was still outstanding).
      */
-    public void submitTaskResults(int taskId, Serialized<Object> results) {
+    public boolean submitTaskResults(int taskId, Serialized<Object> results) {
       TaskDescription taskDesc = scheduler.remove(id, taskId);
       if (taskDesc != null) {
+        completed.set(taskId);
         Object task = taskDesc.getTask().get();
-        Runnable command = new TaskResultSubmitter(this, task, results, monitor);
-        try {
-          executor.execute(command);
-        } catch (RejectedExecutionException e) {
-          command.run();
-        }
+        submit(new TaskResultSubmitter(this, task, results, monitor));
+        return true;
+      }
+      return false;
+    }
+
+    /**
+     * Submits the results for a task associated with this job that were
+     * uploaded in chunks.
+     * @param taskId The ID of the task whose results are being submitted.
+     * @param stream The <code>ResultStream</code> holding the results.  If
+     *     the results are accepted, the stream is deleted once they have
+     *     been read.
+     * @return A value indicating whether the results were accepted (i.e.,
+     *     whether the task was still outstanding).
+     */
+    public boolean submitTaskResults(int taskId, ResultStream stream) {
+      TaskDescription taskDesc = scheduler.remove(id, taskId);
+      if (taskDesc != null) {
+        completed.set(taskId);
+        Object task = taskDesc.getTask().get();
+        submit(new TaskResultSubmitter(this, task, stream, monitor));
+        return true;
+      }
+      return false;
+    }
+
+    /**
+     * Runs a <code>TaskResultSubmitter</code>, in the background if
+     * possible.
+     * @param command The <code>TaskResultSubmitter</code> to run.
+     */
+    private void submit(TaskResultSubmitter command) {
+      try {
+        executor.execute(command);
+      } catch (RejectedExecutionException e) {
+        command.run();
       }
     }
 
@@ -468,15 +787,24 @@ public final class TemporaryJobServer implements TaskService {
     }
 
     /**
-     * Generates a unique task identifier.
+     * Generates a unique task identifier.  Task IDs are assigned
+     * sequentially starting from one, so that the completed tasks may be
+     * tracked using a dense bitmap.
      * @return The generated task ID.
      */
     private int generateTaskId() {
-      int taskId;
-      do {
-        taskId = rand.nextInt();
-      } while (taskId != 0 && scheduler.contains(id, taskId));
-      return taskId;
+      return nextTaskId.getAndIncrement();
+    }
+
+    /**
+     * Determines if the specified task for this job has been completed.
+     * Tasks that were never generated for this job are reported as
+     * complete, so that workers holding them will abandon them.
+     * @param taskId The ID of the task.
+     * @return A value indicating whether the task has been completed.
+     */
+    public boolean isTaskComplete(int taskId) {
+      return taskId <= 0 || taskId >= nextTaskId.get() || completed.get(taskId);
     }
 
     /**
@@ -490,6 +818,43 @@ public final class TemporaryJobServer implements TaskService {
         int taskId = generateTaskId();
         TaskDescription desc = new TaskDescription(id, taskId, task);
         scheduler.add(desc);
+        notifyTaskAvailable();
+      }
+    }
+
+    /**
+     * Requests that a new task be generated for this job.  The task is
+     * generated asynchronously so that the worker requesting a task is not
+     * held up by the job.  At most one thread generates tasks for a given
+     * job at any time.
+     */
+    public void requestRefill() {
+      if (pendingRefills.getAndIncrement() == 0) {
+        try {
+          executor.execute(refill);
+        } catch (RejectedExecutionException e) {
+          refill.run();
+        }
+      }
+    }
+
+    /**
+     * Generates tasks for this job until all pending refill requests have
+     * been satisfied.
+     * @see #requestRefill()
+     */
+    private void refillTasks() {
+      try {
+        do {
+          if (jobs.get(id) != this) {
+            pendingRefills.set(0);
+            break;
+          }
+          scheduleNextTask();
+        } while (pendingRefills.decrementAndGet() > 0);
+      } catch (JobExecutionException e) {
+        pendingRefills.set(0);
+        handleJobExecutionException(e, id);
       }
     }
 
@@ -532,6 +897,12 @@ public final class TemporaryJobServer implements TaskService {
     /** The serialized task results. */
     private final Serialized<Object> results;
 
+    /**
+     * The <code>ResultStream</code> holding the task results, if they were
+     * uploaded in chunks.
+     */
+    private final ResultStream stream;
+
     /** The <code>ProgressMonitor</code> to report job progress to. */
     private final ProgressMonitor monitor;
 
@@ -550,9 +921,52 @@ public final class TemporaryJobServer implements TaskService {
       this.sched = sched;
       this.task = task;
       this.results = results;
+      this.stream = null;
       this.monitor = monitor;
     }
 
+    /**
+     * Creates a new <code>TaskResultSubmitter</code> for results that were
+     * uploaded in chunks.
+     * @param sched The <code>ScheduledJob</code> associated with the task
+     *     whose results are being submitted.
+     * @param task The <code>Object</code> describing the task whose
+     *     results are being submitted.
+     * @param stream The <code>ResultStream</code> holding the task
+     *     results.  The stream is deleted once the results are submitted.
+     * @param monitor The <code>ProgressMonitor</code> to report job
+     *     progress to.
+     */
+    public TaskResultSubmitter(ScheduledJob sched, Object task,
+        ResultStream stream, ProgressMonitor monitor) {
+      this.sched = sched;
+      this.task = task;
+      this.results = null;
+      this.stream = stream;
+      this.monitor = monitor;
+    }
+
+    /**
+     * Submits results that were uploaded in chunks to the job, reading
+     * them directly from the spool file.
+     * @throws Exception If the results cannot be read, or if the job
+     *     throws an exception.
+     */
+    private void submitStreamedResults() throws Exception {
+      InputStream in = stream.openInputStream();
+      try {
+        if (stream.isRaw()) {
+          sched.job.submitTaskResults(task, in, monitor);
+        } else {
+          Object obj = Serializers.readObject(in, null);
+          sched.job.submitTaskResults(task,
+              CompressedPayload.decompress(obj, null), monitor);
+        }
+      } finally {
+        in.close();
+      }
+    }
+
     /* (non-Javadoc)
      * @see java.lang.Runnable#run()
      */
@@ -560,8 +974,12 @@ public final class TemporaryJobServer implements TaskService {
       if (task != null) {
         try {
           synchronized (sched.job) {
-            sched.job.submitTaskResults(task,
-                results.deserialize(), monitor);
+            if (stream != null) {
+              submitStreamedResults();
+            } else {
+              sched.job.submitTaskResults(task,
+                  CompressedPayload.decompress(results.deserialize(), null), monitor);
+            }
           }
 
           if (sched.job.isComplete()) {
@@ -580,6 +998,10 @@ public final class TemporaryJobServer implements TaskService {
               "Exception thrown while attempting to submit task results for job "
                   + sched.id.toString(), e);
           removeScheduledJob(sched.id, false);
+        } finally {
+          if (stream != null) {
+            stream.delete();
+          }
         }
       }
     }
@@ -30,12 +30,17 @@ import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.sql.Connection;
 import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Types;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.Queue;
 import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 import javax.sql.DataSource;
 
@@ -54,14 +59,119 @@ public final class DbClassManager extends AbstractClassManager implements Parent
 
   private static final Random rnd = new Random();
 
+  /** The default capacity of the class cache, in bytes. */
+  public static final long DEFAULT_CACHE_CAPACITY = 32L * 1024L * 1024L;
+
+  /**
+   * The maximum number of idle prepared statements to keep open for each
+   * lookup query.  Each idle statement holds a connection open, so this
+   * should be kept small relative to the size of any pool backing the
+   * <code>DataSource</code>.
+   */
+  private static final int MAX_IDLE_STATEMENTS = 2;
+
+  /**
+   * The approximate memory overhead of a cache entry, in bytes, beyond the
+   * class name, digest and definition.
+   */
+  private static final int CACHE_ENTRY_OVERHEAD = 64;
+
   private final DataSource ds;
 
   private final Map<Integer, DbChildClassManager> children = new HashMap<Integer, DbChildClassManager>();
 
   private int snapshotIndex = -1;
 
+  /**
+   * The cached results of class lookups, keyed by the class manager and
+   * class name, in least recently used order.  Lookups which found no
+   * class are cached as well.
+   */
+  private final LinkedHashMap<CacheKey, CacheEntry> cache = new LinkedHashMap<CacheKey, CacheEntry>(16, 0.75f, true);
+
+  /** The maximum total size of the cached entries, in bytes. */
+  private final long cacheCapacity;
+
+  /** The total size of the cached entries, in bytes. */
+  private long cacheSize = 0;
+
+  /**
+   * The number of times a class definition has been changed.  A lookup
+   * that overlaps a change is not cached, since it may have read the
+   * definition as it was before the change.
+   */
+  private long modificationCount = 0;
+
+  /**
+   * A value indicating whether this <code>DbClassManager</code> has been
+   * closed.  Once closed, lookup statements are no longer kept open.
+   */
+  private volatile boolean closed = false;
+
+  /** The statements for looking up the latest parent class definitions. */
+  private final StatementPool parentLookup = new StatementPool(true,
+      "SELECT MD5, Definition " +
+      "FROM ParentClasses " +
+      "WHERE Name = ? " +
+      "ORDER BY SnapshotIndex DESC");
+
+  /** The statements for looking up the latest parent class digests. */
+  private final StatementPool parentDigestLookup = new StatementPool(false,
+      "SELECT MD5 " +
+      "FROM ParentClasses " +
+      "WHERE Name = ? " +
+      "ORDER BY SnapshotIndex DESC");
+
+  /**
+   * The statements for looking up the class definitions visible to a
+   * child class manager.  Both the child's own definition, if any, and the
+   * parent definitions from the child's snapshot are obtained in a single
+   * query, using the primary keys of all three tables.
+   */
+  private final StatementPool childLookup = new StatementPool(true,
+      "SELECT ChildClasses.MD5, ChildClasses.Definition, " +
+      "  ParentClasses.MD5, ParentClasses.Definition " +
+      "FROM ChildClassManagers " +
+      "  LEFT OUTER JOIN ChildClasses " +
+      "    ON ChildClasses.ChildID = ChildClassManagers.ChildID " +
+      "    AND ChildClasses.Name = ? " +
+      "  LEFT OUTER JOIN ParentClasses " +
+      "    ON ParentClasses.Name = ? " +
+      "    AND ParentClasses.SnapshotIndex <= ChildClassManagers.SnapshotIndex " +
+      "WHERE ChildClassManagers.ChildID = ? " +
+      "ORDER BY ParentClasses.SnapshotIndex DESC");
+
+  /**
+   * The statements for looking up the class digests visible to a child
+   * class manager.  This is the same as <code>childLookup</code>, but does
+   * not read the class definitions.
+   */
+  private final StatementPool childDigestLookup = new StatementPool(false,
+      "SELECT ChildClasses.MD5, ParentClasses.MD5 " +
+      "FROM ChildClassManagers " +
+      "  LEFT OUTER JOIN ChildClasses " +
+      "    ON ChildClasses.ChildID = ChildClassManagers.ChildID " +
+      "    AND ChildClasses.Name = ? " +
+      "  LEFT OUTER JOIN ParentClasses " +
+      "    ON ParentClasses.Name = ? " +
+      "    AND ParentClasses.SnapshotIndex <= ChildClassManagers.SnapshotIndex " +
+      "WHERE ChildClassManagers.ChildID = ? " +
+      "ORDER BY ParentClasses.SnapshotIndex DESC");
+
   public DbClassManager(DataSource ds) {
+    this(ds, DEFAULT_CACHE_CAPACITY);
+  }
+
+  /**
+   * Creates a new <code>DbClassManager</code>.
+   * @param ds The <code>DataSource</code> in which to store class
+   *     definitions.
+   * @param cacheCapacity The maximum total size (in bytes) of the class
+   *     digests and definitions to cache in memory.
+   */
+  public DbClassManager(DataSource ds, long cacheCapacity) {
     this.ds = ds;
+    this.cacheCapacity = cacheCapacity;
   }
 
   public void prepareDataSource() throws SQLException {
@@ -126,6 +236,20 @@ public final class DbClassManager extends AbstractClassManager implements Parent
     }
   }
 
+  /**
+   * Closes the lookup statements held open by this
+   * <code>DbClassManager</code>, along with their connections.  Lookups may
+   * still be performed after this method is called, but each will obtain
+   * and close its own connection.
+   */
+  public void close() {
+    closed = true;
+    parentLookup.close();
+    parentDigestLookup.close();
+    childLookup.close();
+    childDigestLookup.close();
+  }
+
   private int getSnapshotIndex(Connection con) throws SQLException {
     if (snapshotIndex < 0) {
       snapshotIndex = 1 + DbUtil.queryInt(con, -1,
@@ -209,29 +333,87 @@ public final class DbClassManager extends AbstractClassManager implements Parent
    * @see ca.eandb.jdcp.server.classmanager.ClassManager#getClassDigest(java.lang.String)
    */
   public byte[] getClassDigest(String name) {
-    return getClassField(name, "MD5");
+    return lookup(this, name, false, parentDigestLookup, name).getDigest();
   }
 
   /* (non-Javadoc)
    * @see ca.eandb.util.classloader.ClassLoaderStrategy#getClassDefinition(java.lang.String)
    */
   public ByteBuffer getClassDefinition(String name) {
-    byte[] def = getClassField(name, "Definition");
+    byte[] def = lookup(this, name, true, parentLookup, name).definition;
     return (def != null) ? ByteBuffer.wrap(def) : null;
   }
 
-  private byte[] getClassField(String name, String field) {
+  /**
+   * Looks up a class, first in the cache and then, if necessary, in the
+   * database.
+   * @param owner The class manager for which to look up the class.
+   * @param name The fully qualified name of the class.
+   * @param definition A value indicating whether the class definition is
+   *     required, or only its digest.
+   * @param lookup The <code>StatementPool</code> for the query to run if
+   *     the class is not cached.
+   * @param params The parameters to the query.
+   * @return The <code>CacheEntry</code> for the class.
+   */
+  private CacheEntry lookup(Object owner, String name, boolean definition,
+      StatementPool lookup, Object... params) {
+    CacheKey key = new CacheKey(owner, name);
+    long mod;
+    synchronized (cache) {
+      CacheEntry entry = cache.get(key);
+      if (entry != null && (!definition || entry.digest == null || entry.definition != null)) {
+        return entry;
+      }
+      mod = modificationCount;
+    }
+
+    CacheEntry entry;
     try {
-      return DbUtil.queryBinary(ds, null,
-          "SELECT " + field + " " +
-          "FROM ParentClasses " +
-          "WHERE Name = ? " +
-          "ORDER BY SnapshotIndex DESC",
-          name);
+      entry = lookup.query(definition, params);
     } catch (SQLException e) {
       logger.error("Could not retrieve class definition from database.", e);
       throw new RuntimeException(e);
     }
+
+    synchronized (cache) {
+      if (mod == modificationCount) {
+        CacheEntry old = cache.put(key, entry);
+        if (old != null) {
+          cacheSize -= old.size(name);
+        }
+        cacheSize += entry.size(name);
+        Iterator<Map.Entry<CacheKey, CacheEntry>> i = cache.entrySet().iterator();
+        while (cacheSize > cacheCapacity && i.hasNext()) {
+          Map.Entry<CacheKey, CacheEntry> eldest = i.next();
+          cacheSize -= eldest.getValue().size(eldest.getKey().name);
+          i.remove();
+        }
+      }
+    }
+    return entry;
+  }
+
+  /**
+   * Removes entries from the cache.
+   * @param owner The class manager whose entries to remove, or
+   *     <code>null</code> to remove the entries of all class managers.
+   * @param name The name of the class whose entries to remove, or
+   *     <code>null</code> to remove the entries for all classes.
+   */
+  private void invalidate(Object owner, String name) {
+    synchronized (cache) {
+      modificationCount++;
+      Iterator<Map.Entry<CacheKey, CacheEntry>> i = cache.entrySet().iterator();
+      while (i.hasNext()) {
+        Map.Entry<CacheKey, CacheEntry> entry = i.next();
+        CacheKey key = entry.getKey();
+        if ((owner == null || key.owner == owner) && (name == null || key.name.equals(name))) {
+          cacheSize -= entry.getValue().size(key.name);
+          i.remove();
+        }
+      }
+    }
   }
 
   /* (non-Javadoc)
@@ -281,6 +463,11 @@ public final class DbClassManager extends AbstractClassManager implements Parent
 
       con.commit();
       con.setAutoCommit(true);
+
+      /* Child class managers may see the parent's definition, so their
+       * entries for this class must be dropped as well.
+       */
+      invalidate(null, name);
     } catch (SQLException e) {
       DbUtil.rollback(con);
       logger.error("Unable to persist class definition to database.", e);
@@ -366,6 +553,7 @@ public final class DbClassManager extends AbstractClassManager implements Parent
 
         con.commit();
         con.setAutoCommit(true);
+        invalidate(this, name);
       } catch (SQLException e) {
         DbUtil.rollback(con);
         logger.error("Unable to persist class definition to database.", e);
@@ -379,7 +567,8 @@ public final class DbClassManager extends AbstractClassManager implements Parent
      * @see ca.eandb.util.classloader.ClassLoaderStrategy#getClassDefinition(java.lang.String)
      */
     public ByteBuffer getClassDefinition(String name) {
-      byte[] def = getClassField(name, "Definition");
+      check();
+      byte[] def = lookup(this, name, true, childLookup, name, name, id).definition;
       return (def != null) ? ByteBuffer.wrap(def) : null;
     }
 
@@ -387,35 +576,8 @@ public final class DbClassManager extends AbstractClassManager implements Parent
      * @see ca.eandb.jdcp.server.classmanager.ClassManager#getClassDigest(java.lang.String)
      */
     public byte[] getClassDigest(String name) {
-      return getClassField(name, "MD5");
-    }
-
-    private byte[] getClassField(String name, String field) {
       check();
-
-      try {
-        byte[] data = DbUtil.queryBinary(ds, null,
-            "SELECT " + field + " " +
-            "FROM ChildClasses " +
-            "WHERE ChildID = ? " +
-            "  AND Name = ?",
-            id, name);
-        if (data != null) {
-          return data;
-        }
-
-        return DbUtil.queryBinary(ds, null,
-            "SELECT " + field + " " +
-            "FROM ChildClassManagers, ParentClasses " +
-            "WHERE ChildClassManagers.ChildID = ? " +
-            "  AND ParentClasses.SnapshotIndex <= ChildClassManagers.SnapshotIndex " +
-            "  AND ParentClasses.Name = ? " +
-            "ORDER BY ParentClasses.SnapshotIndex DESC",
-            id, name);
-      } catch (SQLException e) {
-        logger.error("Could not retrieve class digest from database.", e);
-        throw new RuntimeException(e);
-      }
+      return lookup(this, name, false, childDigestLookup, name, name, id).getDigest();
     }
 
     /* (non-Javadoc)
@@ -440,6 +602,7 @@ public final class DbClassManager extends AbstractClassManager implements Parent
         con.commit();
         con.setAutoCommit(true);
         released = true;
+        invalidate(this, null);
       } catch (SQLException e) {
         DbUtil.rollback(con);
         logger.error("Failed to remove child class manager from database.", e);
@@ -450,4 +613,250 @@ public final class DbClassManager extends AbstractClassManager implements Parent
 
   }
 
+  /**
+   * Identifies a cached class lookup.
+   */
+  private static final class CacheKey {
+
+    /** The class manager for which the class was looked up. */
+    public final Object owner;
+
+    /** The fully qualified name of the class. */
+    public final String name;
+
+    /**
+     * Creates a new <code>CacheKey</code>.
+     * @param owner The class manager for which the class was looked up.
+     * @param name The fully qualified name of the class.
+     */
+    public CacheKey(Object owner, String name) {
+      this.owner = owner;
+      this.name = name;
+    }
+
+    /* (non-Javadoc)
+     * @see java.lang.Object#hashCode()
+     */
+    @Override
+    public int hashCode() {
+      return 31 * System.identityHashCode(owner) + name.hashCode();
+    }
+
+    /* (non-Javadoc)
+     * @see java.lang.Object#equals(java.lang.Object)
+     */
+    @Override
+    public boolean equals(Object obj) {
+      if (!(obj instanceof CacheKey)) {
+        return false;
+      }
+      CacheKey other = (CacheKey) obj;
+      return owner == other.owner && name.equals(other.name);
+    }
+
+  }
+
+  /**
+   * The result of a class lookup.
+   */
+  private static final class CacheEntry {
+
+    /**
+     * The MD5 digest of the class definition, or <code>null</code> if the
+     * class was not found.
+     */
+    public final byte[] digest;
+
+    /**
+     * The class definition, or <code>null</code> if the class was not
+     * found or only its digest was looked up.
+     */
+    public final byte[] definition;
+
+    /**
+     * Creates a new <code>CacheEntry</code>.
+     * @param digest The MD5 digest of the class definition.
+     * @param definition The class definition.
+     */
+    public CacheEntry(byte[] digest, byte[] definition) {
+      this.digest = digest;
+      this.definition = definition;
+    }
+
+    /**
+     * Gets a copy of the digest.
+     * @return The MD5 digest of the class definition, or <code>null</code>
+     *     if the class was not found.
+     */
+    public byte[] getDigest() {
+      return (digest != null) ? digest.clone() : null;
+    }
+
+    /**
+     * Estimates the memory used by this entry.
+     * @param name The name of the class.
+     * @return The approximate size of the entry, in bytes.
+     */
+    public long size(String name) {
+      return CACHE_ENTRY_OVERHEAD + 2L * name.length()
+          + (digest != null ? digest.length : 0)
+          + (definition != null ? definition.length : 0);
+    }
+
+  }
+
+  /**
+   * Keeps prepared statements for a class lookup query open between
+   * lookups, so that the query is not recompiled and a connection need not
+   * be obtained for every lookup.  The query must return, in order of
+   * precedence, either pairs of MD5 and Definition columns or MD5 columns
+   * only.
+   */
+  private final class StatementPool {
+
+    /** The SQL text of the query. */
+    private final String sql;
+
+    /**
+     * A value indicating whether the query returns pairs of MD5 and
+     * Definition columns, rather than MD5 columns only.
+     */
+    private final boolean definitions;
+
+    /** The open statements not currently in use. */
+    private final Queue<PreparedStatement> idle = new ConcurrentLinkedQueue<PreparedStatement>();
+
+    /**
+     * Creates a new <code>StatementPool</code>.
+     * @param definitions A value indicating whether the query returns pairs
+     *     of MD5 and Definition columns, rather than MD5 columns only.
+     * @param sql The SQL text of the query.
+     */
+    public StatementPool(boolean definitions, String sql) {
+      this.definitions = definitions;
+      this.sql = sql;
+    }
+
+    /**
+     * Runs the query.  If an idle statement fails (e.g., because its
+     * connection has been closed), it is discarded and the query is
+     * retried on a new connection.
+     * @param definition A value indicating whether to read the class
+     *     definition, or only its digest.
+     * @param params The parameters to the query.
+     * @return The <code>CacheEntry</code> for the first pair of columns
+     *     having a digest, or an empty <code>CacheEntry</code> if the class
+     *     was not found.
+     * @throws SQLException If an error occurs while running the query.
+     */
+    public CacheEntry query(boolean definition, Object... params) throws SQLException {
+      PreparedStatement stmt = idle.poll();
+      if (stmt != null) {
+        try {
+          CacheEntry entry = query(stmt, definition, params);
+          release(stmt);
+          return entry;
+        } catch (SQLException e) {
+          logger.warn("Discarding failed class lookup statement.", e);
+          discard(stmt);
+        }
+      }
+
+      Connection con = ds.getConnection();
+      try {
+        stmt = con.prepareStatement(sql);
+      } catch (SQLException e) {
+        DbUtil.close(con);
+        throw e;
+      }
+      try {
+        CacheEntry entry = query(stmt, definition, params);
+        release(stmt);
+        return entry;
+      } catch (SQLException e) {
+        discard(stmt);
+        throw e;
+      }
+    }
+
+    /**
+     * Runs the query using the specified statement.
+     * @param stmt The <code>PreparedStatement</code> to run.
+     * @param definition A value indicating whether to read the class
+     *     definition, or only its digest.
+     * @param params The parameters to the query.
+     * @return The <code>CacheEntry</code> for the class.
+     * @throws SQLException If an error occurs while running the query.
+     */
+    private CacheEntry query(PreparedStatement stmt, boolean definition,
+        Object... params) throws SQLException {
+      for (int i = 0; i < params.length; i++) {
+        stmt.setObject(i + 1, params[i]);
+      }
+      ResultSet rs = stmt.executeQuery();
+      try {
+        if (rs.next()) {
+          int columns = rs.getMetaData().getColumnCount();
+          int stride = definitions ? 2 : 1;
+          for (int i = 1; i <= columns; i += stride) {
+            byte[] digest = rs.getBytes(i);
+            if (digest != null) {
+              return new CacheEntry(digest,
+                  (definitions && definition) ? rs.getBytes(i + 1) : null);
+            }
+          }
+        }
+        return new CacheEntry(null, null);
+      } finally {
+        DbUtil.close(rs);
+      }
+    }
+
+    /**
+     * Returns a statement to the pool, or closes it if enough statements
+     * are already idle.
+     * @param stmt The <code>PreparedStatement</code> to release.
+     */
+    private void release(PreparedStatement stmt) {
+      if (!closed && idle.size() < MAX_IDLE_STATEMENTS) {
+        idle.add(stmt);
+
+        /* If the pool was closed concurrently, make sure the statement
+         * does not linger.
+         */
+        if (closed) {
+          close();
+        }
+      } else {
+        discard(stmt);
+      }
+    }
+
+    /**
+     * Closes all idle statements and their connections.
+     */
+    public void close() {
+      PreparedStatement stmt;
+      while ((stmt = idle.poll()) != null) {
+        discard(stmt);
+      }
+    }
+
+    /**
+     * Closes a statement and its connection.
+     * @param stmt The <code>PreparedStatement</code> to close.
+     */
+    private void discard(PreparedStatement stmt) {
+      Connection con = null;
+      try {
+        con = stmt.getConnection();
+      } catch (SQLException e) {
+        logger.warn("Could not get connection for class lookup statement.", e);
+      }
+      DbUtil.close(stmt);
+      DbUtil.close(con);
+    }
+
+  }
+
 }
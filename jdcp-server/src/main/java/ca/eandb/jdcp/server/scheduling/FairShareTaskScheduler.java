@@ -0,0 +1,427 @@
+/*
+ * Copyright (c) 2026 Bradley W. Kimmel
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package ca.eandb.jdcp.server.scheduling;
+
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+import ca.eandb.jdcp.job.TaskDescription;
+import ca.eandb.jdcp.remote.JobService;
+
+/**
+ * A <code>TaskScheduler</code> that apportions tasks among jobs according to
+ * their weights using stride scheduling.  Jobs are partitioned into groups
+ * (typically, one group per submitting user).  Each group receives a share
+ * of the served tasks proportional to its weight, and within a group, each
+ * job receives a share proportional to its priority.  Thus, a long running
+ * job cannot starve other jobs at the same priority, while a job that is
+ * alone in the schedule may still receive every task.  This class is safe
+ * for use by multiple concurrent threads.
+ * @author Brad Kimmel
+ */
+public final class FairShareTaskScheduler implements TaskScheduler {
+
+  /** The name of the group to which jobs belong unless otherwise set. */
+  public static final String DEFAULT_GROUP = "";
+
+  /** The weight assigned to groups unless otherwise set. */
+  public static final int DEFAULT_GROUP_WEIGHT = 1;
+
+  /**
+   * The pass increment for a weight of one.  The stride of a job or group is
+   * this value divided by its weight.
+   */
+  private static final long STRIDE1 = 1L << 20;
+
+  /**
+   * A <code>Map</code> associating information about a job with the
+   * corresponding job's <code>UUID</code>.
+   */
+  private final Map<UUID, JobInfo> jobs = new HashMap<UUID, JobInfo>();
+
+  /**
+   * A <code>Map</code> associating information about a group with the name
+   * of the group.
+   */
+  private final Map<String, GroupInfo> groups = new HashMap<String, GroupInfo>();
+
+  /**
+   * A <code>Map</code> associating the weight assigned to a group with the
+   * name of the group, for groups whose weight has been set.  This is kept
+   * apart from {@link #groups} so that the weight is not lost when the
+   * group has no jobs.
+   */
+  private final Map<String, Integer> groupWeights = new HashMap<String, Integer>();
+
+  /** An <code>IndexedHeap</code> of the groups that have tasks to serve. */
+  private final IndexedHeap<GroupInfo> groupQueue = new IndexedHeap<GroupInfo>(new Comparator<GroupInfo>() {
+    public int compare(GroupInfo group1, GroupInfo group2) {
+      return compareShares(group1, group2);
+    }
+  });
+
+  /** The pass value of the group that was most recently served. */
+  private long virtualTime = 0;
+
+  /**
+   * The order number to assign to the next job or group that is created.
+   * Used to break ties between shares having the same pass value.
+   */
+  private int nextOrder = 0;
+
+  /**
+   * Common bookkeeping information for a job or a group of jobs.
+   * @author Brad Kimmel
+   */
+  private static abstract class Share extends IndexedHeap.Node {
+
+    /** The order in which this share was created. */
+    public final int order;
+
+    /** The amount by which to advance the pass each time it is served. */
+    public long stride;
+
+    /** The virtual time at which this share is next due to be served. */
+    public long pass = 0;
+
+    /**
+     * Creates a new <code>Share</code>.
+     * @param order The order in which this share was created.
+     * @param weight The weight of this share.
+     */
+    protected Share(int order, int weight) {
+      this.order = order;
+      setWeight(weight);
+    }
+
+    /**
+     * Sets the weight of this share.
+     * @param weight The weight of this share.  Weights less than one are
+     *     treated as one.
+     */
+    public void setWeight(int weight) {
+      stride = STRIDE1 / Math.max(weight, 1);
+    }
+
+  }
+
+  /**
+   * Bookkeeping information about a group of jobs.
+   * @author Brad Kimmel
+   */
+  private static final class GroupInfo extends Share {
+
+    /** The name of this group. */
+    public final String name;
+
+    /** The number of jobs in this group. */
+    public int jobs = 0;
+
+    /** An <code>IndexedHeap</code> of the jobs in this group that have tasks to serve. */
+    public final IndexedHeap<JobInfo> jobQueue = new IndexedHeap<JobInfo>(new Comparator<JobInfo>() {
+      public int compare(JobInfo job1, JobInfo job2) {
+        return compareShares(job1, job2);
+      }
+    });
+
+    /** The pass value of the job in this group that was most recently served. */
+    public long virtualTime = 0;
+
+    /**
+     * Creates a new <code>GroupInfo</code>.
+     * @param name The name of this group.
+     * @param order The order in which this group was created.
+     * @param weight The weight of this group.
+     */
+    public GroupInfo(String name, int order, int weight) {
+      super(order, weight);
+      this.name = name;
+    }
+
+  }
+
+  /**
+   * Bookkeeping information about a <code>ParallelizableJob</code>.
+   * @author Brad Kimmel
+   */
+  private static final class JobInfo extends Share {
+
+    /** The tasks to be served for this job. */
+    public final TaskTable tasks = new TaskTable();
+
+    /** The group to which this job belongs. */
+    public GroupInfo group;
+
+    /**
+     * Creates a new <code>JobInfo</code>.
+     * @param order The order in which this job was created.
+     * @param group The group to which this job belongs.
+     */
+    public JobInfo(int order, GroupInfo group) {
+      super(order, JobService.DEFAULT_PRIORITY);
+      this.group = group;
+    }
+
+  }
+
+  /**
+   * Compares two shares according to their pass values, then according to
+   * the order in which they were created.
+   * @param share1 The first <code>Share</code> to compare.
+   * @param share2 The second <code>Share</code> to compare.
+   * @return A negative value if <code>share1</code> should be served first,
+   *     a positive value if <code>share2</code> should be served first, or
+   *     zero if they are the same.
+   */
+  private static int compareShares(Share share1, Share share2) {
+    if (share1.pass < share2.pass) {
+      return -1;
+    } else if (share1.pass > share2.pass) {
+      return 1;
+    } else if (share1.order < share2.order) {
+      return -1;
+    } else if (share1.order > share2.order) {
+      return 1;
+    } else {
+      return 0;
+    }
+  }
+
+  /**
+   * Sets the group to which a job belongs.
+   * @param jobId The <code>UUID</code> identifying the job.
+   * @param group The name of the group to which the job belongs, or
+   *     <code>null</code> to assign the job to the default group.
+   */
+  public synchronized void setJobGroup(UUID jobId, String group) {
+    JobInfo job = getJob(jobId);
+    GroupInfo newGroup = getGroup(group);
+    if (job.group != newGroup) {
+      boolean active = !job.tasks.isEmpty();
+      if (active) {
+        deactivate(job);
+      }
+      releaseGroup(job.group);
+      job.group = newGroup;
+      newGroup.jobs++;
+      if (active) {
+        activate(job);
+      }
+    }
+  }
+
+  /**
+   * Sets the weight of a group.  Each group with tasks remaining is served
+   * in proportion to its weight.
+   * @param group The name of the group, or <code>null</code> for the
+   *     default group.
+   * @param weight The weight to assign to the group.
+   */
+  public synchronized void setGroupWeight(String group, int weight) {
+    if (group == null) {
+      group = DEFAULT_GROUP;
+    }
+    groupWeights.put(group, weight);
+    GroupInfo info = groups.get(group);
+    if (info != null) {
+      info.setWeight(weight);
+    }
+  }
+
+  /**
+   * Gets the bookkeeping information for a group, creating it if necessary.
+   * @param name The name of the group, or <code>null</code> for the default
+   *     group.
+   * @return The <code>GroupInfo</code> for the specified group.
+   */
+  private GroupInfo getGroup(String name) {
+    if (name == null) {
+      name = DEFAULT_GROUP;
+    }
+    GroupInfo group = groups.get(name);
+    if (group == null) {
+      Integer weight = groupWeights.get(name);
+      group = new GroupInfo(name, nextOrder++,
+          (weight != null) ? weight : DEFAULT_GROUP_WEIGHT);
+      groups.put(name, group);
+    }
+    return group;
+  }
+
+  /**
+   * Records that a job has left a group, and discards the group once it has
+   * no jobs left.
+   * @param group The <code>GroupInfo</code> for the group that the job has
+   *     left.
+   */
+  private void releaseGroup(GroupInfo group) {
+    if (--group.jobs == 0) {
+      groups.remove(group.name);
+    }
+  }
+
+  /**
+   * Gets the bookkeeping information for a job, creating it if necessary.
+   * @param jobId The <code>UUID</code> identifying the job.
+   * @return The <code>JobInfo</code> for the specified job.
+   */
+  private JobInfo getJob(UUID jobId) {
+    JobInfo job = jobs.get(jobId);
+    if (job == null) {
+      job = new JobInfo(nextOrder++, getGroup(DEFAULT_GROUP));
+      job.group.jobs++;
+      jobs.put(jobId, job);
+    }
+    return job;
+  }
+
+  /**
+   * Places a job that has tasks to serve in the queue for its group, and
+   * places the group in the queue if necessary.  A job or group that has
+   * been idle is not credited for the time during which it was idle.
+   * @param job The <code>JobInfo</code> for the job to activate.
+   */
+  private void activate(JobInfo job) {
+    GroupInfo group = job.group;
+    if (group.jobQueue.isEmpty()) {
+      group.pass = Math.max(group.pass, virtualTime);
+      groupQueue.add(group);
+    }
+    job.pass = Math.max(job.pass, group.virtualTime);
+    group.jobQueue.add(job);
+  }
+
+  /**
+   * Removes a job from the queue for its group, and removes the group from
+   * the queue if it has no other jobs with tasks to serve.
+   * @param job The <code>JobInfo</code> for the job to deactivate.
+   */
+  private void deactivate(JobInfo job) {
+    GroupInfo group = job.group;
+    group.jobQueue.remove(job);
+    if (group.jobQueue.isEmpty()) {
+      groupQueue.remove(group);
+    }
+  }
+
+  /* (non-Javadoc)
+   * @see ca.eandb.jdcp.server.scheduling.TaskScheduler#add(ca.eandb.jdcp.job.TaskDescription)
+   */
+  public synchronized void add(TaskDescription task) {
+    JobInfo job = getJob(task.getJobId());
+    boolean wasEmpty = job.tasks.isEmpty();
+    job.tasks.add(task);
+    if (wasEmpty) {
+      activate(job);
+    }
+  }
+
+  /* (non-Javadoc)
+   * @see ca.eandb.jdcp.server.scheduling.TaskScheduler#get(java.util.UUID, int)
+   */
+  public synchronized TaskDescription get(UUID jobId, int taskId) {
+    JobInfo job = jobs.get(jobId);
+    return (job != null) ? job.tasks.get(taskId) : null;
+  }
+
+  /* (non-Javadoc)
+   * @see ca.eandb.jdcp.server.scheduling.TaskScheduler#contains(java.util.UUID, int)
+   */
+  public synchronized boolean contains(UUID jobId, int taskId) {
+    JobInfo job = jobs.get(jobId);
+    return (job != null) ? job.tasks.contains(taskId) : false;
+  }
+
+  /* (non-Javadoc)
+   * @see ca.eandb.jdcp.server.scheduling.TaskScheduler#getNextTask()
+   */
+  public synchronized TaskDescription getNextTask() {
+    GroupInfo group = groupQueue.peek();
+    if (group == null) {
+      return null;
+    }
+
+    JobInfo job = group.jobQueue.peek();
+    virtualTime = group.pass;
+    group.virtualTime = job.pass;
+
+    group.pass += group.stride;
+    groupQueue.update(group);
+    job.pass += job.stride;
+    group.jobQueue.update(job);
+
+    return job.tasks.next();
+  }
+
+  /* (non-Javadoc)
+   * @see ca.eandb.jdcp.server.scheduling.TaskScheduler#takeNextTask()
+   */
+  public synchronized TaskDescription takeNextTask() {
+    TaskDescription task = getNextTask();
+    if (task != null) {
+      remove(task.getJobId(), task.getTaskId());
+    }
+    return task;
+  }
+
+  /* (non-Javadoc)
+   * @see ca.eandb.jdcp.server.scheduling.TaskScheduler#remove(java.util.UUID, int)
+   */
+  public synchronized TaskDescription remove(UUID jobId, int taskId) {
+    JobInfo job = jobs.get(jobId);
+    if (job == null) {
+      return null;
+    }
+    TaskDescription task = job.tasks.remove(taskId);
+    if (task != null && job.tasks.isEmpty()) {
+      deactivate(job);
+    }
+    return task;
+  }
+
+  /* (non-Javadoc)
+   * @see ca.eandb.jdcp.server.scheduling.TaskScheduler#setJobPriority(java.util.UUID, int)
+   */
+  public synchronized void setJobPriority(UUID jobId, int priority) {
+    getJob(jobId).setWeight(priority);
+  }
+
+  /* (non-Javadoc)
+   * @see ca.eandb.jdcp.server.scheduling.TaskScheduler#removeJob(java.util.UUID)
+   */
+  public synchronized void removeJob(UUID jobId) {
+    JobInfo job = jobs.remove(jobId);
+    if (job != null) {
+      if (!job.tasks.isEmpty()) {
+        deactivate(job);
+      }
+      releaseGroup(job.group);
+    }
+  }
+
+}
@@ -0,0 +1,263 @@
+/*
+ * Copyright (c) 2026 Bradley W. Kimmel
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package ca.eandb.jdcp.server.scheduling;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * A binary heap in which each element records its own position.  This
+ * allows membership tests in constant time and removal or repositioning of
+ * arbitrary elements in logarithmic time, which
+ * <code>java.util.PriorityQueue</code> cannot provide.  This class is not
+ * thread-safe.
+ * @param <T> The type of element stored in the heap.
+ * @author Brad Kimmel
+ */
+/* package */ final class IndexedHeap<T extends IndexedHeap.Node> {
+
+  /**
+   * An element that may be stored in an <code>IndexedHeap</code>.  A node
+   * may be a member of at most one heap at a time.
+   * @author Brad Kimmel
+   */
+  public static abstract class Node {
+
+    /**
+     * The position of this node in the heap, or <code>-1</code> if this
+     * node is not in a heap.
+     */
+    int heapIndex = -1;
+
+  }
+
+  /** The initial capacity of the heap. */
+  private static final int DEFAULT_INITIAL_CAPACITY = 11;
+
+  /** The <code>Comparator</code> that determines the order of elements. */
+  private final Comparator<? super T> comparator;
+
+  /** The elements of the heap. */
+  private Node[] heap = new Node[DEFAULT_INITIAL_CAPACITY];
+
+  /** The number of elements in the heap. */
+  private int size = 0;
+
+  /**
+   * Creates a new <code>IndexedHeap</code>.
+   * @param comparator The <code>Comparator</code> to use to order the
+   *     elements.  The smallest element is at the head of the heap.
+   */
+  public IndexedHeap(Comparator<? super T> comparator) {
+    this.comparator = comparator;
+  }
+
+  /**
+   * Gets the number of elements in the heap.
+   * @return The number of elements in the heap.
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Determines if the heap is empty.
+   * @return A value indicating whether the heap is empty.
+   */
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  /**
+   * Determines if the specified node is in this heap.
+   * @param node The node to look for.
+   * @return A value indicating whether <code>node</code> is in this heap.
+   */
+  public boolean contains(T node) {
+    int i = node.heapIndex;
+    return i >= 0 && i < size && heap[i] == node;
+  }
+
+  /**
+   * Adds a node to the heap.
+   * @param node The node to add.
+   * @return A value indicating whether the node was added (i.e.,
+   *     <code>false</code> if the node was already in the heap).
+   */
+  public boolean add(T node) {
+    if (contains(node)) {
+      return false;
+    }
+    if (size == heap.length) {
+      heap = Arrays.copyOf(heap, size + (size >> 1) + 1);
+    }
+    heap[size] = node;
+    node.heapIndex = size;
+    siftUp(size++);
+    return true;
+  }
+
+  /**
+   * Gets the node at the head of the heap without removing it.
+   * @return The smallest node, or <code>null</code> if the heap is empty.
+   */
+  public T peek() {
+    return (size > 0) ? elementAt(0) : null;
+  }
+
+  /**
+   * Removes and returns the node at the head of the heap.
+   * @return The smallest node, or <code>null</code> if the heap is empty.
+   */
+  public T poll() {
+    T head = peek();
+    if (head != null) {
+      removeAt(0);
+    }
+    return head;
+  }
+
+  /**
+   * Removes a node from the heap.
+   * @param node The node to remove.
+   * @return A value indicating whether the node was in the heap.
+   */
+  public boolean remove(T node) {
+    if (!contains(node)) {
+      return false;
+    }
+    removeAt(node.heapIndex);
+    return true;
+  }
+
+  /**
+   * Restores the heap ordering after the key of a node has changed.  If
+   * the node is not in the heap, this method has no effect.
+   * @param node The node whose key has changed.
+   */
+  public void update(T node) {
+    if (contains(node)) {
+      int i = node.heapIndex;
+      siftUp(i);
+      if (heap[i] == node) {
+        siftDown(i);
+      }
+    }
+  }
+
+  /**
+   * Removes the node at the specified position.
+   * @param i The position of the node to remove.
+   */
+  private void removeAt(int i) {
+    Node removed = heap[i];
+    int last = --size;
+    Node moved = heap[last];
+    heap[last] = null;
+    if (i != last) {
+      place(moved, i);
+      siftDown(i);
+      if (heap[i] == moved) {
+        siftUp(i);
+      }
+    }
+    removed.heapIndex = -1;
+  }
+
+  /**
+   * Moves the node at the specified position towards the head of the heap
+   * until the heap ordering is restored.
+   * @param i The position of the node to move.
+   */
+  private void siftUp(int i) {
+    Node node = heap[i];
+    while (i > 0) {
+      int parent = (i - 1) >>> 1;
+      if (compare(node, heap[parent]) >= 0) {
+        break;
+      }
+      place(heap[parent], i);
+      i = parent;
+    }
+    place(node, i);
+  }
+
+  /**
+   * Moves the node at the specified position away from the head of the
+   * heap until the heap ordering is restored.
+   * @param i The position of the node to move.
+   */
+  private void siftDown(int i) {
+    Node node = heap[i];
+    int half = size >>> 1;
+    while (i < half) {
+      int child = 2 * i + 1;
+      int right = child + 1;
+      if (right < size && compare(heap[right], heap[child]) < 0) {
+        child = right;
+      }
+      if (compare(node, heap[child]) <= 0) {
+        break;
+      }
+      place(heap[child], i);
+      i = child;
+    }
+    place(node, i);
+  }
+
+  /**
+   * Stores a node at the specified position.
+   * @param node The node to store.
+   * @param i The position at which to store the node.
+   */
+  private void place(Node node, int i) {
+    heap[i] = node;
+    node.heapIndex = i;
+  }
+
+  /**
+   * Compares two nodes.
+   * @param a The first node.
+   * @param b The second node.
+   * @return A negative value, zero, or a positive value if <code>a</code> is
+   *     less than, equal to, or greater than <code>b</code>, respectively.
+   */
+  @SuppressWarnings("unchecked")
+  private int compare(Node a, Node b) {
+    return comparator.compare((T) a, (T) b);
+  }
+
+  /**
+   * Gets the node at the specified position.
+   * @param i The position of the node.
+   * @return The node at position <code>i</code>.
+   */
+  @SuppressWarnings("unchecked")
+  private T elementAt(int i) {
+    return (T) heap[i];
+  }
+
+}
@@ -0,0 +1,326 @@
+/*
+ * Copyright (c) 2026 Bradley W. Kimmel
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package ca.eandb.jdcp.server.scheduling;
+
+import java.util.Comparator;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import ca.eandb.jdcp.job.TaskDescription;
+import ca.eandb.jdcp.remote.JobService;
+
+/**
+ * A <code>TaskScheduler</code> that serves tasks for the earliest scheduled
+ * job having the highest priority in a round robin fashion.  That is, tasks
+ * are scheduled so that each job completes before the next one starts.
+ * This scheduler behaves like {@link PrioritySerialTaskScheduler}, but the
+ * jobs are kept in an {@link IndexedHeap} so that adding tasks, changing
+ * job priorities, and removing jobs take logarithmic time in the number of
+ * jobs rather than linear time.  This class is safe for use by multiple
+ * concurrent threads.
+ * @author Brad Kimmel
+ */
+public final class IndexedPriorityTaskScheduler implements TaskScheduler {
+
+  /**
+   * A <code>Map</code> associating information about a job with the
+   * corresponding job's <code>UUID</code>.
+   * @see JobInfo
+   */
+  private final Map<UUID, JobInfo> jobs = new ConcurrentHashMap<UUID, JobInfo>();
+
+  /**
+   * An <code>IndexedHeap</code> used to determine which job is next in
+   * line.  All access to this heap, and all changes to job priorities, must
+   * be synchronized on the heap.
+   */
+  private final IndexedHeap<JobInfo> jobQueue = new IndexedHeap<JobInfo>(new Comparator<JobInfo>() {
+    public int compare(JobInfo job1, JobInfo job2) {
+      return job1.compareTo(job2);
+    }
+  });
+
+  /**
+   * Each job is assigned an order number using an increasing counter.  This
+   * allows {@link #jobQueue} to determine in which order jobs were first
+   * seen.  This field stores the order number to assign to the next job that
+   * is added.
+   */
+  private int nextOrder = 0;
+
+  /**
+   * Represents bookkeeping information about a
+   * <code>ParallelizableJob</code>.
+   * @author Brad Kimmel
+   */
+  private static final class JobInfo extends IndexedHeap.Node implements Comparable<JobInfo> {
+
+    /** The <code>UUID</code> for this job. */
+    public final UUID id;
+
+    /** The priority assigned to this job. */
+    private int priority = JobService.DEFAULT_PRIORITY;
+
+    /** The order in which this job was added to the schedule. */
+    private final int order;
+
+    /**
+     * The <code>TaskTable</code> holding the tasks for this job, in the
+     * order in which they are served.
+     */
+    private final TaskTable tasks = new TaskTable();
+
+    /**
+     * Creates a new <code>JobInfo</code>.
+     * @param id The <code>UUID</code> identifying the job that this
+     *     <code>JobInfo</code> describes.
+     * @param order The order in which this job was added to the schedule.
+     */
+    public JobInfo(UUID id, int order) {
+      this.id = id;
+      this.order = order;
+    }
+
+    /* (non-Javadoc)
+     * @see java.lang.Comparable#compareTo(java.lang.Object)
+     */
+    public int compareTo(JobInfo other) {
+      if (priority > other.priority) {
+        return -1;
+      } else if (priority < other.priority) {
+        return 1;
+      } else if (order < other.order) {
+        return -1;
+      } else if (order > other.order) {
+        return 1;
+      } else {
+        return 0;
+      }
+    }
+
+    /**
+     * Adds a task to the queue for this job.
+     * @param task The <code>TaskDescription</code> describing the task to
+     *     be scheduled.
+     */
+    public synchronized void addTask(TaskDescription task) {
+      tasks.add(task);
+    }
+
+    /**
+     * Gets the specified task.
+     * @param taskId The identifier for the task to retrieve.
+     * @return The <code>TaskDescription</code> having the specified
+     *     <code>taskId</code>, or <code>null</code> if no such task is
+     *     found.
+     */
+    public synchronized TaskDescription getTask(int taskId) {
+      return tasks.get(taskId);
+    }
+
+    /**
+     * Determines whether the specified task exists.
+     * @param taskId The identifier for the task to look up.
+     * @return A value indicating whether a task exists with the given
+     *     <code>taskId</code>.
+     */
+    public synchronized boolean contains(int taskId) {
+      return tasks.contains(taskId);
+    }
+
+    /**
+     * Determines whether there are any tasks remaining for this job.
+     * @return A value indicating whether there are no tasks remaining for
+     *     this job.
+     */
+    public synchronized boolean isEmpty() {
+      return tasks.isEmpty();
+    }
+
+    /**
+     * Obtains the next task to be served for this job.
+     * @return The <code>TaskDescription</code> for the next task to be
+     *     served.
+     */
+    public synchronized TaskDescription getNextTask() {
+      return tasks.next();
+    }
+
+    /**
+     * Removes and returns the next task to be served for this job.
+     * @return The <code>TaskDescription</code> for the next task to be
+     *     served, or <code>null</code> if there are no tasks remaining.
+     */
+    public synchronized TaskDescription takeNextTask() {
+      TaskDescription desc = tasks.next();
+      if (desc != null) {
+        tasks.remove(desc.getTaskId());
+      }
+      return desc;
+    }
+
+    /**
+     * Removes a task from the queue for this job.
+     * @param taskId The task ID of the task to be removed.
+     * @return The <code>TaskDescription</code> describing the removed task.
+     */
+    public synchronized TaskDescription removeTask(int taskId) {
+      return tasks.remove(taskId);
+    }
+
+  }
+
+  /**
+   * Gets the bookkeeping information for a job.  If the specified job has
+   * not been seen, a new <code>JobInfo</code> is created for it.
+   * @param jobId The <code>UUID</code> of the job for which to obtain the
+   *     corresponding <code>JobInfo</code>.
+   * @return The <code>JobInfo</code> for the specified job.
+   */
+  private JobInfo getJob(UUID jobId) {
+    JobInfo job = jobs.get(jobId);
+    if (job == null) {
+      synchronized (jobQueue) {
+        job = jobs.get(jobId);
+        if (job == null) {
+          job = new JobInfo(jobId, nextOrder++);
+          jobs.put(jobId, job);
+        }
+      }
+    }
+    return job;
+  }
+
+  /* (non-Javadoc)
+   * @see ca.eandb.jdcp.server.scheduling.TaskScheduler#add(ca.eandb.jdcp.job.TaskDescription)
+   */
+  public void add(TaskDescription task) {
+    UUID jobId = task.getJobId();
+    JobInfo job = getJob(jobId);
+    job.addTask(task);
+    synchronized (jobQueue) {
+      if (jobs.get(jobId) == job) {
+        jobQueue.add(job);
+      }
+    }
+  }
+
+  /* (non-Javadoc)
+   * @see ca.eandb.jdcp.server.scheduling.TaskScheduler#get(java.util.UUID, int)
+   */
+  public TaskDescription get(UUID jobId, int taskId) {
+    JobInfo job = jobs.get(jobId);
+    return (job != null) ? job.getTask(taskId) : null;
+  }
+
+  /* (non-Javadoc)
+   * @see ca.eandb.jdcp.server.scheduling.TaskScheduler#contains(java.util.UUID, int)
+   */
+  public boolean contains(UUID jobId, int taskId) {
+    JobInfo job = jobs.get(jobId);
+    return (job != null) ? job.contains(taskId) : false;
+  }
+
+  /* (non-Javadoc)
+   * @see ca.eandb.jdcp.server.scheduling.TaskScheduler#getNextTask()
+   */
+  public TaskDescription getNextTask() {
+    return nextTask(false);
+  }
+
+  /* (non-Javadoc)
+   * @see ca.eandb.jdcp.server.scheduling.TaskScheduler#takeNextTask()
+   */
+  public TaskDescription takeNextTask() {
+    return nextTask(true);
+  }
+
+  /**
+   * Finds the next task to be served.
+   * @param take A value indicating whether to remove the task from the
+   *     schedule.
+   * @return The <code>TaskDescription</code> for the next task to be
+   *     served, or <code>null</code> if there are no tasks remaining.
+   */
+  private TaskDescription nextTask(boolean take) {
+    while (true) {
+      JobInfo job;
+      synchronized (jobQueue) {
+        job = jobQueue.peek();
+      }
+      if (job == null) {
+        return null;
+      }
+
+      TaskDescription desc = take ? job.takeNextTask() : job.getNextTask();
+      if (desc != null) {
+        return desc;
+      }
+
+      /* Only drop the job from the queue if no task was added to it since
+       * we looked.  Otherwise, the task would be orphaned.
+       */
+      synchronized (jobQueue) {
+        if (job.isEmpty()) {
+          jobQueue.remove(job);
+        }
+      }
+    }
+  }
+
+  /* (non-Javadoc)
+   * @see ca.eandb.jdcp.server.scheduling.TaskScheduler#remove(java.util.UUID, int)
+   */
+  public TaskDescription remove(UUID jobId, int taskId) {
+    JobInfo job = jobs.get(jobId);
+    return (job != null) ? job.removeTask(taskId) : null;
+  }
+
+  /* (non-Javadoc)
+   * @see ca.eandb.jdcp.server.scheduling.TaskScheduler#setJobPriority(java.util.UUID, int)
+   */
+  public void setJobPriority(UUID jobId, int priority) {
+    JobInfo job = getJob(jobId);
+    synchronized (jobQueue) {
+      job.priority = priority;
+      jobQueue.update(job);
+    }
+  }
+
+  /* (non-Javadoc)
+   * @see ca.eandb.jdcp.server.scheduling.TaskScheduler#removeJob(java.util.UUID)
+   */
+  public void removeJob(UUID jobId) {
+    synchronized (jobQueue) {
+      JobInfo job = jobs.remove(jobId);
+      if (job != null) {
+        jobQueue.remove(job);
+      }
+    }
+  }
+
+}
@@ -26,11 +26,10 @@
 package ca.eandb.jdcp.server.scheduling;
 
 import java.util.Comparator;
-import java.util.HashMap;
-import java.util.LinkedList;
 import java.util.Map;
 import java.util.PriorityQueue;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 
 import ca.eandb.jdcp.job.TaskDescription;
 import ca.eandb.jdcp.remote.JobService;
@@ -39,6 +38,7 @@ import ca.eandb.jdcp.remote.JobService;
  * A <code>TaskScheduler</code> that serves tasks for the earliest scheduled
  * job having the highest priority in a round robin fashion.  That is, tasks
  * are scheduled so that each job completes before the next one starts.
+ * This class is safe for use by multiple concurrent threads.
  * @author Brad Kimmel
  */
 public final class PrioritySerialTaskScheduler implements TaskScheduler {
@@ -48,11 +48,12 @@ public final class PrioritySerialTaskScheduler implements TaskScheduler {
    * corresponding job's <code>UUID</code>.
    * @see JobInfo
    */
-  private Map<UUID, JobInfo> jobs = new HashMap<UUID, JobInfo>();
+  private Map<UUID, JobInfo> jobs = new ConcurrentHashMap<UUID, JobInfo>();
 
   /**
    * A <code>PriorityQueue</code> used to determine which job is next in
-   * line.
+   * line.  All access to this queue must be synchronized on the queue
+   * itself.
    */
   private PriorityQueue<UUID> jobQueue = new PriorityQueue<UUID>(11, new JobIdComparator());
 
@@ -64,6 +65,14 @@ public final class PrioritySerialTaskScheduler implements TaskScheduler {
    */
   private int nextOrder = 0;
 
+  /**
+   * Gets the order number to assign to the next job that is added.
+   * @return The order number to assign.
+   */
+  private synchronized int nextOrder() {
+    return nextOrder++;
+  }
+
   /**
    * Represents bookkeeping information about a
    * <code>ParallelizableJob</code>.
@@ -75,21 +84,16 @@ public final class PrioritySerialTaskScheduler implements TaskScheduler {
     public final UUID id;
 
     /** The priority assigned to this job. */
-    private int priority = JobService.DEFAULT_PRIORITY;
+    private volatile int priority = JobService.DEFAULT_PRIORITY;
 
     /** The order in which this job was added to the schedule. */
-    private final int order = nextOrder++;
+    private final int order = nextOrder();
 
     /**
-     * A <code>Map</code> associating task IDs with the corresponding
-     * <code>TaskDescription</code>.
+     * The <code>TaskTable</code> holding the tasks for this job, in the
+     * order in which they are served.
      */
-    private Map<Integer, TaskDescription> tasks = new HashMap<Integer, TaskDescription>();
-
-    /**
-     * A <code>LinkedList</code> of task IDs used to
-     */
-    private final LinkedList<Integer> taskQueue = new LinkedList<Integer>();
+    private final TaskTable tasks = new TaskTable();
 
     /**
      * Creates a new <code>JobInfo</code>.
@@ -119,14 +123,11 @@ public final class PrioritySerialTaskScheduler implements TaskScheduler {
 
     /**
      * Adds a task to the queue for this job.
-     * @param task The <code>Object</code> describing the task to be
-     *     scheduled.
-     * @return The task ID for the newly scheduled task.
+     * @param task The <code>TaskDescription</code> describing the task to
+     *     be scheduled.
      */
     public synchronized void addTask(TaskDescription task) {
-      int taskId = task.getTaskId();
-      tasks.put(taskId, task);
-      taskQueue.addFirst(taskId);
+      tasks.add(task);
     }
 
     /**
@@ -147,7 +148,16 @@ public final class PrioritySerialTaskScheduler implements TaskScheduler {
      *     <code>taskId</code>.
      */
     public synchronized boolean contains(int taskId) {
-      return tasks.containsKey(taskId);
+      return tasks.contains(taskId);
+    }
+
+    /**
+     * Determines whether there are any tasks remaining for this job.
+     * @return A value indicating whether there are no tasks remaining for
+     *     this job.
+     */
+    public synchronized boolean isEmpty() {
+      return tasks.isEmpty();
     }
 
     /**
@@ -156,12 +166,20 @@ public final class PrioritySerialTaskScheduler implements TaskScheduler {
      *     served.
      */
     public synchronized TaskDescription getNextTask() {
-      if (taskQueue.isEmpty()) {
-        return null;
+      return tasks.next();
+    }
+
+    /**
+     * Removes and returns the next task to be served for this job.
+     * @return The <code>TaskDescription</code> for the next task to be
+     *     served, or <code>null</code> if there are no tasks remaining.
+     */
+    public synchronized TaskDescription takeNextTask() {
+      TaskDescription desc = tasks.next();
+      if (desc != null) {
+        tasks.remove(desc.getTaskId());
       }
-      int taskId = taskQueue.remove();
-      taskQueue.addLast(taskId);
-      return tasks.get(taskId);
+      return desc;
     }
 
     /**
@@ -170,7 +188,6 @@ public final class PrioritySerialTaskScheduler implements TaskScheduler {
      * @return The <code>Object</code> describing the removed task.
      */
     public synchronized TaskDescription removeTask(int taskId) {
-      taskQueue.remove((Object) new Integer(taskId));
       return tasks.remove(taskId);
     }
 
@@ -215,9 +232,14 @@ public final class PrioritySerialTaskScheduler implements TaskScheduler {
   private JobInfo getJob(UUID jobId) {
     JobInfo job = jobs.get(jobId);
     if (job == null) {
-      job = new JobInfo(jobId);
-      jobs.put(jobId, job);
-      jobQueue.add(jobId);
+      synchronized (jobQueue) {
+        job = jobs.get(jobId);
+        if (job == null) {
+          job = new JobInfo(jobId);
+          jobs.put(jobId, job);
+          jobQueue.add(jobId);
+        }
+      }
     }
     return job;
   }
@@ -228,17 +250,19 @@ public final class PrioritySerialTaskScheduler implements TaskScheduler {
   public void add(TaskDescription task) {
     UUID jobId = task.getJobId();
     JobInfo job = getJob(jobId);
-    if (!jobQueue.contains(jobId)) {
-      jobQueue.add(jobId);
-    }
     job.addTask(task);
+    synchronized (jobQueue) {
+      if (jobs.containsKey(jobId) && !jobQueue.contains(jobId)) {
+        jobQueue.add(jobId);
+      }
+    }
   }
 
   /* (non-Javadoc)
    * @see ca.eandb.jdcp.server.scheduling.TaskScheduler#get(java.util.UUID, int)
    */
   public TaskDescription get(UUID jobId, int taskId) {
-    JobInfo job = getJob(jobId);
+    JobInfo job = jobs.get(jobId);
     return (job != null) ? job.getTask(taskId) : null;
   }
 
@@ -246,7 +270,7 @@ public final class PrioritySerialTaskScheduler implements TaskScheduler {
    * @see ca.eandb.jdcp.server.scheduling.TaskScheduler#contains(java.util.UUID, int)
    */
   public boolean contains(UUID jobId, int taskId) {
-    JobInfo job = getJob(jobId);
+    JobInfo job = jobs.get(jobId);
     return (job != null) ? job.contains(taskId) : false;
   }
 
@@ -254,21 +278,53 @@ public final class PrioritySerialTaskScheduler implements TaskScheduler {
    * @see ca.eandb.jdcp.scheduling.TaskScheduler#getNextTask()
    */
   public TaskDescription getNextTask() {
+    return nextTask(false);
+  }
+
+  /* (non-Javadoc)
+   * @see ca.eandb.jdcp.scheduling.TaskScheduler#takeNextTask()
+   */
+  public TaskDescription takeNextTask() {
+    return nextTask(true);
+  }
+
+  /**
+   * Finds the next task to be served.
+   * @param take A value indicating whether to remove the task from the
+   *     schedule.
+   * @return The <code>TaskDescription</code> for the next task to be
+   *     served, or <code>null</code> if there are no tasks remaining.
+   */
+  private TaskDescription nextTask(boolean take) {
     TaskDescription desc = null;
 
     while (true) {
-      UUID jobId = jobQueue.peek();
-      if (jobId == null) {
-        break;
+      JobInfo job;
+      synchronized (jobQueue) {
+        UUID jobId = jobQueue.peek();
+        if (jobId == null) {
+          break;
+        }
+        job = jobs.get(jobId);
+        if (job == null) {
+          jobQueue.remove();
+          continue;
+        }
       }
 
-      JobInfo job = getJob(jobId);
-      desc = job.getNextTask();
-      if (desc == null) {
-        jobQueue.remove();
-      } else {
+      desc = take ? job.takeNextTask() : job.getNextTask();
+      if (desc != null) {
         break;
       }
+
+      /* Only drop the job from the queue if no task was added to it since
+       * we looked.  Otherwise, the task would be orphaned.
+       */
+      synchronized (jobQueue) {
+        if (job.isEmpty()) {
+          jobQueue.remove(job.id);
+        }
+      }
     }
 
     return desc;
@@ -286,18 +342,24 @@ public final class PrioritySerialTaskScheduler implements TaskScheduler {
    * @see ca.eandb.jdcp.scheduling.TaskScheduler#setJobPriority(java.util.UUID, int)
    */
   public void setJobPriority(UUID jobId, int priority) {
-    JobInfo job = jobs.get(jobId);
-    jobQueue.remove(jobId);
-    job.setPriority(priority);
-    jobQueue.add(jobId);
+    synchronized (jobQueue) {
+      JobInfo job = getJob(jobId);
+      boolean queued = jobQueue.remove(jobId);
+      job.setPriority(priority);
+      if (queued) {
+        jobQueue.add(jobId);
+      }
+    }
   }
 
   /* (non-Javadoc)
    * @see ca.eandb.jdcp.scheduling.TaskScheduler#removeJob(java.util.UUID)
    */
   public void removeJob(UUID jobId) {
-    jobQueue.remove(jobId);
-    jobs.remove(jobId);
+    synchronized (jobQueue) {
+      jobQueue.remove(jobId);
+      jobs.remove(jobId);
+    }
   }
 
 }
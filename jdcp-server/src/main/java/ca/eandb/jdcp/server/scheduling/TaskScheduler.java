@@ -88,6 +88,16 @@ public interface TaskScheduler {
    */
   TaskDescription getNextTask();
 
+  /**
+   * Removes and returns the next task to be served.  Selecting the task and
+   * removing it from the schedule happen atomically, so that no two callers
+   * may obtain the same task from this method.
+   * @return A <code>TaskDescription</code> describing the next task to be
+   *     served, or <code>null</code> if there are no tasks in the schedule.
+   * @see ca.eandb.jdcp.job.TaskDescription
+   */
+  TaskDescription takeNextTask();
+
   /**
    * Removes all tasks from the schedule that are associated with the
    * specified job.
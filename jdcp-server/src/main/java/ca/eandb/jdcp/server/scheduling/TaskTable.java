@@ -0,0 +1,332 @@
+/*
+ * Copyright (c) 2026 Bradley W. Kimmel
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package ca.eandb.jdcp.server.scheduling;
+
+import java.util.Arrays;
+
+import ca.eandb.jdcp.job.TaskDescription;
+
+/**
+ * A table of the outstanding tasks for a single job, keyed by task ID.
+ * Tasks are served in round robin order.  Lookups use an open-addressing
+ * hash table specialized for <code>int</code> keys, and the round robin
+ * order is kept in a doubly-linked ring threaded through the entry arrays,
+ * so that adding, serving, looking up, and removing tasks all take
+ * constant time and do not allocate (except when the table grows).  This
+ * class is not thread-safe.
+ * @author Brad Kimmel
+ */
+/* package */ final class TaskTable {
+
+  /** The initial number of entries that may be stored without growing. */
+  private static final int DEFAULT_INITIAL_CAPACITY = 16;
+
+  /** Indicates the absence of an entry. */
+  private static final int NONE = -1;
+
+  /** The task ID stored in each entry. */
+  private int[] keys;
+
+  /** The <code>TaskDescription</code> stored in each entry. */
+  private TaskDescription[] tasks;
+
+  /**
+   * The entry following each entry in the round robin ring.  For entries
+   * that are not in use, this links the free list instead.
+   */
+  private int[] next;
+
+  /** The entry preceding each entry in the round robin ring. */
+  private int[] prev;
+
+  /**
+   * The hash table.  Each slot holds one more than the index of the entry
+   * whose key hashes to (or was displaced into) that slot, or zero if the
+   * slot is empty.  The length of this array is always a power of two.
+   */
+  private int[] slots;
+
+  /** The entry for the next task to be served, or {@link #NONE}. */
+  private int head = NONE;
+
+  /** The first entry in the free list, or {@link #NONE}. */
+  private int free = NONE;
+
+  /** The number of entries that have ever been used. */
+  private int used = 0;
+
+  /** The number of tasks in the table. */
+  private int size = 0;
+
+  /** Creates a new, empty <code>TaskTable</code>. */
+  public TaskTable() {
+    allocate(DEFAULT_INITIAL_CAPACITY);
+  }
+
+  /**
+   * Gets the number of tasks in the table.
+   * @return The number of tasks in the table.
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Determines if the table is empty.
+   * @return A value indicating if the table is empty.
+   */
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  /**
+   * Adds a task to the table.  The new task will be the next one served.
+   * If a task with the same ID is already present, it is replaced.
+   * @param task The <code>TaskDescription</code> to add.
+   */
+  public void add(TaskDescription task) {
+    int taskId = task.getTaskId();
+    int entry = find(taskId);
+    if (entry != NONE) {
+      tasks[entry] = task;
+      unlink(entry);
+    } else {
+      if (size == keys.length) {
+        grow();
+      }
+      entry = allocateEntry();
+      keys[entry] = taskId;
+      tasks[entry] = task;
+      insertSlot(entry);
+      size++;
+    }
+    link(entry);
+  }
+
+  /**
+   * Gets the task with the specified ID.
+   * @param taskId The ID of the task to get.
+   * @return The <code>TaskDescription</code> for the task, or
+   *     <code>null</code> if there is no such task in the table.
+   */
+  public TaskDescription get(int taskId) {
+    int entry = find(taskId);
+    return (entry != NONE) ? tasks[entry] : null;
+  }
+
+  /**
+   * Determines if the table contains the task with the specified ID.
+   * @param taskId The ID of the task to look for.
+   * @return A value indicating if the task is in the table.
+   */
+  public boolean contains(int taskId) {
+    return find(taskId) != NONE;
+  }
+
+  /**
+   * Gets the next task to serve, and moves it to the back of the round
+   * robin order.
+   * @return The <code>TaskDescription</code> for the next task to serve,
+   *     or <code>null</code> if the table is empty.
+   */
+  public TaskDescription next() {
+    if (head == NONE) {
+      return null;
+    }
+    int entry = head;
+    head = next[entry];
+    return tasks[entry];
+  }
+
+  /**
+   * Removes the task with the specified ID.
+   * @param taskId The ID of the task to remove.
+   * @return The <code>TaskDescription</code> for the removed task, or
+   *     <code>null</code> if there was no such task in the table.
+   */
+  public TaskDescription remove(int taskId) {
+    int mask = slots.length - 1;
+    int i = hash(taskId) & mask;
+    while (slots[i] != 0) {
+      int entry = slots[i] - 1;
+      if (keys[entry] == taskId) {
+        TaskDescription task = tasks[entry];
+        deleteSlot(i);
+        unlink(entry);
+        tasks[entry] = null;
+        next[entry] = free;
+        free = entry;
+        size--;
+        return task;
+      }
+      i = (i + 1) & mask;
+    }
+    return null;
+  }
+
+  /**
+   * Finds the entry for the specified task.
+   * @param taskId The ID of the task to find.
+   * @return The index of the entry for the task, or {@link #NONE} if
+   *     there is no such task in the table.
+   */
+  private int find(int taskId) {
+    int mask = slots.length - 1;
+    int i = hash(taskId) & mask;
+    while (slots[i] != 0) {
+      int entry = slots[i] - 1;
+      if (keys[entry] == taskId) {
+        return entry;
+      }
+      i = (i + 1) & mask;
+    }
+    return NONE;
+  }
+
+  /**
+   * Inserts an entry into the hash table.
+   * @param entry The index of the entry to insert.
+   */
+  private void insertSlot(int entry) {
+    int mask = slots.length - 1;
+    int i = hash(keys[entry]) & mask;
+    while (slots[i] != 0) {
+      i = (i + 1) & mask;
+    }
+    slots[i] = entry + 1;
+  }
+
+  /**
+   * Empties a slot in the hash table, shifting back any displaced entries
+   * that follow it so that no tombstones are required.
+   * @param i The slot to empty.
+   */
+  private void deleteSlot(int i) {
+    int mask = slots.length - 1;
+    int j = i;
+    while (true) {
+      j = (j + 1) & mask;
+      if (slots[j] == 0) {
+        break;
+      }
+      int home = hash(keys[slots[j] - 1]) & mask;
+      /* Move the entry at j into the gap at i unless its home slot lies
+       * cyclically in (i, j].
+       */
+      if ((j > i) ? (home <= i || home > j) : (home <= i && home > j)) {
+        slots[i] = slots[j];
+        i = j;
+      }
+    }
+    slots[i] = 0;
+  }
+
+  /**
+   * Inserts an entry into the round robin ring so that it will be the next
+   * one served.
+   * @param entry The index of the entry to insert.
+   */
+  private void link(int entry) {
+    if (head == NONE) {
+      next[entry] = entry;
+      prev[entry] = entry;
+    } else {
+      int tail = prev[head];
+      next[entry] = head;
+      prev[entry] = tail;
+      next[tail] = entry;
+      prev[head] = entry;
+    }
+    head = entry;
+  }
+
+  /**
+   * Removes an entry from the round robin ring.
+   * @param entry The index of the entry to remove.
+   */
+  private void unlink(int entry) {
+    if (next[entry] == entry) {
+      head = NONE;
+    } else {
+      next[prev[entry]] = next[entry];
+      prev[next[entry]] = prev[entry];
+      if (head == entry) {
+        head = next[entry];
+      }
+    }
+  }
+
+  /**
+   * Obtains an unused entry.
+   * @return The index of the entry.
+   */
+  private int allocateEntry() {
+    if (free != NONE) {
+      int entry = free;
+      free = next[entry];
+      return entry;
+    }
+    return used++;
+  }
+
+  /** Doubles the capacity of the table. */
+  private void grow() {
+    int capacity = keys.length * 2;
+    keys = Arrays.copyOf(keys, capacity);
+    tasks = Arrays.copyOf(tasks, capacity);
+    next = Arrays.copyOf(next, capacity);
+    prev = Arrays.copyOf(prev, capacity);
+    slots = new int[capacity * 2];
+    for (int entry = head, n = 0; n < size; entry = next[entry], n++) {
+      insertSlot(entry);
+    }
+  }
+
+  /**
+   * Allocates empty storage.
+   * @param capacity The number of entries that may be stored without
+   *     growing.
+   */
+  private void allocate(int capacity) {
+    keys = new int[capacity];
+    tasks = new TaskDescription[capacity];
+    next = new int[capacity];
+    prev = new int[capacity];
+    slots = new int[capacity * 2];
+  }
+
+  /**
+   * Scrambles a task ID so that sequential IDs do not cluster in the hash
+   * table.
+   * @param taskId The task ID.
+   * @return The hash code.
+   */
+  private static int hash(int taskId) {
+    int h = taskId * 0x9E3779B9;
+    return h ^ (h >>> 16);
+  }
+
+}
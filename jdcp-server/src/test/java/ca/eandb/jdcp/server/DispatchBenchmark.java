@@ -0,0 +1,280 @@
+/*
+ * Copyright (c) 2026 Bradley W. Kimmel
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package ca.eandb.jdcp.server;
+
+import java.io.File;
+import java.io.Serializable;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import ca.eandb.jdcp.job.AbstractParallelizableJob;
+import ca.eandb.jdcp.job.ParallelizableJob;
+import ca.eandb.jdcp.job.TaskDescription;
+import ca.eandb.jdcp.job.TaskWorker;
+import ca.eandb.jdcp.server.classmanager.FileClassManager;
+import ca.eandb.jdcp.server.scheduling.FairShareTaskScheduler;
+import ca.eandb.util.io.FileUtil;
+import ca.eandb.util.progress.DummyProgressMonitorFactory;
+import ca.eandb.util.progress.ProgressMonitor;
+import ca.eandb.util.rmi.Serialized;
+
+/**
+ * Measures how many tasks per second a <code>JobServer</code> can hand out
+ * as the number of concurrent callers of
+ * {@link JobServer#requestTasks(int, long)} grows.  The server hosts many
+ * jobs whose <code>getNextTask</code> is deliberately slow, so that tasks
+ * are only available as fast as they are refilled.  Each caller submits
+ * empty results for its tasks right away, so only the cost of dispatching
+ * tasks (and generating their replacements) is measured.  Ideally, the
+ * throughput grows with the number of callers until the jobs cannot
+ * generate tasks any faster, and does not fall off beyond that point.
+ *
+ * <p>Usage: <code>DispatchBenchmark [jobs [taskDelayMicros [seconds
+ * [maxCallers]]]]</code>
+ *
+ * @author Brad Kimmel
+ */
+public final class DispatchBenchmark {
+
+  /** The number of jobs to host by default. */
+  private static final int DEFAULT_JOBS = 64;
+
+  /** The time (in microseconds) taken to generate each task by default. */
+  private static final int DEFAULT_TASK_DELAY_MICROS = 200;
+
+  /** The duration (in seconds) of each measurement by default. */
+  private static final int DEFAULT_SECONDS = 5;
+
+  /** The largest number of concurrent callers to measure by default. */
+  private static final int DEFAULT_MAX_CALLERS = 500;
+
+  /** The numbers of concurrent callers to measure. */
+  private static final int[] CALLERS = { 1, 10, 50, 100, 200, 500, 1000 };
+
+  /** The maximum number of tasks for each caller to request at once. */
+  private static final int TASKS_PER_REQUEST = 4;
+
+  /**
+   * The maximum amount of time (in milliseconds) that the server may hold
+   * a request when it has no tasks.
+   */
+  private static final long WAIT_MILLIS = 100;
+
+  /**
+   * Runs the benchmark.
+   * @param args Command line arguments: the number of jobs, the time (in
+   *     microseconds) taken to generate each task, the duration (in
+   *     seconds) of each measurement, and the largest number of concurrent
+   *     callers to measure.
+   * @throws Exception If an error occurs.
+   */
+  public static void main(String[] args) throws Exception {
+    int jobs = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_JOBS;
+    int delay = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_TASK_DELAY_MICROS;
+    int seconds = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_SECONDS;
+    int maxCallers = args.length > 3 ? Integer.parseInt(args[3]) : DEFAULT_MAX_CALLERS;
+
+    File directory = File.createTempFile("jdcp-bench-", "");
+    directory.delete();
+    File outputDirectory = new File(directory, "output");
+    outputDirectory.mkdirs();
+
+    JobServer server = new JobServer(outputDirectory,
+        DummyProgressMonitorFactory.getInstance(), new FairShareTaskScheduler(),
+        new FileClassManager(new File(directory, "classes")));
+    UUID[] jobIds = new UUID[jobs];
+
+    try {
+      for (int i = 0; i < jobs; i++) {
+        jobIds[i] = server.submitJob(new Serialized<ParallelizableJob>(
+            new SlowJob(delay)), "Benchmark job " + Integer.toString(i));
+      }
+
+      /* Warm up the server before taking any measurements. */
+      run(server, 10, seconds);
+
+      System.out.printf("%8s %12s %12s%n", "callers", "tasks/s", "idle/s");
+      for (int callers : CALLERS) {
+        if (callers > maxCallers) {
+          break;
+        }
+        long[] counts = run(server, callers, seconds);
+        System.out.printf("%8d %12.0f %12.0f%n", callers,
+            (double) counts[0] / seconds, (double) counts[1] / seconds);
+      }
+    } finally {
+      for (UUID jobId : jobIds) {
+        if (jobId != null) {
+          server.cancelJob(jobId);
+        }
+      }
+      FileUtil.deleteRecursive(directory);
+    }
+  }
+
+  /**
+   * Requests tasks from a <code>JobServer</code> using many concurrent
+   * callers for a fixed period of time.
+   * @param server The <code>JobServer</code> to request tasks from.
+   * @param callers The number of concurrent callers.
+   * @param seconds The duration (in seconds) of the measurement.
+   * @return The number of tasks handed out and the number of times that a
+   *     caller was told to idle, respectively.
+   * @throws Exception If a call fails.
+   */
+  private static long[] run(final JobServer server, int callers,
+      int seconds) throws Exception {
+    final AtomicBoolean stop = new AtomicBoolean(false);
+    final AtomicLong tasks = new AtomicLong();
+    final AtomicLong idles = new AtomicLong();
+    final AtomicReference<Exception> failure = new AtomicReference<Exception>();
+    final CountDownLatch ready = new CountDownLatch(callers);
+    final CountDownLatch start = new CountDownLatch(1);
+    final Serialized<Object> results = new Serialized<Object>(Integer.valueOf(0));
+    Thread[] threads = new Thread[callers];
+
+    for (int i = 0; i < callers; i++) {
+      threads[i] = new Thread(new Runnable() {
+        public void run() {
+          try {
+            ready.countDown();
+            start.await();
+            while (!stop.get()) {
+              TaskDescription[] batch = server.requestTasks(TASKS_PER_REQUEST, WAIT_MILLIS);
+              for (TaskDescription task : batch) {
+                if (task.getJobId() == null) {
+                  idles.incrementAndGet();
+                } else {
+                  tasks.incrementAndGet();
+                  server.submitTaskResults(task.getJobId(), task.getTaskId(), results);
+                }
+              }
+            }
+          } catch (Exception e) {
+            failure.compareAndSet(null, e);
+          }
+        }
+      });
+      threads[i].start();
+    }
+
+    ready.await();
+    start.countDown();
+    Thread.sleep(seconds * 1000L);
+    stop.set(true);
+    for (Thread thread : threads) {
+      thread.join();
+    }
+
+    if (failure.get() != null) {
+      throw failure.get();
+    }
+    return new long[]{ tasks.get(), idles.get() };
+  }
+
+  /**
+   * A <code>ParallelizableJob</code> that never finishes, and that takes a
+   * fixed amount of time to generate each task.
+   * @author Brad Kimmel
+   */
+  private static final class SlowJob extends AbstractParallelizableJob
+      implements Serializable {
+
+    /** Serialization version ID. */
+    private static final long serialVersionUID = 4101923466208915307L;
+
+    /** The time (in microseconds) taken to generate each task. */
+    private final int delayMicros;
+
+    /** The value of the next task to generate. */
+    private int nextTask = 0;
+
+    /**
+     * Creates a new <code>SlowJob</code>.
+     * @param delayMicros The time (in microseconds) taken to generate each
+     *     task.
+     */
+    public SlowJob(int delayMicros) {
+      this.delayMicros = delayMicros;
+    }
+
+    /* (non-Javadoc)
+     * @see ca.eandb.jdcp.job.ParallelizableJob#getNextTask()
+     */
+    public Object getNextTask() throws Exception {
+      long deadline = System.nanoTime() + delayMicros * 1000L;
+      while (System.nanoTime() < deadline) {
+        /* spin, to simulate the work of generating the task. */
+      }
+      return Integer.valueOf(nextTask++);
+    }
+
+    /* (non-Javadoc)
+     * @see ca.eandb.jdcp.job.ParallelizableJob#submitTaskResults(java.lang.Object, java.lang.Object, ca.eandb.util.progress.ProgressMonitor)
+     */
+    public void submitTaskResults(Object task, Object results,
+        ProgressMonitor monitor) {
+      /* nothing to do. */
+    }
+
+    /* (non-Javadoc)
+     * @see ca.eandb.jdcp.job.ParallelizableJob#isComplete()
+     */
+    public boolean isComplete() {
+      return false;
+    }
+
+    /* (non-Javadoc)
+     * @see ca.eandb.jdcp.job.ParallelizableJob#worker()
+     */
+    public TaskWorker worker() {
+      return new EchoWorker();
+    }
+
+  }
+
+  /**
+   * A <code>TaskWorker</code> that returns each task as its result.
+   * @author Brad Kimmel
+   */
+  private static final class EchoWorker implements TaskWorker {
+
+    /** Serialization version ID. */
+    private static final long serialVersionUID = -2318830184624120734L;
+
+    /* (non-Javadoc)
+     * @see ca.eandb.jdcp.job.TaskWorker#performTask(java.lang.Object, ca.eandb.util.progress.ProgressMonitor)
+     */
+    public Object performTask(Object task, ProgressMonitor monitor) {
+      return task;
+    }
+
+  }
+
+}
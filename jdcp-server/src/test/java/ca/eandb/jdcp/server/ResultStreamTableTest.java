@@ -0,0 +1,225 @@
+/*
+ * Copyright (c) 2026 Bradley W. Kimmel
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package ca.eandb.jdcp.server;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.UUID;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import ca.eandb.jdcp.server.ResultStreamTable.ResultStream;
+
+/**
+ * Tests for {@link ResultStreamTable}.
+ * @author Brad Kimmel
+ */
+public class ResultStreamTableTest {
+
+  /** The ID of the job to which the test streams belong. */
+  private static final UUID JOB_ID = UUID.randomUUID();
+
+  /** The directory to spool results to. */
+  private File directory;
+
+  /** The table under test. */
+  private ResultStreamTable table;
+
+  @BeforeMethod
+  public void setUp() throws IOException {
+    directory = File.createTempFile("jdcp-test-", "");
+    directory.delete();
+    table = new ResultStreamTable(directory);
+  }
+
+  @AfterMethod
+  public void tearDown() {
+    File[] files = directory.listFiles();
+    if (files != null) {
+      for (File file : files) {
+        file.delete();
+      }
+    }
+    directory.delete();
+  }
+
+  private static byte[] bytes(String s) {
+    return s.getBytes();
+  }
+
+  private static String read(ResultStream stream) throws IOException {
+    InputStream in = stream.openInputStream();
+    try {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      for (int b; (b = in.read()) >= 0;) {
+        out.write(b);
+      }
+      return out.toString();
+    } finally {
+      in.close();
+    }
+  }
+
+  private int spoolFileCount() {
+    String[] names = directory.list();
+    return names != null ? names.length : 0;
+  }
+
+  @Test
+  public void testWriteAndCommit() throws IOException {
+    UUID id = table.open(JOB_ID, 3, true);
+    assertTrue(table.contains(id));
+    table.write(id, 0, bytes("hello, "));
+    table.write(id, 7, bytes("world"));
+
+    ResultStream stream = table.commit(id, 12);
+    assertFalse(table.contains(id));
+    assertEquals(stream.getJobId(), JOB_ID);
+    assertEquals(stream.getTaskId(), 3);
+    assertTrue(stream.isRaw());
+    assertEquals(read(stream), "hello, world");
+
+    stream.delete();
+    assertEquals(spoolFileCount(), 0);
+  }
+
+  @Test
+  public void testRetransmittedChunksAreIgnored() throws IOException {
+    UUID id = table.open(JOB_ID, 1, false);
+    table.write(id, 0, bytes("abc"));
+    table.write(id, 0, bytes("abc"));
+    table.write(id, 3, bytes("def"));
+    table.write(id, 3, bytes("def"));
+
+    /* A chunk overlapping the end contributes only its new bytes. */
+    table.write(id, 4, bytes("efgh"));
+
+    ResultStream stream = table.commit(id, 8);
+    assertEquals(read(stream), "abcdefgh");
+    stream.delete();
+  }
+
+  @Test
+  public void testGapIsRejected() throws IOException {
+    UUID id = table.open(JOB_ID, 1, false);
+    table.write(id, 0, bytes("abc"));
+    try {
+      table.write(id, 4, bytes("e"));
+      fail("Expected IllegalArgumentException");
+    } catch (IllegalArgumentException e) {
+      /* expected. */
+    }
+    table.write(id, 3, bytes("d"));
+    assertEquals(read(table.commit(id, 4)), "abcd");
+  }
+
+  @Test
+  public void testIncompleteCommitDiscardsStream() throws IOException {
+    UUID id = table.open(JOB_ID, 1, false);
+    table.write(id, 0, bytes("abc"));
+    try {
+      table.commit(id, 10);
+      fail("Expected IllegalArgumentException");
+    } catch (IllegalArgumentException e) {
+      /* expected. */
+    }
+    assertFalse(table.contains(id));
+    assertEquals(spoolFileCount(), 0);
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testWriteToUnknownStream() throws IOException {
+    table.write(UUID.randomUUID(), 0, bytes("abc"));
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testCommitUnknownStream() {
+    table.commit(UUID.randomUUID(), 0);
+  }
+
+  @Test
+  public void testAbort() throws IOException {
+    UUID id = table.open(JOB_ID, 1, false);
+    table.write(id, 0, bytes("abc"));
+    table.abort(id);
+    assertFalse(table.contains(id));
+    assertEquals(spoolFileCount(), 0);
+
+    /* Aborting twice is harmless. */
+    table.abort(id);
+  }
+
+  @Test
+  public void testAbortJob() throws IOException {
+    UUID otherJobId = UUID.randomUUID();
+    UUID a = table.open(JOB_ID, 1, false);
+    UUID b = table.open(JOB_ID, 2, false);
+    UUID c = table.open(otherJobId, 1, false);
+
+    table.abortJob(JOB_ID);
+    assertFalse(table.contains(a));
+    assertFalse(table.contains(b));
+    assertTrue(table.contains(c));
+    assertEquals(spoolFileCount(), 1);
+    table.abort(c);
+  }
+
+  @Test
+  public void testExpire() throws IOException {
+    UUID id = table.open(JOB_ID, 1, false);
+    long now = System.currentTimeMillis();
+
+    table.expire(now);
+    assertTrue(table.contains(id));
+
+    table.expire(now + ResultStreamTable.STREAM_TIMEOUT_MILLIS + 1000);
+    assertFalse(table.contains(id));
+    assertEquals(spoolFileCount(), 0);
+  }
+
+  @Test
+  public void testWriteDefersExpiry() throws Exception {
+    UUID id = table.open(JOB_ID, 1, false);
+    long opened = System.currentTimeMillis();
+    Thread.sleep(20);
+    table.write(id, 0, bytes("abc"));
+
+    /* Expired relative to the open, but not to the last write. */
+    table.expire(opened + ResultStreamTable.STREAM_TIMEOUT_MILLIS + 10);
+    assertTrue(table.contains(id));
+    table.abort(id);
+  }
+
+}
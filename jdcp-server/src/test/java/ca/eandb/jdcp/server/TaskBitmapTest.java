@@ -0,0 +1,87 @@
+/*
+ * Copyright (c) 2026 Bradley W. Kimmel
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package ca.eandb.jdcp.server;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.util.BitSet;
+
+import org.testng.annotations.Test;
+
+/**
+ * Tests for {@link TaskBitmap}.
+ * @author Brad Kimmel
+ */
+public class TaskBitmapTest {
+
+  @Test
+  public void testSetAndGet() {
+    TaskBitmap bitmap = new TaskBitmap();
+    assertFalse(bitmap.get(0));
+    assertTrue(bitmap.set(0));
+    assertTrue(bitmap.get(0));
+    assertFalse(bitmap.set(0));
+    assertFalse(bitmap.get(1));
+  }
+
+  @Test
+  public void testGrowsToHoldLargeIndices() {
+    TaskBitmap bitmap = new TaskBitmap();
+    assertFalse(bitmap.get(100000));
+    assertTrue(bitmap.set(100000));
+    assertTrue(bitmap.set(63));
+    assertTrue(bitmap.set(64));
+    assertTrue(bitmap.get(100000));
+    assertTrue(bitmap.get(63));
+    assertTrue(bitmap.get(64));
+    assertFalse(bitmap.get(65));
+    assertFalse(bitmap.get(99999));
+  }
+
+  @Test
+  public void testNegativeIndexIsNeverSet() {
+    assertFalse(new TaskBitmap().get(-1));
+  }
+
+  @Test(expectedExceptions = IndexOutOfBoundsException.class)
+  public void testSetNegativeIndex() {
+    new TaskBitmap().set(-1);
+  }
+
+  @Test
+  public void testToBitSet() {
+    TaskBitmap bitmap = new TaskBitmap();
+    BitSet expected = new BitSet();
+    for (int i = 0; i < 500; i += 7) {
+      bitmap.set(i);
+      expected.set(i);
+    }
+    assertEquals(bitmap.toBitSet(), expected);
+  }
+
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright (c) 2026 Bradley W. Kimmel
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package ca.eandb.jdcp.server;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.util.UUID;
+
+import org.testng.annotations.Test;
+
+import ca.eandb.jdcp.remote.TaskEvent;
+
+/**
+ * Tests for {@link TaskEventLog}.
+ * @author Brad Kimmel
+ */
+public class TaskEventLogTest {
+
+  /** The ID of the job to which posted events refer. */
+  private static final UUID JOB_ID = UUID.randomUUID();
+
+  /**
+   * Gets the ID of the most recent event by asking for events following
+   * an ID that cannot be current.
+   */
+  private static long sync(TaskEventLog log) throws InterruptedException {
+    TaskEvent[] events = log.waitForEvents(-1, 0);
+    assertEquals(events.length, 1);
+    assertTrue(events[0].isReset());
+    return events[0].getEventId();
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testNonPositiveCapacity() {
+    new TaskEventLog(0);
+  }
+
+  @Test
+  public void testTimesOutWithNoEvents() throws InterruptedException {
+    TaskEventLog log = new TaskEventLog();
+    long last = sync(log);
+    assertEquals(log.waitForEvents(last, 10).length, 0);
+  }
+
+  @Test
+  public void testReturnsEventsInOrder() throws InterruptedException {
+    TaskEventLog log = new TaskEventLog(16);
+    long last = sync(log);
+    log.post(JOB_ID, 1);
+    log.post(JOB_ID, 2);
+    log.post(JOB_ID, 0);
+
+    TaskEvent[] events = log.waitForEvents(last, 0);
+    assertEquals(events.length, 3);
+    for (int i = 0; i < events.length; i++) {
+      assertEquals(events[i].getEventId(), last + 1 + i);
+      assertEquals(events[i].getJobId(), JOB_ID);
+      assertFalse(events[i].isReset());
+    }
+    assertEquals(events[0].getTaskId(), 1);
+    assertEquals(events[1].getTaskId(), 2);
+    assertTrue(events[2].isJobFinished());
+
+    assertEquals(log.waitForEvents(last + 2, 0).length, 1);
+    assertEquals(log.waitForEvents(last + 3, 0).length, 0);
+  }
+
+  @Test
+  public void testResetWhenCallerFallsBehind() throws InterruptedException {
+    TaskEventLog log = new TaskEventLog(4);
+    long last = sync(log);
+    for (int i = 1; i <= 5; i++) {
+      log.post(JOB_ID, i);
+    }
+
+    TaskEvent[] events = log.waitForEvents(last, 0);
+    assertEquals(events.length, 1);
+    assertTrue(events[0].isReset());
+    assertEquals(events[0].getEventId(), last + 5);
+
+    events = log.waitForEvents(last + 1, 0);
+    assertEquals(events.length, 4);
+    assertEquals(events[0].getTaskId(), 2);
+    assertEquals(events[3].getTaskId(), 5);
+  }
+
+  @Test
+  public void testResetForUnknownFutureId() throws InterruptedException {
+    TaskEventLog log = new TaskEventLog();
+    long last = sync(log);
+    TaskEvent[] events = log.waitForEvents(last + 100, 0);
+    assertEquals(events.length, 1);
+    assertTrue(events[0].isReset());
+    assertEquals(events[0].getEventId(), last);
+  }
+
+  @Test
+  public void testWaiterIsWokenByPost() throws Exception {
+    final TaskEventLog log = new TaskEventLog();
+    final long last = sync(log);
+    final TaskEvent[][] result = new TaskEvent[1][];
+    Thread waiter = new Thread(new Runnable() {
+      public void run() {
+        try {
+          result[0] = log.waitForEvents(last, 10000);
+        } catch (InterruptedException e) {
+          /* leave result unset. */
+        }
+      }
+    });
+    waiter.start();
+    Thread.sleep(50);
+    log.post(JOB_ID, 7);
+    waiter.join(5000);
+
+    assertFalse(waiter.isAlive());
+    assertEquals(result[0].length, 1);
+    assertEquals(result[0][0].getTaskId(), 7);
+  }
+
+}
@@ -0,0 +1,190 @@
+/*
+ * Copyright (c) 2026 Bradley W. Kimmel
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package ca.eandb.jdcp.server;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+import java.util.UUID;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import ca.eandb.jdcp.job.TaskDescription;
+import ca.eandb.jdcp.server.scheduling.FairShareTaskScheduler;
+import ca.eandb.jdcp.server.scheduling.TaskScheduler;
+
+/**
+ * Tests for {@link TaskLeaseTable}.
+ * @author Brad Kimmel
+ */
+public class TaskLeaseTableTest {
+
+  private static final UUID JOB_ID = UUID.randomUUID();
+
+  private static final long LEASE_MILLIS = 1000;
+
+  private static final int MAX_COPIES = 2;
+
+  private TaskScheduler scheduler;
+
+  private TaskLeaseTable leases;
+
+  @BeforeMethod
+  public void setUp() {
+    scheduler = new FairShareTaskScheduler();
+    leases = new TaskLeaseTable(JOB_ID, scheduler);
+  }
+
+  private TaskDescription schedule(int taskId) {
+    TaskDescription task = new TaskDescription(JOB_ID, taskId, "task " + taskId);
+    leases.schedule(task);
+    return task;
+  }
+
+  /** Takes the next task from the schedule and leases it, as the server does. */
+  private TaskDescription dispatch(long now) {
+    TaskDescription task = scheduler.takeNextTask();
+    assertNotNull(task);
+    assertTrue(leases.lease(task, now, LEASE_MILLIS));
+    return task;
+  }
+
+  @Test
+  public void testLeasedTaskLeavesSchedule() {
+    TaskDescription task = schedule(1);
+    assertSame(dispatch(0), task);
+    assertFalse(scheduler.contains(JOB_ID, 1));
+    assertNull(scheduler.takeNextTask());
+    assertFalse(leases.isComplete(1));
+  }
+
+  @Test
+  public void testLeaseNotExpiredEarly() {
+    schedule(1);
+    dispatch(0);
+    assertFalse(leases.expire(LEASE_MILLIS - 1, LEASE_MILLIS, MAX_COPIES));
+    assertFalse(scheduler.contains(JOB_ID, 1));
+  }
+
+  @Test
+  public void testExpiredLeaseIsReoffered() {
+    schedule(1);
+    dispatch(0);
+    assertTrue(leases.expire(LEASE_MILLIS, LEASE_MILLIS, MAX_COPIES));
+    assertTrue(scheduler.contains(JOB_ID, 1));
+
+    /* An offered task is not offered again. */
+    assertFalse(leases.expire(2 * LEASE_MILLIS, LEASE_MILLIS, MAX_COPIES));
+  }
+
+  @Test
+  public void testCopiesAreCapped() {
+    schedule(1);
+    dispatch(0);
+    assertTrue(leases.expire(LEASE_MILLIS, LEASE_MILLIS, MAX_COPIES));
+    dispatch(LEASE_MILLIS);
+
+    /* Both copies are out, so the workers get one more lease period. */
+    long now = 2 * LEASE_MILLIS;
+    assertFalse(leases.expire(now, LEASE_MILLIS, MAX_COPIES));
+    assertFalse(scheduler.contains(JOB_ID, 1));
+
+    /* If neither reports in by then, the task is presumed lost. */
+    assertFalse(leases.expire(now + LEASE_MILLIS - 1, LEASE_MILLIS, MAX_COPIES));
+    assertTrue(leases.expire(now + LEASE_MILLIS, LEASE_MILLIS, MAX_COPIES));
+    assertTrue(scheduler.contains(JOB_ID, 1));
+  }
+
+  @Test
+  public void testRenewWithdrawsOfferedTask() {
+    schedule(1);
+    dispatch(0);
+    assertTrue(leases.expire(LEASE_MILLIS, LEASE_MILLIS, MAX_COPIES));
+    leases.renew(1, LEASE_MILLIS, LEASE_MILLIS);
+    assertFalse(scheduler.contains(JOB_ID, 1));
+    assertFalse(leases.expire(2 * LEASE_MILLIS - 1, LEASE_MILLIS, MAX_COPIES));
+    assertTrue(leases.expire(2 * LEASE_MILLIS, LEASE_MILLIS, MAX_COPIES));
+  }
+
+  @Test
+  public void testReleaseReoffersLastCopy() {
+    schedule(1);
+    dispatch(0);
+    assertTrue(leases.expire(LEASE_MILLIS, LEASE_MILLIS, MAX_COPIES));
+    dispatch(LEASE_MILLIS);
+
+    /* The other copy is still out, so the task is left to it. */
+    assertFalse(leases.release(1));
+    assertFalse(scheduler.contains(JOB_ID, 1));
+
+    assertTrue(leases.release(1));
+    assertTrue(scheduler.contains(JOB_ID, 1));
+    assertFalse(leases.release(1));
+  }
+
+  @Test
+  public void testCompleteQueuedTask() {
+    TaskDescription task = schedule(1);
+    TaskLeaseTable.TaskLease lease = leases.complete(1, 0);
+    assertNotNull(lease);
+    assertSame(lease.task, task);
+    assertEquals(lease.copies, 0);
+    assertFalse(scheduler.contains(JOB_ID, 1));
+    assertTrue(leases.isComplete(1));
+    assertNull(leases.complete(1, 0));
+  }
+
+  @Test
+  public void testCompleteDuplicatedTask() {
+    schedule(1);
+    dispatch(0);
+    assertTrue(leases.expire(LEASE_MILLIS, LEASE_MILLIS, MAX_COPIES));
+    dispatch(LEASE_MILLIS);
+    TaskLeaseTable.TaskLease lease = leases.complete(1, 2 * LEASE_MILLIS);
+    assertNotNull(lease);
+    assertTrue(lease.duplicated);
+    assertEquals(lease.copies, 2);
+    assertTrue(leases.getCompleted().get(1));
+  }
+
+  @Test
+  public void testCompletedTaskIsNotLeased() {
+    schedule(1);
+    dispatch(0);
+    assertTrue(leases.expire(LEASE_MILLIS, LEASE_MILLIS, MAX_COPIES));
+
+    /* The original worker reports in after the task was taken again. */
+    TaskDescription task = scheduler.takeNextTask();
+    assertNotNull(leases.complete(1, LEASE_MILLIS));
+    assertFalse(leases.lease(task, LEASE_MILLIS, LEASE_MILLIS));
+  }
+
+}
@@ -0,0 +1,232 @@
+/*
+ * Copyright (c) 2026 Bradley W. Kimmel
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package ca.eandb.jdcp.server.classmanager;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.fail;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.UUID;
+
+import org.apache.derby.jdbc.EmbeddedDataSource;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+/**
+ * Tests for {@link DbClassManager}, using an in-memory Derby database.
+ * @author Brad Kimmel
+ */
+public class DbClassManagerTest {
+
+  /** The name of the in-memory database for the current test. */
+  private String databaseName;
+
+  /** The <code>DataSource</code> for the database. */
+  private EmbeddedDataSource ds;
+
+  /** The class manager under test. */
+  private DbClassManager manager;
+
+  @BeforeMethod
+  public void setUp() throws Exception {
+    Class.forName("org.apache.derby.jdbc.EmbeddedDriver");
+    databaseName = "memory:classes-" + UUID.randomUUID();
+    ds = new EmbeddedDataSource();
+    ds.setDatabaseName(databaseName);
+    ds.setConnectionAttributes("create=true");
+    manager = new DbClassManager(ds);
+    manager.prepareDataSource();
+  }
+
+  @AfterMethod
+  public void tearDown() {
+    manager.close();
+    EmbeddedDataSource drop = new EmbeddedDataSource();
+    drop.setDatabaseName(databaseName);
+    drop.setConnectionAttributes("drop=true");
+    try {
+      drop.getConnection().close();
+    } catch (SQLException e) {
+      /* Derby reports a successful drop as an exception. */
+    }
+  }
+
+  private static ByteBuffer def(String contents) {
+    return ByteBuffer.wrap(contents.getBytes());
+  }
+
+  private static String read(ByteBuffer def) {
+    if (def == null) {
+      return null;
+    }
+    byte[] bytes = new byte[def.remaining()];
+    def.get(bytes);
+    return new String(bytes);
+  }
+
+  private static byte[] md5(String contents) throws Exception {
+    return MessageDigest.getInstance("MD5").digest(contents.getBytes());
+  }
+
+  /**
+   * Changes a parent class definition directly in the database, bypassing
+   * the class manager and therefore its cache.
+   */
+  private void updateBehindManager(String name, String contents)
+      throws Exception {
+    Connection con = ds.getConnection();
+    try {
+      PreparedStatement stmt = con.prepareStatement(
+          "UPDATE ParentClasses SET Definition = ?, MD5 = ? WHERE Name = ?");
+      stmt.setBytes(1, contents.getBytes());
+      stmt.setBytes(2, md5(contents));
+      stmt.setString(3, name);
+      assertEquals(stmt.executeUpdate(), 1);
+      stmt.close();
+    } finally {
+      con.close();
+    }
+  }
+
+  @Test
+  public void testSetAndGet() throws Exception {
+    manager.setClassDefinition("a.B", def("one"));
+    assertEquals(read(manager.getClassDefinition("a.B")), "one");
+    assertEquals(manager.getClassDigest("a.B"), md5("one"));
+    assertNull(manager.getClassDefinition("a.C"));
+    assertNull(manager.getClassDigest("a.C"));
+  }
+
+  @Test
+  public void testLookupsAreCached() throws Exception {
+    manager.setClassDefinition("a.B", def("one"));
+    assertEquals(read(manager.getClassDefinition("a.B")), "one");
+
+    updateBehindManager("a.B", "two");
+    assertEquals(read(manager.getClassDefinition("a.B")), "one");
+    assertEquals(manager.getClassDigest("a.B"), md5("one"));
+
+    /* Changing another class leaves the cached entry in place. */
+    manager.setClassDefinition("a.C", def("other"));
+    assertEquals(read(manager.getClassDefinition("a.B")), "one");
+  }
+
+  @Test
+  public void testNoCachingWithZeroCapacity() throws Exception {
+    manager.close();
+    manager = new DbClassManager(ds, 0);
+    manager.setClassDefinition("a.B", def("one"));
+    assertEquals(read(manager.getClassDefinition("a.B")), "one");
+
+    updateBehindManager("a.B", "two");
+    assertEquals(read(manager.getClassDefinition("a.B")), "two");
+  }
+
+  @Test
+  public void testSetInvalidatesCachedDefinition() throws Exception {
+    manager.setClassDefinition("a.B", def("one"));
+    assertEquals(manager.getClassDigest("a.B"), md5("one"));
+    assertEquals(read(manager.getClassDefinition("a.B")), "one");
+
+    manager.setClassDefinition("a.B", def("two"));
+    assertEquals(manager.getClassDigest("a.B"), md5("two"));
+    assertEquals(read(manager.getClassDefinition("a.B")), "two");
+  }
+
+  @Test
+  public void testSetInvalidatesCachedMiss() throws Exception {
+    assertNull(manager.getClassDigest("a.B"));
+    assertNull(manager.getClassDefinition("a.B"));
+
+    manager.setClassDefinition("a.B", def("one"));
+    assertEquals(manager.getClassDigest("a.B"), md5("one"));
+    assertEquals(read(manager.getClassDefinition("a.B")), "one");
+  }
+
+  @Test
+  public void testParentChangeInvalidatesChildEntries() throws Exception {
+    manager.setClassDefinition("a.B", def("one"));
+    ChildClassManager child = manager.createChildClassManager();
+    assertEquals(read(child.getClassDefinition("a.B")), "one");
+    assertNull(child.getClassDigest("a.C"));
+
+    manager.setClassDefinition("a.B", def("two"));
+    manager.setClassDefinition("a.C", def("three"));
+    assertEquals(read(child.getClassDefinition("a.B")), "two");
+    assertEquals(child.getClassDigest("a.C"), md5("three"));
+    child.release();
+  }
+
+  @Test
+  public void testChildDefinitionOverridesParent() throws Exception {
+    manager.setClassDefinition("a.B", def("parent"));
+    ChildClassManager child = manager.createChildClassManager();
+    assertEquals(read(child.getClassDefinition("a.B")), "parent");
+
+    child.setClassDefinition("a.B", def("child"));
+    assertEquals(read(child.getClassDefinition("a.B")), "child");
+    assertEquals(child.getClassDigest("a.B"), md5("child"));
+
+    /* The parent, and other children, are unaffected. */
+    ChildClassManager other = manager.createChildClassManager();
+    assertEquals(read(manager.getClassDefinition("a.B")), "parent");
+    assertEquals(read(other.getClassDefinition("a.B")), "parent");
+    child.release();
+    other.release();
+  }
+
+  @Test
+  public void testReleasedChildIsUnusable() throws Exception {
+    manager.setClassDefinition("a.B", def("one"));
+    ChildClassManager child = manager.createChildClassManager();
+    child.setClassDefinition("a.C", def("child"));
+    assertEquals(read(child.getClassDefinition("a.C")), "child");
+
+    child.release();
+    try {
+      child.getClassDefinition("a.C");
+      fail("Expected IllegalStateException");
+    } catch (IllegalStateException e) {
+      /* expected. */
+    }
+    assertEquals(read(manager.getClassDefinition("a.B")), "one");
+  }
+
+  @Test
+  public void testLookupsAfterClose() throws Exception {
+    manager.setClassDefinition("a.B", def("one"));
+    manager.close();
+    manager.setClassDefinition("a.B", def("two"));
+    assertEquals(read(manager.getClassDefinition("a.B")), "two");
+  }
+
+}
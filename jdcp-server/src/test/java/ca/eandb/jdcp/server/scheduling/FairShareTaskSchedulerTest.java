@@ -0,0 +1,238 @@
+/*
+ * Copyright (c) 2026 Bradley W. Kimmel
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package ca.eandb.jdcp.server.scheduling;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import java.lang.reflect.Field;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import ca.eandb.jdcp.job.TaskDescription;
+
+/**
+ * Tests for {@link FairShareTaskScheduler}.
+ * @author Brad Kimmel
+ */
+public class FairShareTaskSchedulerTest {
+
+  /** The number of tasks to add for each job. */
+  private static final int TASKS = 1000;
+
+  private FairShareTaskScheduler scheduler;
+
+  @BeforeMethod
+  public void setUp() {
+    scheduler = new FairShareTaskScheduler();
+  }
+
+  /**
+   * Creates a job and adds tasks for it to the schedule.
+   * @param group The group to which the job belongs.
+   * @param tasks The number of tasks to add.
+   * @return The <code>UUID</code> identifying the new job.
+   */
+  private UUID addJob(String group, int tasks) {
+    UUID jobId = UUID.randomUUID();
+    scheduler.setJobGroup(jobId, group);
+    addTasks(jobId, 1, tasks);
+    return jobId;
+  }
+
+  private void addTasks(UUID jobId, int firstTaskId, int tasks) {
+    for (int i = 0; i < tasks; i++) {
+      int taskId = firstTaskId + i;
+      scheduler.add(new TaskDescription(jobId, taskId, "task " + taskId));
+    }
+  }
+
+  /**
+   * Serves tasks from the schedule and counts the number served for each
+   * job.
+   * @param n The number of tasks to serve.
+   * @return A <code>Map</code> from job ID to the number of tasks served.
+   */
+  private Map<UUID, Integer> serve(int n) {
+    Map<UUID, Integer> counts = new HashMap<UUID, Integer>();
+    for (int i = 0; i < n; i++) {
+      TaskDescription task = scheduler.getNextTask();
+      Integer count = counts.get(task.getJobId());
+      counts.put(task.getJobId(), (count != null) ? count + 1 : 1);
+    }
+    return counts;
+  }
+
+  private static int count(Map<UUID, Integer> counts, UUID jobId) {
+    Integer count = counts.get(jobId);
+    return (count != null) ? count : 0;
+  }
+
+  private static void assertNear(int actual, int expected) {
+    assertTrue(Math.abs(actual - expected) <= 2,
+        "expected about " + expected + " but found " + actual);
+  }
+
+  @SuppressWarnings("unchecked")
+  private int groupCount() throws Exception {
+    Field field = FairShareTaskScheduler.class.getDeclaredField("groups");
+    field.setAccessible(true);
+    return ((Map<String, ?>) field.get(scheduler)).size();
+  }
+
+  @Test
+  public void testEmpty() {
+    assertNull(scheduler.getNextTask());
+    assertNull(scheduler.takeNextTask());
+  }
+
+  @Test
+  public void testGroupsServedInProportionToWeight() {
+    scheduler.setGroupWeight("light", 1);
+    scheduler.setGroupWeight("heavy", 3);
+    UUID light = addJob("light", TASKS);
+    UUID heavy = addJob("heavy", TASKS);
+
+    Map<UUID, Integer> counts = serve(400);
+    assertNear(count(counts, light), 100);
+    assertNear(count(counts, heavy), 300);
+  }
+
+  @Test
+  public void testLoneJobGetsEveryTask() {
+    UUID idle = addJob("other", 1);
+    UUID busy = addJob(null, TASKS);
+    scheduler.remove(idle, 1);
+
+    Map<UUID, Integer> counts = serve(TASKS);
+    assertEquals(count(counts, busy), TASKS);
+    assertEquals(count(counts, idle), 0);
+  }
+
+  @Test
+  public void testTakeNextTaskRemovesTask() {
+    UUID jobId = addJob(null, 2);
+    TaskDescription first = scheduler.takeNextTask();
+    TaskDescription second = scheduler.takeNextTask();
+    assertEquals(first.getJobId(), jobId);
+    assertEquals(second.getJobId(), jobId);
+    assertTrue(first.getTaskId() != second.getTaskId());
+    assertNull(scheduler.takeNextTask());
+    assertNull(scheduler.getNextTask());
+  }
+
+  @Test
+  public void testReactivatedJobNotCreditedForIdleTime() {
+    UUID sleeper = addJob(null, 1);
+    scheduler.remove(sleeper, 1);
+    UUID worker = addJob(null, TASKS);
+
+    /* The worker runs alone for a while. */
+    serve(100);
+
+    /* Once the sleeper has tasks again, it gets its fair share -- not the
+     * share it would have had while it was idle.
+     */
+    addTasks(sleeper, 2, TASKS);
+    Map<UUID, Integer> counts = serve(100);
+    assertNear(count(counts, sleeper), 50);
+    assertNear(count(counts, worker), 50);
+  }
+
+  @Test
+  public void testReactivatedGroupNotCreditedForIdleTime() {
+    UUID sleeper = addJob("sleepers", 1);
+    scheduler.remove(sleeper, 1);
+    UUID worker = addJob("workers", TASKS);
+
+    serve(100);
+
+    addTasks(sleeper, 2, TASKS);
+    Map<UUID, Integer> counts = serve(100);
+    assertNear(count(counts, sleeper), 50);
+    assertNear(count(counts, worker), 50);
+  }
+
+  @Test
+  public void testSetJobGroupMovesActiveJob() {
+    UUID a = addJob("first", TASKS);
+    UUID b = addJob("second", TASKS);
+    UUID c = addJob("second", TASKS);
+
+    Map<UUID, Integer> counts = serve(400);
+    assertNear(count(counts, a), 200);
+    assertNear(count(counts, b), 100);
+    assertNear(count(counts, c), 100);
+
+    scheduler.setJobGroup(c, "first");
+    counts = serve(400);
+    assertNear(count(counts, a), 100);
+    assertNear(count(counts, b), 200);
+    assertNear(count(counts, c), 100);
+
+    /* Emptying the moved job takes it out of its new group. */
+    for (int i = 1; i <= TASKS; i++) {
+      scheduler.remove(c, i);
+    }
+    counts = serve(400);
+    assertNear(count(counts, a), 200);
+    assertNear(count(counts, b), 200);
+    assertEquals(count(counts, c), 0);
+  }
+
+  @Test
+  public void testEmptyGroupIsDiscarded() throws Exception {
+    UUID a = addJob("first", TASKS);
+    UUID b = addJob("second", 0);
+    assertEquals(groupCount(), 2);
+
+    scheduler.setJobGroup(b, "first");
+    assertEquals(groupCount(), 1);
+
+    scheduler.removeJob(a);
+    assertEquals(groupCount(), 1);
+    scheduler.removeJob(b);
+    assertEquals(groupCount(), 0);
+  }
+
+  @Test
+  public void testGroupWeightOutlivesGroup() {
+    scheduler.setGroupWeight("heavy", 3);
+    scheduler.removeJob(addJob("heavy", TASKS));
+
+    UUID light = addJob("light", TASKS);
+    UUID heavy = addJob("heavy", TASKS);
+    Map<UUID, Integer> counts = serve(400);
+    assertNear(count(counts, light), 100);
+    assertNear(count(counts, heavy), 300);
+  }
+
+}
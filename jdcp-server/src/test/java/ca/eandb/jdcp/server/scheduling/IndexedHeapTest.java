@@ -0,0 +1,163 @@
+/*
+ * Copyright (c) 2026 Bradley W. Kimmel
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package ca.eandb.jdcp.server.scheduling;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import org.testng.annotations.Test;
+
+/**
+ * Tests for {@link IndexedHeap}.
+ * @author Brad Kimmel
+ */
+public class IndexedHeapTest {
+
+  /** A heap node with a mutable key. */
+  private static final class Item extends IndexedHeap.Node {
+
+    /** The key by which items are ordered. */
+    public int key;
+
+    public Item(int key) {
+      this.key = key;
+    }
+
+  }
+
+  /** Orders items by ascending key. */
+  private static final Comparator<Item> BY_KEY = new Comparator<Item>() {
+    public int compare(Item a, Item b) {
+      return a.key < b.key ? -1 : (a.key > b.key ? 1 : 0);
+    }
+  };
+
+  @Test
+  public void testEmpty() {
+    IndexedHeap<Item> heap = new IndexedHeap<Item>(BY_KEY);
+    assertTrue(heap.isEmpty());
+    assertEquals(heap.size(), 0);
+    assertNull(heap.peek());
+    assertNull(heap.poll());
+  }
+
+  @Test
+  public void testPollReturnsItemsInOrder() {
+    IndexedHeap<Item> heap = new IndexedHeap<Item>(BY_KEY);
+    Random rnd = new Random(1);
+    List<Integer> keys = new ArrayList<Integer>();
+    for (int i = 0; i < 1000; i++) {
+      int key = rnd.nextInt(100);
+      keys.add(key);
+      assertTrue(heap.add(new Item(key)));
+    }
+    assertEquals(heap.size(), keys.size());
+
+    Collections.sort(keys);
+    for (int key : keys) {
+      assertEquals(heap.poll().key, key);
+    }
+    assertTrue(heap.isEmpty());
+  }
+
+  @Test
+  public void testAddIsIdempotent() {
+    IndexedHeap<Item> heap = new IndexedHeap<Item>(BY_KEY);
+    Item item = new Item(5);
+    assertTrue(heap.add(item));
+    assertFalse(heap.add(item));
+    assertEquals(heap.size(), 1);
+  }
+
+  @Test
+  public void testRemoveArbitraryItems() {
+    IndexedHeap<Item> heap = new IndexedHeap<Item>(BY_KEY);
+    List<Item> items = new ArrayList<Item>();
+    for (int i = 0; i < 100; i++) {
+      Item item = new Item((i * 37) % 100);
+      items.add(item);
+      heap.add(item);
+    }
+
+    for (int i = 0; i < items.size(); i += 3) {
+      Item item = items.get(i);
+      assertTrue(heap.remove(item));
+      assertFalse(heap.contains(item));
+      assertFalse(heap.remove(item));
+    }
+
+    int last = Integer.MIN_VALUE;
+    int count = 0;
+    for (Item item; (item = heap.poll()) != null; count++) {
+      assertTrue(item.key >= last);
+      last = item.key;
+    }
+    assertEquals(count, 66);
+  }
+
+  @Test
+  public void testUpdateRepositionsItem() {
+    IndexedHeap<Item> heap = new IndexedHeap<Item>(BY_KEY);
+    Item a = new Item(10);
+    Item b = new Item(20);
+    Item c = new Item(30);
+    heap.add(a);
+    heap.add(b);
+    heap.add(c);
+
+    c.key = 5;
+    heap.update(c);
+    assertSame(heap.peek(), c);
+
+    c.key = 40;
+    heap.update(c);
+    assertSame(heap.poll(), a);
+    assertSame(heap.poll(), b);
+    assertSame(heap.poll(), c);
+  }
+
+  @Test
+  public void testNodeMayMoveBetweenHeaps() {
+    IndexedHeap<Item> first = new IndexedHeap<Item>(BY_KEY);
+    IndexedHeap<Item> second = new IndexedHeap<Item>(BY_KEY);
+    Item item = new Item(1);
+    first.add(item);
+    first.remove(item);
+    assertTrue(second.add(item));
+    assertTrue(second.contains(item));
+    assertFalse(first.contains(item));
+  }
+
+}
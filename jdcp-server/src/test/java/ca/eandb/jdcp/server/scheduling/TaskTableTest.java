@@ -0,0 +1,140 @@
+/*
+ * Copyright (c) 2026 Bradley W. Kimmel
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package ca.eandb.jdcp.server.scheduling;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+
+import org.testng.annotations.Test;
+
+import ca.eandb.jdcp.job.TaskDescription;
+
+/**
+ * Tests for {@link TaskTable}.
+ * @author Brad Kimmel
+ */
+public class TaskTableTest {
+
+  /** The ID of the job to which the test tasks belong. */
+  private static final UUID JOB_ID = UUID.randomUUID();
+
+  private static TaskDescription task(int taskId) {
+    return new TaskDescription(JOB_ID, taskId, "task " + taskId);
+  }
+
+  @Test
+  public void testEmpty() {
+    TaskTable table = new TaskTable();
+    assertTrue(table.isEmpty());
+    assertNull(table.next());
+    assertNull(table.get(1));
+    assertNull(table.remove(1));
+  }
+
+  @Test
+  public void testAddGetRemove() {
+    TaskTable table = new TaskTable();
+    for (int i = 0; i < 1000; i++) {
+      table.add(task(i * 7919));
+    }
+    assertEquals(table.size(), 1000);
+
+    for (int i = 0; i < 1000; i++) {
+      assertTrue(table.contains(i * 7919));
+      assertEquals(table.get(i * 7919).getTaskId(), i * 7919);
+    }
+    assertFalse(table.contains(1));
+
+    for (int i = 0; i < 1000; i += 2) {
+      assertEquals(table.remove(i * 7919).getTaskId(), i * 7919);
+      assertNull(table.remove(i * 7919));
+    }
+    assertEquals(table.size(), 500);
+    for (int i = 0; i < 1000; i++) {
+      assertEquals(table.contains(i * 7919), i % 2 != 0);
+    }
+  }
+
+  @Test
+  public void testAddReplacesExistingTask() {
+    TaskTable table = new TaskTable();
+    table.add(task(1));
+    TaskDescription replacement = task(1);
+    table.add(replacement);
+    assertEquals(table.size(), 1);
+    assertSame(table.get(1), replacement);
+  }
+
+  @Test
+  public void testNextServesRoundRobin() {
+    TaskTable table = new TaskTable();
+    table.add(task(1));
+    table.add(task(2));
+    table.add(task(3));
+
+    /* The most recently added task is served first. */
+    assertEquals(table.next().getTaskId(), 3);
+    assertEquals(table.next().getTaskId(), 2);
+    assertEquals(table.next().getTaskId(), 1);
+    assertEquals(table.next().getTaskId(), 3);
+
+    table.remove(2);
+    assertEquals(table.next().getTaskId(), 1);
+    assertEquals(table.next().getTaskId(), 3);
+    assertEquals(table.next().getTaskId(), 1);
+  }
+
+  @Test
+  public void testNextVisitsEveryTaskAfterChurn() {
+    TaskTable table = new TaskTable();
+    for (int i = 0; i < 100; i++) {
+      table.add(task(i));
+    }
+    for (int i = 0; i < 100; i += 3) {
+      table.remove(i);
+    }
+    for (int i = 100; i < 150; i++) {
+      table.add(task(i));
+    }
+
+    Set<Integer> seen = new HashSet<Integer>();
+    for (int i = 0; i < table.size(); i++) {
+      seen.add(table.next().getTaskId());
+    }
+    assertEquals(seen.size(), table.size());
+    for (int id : seen) {
+      assertTrue(table.contains(id));
+    }
+  }
+
+}
@@ -47,8 +47,6 @@ import java.lang.reflect.InvocationTargetException;
 import java.net.URL;
 import java.rmi.NotBoundException;
 import java.rmi.RemoteException;
-import java.rmi.registry.LocateRegistry;
-import java.rmi.registry.Registry;
 import java.sql.SQLException;
 import java.util.Calendar;
 import java.util.Properties;
@@ -79,7 +77,6 @@ import org.apache.log4j.Logger;
 import org.apache.log4j.PatternLayout;
 
 import ca.eandb.jdcp.JdcpUtil;
-import ca.eandb.jdcp.remote.AuthenticationService;
 import ca.eandb.jdcp.remote.JobService;
 import ca.eandb.jdcp.remote.ProtocolVersionException;
 import ca.eandb.jdcp.worker.policy.CourtesyMonitor;
@@ -492,9 +489,7 @@ public final class MainWindow extends JFrame {
 
   private JobService connect(String host, String user, String password, boolean showMessageDialog) {
     try {
-      Registry registry = LocateRegistry.getRegistry(host, JdcpUtil.DEFAULT_PORT);
-      AuthenticationService authService = (AuthenticationService) registry.lookup("AuthenticationService");
-      return authService.authenticate(user, password, JdcpUtil.PROTOCOL_VERSION_ID);
+      return JdcpUtil.connect(host, user, password);
     } catch (LoginException e) {
       logger.error("Authentication failed.", e);
       JOptionPane.showMessageDialog(this, "Authentication failed.  Please check your user name and password.", "Connection Failed", JOptionPane.WARNING_MESSAGE);
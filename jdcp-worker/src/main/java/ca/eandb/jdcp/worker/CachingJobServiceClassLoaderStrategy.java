@@ -27,14 +27,29 @@ package ca.eandb.jdcp.worker;
 
 import java.nio.ByteBuffer;
 import java.rmi.RemoteException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
 
 import org.apache.log4j.Logger;
 
+import ca.eandb.jdcp.codec.Codec;
+import ca.eandb.jdcp.remote.ClassBundle;
 import ca.eandb.jdcp.remote.TaskService;
+import ca.eandb.util.UnexpectedException;
 import ca.eandb.util.classloader.ClassLoaderStrategy;
 
 /**
@@ -62,19 +77,52 @@ public abstract class CachingJobServiceClassLoaderStrategy implements ClassLoade
   /**
    * A <code>Map</code> that stores the digests associated with each class.
    */
-  private Map<String, byte[]> digestLookup = Collections.synchronizedMap(new HashMap<String, byte[]>());
+  private final Map<String, byte[]> digestLookup = new ConcurrentHashMap<String, byte[]>();
 
   /**
-   * A <code>Map</code> to store the names of the classes whose digests are
-   * currently pending lookup.
+   * The lookups of class digests currently in progress, keyed by class
+   * name.
+   * @see #fetchOnce(ConcurrentMap, String, Callable)
    */
-  private Map<String, String> pendingDigest = new HashMap<String, String>();
+  private final ConcurrentMap<String, FutureTask<byte[]>> pendingDigest = new ConcurrentHashMap<String, FutureTask<byte[]>>();
 
   /**
-   * A <code>Map</code> to store the names of the classes whose definitions
-   * are currently pending lookup.
+   * The lookups of class definitions currently in progress, keyed by class
+   * name.
+   * @see #fetchOnce(ConcurrentMap, String, Callable)
    */
-  private Map<String, String> pendingDef = new HashMap<String, String>();
+  private final ConcurrentMap<String, FutureTask<byte[]>> pendingDef = new ConcurrentHashMap<String, FutureTask<byte[]>>();
+
+  /**
+   * The names of the classes whose definitions have been provided by this
+   * strategy, in the order in which they were first requested.
+   */
+  private final Set<String> loadedClasses = Collections.synchronizedSet(new LinkedHashSet<String>());
+
+  /**
+   * The names of the classes included in the <code>ClassBundle</code>s
+   * obtained by {@link #prefetchClassBundle()}.
+   */
+  private final Set<String> bundledClasses = Collections.synchronizedSet(new HashSet<String>());
+
+  /**
+   * The names of the classes in the <code>ClassBundle</code> obtained for
+   * relaying to other parties, or <code>null</code> if it has not yet been
+   * obtained.  The bundle is obtained from the <code>TaskService</code> only
+   * once.
+   * @see #getRelayedClasses()
+   */
+  private List<String> relayedClasses = null;
+
+  /** The lock guarding {@link #relayedClasses}. */
+  private final Object relayLock = new Object();
+
+  /**
+   * The maximum number of class digests to request in a single call when
+   * validating cached class definitions.
+   * @see #getClassDigest(String)
+   */
+  private static final int MAX_DIGEST_BATCH = 256;
 
   /**
    * Creates a new <code>CachingJobServiceClassLoaderStrategy</code>.
@@ -89,24 +137,22 @@ public abstract class CachingJobServiceClassLoaderStrategy implements ClassLoade
   }
 
   /**
-   * Gets the digest associated with a given class.
+   * Gets the digest associated with a given class.  If the digest is not
+   * yet known, the digests of any other cached classes in the same package
+   * whose digests are not yet known are obtained in the same call, so that
+   * the cached definitions of a whole package are validated at once.
    * @param name The name of the class.
    * @return The class digest.
    */
-  public final byte[] getClassDigest(String name) {
+  public final byte[] getClassDigest(final String name) {
     byte[] digest = digestLookup.get(name);
     if (digest == null) {
       try {
-        if (beginLookup(pendingDigest, name)) {
-          try {
-            digest = service.getClassDigest(name, jobId);
-            digestLookup.put(name, digest);
-          } finally {
-            endLookup(pendingDigest, name);
+        digest = fetchOnce(pendingDigest, name, new Callable<byte[]>() {
+          public byte[] call() throws RemoteException {
+            return fetchClassDigest(name);
           }
-        } else {
-          digest = digestLookup.get(name);
-        }
+        });
       } catch (SecurityException e) {
         logger.error("Could not get class digest", e);
       } catch (RemoteException e) {
@@ -117,64 +163,197 @@ public abstract class CachingJobServiceClassLoaderStrategy implements ClassLoade
   }
 
   /**
-   * Ensures that only one thread is calling the service to obtain the class
-   * digest or definition for a particular class name.
-   * @param pending The <code>Map</code> in which to store pending lookups.
-   * @param name The name of the class to be looked up.
-   * @return A value indicating whether the current thread is designated to
-   *     perform the lookup.
+   * Obtains the digest associated with a given class from the
+   * <code>TaskService</code>, along with those of the other classes
+   * returned by {@link #getDigestBatch(String)}.
+   * @param name The name of the class.
+   * @return The class digest.
+   * @throws RemoteException If a communication error occurs.
    */
-  private synchronized boolean beginLookup(Map<String, String> pending, String name) {
-    String canonical = pending.get(name);
-    if (canonical != null) {
-      do {
-        try {
-          canonical.wait();
-        } catch (InterruptedException e) {}
-      } while (pending.containsKey(name));
+  private byte[] fetchClassDigest(String name) throws RemoteException {
+    byte[] digest = digestLookup.get(name);
+    if (digest != null) {
+      return digest;
+    }
+
+    String[] names = getDigestBatch(name);
+    if (names.length > 1) {
+      byte[][] digests = service.getClassDigests(names, jobId);
+      for (int i = 1; i < names.length; i++) {
+        if (digests[i] != null) {
+          digestLookup.put(names[i], digests[i]);
+        }
+      }
+      digest = digests[0];
+    } else {
+      digest = service.getClassDigest(name, jobId);
+    }
+
+    if (digest != null) {
+      digestLookup.put(name, digest);
+    }
+    return digest;
+  }
+
+  /**
+   * Gets the digests associated with several classes.  The digests that are
+   * not yet known are obtained from the <code>TaskService</code> in a
+   * single call.
+   * @param names The names of the classes.
+   * @return The class digests, in the same order as <code>names</code>.
+   *     An element is <code>null</code> if the digest of the corresponding
+   *     class could not be obtained.
+   */
+  public final byte[][] getClassDigests(String[] names) {
+    byte[][] digests = new byte[names.length][];
+    List<String> missing = new ArrayList<String>();
+    for (int i = 0; i < names.length; i++) {
+      digests[i] = digestLookup.get(names[i]);
+      if (digests[i] == null) {
+        missing.add(names[i]);
+      }
+    }
+
+    if (!missing.isEmpty()) {
+      try {
+        byte[][] found = service.getClassDigests(
+            missing.toArray(new String[missing.size()]), jobId);
+        for (int i = 0, j = 0; i < names.length; i++) {
+          if (digests[i] == null) {
+            digests[i] = found[j++];
+            if (digests[i] != null) {
+              digestLookup.put(names[i], digests[i]);
+            }
+          }
+        }
+      } catch (SecurityException e) {
+        logger.error("Could not get class digests", e);
+      } catch (RemoteException e) {
+        logger.error("Could not get class digests", e);
+      }
     }
-    return (canonical == null);
+
+    return digests;
   }
 
   /**
-   * Signals that the current thread is done looking up a class digest or
-   * definition.
-   * @param pending The <code>Map</code> in which to store pending lookups.
-   * @param name The name of the class that was looked up.
+   * Gets the names of the classes whose digests to request along with the
+   * digest of the specified class.  These are the classes in the same
+   * package for which a definition is cached but whose digest is not yet
+   * known.
+   * @param name The name of the class whose digest is being requested.
+   * @return The names of the classes whose digests to request.  The first
+   *     element is <code>name</code>.
    */
-  private synchronized void endLookup(Map<String, String> pending, String name) {
-    String canonical = pending.remove(name);
-    if (canonical != null) {
-      canonical.notifyAll();
+  private String[] getDigestBatch(String name) {
+    List<String> names = new ArrayList<String>();
+    names.add(name);
+
+    int sep = name.lastIndexOf('.');
+    Collection<String> cached = getCachedClassNames((sep >= 0) ? name.substring(0, sep) : "");
+    if (cached != null) {
+      for (String other : cached) {
+        if (names.size() >= MAX_DIGEST_BATCH) {
+          break;
+        }
+        if (!other.equals(name) && !digestLookup.containsKey(other)) {
+          names.add(other);
+        }
+      }
+    }
+
+    return names.toArray(new String[names.size()]);
+  }
+
+  /**
+   * Ensures that only one thread is calling the service to obtain the class
+   * digest or definition for a particular class name.  The first thread to
+   * request a class performs the lookup, and any other threads requesting
+   * the same class while it is in progress wait for and share its result.
+   * Lookups for different classes proceed in parallel, since the pending
+   * lookups are kept in a <code>ConcurrentMap</code> rather than guarded by
+   * a single lock.
+   * @param pending The <code>ConcurrentMap</code> in which to store pending
+   *     lookups.
+   * @param name The name of the class to be looked up.
+   * @param lookup The <code>Callable</code> that performs the lookup.
+   * @return The result of the lookup.
+   * @throws RemoteException If the lookup failed due to a communication
+   *     error.
+   */
+  private byte[] fetchOnce(ConcurrentMap<String, FutureTask<byte[]>> pending,
+      String name, Callable<byte[]> lookup) throws RemoteException {
+    FutureTask<byte[]> task = pending.get(name);
+    if (task == null) {
+      FutureTask<byte[]> newTask = new FutureTask<byte[]>(lookup);
+      task = pending.putIfAbsent(name, newTask);
+      if (task == null) {
+        task = newTask;
+        try {
+          task.run();
+        } finally {
+          pending.remove(name, task);
+        }
+      }
+    }
+
+    boolean interrupted = false;
+    try {
+      while (true) {
+        try {
+          return task.get();
+        } catch (InterruptedException e) {
+          interrupted = true;
+        }
+      }
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof RemoteException) {
+        throw (RemoteException) cause;
+      } else if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      } else if (cause instanceof Error) {
+        throw (Error) cause;
+      } else {
+        throw new UnexpectedException(cause);
+      }
+    } finally {
+      if (interrupted) {
+        Thread.currentThread().interrupt();
+      }
     }
   }
 
   /* (non-Javadoc)
    * @see ca.eandb.util.classloader.ClassLoaderStrategy#getClassDefinition(java.lang.String)
    */
-  public final ByteBuffer getClassDefinition(String name) {
+  public final ByteBuffer getClassDefinition(final String name) {
 
     try {
 
-      byte[] digest = getClassDigest(name);
+      final byte[] digest = getClassDigest(name);
       byte[] def = cacheLookup(name, digest);
 
       if (def == null) {
-        if (beginLookup(pendingDef, name)) {
-          try {
-            def = service.getClassDefinition(name, jobId);
-            if (def != null) {
-              cacheStore(name, digest, def);
+        def = fetchOnce(pendingDef, name, new Callable<byte[]>() {
+          public byte[] call() throws RemoteException {
+            /* Another thread may have stored the definition between the
+             * cache lookup above and the start of this lookup.
+             */
+            byte[] def = cacheLookup(name, digest);
+            if (def == null) {
+              def = service.getClassDefinition(name, jobId);
+              if (def != null) {
+                cacheStore(name, digest, def);
+              }
             }
-          } finally {
-            endLookup(pendingDef, name);
+            return def;
           }
-        } else {
-          def = cacheLookup(name, digest);
-        }
+        });
       }
 
       if (def != null) {
+        loadedClasses.add(name);
         return ByteBuffer.wrap(def);
       }
 
@@ -186,6 +365,188 @@ public abstract class CachingJobServiceClassLoaderStrategy implements ClassLoade
 
   }
 
+  /**
+   * Obtains the definitions of the classes associated with the job from
+   * the <code>TaskService</code> in a single call, and stores them in the
+   * cache.  Classes whose definitions are already cached are not
+   * transmitted.  Calling this method before loading the classes of a job
+   * avoids calling the service for each class individually.  If the
+   * cache can report the digests of its definitions, the names of the
+   * classes the job needs are obtained first, so that only the digests of
+   * those classes are sent with the request.
+   * @return The names of the classes in the bundle, in the order in which
+   *     they were provided, or <code>null</code> if the bundle could not be
+   *     obtained.
+   * @see TaskService#getClassManifest(UUID)
+   * @see TaskService#getClassBundle(UUID, Map)
+   */
+  public final List<String> prefetchClassBundle() {
+    ClassBundle bundle;
+    try {
+      Map<String, byte[]> digests = null;
+      if (canReportCachedDigests()) {
+        String[] names = service.getClassManifest(jobId);
+        if (names.length == 0) {
+          return new ArrayList<String>();
+        }
+        digests = new HashMap<String, byte[]>();
+        for (String name : names) {
+          byte[] digest = getCachedDigest(name);
+          if (digest != null) {
+            digests.put(name, digest);
+          }
+        }
+      }
+      bundle = service.getClassBundle(jobId, digests);
+    } catch (SecurityException e) {
+      logger.error("Could not get class bundle", e);
+      return null;
+    } catch (RemoteException e) {
+      logger.error("Could not get class bundle", e);
+      return null;
+    }
+
+    List<ClassBundle.Entry> entries = bundle.getEntries();
+    List<String> names = new ArrayList<String>(entries.size());
+    for (ClassBundle.Entry entry : entries) {
+      String name = entry.getName();
+      byte[] digest = entry.getDigest();
+      byte[] def = entry.getDefinition();
+      if (def != null) {
+        cacheStore(name, digest, def);
+      }
+      digestLookup.put(name, digest);
+      bundledClasses.add(name);
+      names.add(name);
+    }
+    return names;
+  }
+
+  /**
+   * Gets the names of the classes whose definitions have been provided by
+   * this strategy but which were not included in a bundle obtained by
+   * {@link #prefetchClassBundle()}.  These are the classes that should be
+   * reported to the <code>TaskService</code> so that later workers obtain
+   * them in advance.
+   * @return The names of the classes loaded but not prefetched, in the
+   *     order in which they were first requested.
+   * @see TaskService#reportClassManifest(UUID, String[])
+   */
+  public final String[] getUnbundledClasses() {
+    List<String> names = new ArrayList<String>();
+    synchronized (loadedClasses) {
+      for (String name : loadedClasses) {
+        if (!bundledClasses.contains(name)) {
+          names.add(name);
+        }
+      }
+    }
+    return names.toArray(new String[names.size()]);
+  }
+
+  /**
+   * Gets the names of the classes in the bundle obtained for relaying to
+   * other parties, obtaining the bundle from the <code>TaskService</code>
+   * and storing it in this cache if this has not yet been done.  If the
+   * bundle cannot be obtained, the next call tries again.
+   * @return The names of the classes in the relayed bundle.
+   */
+  private List<String> getRelayedClasses() {
+    synchronized (relayLock) {
+      if (relayedClasses == null) {
+        relayedClasses = prefetchClassBundle();
+      }
+      return (relayedClasses != null) ? relayedClasses : Collections.<String>emptyList();
+    }
+  }
+
+  /**
+   * Gets the names of the classes in the bundle relayed by
+   * {@link #getClassBundle(Map, Codec)}.
+   * @return The fully qualified names of the classes.
+   * @see TaskService#getClassManifest(UUID)
+   */
+  public final String[] getClassManifest() {
+    List<String> names = getRelayedClasses();
+    return names.toArray(new String[names.size()]);
+  }
+
+  /**
+   * Gets a bundle of the class definitions associated with the job, for
+   * relaying to another party.  The bundle is obtained from the
+   * <code>TaskService</code> and stored in this cache on the first call
+   * only, so that later calls are served from this cache.
+   * @param digests A <code>Map</code> of the MD5 digests of the class
+   *     definitions that the recipient already has, keyed by class name, or
+   *     <code>null</code> if the recipient has none.
+   * @param codec The <code>Codec</code> to use to compress the bundle.
+   * @return The <code>ClassBundle</code>.
+   * @see TaskService#getClassBundle(UUID, Map)
+   */
+  public final ClassBundle getClassBundle(Map<String, byte[]> digests,
+      Codec codec) {
+    List<String> names = getRelayedClasses();
+    List<ClassBundle.Entry> entries = new ArrayList<ClassBundle.Entry>(names.size());
+    for (String name : names) {
+      byte[] digest = getClassDigest(name);
+      if (digest == null) {
+        continue;
+      }
+
+      byte[] known = (digests != null) ? digests.get(name) : null;
+      if (known != null && Arrays.equals(known, digest)) {
+        entries.add(new ClassBundle.Entry(name, digest, null));
+      } else {
+        byte[] def = cacheLookup(name, digest);
+        if (def != null) {
+          entries.add(new ClassBundle.Entry(name, digest, def));
+        }
+      }
+    }
+    return ClassBundle.create(entries, codec);
+  }
+
+  /**
+   * Gets the names of the classes in a package for which a definition is
+   * cached, so that their digests may be validated together.  The default
+   * implementation returns <code>null</code>.
+   * @param packageName The name of the package, or the empty string for
+   *     the default package.
+   * @return The fully qualified names of the cached classes in the
+   *     package, or <code>null</code> if the cache cannot enumerate its
+   *     contents.
+   */
+  protected Collection<String> getCachedClassNames(String packageName) {
+    return null;
+  }
+
+  /**
+   * Determines whether {@link #getCachedDigest(String)} reports the
+   * digests of the cached class definitions.  The default implementation
+   * returns <code>false</code>, in which case all definitions in a bundle
+   * are transmitted.
+   * @return A value indicating whether the cache can report the digests
+   *     of its definitions.
+   */
+  protected boolean canReportCachedDigests() {
+    return false;
+  }
+
+  /**
+   * Gets the MD5 digest of a cached definition of a class, to be sent with
+   * a request for a {@link ClassBundle} so that definitions already cached
+   * are not transmitted.  If more than one definition of the class is
+   * cached, any one of their digests may be returned.  The default
+   * implementation returns <code>null</code>.
+   * @param name The fully qualified name of the class.
+   * @return The MD5 digest of a cached definition of the class, or
+   *     <code>null</code> if no definition of the class is cached.
+   * @see #canReportCachedDigests()
+   */
+  protected byte[] getCachedDigest(String name) {
+    return null;
+  }
+
   /**
    * Looks up a class definition in the cache.
    * @param name The fully qualified name of the class to look up.
@@ -0,0 +1,484 @@
+/*
+ * Copyright (c) 2026 Bradley W. Kimmel
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package ca.eandb.jdcp.worker;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded, thread-safe, in-memory cache of class definitions, keyed by
+ * the MD5 digest of the definition.  Since the digest identifies the
+ * contents of the definition, a definition that is used by several jobs is
+ * stored only once.  The least recently used definitions are evicted once
+ * the total size of the cached definitions would exceed the capacity of the
+ * cache.
+ *
+ * <p>The cache is divided into independently locked segments, each with
+ * an equal share of the capacity, so that threads looking up different
+ * classes do not contend with one another.  Eviction is therefore least
+ * recently used within each segment, rather than across the whole cache.
+ *
+ * @author Brad Kimmel
+ */
+public final class ClassDefinitionCache {
+
+  /** The default capacity of the cache, in bytes. */
+  public static final long DEFAULT_CAPACITY = 64L * 1024L * 1024L;
+
+  /** The number of segments (must be a power of two). */
+  private static final int SEGMENTS = 16;
+
+  /** The segments of the cache. */
+  private final Segment[] segments = new Segment[SEGMENTS];
+
+  /** The digests of the cached definitions, keyed by class name. */
+  private final NameIndex names = new NameIndex();
+
+  /** The capacity of the cache, in bytes. */
+  private final long capacity;
+
+  /** The number of lookups that found a definition. */
+  private final AtomicLong hits = new AtomicLong();
+
+  /** The number of lookups that did not find a definition. */
+  private final AtomicLong misses = new AtomicLong();
+
+  /** The number of definitions stored. */
+  private final AtomicLong stores = new AtomicLong();
+
+  /** The number of definitions evicted to make room for others. */
+  private final AtomicLong evictions = new AtomicLong();
+
+  /**
+   * Creates a new <code>ClassDefinitionCache</code>.
+   * @param capacity The maximum total size (in bytes) of the definitions to
+   *     hold.
+   * @throws IllegalArgumentException If <code>capacity</code> is negative.
+   */
+  public ClassDefinitionCache(long capacity) {
+    if (capacity < 0) {
+      throw new IllegalArgumentException("capacity must be non-negative");
+    }
+    this.capacity = capacity;
+    for (int i = 0; i < SEGMENTS; i++) {
+      segments[i] = new Segment(capacity / SEGMENTS, names);
+    }
+  }
+
+  /**
+   * Looks up a class definition.
+   * @param digest The MD5 digest of the class definition.
+   * @return The class definition, or <code>null</code> if no definition
+   *     having the specified digest is cached.
+   */
+  public byte[] get(byte[] digest) {
+    if (digest == null) {
+      return null;
+    }
+
+    Key key = new Key(digest);
+    byte[] data = segmentFor(key).get(key);
+    if (data == null) {
+      misses.incrementAndGet();
+      return null;
+    }
+
+    hits.incrementAndGet();
+    return data.clone();
+  }
+
+  /**
+   * Stores a class definition.  If the definition is larger than the share
+   * of the capacity available to it, it is not stored.
+   * @param name The fully qualified name of the class.
+   * @param digest The MD5 digest of the class definition.
+   * @param def The class definition.
+   */
+  public void put(String name, byte[] digest, byte[] def) {
+    Key key = new Key(digest.clone());
+    int evicted = segmentFor(key).put(key, new Entry(name, def.clone()));
+    if (evicted >= 0) {
+      stores.incrementAndGet();
+      evictions.addAndGet(evicted);
+    }
+  }
+
+  /**
+   * Gets the digest of a cached definition of a class.  If more than one
+   * definition of the class is cached, any one of their digests may be
+   * returned.
+   * @param name The fully qualified name of the class.
+   * @return The MD5 digest of a cached definition of the class, or
+   *     <code>null</code> if no definition of the class is cached.
+   */
+  public byte[] getDigest(String name) {
+    Key key = names.get(name);
+    return (key != null) ? key.digest.clone() : null;
+  }
+
+  /**
+   * Gets the names of the classes in a package for which a definition is
+   * cached.
+   * @param packageName The name of the package, or the empty string for
+   *     the default package.
+   * @return The fully qualified names of the cached classes in the
+   *     package.
+   */
+  public List<String> getClassNames(String packageName) {
+    return names.getClassNames(packageName);
+  }
+
+  /**
+   * Gets the capacity of the cache.
+   * @return The maximum total size of the cached definitions, in bytes.
+   */
+  public long getCapacity() {
+    return capacity;
+  }
+
+  /**
+   * Gets the total size of the cached definitions.
+   * @return The total size of the cached definitions, in bytes.
+   */
+  public long getSize() {
+    long size = 0;
+    for (Segment segment : segments) {
+      size += segment.getSize();
+    }
+    return size;
+  }
+
+  /**
+   * Gets the number of cached definitions.
+   * @return The number of cached definitions.
+   */
+  public int getEntryCount() {
+    int count = 0;
+    for (Segment segment : segments) {
+      count += segment.getEntryCount();
+    }
+    return count;
+  }
+
+  /**
+   * Gets the number of lookups that found a definition.
+   * @return The number of cache hits.
+   */
+  public long getHits() {
+    return hits.get();
+  }
+
+  /**
+   * Gets the number of lookups that did not find a definition.
+   * @return The number of cache misses.
+   */
+  public long getMisses() {
+    return misses.get();
+  }
+
+  /**
+   * Gets the number of definitions stored.
+   * @return The number of definitions stored.
+   */
+  public long getStores() {
+    return stores.get();
+  }
+
+  /**
+   * Gets the number of definitions evicted to make room for others.
+   * @return The number of evictions.
+   */
+  public long getEvictions() {
+    return evictions.get();
+  }
+
+  /* (non-Javadoc)
+   * @see java.lang.Object#toString()
+   */
+  @Override
+  public String toString() {
+    long h = hits.get();
+    long m = misses.get();
+    return String.format(
+        "%d entries, %d/%d bytes, %d hits, %d misses (%.1f%% hit), %d stores, %d evictions",
+        getEntryCount(), getSize(), capacity, h, m,
+        (h + m > 0) ? 100.0 * h / (h + m) : 0.0, stores.get(),
+        evictions.get());
+  }
+
+  /**
+   * Gets the segment responsible for the specified key.
+   * @param key The <code>Key</code>.
+   * @return The <code>Segment</code> holding <code>key</code>.
+   */
+  private Segment segmentFor(Key key) {
+    int h = key.hash;
+    return segments[(h ^ (h >>> 16)) & (SEGMENTS - 1)];
+  }
+
+  /**
+   * An MD5 digest, for use as a key in a <code>Map</code>.
+   */
+  private static final class Key {
+
+    /** The digest. */
+    private final byte[] digest;
+
+    /** The hash code of the digest. */
+    private final int hash;
+
+    /**
+     * Creates a new <code>Key</code>.
+     * @param digest The digest.
+     */
+    public Key(byte[] digest) {
+      this.digest = digest;
+      this.hash = Arrays.hashCode(digest);
+    }
+
+    /* (non-Javadoc)
+     * @see java.lang.Object#hashCode()
+     */
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+
+    /* (non-Javadoc)
+     * @see java.lang.Object#equals(java.lang.Object)
+     */
+    @Override
+    public boolean equals(Object obj) {
+      return (obj instanceof Key) && hash == ((Key) obj).hash
+          && Arrays.equals(digest, ((Key) obj).digest);
+    }
+
+  }
+
+  /**
+   * A cached class definition.
+   */
+  private static final class Entry {
+
+    /** The fully qualified name of the class. */
+    public final String name;
+
+    /** The class definition. */
+    public final byte[] data;
+
+    /**
+     * Creates a new <code>Entry</code>.
+     * @param name The fully qualified name of the class.
+     * @param data The class definition.
+     */
+    public Entry(String name, byte[] data) {
+      this.name = name;
+      this.data = data;
+    }
+
+  }
+
+  /**
+   * The digests of the cached definitions, grouped by package and keyed by
+   * class name.  If more than one definition of a class is cached, this
+   * holds the one most recently stored.
+   */
+  private static final class NameIndex {
+
+    /** The digests keyed by class name, for each package. */
+    private final ConcurrentMap<String, ConcurrentMap<String, Key>> packages = new ConcurrentHashMap<String, ConcurrentMap<String, Key>>();
+
+    /**
+     * Gets the name of the package containing a class.
+     * @param name The fully qualified name of the class.
+     * @return The name of the package, or the empty string for the default
+     *     package.
+     */
+    private static String getPackageName(String name) {
+      int sep = name.lastIndexOf('.');
+      return (sep >= 0) ? name.substring(0, sep) : "";
+    }
+
+    /**
+     * Gets the digest of a cached definition of a class.
+     * @param name The fully qualified name of the class.
+     * @return The digest, or <code>null</code> if no definition of the
+     *     class is cached.
+     */
+    public Key get(String name) {
+      Map<String, Key> classes = packages.get(getPackageName(name));
+      return (classes != null) ? classes.get(name) : null;
+    }
+
+    /**
+     * Gets the names of the cached classes in a package.
+     * @param packageName The name of the package.
+     * @return The fully qualified names of the cached classes.
+     */
+    public List<String> getClassNames(String packageName) {
+      Map<String, Key> classes = packages.get(packageName);
+      return (classes != null)
+          ? new ArrayList<String>(classes.keySet())
+          : new ArrayList<String>();
+    }
+
+    /**
+     * Records a cached definition.
+     * @param name The fully qualified name of the class.
+     * @param key The digest of the definition.
+     */
+    public void put(String name, Key key) {
+      String pkg = getPackageName(name);
+      ConcurrentMap<String, Key> classes = packages.get(pkg);
+      if (classes == null) {
+        ConcurrentMap<String, Key> newClasses = new ConcurrentHashMap<String, Key>();
+        classes = packages.putIfAbsent(pkg, newClasses);
+        if (classes == null) {
+          classes = newClasses;
+        }
+      }
+      classes.put(name, key);
+    }
+
+    /**
+     * Removes a definition that has been evicted, unless another definition
+     * of the class has since been recorded.
+     * @param name The fully qualified name of the class.
+     * @param key The digest of the evicted definition.
+     */
+    public void remove(String name, Key key) {
+      ConcurrentMap<String, Key> classes = packages.get(getPackageName(name));
+      if (classes != null) {
+        classes.remove(name, key);
+      }
+    }
+
+  }
+
+  /**
+   * A portion of the cache, guarded by its own lock.
+   */
+  private static final class Segment {
+
+    /** The cached entries, in order of least to most recently used. */
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<Key, Entry>(16, 0.75f, true);
+
+    /** The maximum total size of the definitions in this segment. */
+    private final long capacity;
+
+    /** The total size of the definitions in this segment. */
+    private long size = 0;
+
+    /**
+     * The digests of the cached definitions keyed by class name, shared by
+     * all segments.
+     */
+    private final NameIndex names;
+
+    /**
+     * Creates a new <code>Segment</code>.
+     * @param capacity The maximum total size (in bytes) of the definitions
+     *     in this segment.
+     * @param names The digests of the cached definitions keyed by class
+     *     name, shared by all segments.
+     */
+    public Segment(long capacity, NameIndex names) {
+      this.capacity = capacity;
+      this.names = names;
+    }
+
+    /**
+     * Looks up a class definition.
+     * @param key The digest of the class definition.
+     * @return The class definition, which must not be modified, or
+     *     <code>null</code> if it is not in this segment.
+     */
+    public synchronized byte[] get(Key key) {
+      Entry entry = entries.get(key);
+      return (entry != null) ? entry.data : null;
+    }
+
+    /**
+     * Stores a class definition, evicting the least recently used
+     * definitions as necessary to make room for it.
+     * @param key The digest of the class definition.
+     * @param entry The class definition.
+     * @return The number of definitions evicted, or -1 if the definition
+     *     was not stored because it does not fit in this segment.
+     */
+    public synchronized int put(Key key, Entry entry) {
+      int length = entry.data.length;
+      if (length > capacity) {
+        return -1;
+      }
+
+      Entry old = entries.put(key, entry);
+      if (old != null) {
+        size -= old.data.length;
+      }
+      size += length;
+      names.put(entry.name, key);
+
+      int evicted = 0;
+      Iterator<Map.Entry<Key, Entry>> i = entries.entrySet().iterator();
+      while (size > capacity && i.hasNext()) {
+        Map.Entry<Key, Entry> eldest = i.next();
+        if (eldest.getValue() != entry) {
+          i.remove();
+          size -= eldest.getValue().data.length;
+          names.remove(eldest.getValue().name, eldest.getKey());
+          evicted++;
+        }
+      }
+      return evicted;
+    }
+
+    /**
+     * Gets the total size of the definitions in this segment.
+     * @return The total size of the definitions, in bytes.
+     */
+    public synchronized long getSize() {
+      return size;
+    }
+
+    /**
+     * Gets the number of definitions in this segment.
+     * @return The number of definitions.
+     */
+    public synchronized int getEntryCount() {
+      return entries.size();
+    }
+
+  }
+
+}
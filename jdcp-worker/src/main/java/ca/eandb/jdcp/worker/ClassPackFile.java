@@ -0,0 +1,987 @@
+/*
+ * Copyright (c) 2026 Bradley W. Kimmel
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package ca.eandb.jdcp.worker;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.CRC32;
+
+import org.apache.log4j.Logger;
+
+/**
+ * A persistent store of class definitions, keyed by the MD5 digest of the
+ * definition, held in a pair of memory-mapped files in a single directory:
+ * an append-only data file holding the definitions, and an index file
+ * holding an open-addressed hash table of the offsets of the records in the
+ * data file.  Looking up a definition requires a probe of the index and a
+ * copy out of the mapped data file, rather than opening and reading a file
+ * per class.
+ *
+ * <p>Each record in the data file is self-describing (it holds the class
+ * name and digest along with the definition) and carries a checksum.  The
+ * index is marked as dirty while the pack is open, so if the process exits
+ * without closing the pack, the index is rebuilt from the data file when
+ * the pack is next opened, and any torn record at the end of the data file
+ * is discarded.
+ *
+ * <p>When appending a definition would cause the data file to exceed the
+ * capacity of the pack, the pack is compacted: only the records that have
+ * been looked up or stored since the pack was opened are retained.
+ *
+ * <p>A pack may be opened by only one process at a time.
+ *
+ * @author Brad Kimmel
+ */
+public final class ClassPackFile {
+
+  /** The <code>Logger</code> for this class. */
+  private static final Logger logger = Logger.getLogger(ClassPackFile.class);
+
+  /** The default capacity of the pack, in bytes. */
+  public static final long DEFAULT_CAPACITY = 256L * 1024L * 1024L;
+
+  /** The name of the data file. */
+  private static final String DATA_FILE_NAME = "classes.pack";
+
+  /** The name of the index file. */
+  private static final String INDEX_FILE_NAME = "classes.idx";
+
+  /** The suffix given to files while they are being written. */
+  private static final String TEMP_SUFFIX = ".tmp";
+
+  /** The magic number identifying a data file. */
+  private static final int DATA_MAGIC = 0x4A504B44;
+
+  /** The magic number identifying an index file. */
+  private static final int INDEX_MAGIC = 0x4A504B49;
+
+  /** The magic number at the start of each record in the data file. */
+  private static final int RECORD_MAGIC = 0x4A435243;
+
+  /** The version of the file format. */
+  private static final int VERSION = 1;
+
+  /**
+   * The size of the data file header: magic (4), version (4) and
+   * generation (8).
+   */
+  private static final int DATA_HEADER_SIZE = 16;
+
+  /**
+   * The size of the index file header: magic (4), version (4),
+   * generation (8), data length (4), slot count (4), entry count (4) and
+   * clean flag (4).
+   */
+  private static final int INDEX_HEADER_SIZE = 32;
+
+  /** The offset of the data length in the index file header. */
+  private static final int INDEX_DATA_LENGTH = 16;
+
+  /** The offset of the slot count in the index file header. */
+  private static final int INDEX_SLOT_COUNT = 20;
+
+  /** The offset of the entry count in the index file header. */
+  private static final int INDEX_ENTRY_COUNT = 24;
+
+  /** The offset of the clean flag in the index file header. */
+  private static final int INDEX_CLEAN = 28;
+
+  /** The size of a slot in the index: record offset (4) and hash (4). */
+  private static final int SLOT_SIZE = 8;
+
+  /** The minimum number of slots in the index (must be a power of two). */
+  private static final int MIN_SLOTS = 1024;
+
+  /**
+   * The size of a record, excluding the name, digest and definition: magic
+   * (4), name length (2), digest length (1), definition length (4) and
+   * checksum (4).
+   */
+  private static final int RECORD_OVERHEAD = 15;
+
+  /** The offset of the name within a record. */
+  private static final int RECORD_NAME = 11;
+
+  /** The minimum size of the mapped region of the data file. */
+  private static final int MIN_MAPPING = 1024 * 1024;
+
+  /** The <code>Charset</code> used to encode class names. */
+  private static final Charset UTF8 = Charset.forName("UTF-8");
+
+  /** The data file. */
+  private final File dataFile;
+
+  /** The index file. */
+  private final File indexFile;
+
+  /** The maximum size of the data file, in bytes. */
+  private final int capacity;
+
+  /** Guards the mapped buffers: lookups read, stores write. */
+  private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+  /**
+   * The offsets of the records that have been looked up or stored since
+   * the pack was opened (or last compacted).
+   */
+  private Set<Integer> touched = newOffsetSet();
+
+  /**
+   * The offsets of the indexed records keyed by class name, for each
+   * package.  If more than one definition of a class is stored, this holds
+   * the one most recently indexed.
+   */
+  private final Map<String, Map<String, Integer>> packages = new HashMap<String, Map<String, Integer>>();
+
+  /** The <code>FileChannel</code> for the data file. */
+  private FileChannel dataChannel;
+
+  /** The lock held on the data file while the pack is open. */
+  private FileLock fileLock;
+
+  /** The mapped region of the data file. */
+  private MappedByteBuffer data;
+
+  /** The offset in the data file at which to append the next record. */
+  private int dataLength;
+
+  /** The mapped index file. */
+  private MappedByteBuffer index;
+
+  /** The number of slots in the index. */
+  private int slotCount;
+
+  /** The number of records in the index. */
+  private int entryCount;
+
+  /**
+   * A number identifying the current data file, so that an index built
+   * for another data file (e.g., prior to compaction) is not used.
+   */
+  private long generation;
+
+  /** A value indicating whether the pack has been closed. */
+  private boolean closed = false;
+
+  /** The number of lookups that found a definition. */
+  private final AtomicLong hits = new AtomicLong();
+
+  /** The number of lookups that did not find a definition. */
+  private final AtomicLong misses = new AtomicLong();
+
+  /** The number of definitions stored. */
+  private long stores = 0;
+
+  /** The number of times the pack has been compacted. */
+  private long compactions = 0;
+
+  /**
+   * Opens a <code>ClassPackFile</code>, creating it if necessary.
+   * @param directory The directory in which to store the pack.
+   * @param capacity The maximum size (in bytes) of the data file.
+   * @throws IllegalArgumentException if <code>directory</code> does not
+   *     refer to an existing directory, or if <code>capacity</code> is
+   *     negative.
+   * @throws IOException If the pack could not be opened, or if it is in
+   *     use by another process.
+   */
+  public ClassPackFile(File directory, long capacity) throws IOException {
+    if (!directory.isDirectory()) {
+      throw new IllegalArgumentException("directory must be a directory.");
+    }
+    if (capacity < 0) {
+      throw new IllegalArgumentException("capacity must be non-negative");
+    }
+    this.dataFile = new File(directory, DATA_FILE_NAME);
+    this.indexFile = new File(directory, INDEX_FILE_NAME);
+    this.capacity = (int) Math.min(capacity, Integer.MAX_VALUE);
+
+    dataChannel = new RandomAccessFile(dataFile, "rw").getChannel();
+    try {
+      fileLock = lockChannel(dataChannel);
+      int size = openData();
+      if (!openIndex(size)) {
+        logger.info("Rebuilding class pack index");
+        rebuildIndex();
+      }
+    } catch (IOException e) {
+      dataChannel.close();
+      throw e;
+    }
+  }
+
+  /**
+   * Obtains an exclusive lock on a file.
+   * @param channel The <code>FileChannel</code> for the file to lock.
+   * @return The <code>FileLock</code>.
+   * @throws IOException If the file is locked by another process, or if
+   *     an error occurs while obtaining the lock.
+   */
+  private static FileLock lockChannel(FileChannel channel) throws IOException {
+    FileLock fileLock;
+    try {
+      fileLock = channel.tryLock();
+    } catch (OverlappingFileLockException e) {
+      fileLock = null;
+    }
+    if (fileLock == null) {
+      throw new IOException("Class pack is in use by another process");
+    }
+    return fileLock;
+  }
+
+  /**
+   * Reads the header of the data file, initializing the data file if it is
+   * empty or not recognized, and maps it.
+   * @return The size of the data file before it was mapped, in bytes.
+   * @throws IOException If an error occurs while reading or mapping the data
+   *     file.
+   */
+  private int openData() throws IOException {
+    long size = dataChannel.size();
+    if (size > Integer.MAX_VALUE) {
+      throw new IOException("Class pack data file is too large");
+    }
+    boolean valid = false;
+    if (size >= DATA_HEADER_SIZE) {
+      ByteBuffer header = ByteBuffer.allocate(DATA_HEADER_SIZE);
+      dataChannel.read(header, 0);
+      header.flip();
+      valid = (header.getInt() == DATA_MAGIC && header.getInt() == VERSION);
+      generation = header.getLong();
+    }
+    if (!valid) {
+      if (size > 0) {
+        logger.warn("Class pack data file not recognized, discarding");
+      }
+      dataChannel.truncate(0);
+      generation = writeDataHeader(dataChannel);
+      size = DATA_HEADER_SIZE;
+    }
+    data = dataChannel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(size, MIN_MAPPING));
+    dataLength = DATA_HEADER_SIZE;
+    return (int) size;
+  }
+
+  /**
+   * Writes a new data file header with a fresh generation number.
+   * @param channel The <code>FileChannel</code> to write to.
+   * @return The generation number written.
+   * @throws IOException If an error occurs while writing the header.
+   */
+  private static long writeDataHeader(FileChannel channel) throws IOException {
+    long gen = new Random().nextLong();
+    ByteBuffer header = ByteBuffer.allocate(DATA_HEADER_SIZE);
+    header.putInt(DATA_MAGIC).putInt(VERSION).putLong(gen);
+    header.flip();
+    channel.write(header, 0);
+    return gen;
+  }
+
+  /**
+   * Attempts to open and map the existing index file.  The index is used
+   * only if it was built for the current data file and was left clean.
+   * @param dataSize The size of the data file before it was mapped.  The
+   *     index is not used if it refers to records beyond this point (e.g.,
+   *     if the data file has since been truncated).
+   * @return A value indicating whether the index was opened.
+   * @throws IOException If an error occurs while mapping the index.
+   */
+  private boolean openIndex(int dataSize) throws IOException {
+    if (!indexFile.isFile() || indexFile.length() < INDEX_HEADER_SIZE) {
+      return false;
+    }
+
+    MappedByteBuffer buf = mapIndex(indexFile, indexFile.length());
+    int slots = buf.getInt(INDEX_SLOT_COUNT);
+    int length = buf.getInt(INDEX_DATA_LENGTH);
+    if (buf.getInt(0) != INDEX_MAGIC || buf.getInt(4) != VERSION
+        || buf.getLong(8) != generation || buf.getInt(INDEX_CLEAN) == 0
+        || slots < MIN_SLOTS || Integer.bitCount(slots) != 1
+        || (long) INDEX_HEADER_SIZE + (long) slots * SLOT_SIZE != buf.capacity()
+        || length < DATA_HEADER_SIZE || length > dataSize) {
+      return false;
+    }
+
+    index = buf;
+    slotCount = slots;
+    entryCount = buf.getInt(INDEX_ENTRY_COUNT);
+    dataLength = length;
+    for (int i = 0; i < slotCount; i++) {
+      int offset = index.getInt(INDEX_HEADER_SIZE + i * SLOT_SIZE);
+      if (offset != 0) {
+        indexName(offset);
+      }
+    }
+
+    /* Pick up any records written after the index was last saved. */
+    scan();
+    markDirty();
+    return true;
+  }
+
+  /**
+   * Creates a new, empty index and populates it by scanning the data file.
+   * @throws IOException If an error occurs while writing the index.
+   */
+  private void rebuildIndex() throws IOException {
+    index = createIndex(MIN_SLOTS);
+    slotCount = MIN_SLOTS;
+    entryCount = 0;
+    dataLength = DATA_HEADER_SIZE;
+    packages.clear();
+    scan();
+    markDirty();
+  }
+
+  /**
+   * Adds the valid records following the current end of the data file to
+   * the index.  Scanning stops at the first record that is incomplete or
+   * whose checksum does not match, and the remainder of the mapped region
+   * is cleared so that it is not mistaken for a record later.
+   * @throws IOException If an error occurs while growing the index.
+   */
+  private void scan() throws IOException {
+    int pos = dataLength;
+    int length;
+    while ((length = validRecordLength(pos)) > 0) {
+      byte[] digest = readDigest(pos);
+      if (find(digest) < 0) {
+        insert(index, slotCount, pos, hash(digest));
+        indexName(pos);
+        entryCount++;
+      }
+      pos += length;
+      dataLength = pos;
+      if (entryCount * 2 > slotCount) {
+        growIndex();
+      }
+    }
+
+    if (pos + 4 <= data.capacity() && data.getInt(pos) != 0) {
+      logger.warn(String.format("Discarding damaged class pack record at offset %d", pos));
+      for (int i = pos; i < data.capacity(); i++) {
+        data.put(i, (byte) 0);
+      }
+    }
+  }
+
+  /**
+   * Determines if a complete, undamaged record is present in the mapped
+   * data file at the specified offset.
+   * @param pos The offset in the data file.
+   * @return The length of the record, or zero if no valid record is
+   *     present at <code>pos</code>.
+   */
+  private int validRecordLength(int pos) {
+    int limit = data.capacity();
+    if (pos > limit - RECORD_OVERHEAD || data.getInt(pos) != RECORD_MAGIC) {
+      return 0;
+    }
+    int nameLength = data.getShort(pos + 4) & 0xffff;
+    int digestLength = data.get(pos + 6) & 0xff;
+    int defLength = data.getInt(pos + 7);
+    if (defLength < 0) {
+      return 0;
+    }
+    long length = (long) RECORD_OVERHEAD + nameLength + digestLength + defLength;
+    if (length > limit - pos) {
+      return 0;
+    }
+
+    int body = (int) length - 8;
+    byte[] bytes = new byte[body];
+    ByteBuffer dup = data.duplicate();
+    dup.position(pos + 4);
+    dup.get(bytes);
+    CRC32 crc = new CRC32();
+    crc.update(bytes);
+    return (dup.getInt() == (int) crc.getValue()) ? (int) length : 0;
+  }
+
+  /**
+   * Marks the index as in use, so that it is rebuilt if the pack is not
+   * closed cleanly.
+   */
+  private void markDirty() {
+    writeIndexHeader(false);
+    index.force();
+  }
+
+  /**
+   * Writes the header of the index file.
+   * @param clean A value indicating whether the index is consistent with
+   *     the data file.
+   */
+  private void writeIndexHeader(boolean clean) {
+    index.putInt(0, INDEX_MAGIC);
+    index.putInt(4, VERSION);
+    index.putLong(8, generation);
+    index.putInt(INDEX_DATA_LENGTH, dataLength);
+    index.putInt(INDEX_SLOT_COUNT, slotCount);
+    index.putInt(INDEX_ENTRY_COUNT, entryCount);
+    index.putInt(INDEX_CLEAN, clean ? 1 : 0);
+  }
+
+  /**
+   * Creates a new, empty index file and maps it.  The file is written
+   * under a temporary name and then moved into place.
+   * @param slots The number of slots in the new index.
+   * @return The mapped index file.
+   * @throws IOException If an error occurs while creating the index.
+   */
+  private MappedByteBuffer createIndex(int slots) throws IOException {
+    File temp = new File(indexFile.getPath() + TEMP_SUFFIX);
+    temp.delete();
+    MappedByteBuffer buf = mapIndex(temp, INDEX_HEADER_SIZE + (long) slots * SLOT_SIZE);
+    buf.force();
+    Files.move(temp.toPath(), indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+        StandardCopyOption.ATOMIC_MOVE);
+    return buf;
+  }
+
+  /**
+   * Maps an index file.  The mapping remains valid after the channel used
+   * to create it is closed.
+   * @param file The index file.
+   * @param size The size of the region to map.
+   * @return The mapped index file.
+   * @throws IOException If an error occurs while mapping the file.
+   */
+  private static MappedByteBuffer mapIndex(File file, long size) throws IOException {
+    RandomAccessFile raf = new RandomAccessFile(file, "rw");
+    try {
+      return raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+    } finally {
+      raf.close();
+    }
+  }
+
+  /**
+   * Doubles the number of slots in the index.
+   * @throws IOException If an error occurs while creating the new index.
+   */
+  private void growIndex() throws IOException {
+    int slots = slotCount * 2;
+    MappedByteBuffer buf = createIndex(slots);
+    for (int i = 0; i < slotCount; i++) {
+      int slot = INDEX_HEADER_SIZE + i * SLOT_SIZE;
+      int offset = index.getInt(slot);
+      if (offset != 0) {
+        insert(buf, slots, offset, index.getInt(slot + 4));
+      }
+    }
+    index = buf;
+    slotCount = slots;
+    markDirty();
+  }
+
+  /**
+   * Adds a record to an index.
+   * @param buf The mapped index file.
+   * @param slots The number of slots in the index.
+   * @param offset The offset of the record in the data file.
+   * @param hash The hash of the digest of the record.
+   */
+  private static void insert(ByteBuffer buf, int slots, int offset, int hash) {
+    int mask = slots - 1;
+    int i = hash & mask;
+    while (buf.getInt(INDEX_HEADER_SIZE + i * SLOT_SIZE) != 0) {
+      i = (i + 1) & mask;
+    }
+    buf.putInt(INDEX_HEADER_SIZE + i * SLOT_SIZE, offset);
+    buf.putInt(INDEX_HEADER_SIZE + i * SLOT_SIZE + 4, hash);
+  }
+
+  /**
+   * Finds the record for a class definition.
+   * @param digest The MD5 digest of the class definition.
+   * @return The offset of the record in the data file, or -1 if there is
+   *     no record for the definition.
+   */
+  private int find(byte[] digest) {
+    int hash = hash(digest);
+    int mask = slotCount - 1;
+    int i = hash & mask;
+    while (true) {
+      int slot = INDEX_HEADER_SIZE + i * SLOT_SIZE;
+      int offset = index.getInt(slot);
+      if (offset == 0) {
+        return -1;
+      }
+      if (index.getInt(slot + 4) == hash && digestMatches(offset, digest)) {
+        return offset;
+      }
+      i = (i + 1) & mask;
+    }
+  }
+
+  /**
+   * Computes the hash of a digest used to place it in the index.
+   * @param digest The digest.
+   * @return The hash of <code>digest</code>.
+   */
+  private static int hash(byte[] digest) {
+    int h = 0;
+    for (byte b : digest) {
+      h = 31 * h + b;
+    }
+    h ^= (h >>> 16);
+    h *= 0x85ebca6b;
+    h ^= (h >>> 13);
+    return h;
+  }
+
+  /**
+   * Determines if the record at the specified offset has the given digest.
+   * @param offset The offset of the record in the data file.
+   * @param digest The digest to compare against.
+   * @return A value indicating whether the digest of the record matches
+   *     <code>digest</code>.
+   */
+  private boolean digestMatches(int offset, byte[] digest) {
+    int nameLength = data.getShort(offset + 4) & 0xffff;
+    int digestLength = data.get(offset + 6) & 0xff;
+    if (digestLength != digest.length) {
+      return false;
+    }
+    int pos = offset + RECORD_NAME + nameLength;
+    for (int i = 0; i < digestLength; i++) {
+      if (data.get(pos + i) != digest[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Gets the name of the package containing a class.
+   * @param name The fully qualified name of the class.
+   * @return The name of the package, or the empty string for the default
+   *     package.
+   */
+  private static String getPackageName(String name) {
+    int sep = name.lastIndexOf('.');
+    return (sep >= 0) ? name.substring(0, sep) : "";
+  }
+
+  /**
+   * Records the class name of an indexed record, so that it may be found
+   * by {@link #getDigest(String)} and {@link #getClassNames(String)}.
+   * @param offset The offset of the record in the data file.
+   */
+  private void indexName(int offset) {
+    String name = readName(offset);
+    String pkg = getPackageName(name);
+    Map<String, Integer> classes = packages.get(pkg);
+    if (classes == null) {
+      classes = new HashMap<String, Integer>();
+      packages.put(pkg, classes);
+    }
+    classes.put(name, offset);
+  }
+
+  /**
+   * Reads the class name from a record.
+   * @param offset The offset of the record in the data file.
+   * @return The class name.
+   */
+  private String readName(int offset) {
+    byte[] name = new byte[data.getShort(offset + 4) & 0xffff];
+    ByteBuffer dup = data.duplicate();
+    dup.position(offset + RECORD_NAME);
+    dup.get(name);
+    return new String(name, UTF8);
+  }
+
+  /**
+   * Reads the digest from a record.
+   * @param offset The offset of the record in the data file.
+   * @return The digest.
+   */
+  private byte[] readDigest(int offset) {
+    byte[] digest = new byte[data.get(offset + 6) & 0xff];
+    ByteBuffer dup = data.duplicate();
+    dup.position(offset + RECORD_NAME + (data.getShort(offset + 4) & 0xffff));
+    dup.get(digest);
+    return digest;
+  }
+
+  /**
+   * Looks up a class definition.
+   * @param digest The MD5 digest of the class definition.
+   * @return The class definition, or <code>null</code> if no definition
+   *     having the specified digest is stored.
+   */
+  public byte[] get(byte[] digest) {
+    if (digest == null) {
+      return null;
+    }
+
+    lock.readLock().lock();
+    try {
+      int offset = closed ? -1 : find(digest);
+      if (offset < 0) {
+        misses.incrementAndGet();
+        return null;
+      }
+
+      int nameLength = data.getShort(offset + 4) & 0xffff;
+      byte[] def = new byte[data.getInt(offset + 7)];
+      ByteBuffer dup = data.duplicate();
+      dup.position(offset + RECORD_NAME + nameLength + digest.length);
+      dup.get(def);
+
+      touched.add(offset);
+      hits.incrementAndGet();
+      return def;
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Stores a class definition.  If there is not enough room for the
+   * definition, even after compacting the pack, it is not stored.
+   * @param name The fully qualified name of the class.
+   * @param digest The MD5 digest of the class definition.
+   * @param def The class definition.
+   */
+  public void put(String name, byte[] digest, byte[] def) {
+    byte[] nameBytes = name.getBytes(UTF8);
+    if (nameBytes.length > 0xffff || digest.length > 0xff) {
+      return;
+    }
+    long length = (long) RECORD_OVERHEAD + nameBytes.length + digest.length + def.length;
+
+    lock.writeLock().lock();
+    try {
+      if (closed || find(digest) >= 0) {
+        return;
+      }
+      if (dataLength + length > capacity) {
+        compact();
+        if (dataLength + length > capacity) {
+          logger.debug(String.format("No room in class pack for %s (%d bytes)", name, def.length));
+          return;
+        }
+      }
+
+      ByteBuffer record = ByteBuffer.allocate((int) length);
+      record.putInt(RECORD_MAGIC)
+          .putShort((short) nameBytes.length)
+          .put((byte) digest.length)
+          .putInt(def.length)
+          .put(nameBytes)
+          .put(digest)
+          .put(def);
+      CRC32 crc = new CRC32();
+      crc.update(record.array(), 4, record.position() - 4);
+      record.putInt((int) crc.getValue());
+      record.flip();
+
+      int offset = dataLength;
+      ensureMapped(offset + (int) length);
+      ByteBuffer dup = data.duplicate();
+      dup.position(offset);
+      dup.put(record);
+
+      insert(index, slotCount, offset, hash(digest));
+      indexName(offset);
+      entryCount++;
+      dataLength = offset + (int) length;
+      index.putInt(INDEX_DATA_LENGTH, dataLength);
+      index.putInt(INDEX_ENTRY_COUNT, entryCount);
+      touched.add(offset);
+      stores++;
+
+      if (entryCount * 2 > slotCount) {
+        growIndex();
+      }
+    } catch (IOException e) {
+      logger.error("Could not store class definition in class pack", e);
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Ensures that the mapped region of the data file is large enough.  The
+   * region is grown geometrically, so that the data file need not be
+   * remapped for every record appended.
+   * @param size The required size of the mapped region.
+   * @throws IOException If an error occurs while mapping the data file.
+   */
+  private void ensureMapped(int size) throws IOException {
+    if (size > data.capacity()) {
+      long mapping = Math.max(size, Math.min(2L * data.capacity(), capacity));
+      data = dataChannel.map(FileChannel.MapMode.READ_WRITE, 0, mapping);
+    }
+  }
+
+  /**
+   * Rewrites the data file so that it contains only the records that have
+   * been looked up or stored since the pack was opened (or last compacted).
+   * The new data file is written under a temporary name and then moved into
+   * place.  Since it has a new generation number, the index is rebuilt if
+   * the process exits before the new index is written.
+   * @throws IOException If an error occurs while rewriting the pack.
+   */
+  private void compact() throws IOException {
+    List<Integer> live = new ArrayList<Integer>(touched);
+    Collections.sort(live);
+
+    long liveLength = DATA_HEADER_SIZE;
+    for (int offset : live) {
+      liveLength += recordLength(offset);
+    }
+    if (liveLength >= dataLength) {
+      return;
+    }
+
+    logger.info(String.format("Compacting class pack (%d of %d bytes live)", liveLength, dataLength));
+
+    File temp = new File(dataFile.getPath() + TEMP_SUFFIX);
+    temp.delete();
+    FileChannel channel = new RandomAccessFile(temp, "rw").getChannel();
+    FileLock newLock;
+    long gen;
+    try {
+      newLock = lockChannel(channel);
+      gen = writeDataHeader(channel);
+      long pos = DATA_HEADER_SIZE;
+      for (int offset : live) {
+        ByteBuffer dup = data.duplicate();
+        dup.position(offset);
+        dup.limit(offset + recordLength(offset));
+        while (dup.hasRemaining()) {
+          pos += channel.write(dup, pos);
+        }
+      }
+      channel.force(true);
+      Files.move(temp.toPath(), dataFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+          StandardCopyOption.ATOMIC_MOVE);
+    } catch (IOException e) {
+      channel.close();
+      temp.delete();
+      throw e;
+    }
+
+    fileLock.release();
+    dataChannel.close();
+    dataChannel = channel;
+    fileLock = newLock;
+    generation = gen;
+    data = dataChannel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(liveLength, MIN_MAPPING));
+
+    rebuildIndex();
+    Set<Integer> offsets = newOffsetSet();
+    for (int i = 0; i < slotCount; i++) {
+      int offset = index.getInt(INDEX_HEADER_SIZE + i * SLOT_SIZE);
+      if (offset != 0) {
+        offsets.add(offset);
+      }
+    }
+    touched = offsets;
+    compactions++;
+  }
+
+  /**
+   * Gets the length of a record.
+   * @param offset The offset of the record in the data file.
+   * @return The length of the record, in bytes.
+   */
+  private int recordLength(int offset) {
+    return RECORD_OVERHEAD + (data.getShort(offset + 4) & 0xffff)
+        + (data.get(offset + 6) & 0xff) + data.getInt(offset + 7);
+  }
+
+  /**
+   * Creates an empty, thread-safe set of record offsets.
+   * @return The new <code>Set</code>.
+   */
+  private static Set<Integer> newOffsetSet() {
+    return Collections.newSetFromMap(new ConcurrentHashMap<Integer, Boolean>());
+  }
+
+  /**
+   * Gets the digest of a stored definition of a class.  If more than one
+   * definition of the class is stored, any one of their digests may be
+   * returned.
+   * @param name The fully qualified name of the class.
+   * @return The MD5 digest of a stored definition of the class, or
+   *     <code>null</code> if no definition of the class is stored.
+   */
+  public byte[] getDigest(String name) {
+    lock.readLock().lock();
+    try {
+      Map<String, Integer> classes = closed ? null : packages.get(getPackageName(name));
+      Integer offset = (classes != null) ? classes.get(name) : null;
+      return (offset != null) ? readDigest(offset) : null;
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Gets the names of the classes in a package for which a definition is
+   * stored.
+   * @param packageName The name of the package, or the empty string for
+   *     the default package.
+   * @return The fully qualified names of the stored classes in the
+   *     package.
+   */
+  public List<String> getClassNames(String packageName) {
+    lock.readLock().lock();
+    try {
+      Map<String, Integer> classes = closed ? null : packages.get(packageName);
+      return (classes != null)
+          ? new ArrayList<String>(classes.keySet())
+          : new ArrayList<String>();
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Flushes the pack to disk and closes it.  The index is marked as clean,
+   * so that it need not be rebuilt when the pack is next opened.
+   * @throws IOException If an error occurs while closing the pack.
+   */
+  public void close() throws IOException {
+    lock.writeLock().lock();
+    try {
+      if (closed) {
+        return;
+      }
+      closed = true;
+      data.force();
+      writeIndexHeader(true);
+      index.force();
+      try {
+        dataChannel.truncate(dataLength);
+      } catch (IOException e) {
+        /* Some platforms do not permit truncating a mapped file.  The
+         * trailing space is harmless, as it is ignored when scanning.
+         */
+        logger.debug("Could not truncate class pack data file", e);
+      }
+      fileLock.release();
+      dataChannel.close();
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Gets the capacity of the pack.
+   * @return The maximum size of the data file, in bytes.
+   */
+  public long getCapacity() {
+    return capacity;
+  }
+
+  /**
+   * Gets the size of the data file.
+   * @return The size of the data file, in bytes.
+   */
+  public long getSize() {
+    lock.readLock().lock();
+    try {
+      return dataLength;
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Gets the number of stored definitions.
+   * @return The number of stored definitions.
+   */
+  public int getEntryCount() {
+    lock.readLock().lock();
+    try {
+      return entryCount;
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Gets the number of lookups that found a definition.
+   * @return The number of hits.
+   */
+  public long getHits() {
+    return hits.get();
+  }
+
+  /**
+   * Gets the number of lookups that did not find a definition.
+   * @return The number of misses.
+   */
+  public long getMisses() {
+    return misses.get();
+  }
+
+  /* (non-Javadoc)
+   * @see java.lang.Object#toString()
+   */
+  @Override
+  public String toString() {
+    lock.readLock().lock();
+    try {
+      long h = hits.get();
+      long m = misses.get();
+      return String.format(
+          "%d entries, %d/%d bytes, %d hits, %d misses (%.1f%% hit), %d stores, %d compactions",
+          entryCount, (long) dataLength, (long) capacity, h, m,
+          (h + m > 0) ? 100.0 * h / (h + m) : 0.0, stores, compactions);
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+}
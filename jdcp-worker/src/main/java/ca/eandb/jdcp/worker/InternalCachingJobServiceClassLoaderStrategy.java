@@ -25,58 +25,101 @@
 
 package ca.eandb.jdcp.worker;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.Collection;
 import java.util.UUID;
 
 import ca.eandb.jdcp.remote.TaskService;
-import ca.eandb.util.StringUtil;
 
 /**
  * A <code>CachingJobServiceClassLoaderStrategy</code> that stores class
- * definitions internally.
+ * definitions internally, in a <code>ClassDefinitionCache</code>.  Unless
+ * otherwise specified, all instances share a single cache with the
+ * default capacity.
  * @author Brad Kimmel
  */
 public final class InternalCachingJobServiceClassLoaderStrategy extends
     CachingJobServiceClassLoaderStrategy {
 
-  /** A <code>Map</code> storing cached class definitions. */
-  private static final Map<String, byte[]> cache = new HashMap<String, byte[]>();
+  /** The <code>ClassDefinitionCache</code> shared by default. */
+  private static final ClassDefinitionCache defaultCache = new ClassDefinitionCache(ClassDefinitionCache.DEFAULT_CAPACITY);
+
+  /** The <code>ClassDefinitionCache</code> storing cached definitions. */
+  private final ClassDefinitionCache cache;
 
   /**
-   * Creates a new <code>InternalCachingJobServiceClassLoaderStrategy</code>.
+   * Creates a new <code>InternalCachingJobServiceClassLoaderStrategy</code>
+   * that uses the default cache.
    * @param service The <code>TaskService</code> from which to obtain class
    *     definitions.
    * @param jobId The <code>UUID</code> identifying the job for which to
    *     obtain class definitions.
+   * @see #getDefaultCache()
    */
   public InternalCachingJobServiceClassLoaderStrategy(TaskService service,
       UUID jobId) {
+    this(service, jobId, defaultCache);
+  }
+
+  /**
+   * Creates a new <code>InternalCachingJobServiceClassLoaderStrategy</code>.
+   * @param service The <code>TaskService</code> from which to obtain class
+   *     definitions.
+   * @param jobId The <code>UUID</code> identifying the job for which to
+   *     obtain class definitions.
+   * @param cache The <code>ClassDefinitionCache</code> in which to store
+   *     class definitions.
+   */
+  public InternalCachingJobServiceClassLoaderStrategy(TaskService service,
+      UUID jobId, ClassDefinitionCache cache) {
     super(service, jobId);
+    this.cache = cache;
   }
 
   /**
-   * Gets a unique key corresponding to the specified class name/digest pair.
-   * @param name The name of the class.
-   * @param digest The class digest.
-   * @return The key to use for the cache map.
+   * Gets the <code>ClassDefinitionCache</code> shared by instances for
+   * which no other cache is specified.
+   * @return The default <code>ClassDefinitionCache</code>.
    */
-  private String getKey(String name, byte[] digest) {
-    return name + "$$" + StringUtil.toHex(digest);
+  public static ClassDefinitionCache getDefaultCache() {
+    return defaultCache;
   }
 
   /* (non-Javadoc)
    * @see ca.eandb.jdcp.worker.CachingJobServiceClassLoaderStrategy#cacheLookup(java.lang.String, byte[])
    */
   protected byte[] cacheLookup(String name, byte[] digest) {
-    return cache.get(getKey(name, digest));
+    return cache.get(digest);
   }
 
   /* (non-Javadoc)
    * @see ca.eandb.jdcp.worker.CachingJobServiceClassLoaderStrategy#cacheStore(java.lang.String, byte[], byte[])
    */
   protected void cacheStore(String name, byte[] digest, byte[] def) {
-    cache.put(getKey(name, digest), def);
+    cache.put(name, digest, def);
+  }
+
+  /* (non-Javadoc)
+   * @see ca.eandb.jdcp.worker.CachingJobServiceClassLoaderStrategy#getCachedClassNames(java.lang.String)
+   */
+  @Override
+  protected Collection<String> getCachedClassNames(String packageName) {
+    return cache.getClassNames(packageName);
+  }
+
+  /* (non-Javadoc)
+   * @see ca.eandb.jdcp.worker.CachingJobServiceClassLoaderStrategy#canReportCachedDigests()
+   */
+  @Override
+  protected boolean canReportCachedDigests() {
+    return true;
+  }
+
+  /* (non-Javadoc)
+   * @see ca.eandb.jdcp.worker.CachingJobServiceClassLoaderStrategy#getCachedDigest(java.lang.String)
+   */
+  @Override
+  protected byte[] getCachedDigest(String name) {
+    return cache.getDigest(name);
   }
 
 }
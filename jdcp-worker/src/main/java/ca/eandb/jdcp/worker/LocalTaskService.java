@@ -0,0 +1,80 @@
+/*
+ * Copyright (c) 2026 Bradley W. Kimmel
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package ca.eandb.jdcp.worker;
+
+import java.util.UUID;
+
+import ca.eandb.jdcp.job.TaskDescription;
+import ca.eandb.jdcp.job.TaskWorker;
+
+/**
+ * A service, running in the same JVM as the worker, that hosts jobs.  When
+ * the <code>JobService</code> returned by a <code>JobServiceFactory</code>
+ * implements this interface, <code>ThreadServiceWorker</code> obtains task
+ * workers and tasks, and hands back task results, directly rather than in
+ * serialized form.  The objects exchanged are those loaded by the service
+ * in the <code>ClassLoader</code> that it uses for the job, so each job
+ * keeps its own classes just as it would on a remote worker.
+ * @author Brad Kimmel
+ * @see ThreadServiceWorker
+ */
+public interface LocalTaskService {
+
+  /**
+   * Gets the <code>TaskWorker</code> for a job hosted by this service.
+   * @param jobId The <code>UUID</code> of the job.
+   * @return The <code>TaskWorker</code> for the job, or <code>null</code>
+   *     if the job is not hosted by this service (in which case the
+   *     <code>TaskWorker</code> must be obtained using
+   *     {@link ca.eandb.jdcp.remote.TaskService#getTaskWorker(UUID)}).
+   */
+  TaskWorker getLocalTaskWorker(UUID jobId);
+
+  /**
+   * Gets the <code>Object</code> describing a task for a job hosted by
+   * this service.
+   * @param taskDesc The <code>TaskDescription</code> obtained from this
+   *     service.
+   * @return The <code>Object</code> describing the task, or
+   *     <code>null</code> if the job is not hosted by this service.
+   * @throws ClassNotFoundException If the task must be copied and a class
+   *     required to do so cannot be found.
+   */
+  Object getLocalTask(TaskDescription taskDesc) throws ClassNotFoundException;
+
+  /**
+   * Submits the results of a task for a job hosted by this service.  The
+   * results are handed to the job as is, so the caller must not modify
+   * them afterward.
+   * @param jobId The <code>UUID</code> of the job.
+   * @param taskId The ID of the task that was performed.
+   * @param results The results of the task.
+   * @return A value indicating whether the job is hosted by this service.
+   *     If <code>false</code>, the results must be submitted using
+   *     {@link ca.eandb.jdcp.remote.TaskService#submitTaskResults(UUID, int, ca.eandb.util.rmi.Serialized)}.
+   */
+  boolean submitLocalTaskResults(UUID jobId, int taskId, Object results);
+
+}
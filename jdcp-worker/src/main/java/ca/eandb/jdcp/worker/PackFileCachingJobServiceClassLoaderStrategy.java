@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) 2026 Bradley W. Kimmel
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package ca.eandb.jdcp.worker;
+
+import java.util.Collection;
+import java.util.UUID;
+
+import ca.eandb.jdcp.remote.TaskService;
+
+/**
+ * A <code>CachingJobServiceClassLoaderStrategy</code> that stores class
+ * definitions in a memory-mapped <code>ClassPackFile</code>.
+ * @author Brad Kimmel
+ * @see FileCachingJobServiceClassLoaderStrategy
+ */
+public final class PackFileCachingJobServiceClassLoaderStrategy extends
+    CachingJobServiceClassLoaderStrategy {
+
+  /** The <code>ClassPackFile</code> storing cached definitions. */
+  private final ClassPackFile pack;
+
+  /**
+   * Creates a new <code>PackFileCachingJobServiceClassLoaderStrategy</code>.
+   * @param service The <code>TaskService</code> from which to obtain class
+   *     definitions.
+   * @param jobId The <code>UUID</code> identifying the job for which to
+   *     obtain class definitions.
+   * @param pack The <code>ClassPackFile</code> in which to store class
+   *     definitions.
+   */
+  public PackFileCachingJobServiceClassLoaderStrategy(TaskService service,
+      UUID jobId, ClassPackFile pack) {
+    super(service, jobId);
+    this.pack = pack;
+  }
+
+  /* (non-Javadoc)
+   * @see ca.eandb.jdcp.worker.CachingJobServiceClassLoaderStrategy#cacheLookup(java.lang.String, byte[])
+   */
+  @Override
+  protected byte[] cacheLookup(String name, byte[] digest) {
+    return pack.get(digest);
+  }
+
+  /* (non-Javadoc)
+   * @see ca.eandb.jdcp.worker.CachingJobServiceClassLoaderStrategy#cacheStore(java.lang.String, byte[], byte[])
+   */
+  @Override
+  protected void cacheStore(String name, byte[] digest, byte[] def) {
+    pack.put(name, digest, def);
+  }
+
+  /* (non-Javadoc)
+   * @see ca.eandb.jdcp.worker.CachingJobServiceClassLoaderStrategy#getCachedClassNames(java.lang.String)
+   */
+  @Override
+  protected Collection<String> getCachedClassNames(String packageName) {
+    return pack.getClassNames(packageName);
+  }
+
+  /* (non-Javadoc)
+   * @see ca.eandb.jdcp.worker.CachingJobServiceClassLoaderStrategy#canReportCachedDigests()
+   */
+  @Override
+  protected boolean canReportCachedDigests() {
+    return true;
+  }
+
+  /* (non-Javadoc)
+   * @see ca.eandb.jdcp.worker.CachingJobServiceClassLoaderStrategy#getCachedDigest(java.lang.String)
+   */
+  @Override
+  protected byte[] getCachedDigest(String name) {
+    return pack.getDigest(name);
+  }
+
+}
@@ -33,6 +33,7 @@ import java.rmi.RemoteException;
 import java.rmi.UnknownHostException;
 import java.rmi.UnmarshalException;
 import java.util.BitSet;
+import java.util.Map;
 import java.util.UUID;
 
 import org.apache.log4j.Logger;
@@ -41,8 +42,10 @@ import ca.eandb.jdcp.job.JobExecutionException;
 import ca.eandb.jdcp.job.ParallelizableJob;
 import ca.eandb.jdcp.job.TaskDescription;
 import ca.eandb.jdcp.job.TaskWorker;
+import ca.eandb.jdcp.remote.ClassBundle;
 import ca.eandb.jdcp.remote.JobService;
 import ca.eandb.jdcp.remote.JobStatus;
+import ca.eandb.jdcp.remote.TaskEvent;
 import ca.eandb.jdcp.remote.TaskService;
 import ca.eandb.util.rmi.Serialized;
 
@@ -71,6 +74,18 @@ public final class ReconnectingJobService implements JobService {
     return service;
   }
 
+  /**
+   * Gets the underlying service if it is running in this JVM, connecting
+   * first if necessary.
+   * @return The underlying <code>LocalTaskService</code>, or
+   *     <code>null</code> if the underlying service is not local.
+   */
+  public LocalTaskService getLocalTaskService() {
+    JobService service = getJobService(null);
+    return (service instanceof LocalTaskService) ? (LocalTaskService) service
+        : null;
+  }
+
   /* (non-Javadoc)
    * @see ca.eandb.jdcp.remote.JobService#cancelJob(java.util.UUID)
    */
@@ -119,6 +134,71 @@ public final class ReconnectingJobService implements JobService {
     }
   }
 
+  /* (non-Javadoc)
+   * @see ca.eandb.jdcp.remote.TaskService#getClassBundle(java.util.UUID, java.util.Map)
+   */
+  public ClassBundle getClassBundle(UUID jobId, Map<String, byte[]> digests)
+      throws IllegalArgumentException, SecurityException {
+    JobService service = null;
+    while (true) {
+      try {
+        service = getJobService(service);
+        return service.getClassBundle(jobId, digests);
+      } catch (RemoteException e) {
+        logger.error("Lost connection", e);
+      }
+    }
+  }
+
+  /* (non-Javadoc)
+   * @see ca.eandb.jdcp.remote.TaskService#getClassManifest(java.util.UUID)
+   */
+  public String[] getClassManifest(UUID jobId)
+      throws IllegalArgumentException, SecurityException {
+    JobService service = null;
+    while (true) {
+      try {
+        service = getJobService(service);
+        return service.getClassManifest(jobId);
+      } catch (RemoteException e) {
+        logger.error("Lost connection", e);
+      }
+    }
+  }
+
+  /* (non-Javadoc)
+   * @see ca.eandb.jdcp.remote.TaskService#reportClassManifest(java.util.UUID, java.lang.String[])
+   */
+  public void reportClassManifest(UUID jobId, String[] classNames)
+      throws SecurityException {
+    JobService service = null;
+    while (true) {
+      try {
+        service = getJobService(service);
+        service.reportClassManifest(jobId, classNames);
+        return;
+      } catch (RemoteException e) {
+        logger.error("Lost connection", e);
+      }
+    }
+  }
+
+  /* (non-Javadoc)
+   * @see ca.eandb.jdcp.remote.TaskService#getClassDigests(java.lang.String[], java.util.UUID)
+   */
+  public byte[][] getClassDigests(String[] names, UUID jobId)
+      throws SecurityException {
+    JobService service = null;
+    while (true) {
+      try {
+        service = getJobService(service);
+        return service.getClassDigests(names, jobId);
+      } catch (RemoteException e) {
+        logger.error("Lost connection", e);
+      }
+    }
+  }
+
   /* (non-Javadoc)
    * @see ca.eandb.jdcp.remote.JobService#getClassDigest(java.lang.String, java.util.UUID)
    */
@@ -150,6 +230,21 @@ public final class ReconnectingJobService implements JobService {
     }
   }
 
+  /* (non-Javadoc)
+   * @see ca.eandb.jdcp.remote.JobService#getClassDigests(java.lang.String[])
+   */
+  public byte[][] getClassDigests(String[] names) throws SecurityException {
+    JobService service = null;
+    while (true) {
+      try {
+        service = getJobService(service);
+        return service.getClassDigests(names);
+      } catch (RemoteException e) {
+        logger.error("Lost connection", e);
+      }
+    }
+  }
+
   /* (non-Javadoc)
    * @see ca.eandb.jdcp.remote.JobService#getTaskWorker(java.util.UUID)
    */
@@ -198,6 +293,22 @@ public final class ReconnectingJobService implements JobService {
     }
   }
 
+  /* (non-Javadoc)
+   * @see ca.eandb.jdcp.remote.TaskService#requestTasks(int, long)
+   */
+  public TaskDescription[] requestTasks(int maxTasks, long waitMillis)
+      throws IllegalArgumentException, SecurityException {
+    JobService service = null;
+    while (true) {
+      try {
+        service = getJobService(service);
+        return service.requestTasks(maxTasks, waitMillis);
+      } catch (RemoteException e) {
+        logger.error("Lost connection", e);
+      }
+    }
+  }
+
   /* (non-Javadoc)
    * @see ca.eandb.jdcp.remote.JobService#setClassDefinition(java.lang.String, byte[])
    */
@@ -318,6 +429,105 @@ public final class ReconnectingJobService implements JobService {
     }
   }
 
+  /* (non-Javadoc)
+   * @see ca.eandb.jdcp.remote.TaskService#openResultStream(java.util.UUID, int, boolean)
+   */
+  public UUID openResultStream(UUID jobId, int taskId, boolean raw)
+      throws SecurityException {
+    JobService service = null;
+    while (true) {
+      try {
+        service = getJobService(service);
+        return service.openResultStream(jobId, taskId, raw);
+      } catch (RemoteException e) {
+        logger.error("Lost connection", e);
+      }
+    }
+  }
+
+  /* (non-Javadoc)
+   * @see ca.eandb.jdcp.remote.TaskService#writeResultChunk(java.util.UUID, long, byte[])
+   */
+  public void writeResultChunk(UUID streamId, long offset, byte[] data)
+      throws IllegalArgumentException, SecurityException {
+    JobService service = null;
+    while (true) {
+      try {
+        service = getJobService(service);
+        service.writeResultChunk(streamId, offset, data);
+        return;
+      } catch (RemoteException e) {
+        logger.error("Lost connection", e);
+      }
+    }
+  }
+
+  /* (non-Javadoc)
+   * @see ca.eandb.jdcp.remote.TaskService#commitResultStream(java.util.UUID, long)
+   */
+  public boolean commitResultStream(UUID streamId, long length)
+      throws IllegalArgumentException, SecurityException {
+    JobService service = null;
+    while (true) {
+      try {
+        service = getJobService(service);
+        return service.commitResultStream(streamId, length);
+      } catch (RemoteException e) {
+        logger.error("Lost connection", e);
+      }
+    }
+  }
+
+  /* (non-Javadoc)
+   * @see ca.eandb.jdcp.remote.TaskService#releaseTasks(java.util.UUID[], int[])
+   */
+  public void releaseTasks(UUID[] jobIds, int[] taskIds)
+      throws IllegalArgumentException, SecurityException {
+    JobService service = null;
+    while (true) {
+      try {
+        service = getJobService(service);
+        service.releaseTasks(jobIds, taskIds);
+        return;
+      } catch (RemoteException e) {
+        logger.error("Lost connection", e);
+      }
+    }
+  }
+
+  /* (non-Javadoc)
+   * @see ca.eandb.jdcp.remote.TaskService#abortResultStream(java.util.UUID)
+   */
+  public void abortResultStream(UUID streamId) throws SecurityException {
+    JobService service = null;
+    while (true) {
+      try {
+        service = getJobService(service);
+        service.abortResultStream(streamId);
+        return;
+      } catch (RemoteException e) {
+        logger.error("Lost connection", e);
+      }
+    }
+  }
+
+  /* (non-Javadoc)
+   * @see ca.eandb.jdcp.remote.TaskService#submitTaskResultsBatch(java.util.UUID[], int[], ca.eandb.util.rmi.Serialized[])
+   */
+  public BitSet submitTaskResultsBatch(UUID[] jobIds, int[] taskIds,
+      Serialized<Object>[] results) throws IllegalArgumentException,
+      SecurityException {
+    JobService service = null;
+    while (true) {
+      try {
+        service = getJobService(service);
+        return service.submitTaskResultsBatch(jobIds, taskIds, results);
+      } catch (RemoteException e) {
+        logger.error("Lost connection", e);
+      }
+    }
+  }
+
   /* (non-Javadoc)
    * @see ca.eandb.jdcp.remote.JobService#getFinishedTasks(java.util.UUID[], int[])
    */
@@ -346,6 +556,22 @@ public final class ReconnectingJobService implements JobService {
     }
   }
 
+  /* (non-Javadoc)
+   * @see ca.eandb.jdcp.remote.TaskService#waitForTaskEvents(long, long)
+   */
+  public TaskEvent[] waitForTaskEvents(long lastEventId, long timeoutMillis)
+      throws SecurityException {
+    JobService service = null;
+    while (true) {
+      try {
+        service = getJobService(service);
+        return service.waitForTaskEvents(lastEventId, timeoutMillis);
+      } catch (RemoteException e) {
+        logger.error("Lost connection", e);
+      }
+    }
+  }
+
   /* (non-Javadoc)
    * @see ca.eandb.jdcp.remote.JobService#registerTaskService(java.lang.String, ca.eandb.jdcp.remote.TaskService)
    */
@@ -0,0 +1,262 @@
+/*
+ * Copyright (c) 2026 Bradley W. Kimmel
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package ca.eandb.jdcp.worker;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.rmi.RemoteException;
+import java.util.Arrays;
+import java.util.UUID;
+
+import org.apache.log4j.Logger;
+
+import ca.eandb.jdcp.remote.TaskService;
+
+/**
+ * An <code>OutputStream</code> that uploads the results of a task to a
+ * <code>TaskService</code> in fixed-size chunks as they are written.  The
+ * first chunk is held back until it fills, so that results that fit within
+ * a single chunk may instead be submitted in the usual way (see
+ * {@link #isStreaming()} and {@link #toByteArray()}).
+ * @author Brad Kimmel
+ * @see ca.eandb.jdcp.remote.TaskService#openResultStream(UUID, int, boolean)
+ */
+/* package */ final class ResultStreamWriter extends OutputStream {
+
+  /** The <code>Logger</code> for this class. */
+  private static final Logger logger = Logger.getLogger(ResultStreamWriter.class);
+
+  /** The <code>TaskService</code> to upload results to. */
+  private final TaskService service;
+
+  /** The <code>UUID</code> of the job for which the task was performed. */
+  private final UUID jobId;
+
+  /** The ID of the task that was performed. */
+  private final int taskId;
+
+  /**
+   * A value indicating whether the stream holds the bytes written by a
+   * <code>StreamableResult</code>, rather than a serialized object.
+   */
+  private final boolean raw;
+
+  /** The chunk currently being filled. */
+  private final byte[] buffer;
+
+  /** The number of bytes in {@link #buffer}. */
+  private int count = 0;
+
+  /** The number of bytes that have been uploaded. */
+  private long offset = 0;
+
+  /**
+   * The <code>UUID</code> of the result stream, or <code>null</code> if it
+   * has not yet been opened.
+   */
+  private UUID streamId = null;
+
+  /**
+   * A value indicating whether the service has refused the results because
+   * the task is no longer outstanding.
+   */
+  private boolean rejected = false;
+
+  /**
+   * A value indicating whether the service has refused to open a raw
+   * result stream because the job does not accept streamed results.
+   */
+  private boolean unsupported = false;
+
+  /**
+   * Creates a new <code>ResultStreamWriter</code>.
+   * @param service The <code>TaskService</code> to upload results to.
+   * @param jobId The <code>UUID</code> of the job for which the task was
+   *     performed.
+   * @param taskId The ID of the task that was performed.
+   * @param raw A value indicating whether the stream holds the bytes
+   *     written by a <code>StreamableResult</code>.
+   * @param chunkSize The size (in bytes) of the chunks to upload.
+   */
+  public ResultStreamWriter(TaskService service, UUID jobId, int taskId,
+      boolean raw, int chunkSize) {
+    this.service = service;
+    this.jobId = jobId;
+    this.taskId = taskId;
+    this.raw = raw;
+    this.buffer = new byte[chunkSize];
+  }
+
+  /* (non-Javadoc)
+   * @see java.io.OutputStream#write(int)
+   */
+  @Override
+  public void write(int b) throws IOException {
+    if (count == buffer.length) {
+      flushChunk();
+    }
+    buffer[count++] = (byte) b;
+  }
+
+  /* (non-Javadoc)
+   * @see java.io.OutputStream#write(byte[], int, int)
+   */
+  @Override
+  public void write(byte[] b, int off, int len) throws IOException {
+    while (len > 0) {
+      if (count == buffer.length) {
+        flushChunk();
+      }
+      int n = Math.min(len, buffer.length - count);
+      System.arraycopy(b, off, buffer, count, n);
+      count += n;
+      off += n;
+      len -= n;
+    }
+  }
+
+  /**
+   * Determines whether any of the results have been uploaded, i.e., if they
+   * did not fit within a single chunk.
+   * @return A value indicating whether the result stream has been opened.
+   */
+  public boolean isStreaming() {
+    return streamId != null;
+  }
+
+  /**
+   * Determines whether the service refused the results because the task
+   * is no longer outstanding.
+   * @return A value indicating whether the results were refused.
+   */
+  public boolean isRejected() {
+    return rejected;
+  }
+
+  /**
+   * Determines whether the service refused to open a raw result stream
+   * because the job does not accept streamed results.  In this case, the
+   * results should be submitted as a serialized object instead.
+   * @return A value indicating whether streamed results are unsupported.
+   * @see ca.eandb.jdcp.job.StreamingParallelizableJob
+   */
+  public boolean isUnsupported() {
+    return unsupported;
+  }
+
+  /**
+   * Gets the bytes written so far.  This is only meaningful if
+   * {@link #isStreaming()} is <code>false</code>.
+   * @return The bytes that have been written but not uploaded.
+   */
+  public byte[] toByteArray() {
+    return Arrays.copyOf(buffer, count);
+  }
+
+  /**
+   * Uploads any remaining data and submits the results.  The result stream
+   * is opened first if nothing has been uploaded yet.
+   * @return A value indicating whether the results were accepted.
+   * @throws IOException If the results could not be uploaded.
+   */
+  public boolean commit() throws IOException {
+    flushChunk();
+    try {
+      return service.commitResultStream(streamId, offset);
+    } catch (RuntimeException e) {
+      throw new IOException("Cannot submit task results", e);
+    }
+  }
+
+  /** Discards the result stream, if it has been opened. */
+  public void abort() {
+    if (streamId != null) {
+      try {
+        service.abortResultStream(streamId);
+      } catch (RemoteException e) {
+        logger.warn("Cannot discard result stream", e);
+      } catch (RuntimeException e) {
+        logger.warn("Cannot discard result stream", e);
+      }
+    }
+  }
+
+  /**
+   * Uploads the contents of {@link #buffer}, opening the result stream if
+   * necessary.
+   * @throws IOException If the results were refused or could not be
+   *     uploaded.
+   */
+  private void flushChunk() throws IOException {
+    if (rejected) {
+      throw new IOException("Task is no longer outstanding");
+    }
+    if (unsupported) {
+      throw new IOException("Job does not accept streamed task results");
+    }
+    try {
+      if (streamId == null) {
+        try {
+          streamId = service.openResultStream(jobId, taskId, raw);
+        } catch (RuntimeException e) {
+          if (isCausedByUnsupportedOperation(e)) {
+            unsupported = true;
+          }
+          throw e;
+        }
+        if (streamId == null) {
+          rejected = true;
+          throw new IOException("Task is no longer outstanding");
+        }
+      }
+      if (count > 0) {
+        byte[] chunk = (count == buffer.length) ? buffer : Arrays.copyOf(buffer, count);
+        service.writeResultChunk(streamId, offset, chunk);
+        offset += count;
+        count = 0;
+      }
+    } catch (RuntimeException e) {
+      throw new IOException("Cannot upload task results", e);
+    }
+  }
+
+  /**
+   * Determines whether an exception, or any exception in its chain of
+   * causes, is an <code>UnsupportedOperationException</code>.  A hub
+   * forwarding the request wraps the exception raised by the server.
+   * @param e The exception to examine.
+   * @return A value indicating whether <code>e</code> was caused by an
+   *     <code>UnsupportedOperationException</code>.
+   */
+  private static boolean isCausedByUnsupportedOperation(Throwable e) {
+    for (Throwable t = e; t != null; t = t.getCause()) {
+      if (t instanceof UnsupportedOperationException) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+}
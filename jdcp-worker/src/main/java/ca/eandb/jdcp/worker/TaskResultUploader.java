@@ -0,0 +1,402 @@
+/*
+ * Copyright (c) 2026 Bradley W. Kimmel
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package ca.eandb.jdcp.worker;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Executor;
+
+import org.apache.log4j.Logger;
+
+import ca.eandb.jdcp.codec.CompressedPayload;
+import ca.eandb.jdcp.codec.Serializers;
+import ca.eandb.jdcp.remote.TaskService;
+import ca.eandb.util.rmi.Serialized;
+
+/**
+ * Uploads task results to a <code>TaskService</code> on dedicated threads,
+ * so that the threads performing tasks need not wait on the network.
+ * Results that are queued within a short window of one another are
+ * submitted together in a single call.  The total size of the results that
+ * are queued or being uploaded is bounded, and callers wanting to queue
+ * more are blocked until earlier uploads complete.  Results too large to
+ * send in a single call are uploaded individually as a result stream.
+ * @author Brad Kimmel
+ */
+/* package */ final class TaskResultUploader {
+
+  /** The <code>Logger</code> for this class. */
+  private static final Logger logger = Logger.getLogger(TaskResultUploader.class);
+
+  /**
+   * The maximum amount of time (in milliseconds) to wait for more results
+   * to coalesce with before starting an upload.
+   */
+  private static final long BATCH_WINDOW_MILLIS = 20;
+
+  /** The maximum number of task results to submit in a single call. */
+  private static final int MAX_BATCH_SIZE = 64;
+
+  /** The <code>TaskService</code> to upload results to. */
+  private final TaskService service;
+
+  /** Results waiting to be uploaded, in the order they were queued. */
+  private final LinkedList<PendingResult> pending = new LinkedList<PendingResult>();
+
+  /**
+   * The maximum total size (in bytes) of results that may be queued or
+   * being uploaded at once.
+   */
+  private long maxInFlightBytes;
+
+  /**
+   * The size (in bytes) of the chunks in which large results are uploaded.
+   * Results whose encoded size exceeds this are streamed rather than
+   * submitted in a single call.
+   */
+  private volatile int chunkSize;
+
+  /** The total size (in bytes) of the results queued or being uploaded. */
+  private long inFlightBytes = 0;
+
+  /** The results that are queued or being uploaded. */
+  private final Set<PendingResult> inFlight = new HashSet<PendingResult>();
+
+  /** A value indicating whether the uploader is shutting down. */
+  private boolean shutdown = false;
+
+  /**
+   * The results of a task waiting to be uploaded.
+   * @author Brad Kimmel
+   */
+  private static final class PendingResult {
+
+    /** The <code>UUID</code> of the job for which the task was performed. */
+    public final UUID jobId;
+
+    /** The ID of the task that was performed. */
+    public final int taskId;
+
+    /** The encoded results of the task. */
+    public final CompressedPayload payload;
+
+    /** The serialized results of the task. */
+    public final Serialized<Object> results;
+
+    /** The size (in bytes) of the encoded results. */
+    public final long size;
+
+    /**
+     * Creates a new <code>PendingResult</code>.
+     * @param jobId The <code>UUID</code> of the job for which the task was
+     *     performed.
+     * @param taskId The ID of the task that was performed.
+     * @param payload The encoded results of the task.
+     */
+    public PendingResult(UUID jobId, int taskId, CompressedPayload payload) {
+      this.jobId = jobId;
+      this.taskId = taskId;
+      this.payload = payload;
+      this.results = new Serialized<Object>(payload);
+      this.size = payload.getSize();
+    }
+
+  }
+
+  /**
+   * Creates a new <code>TaskResultUploader</code>.
+   * @param service The <code>TaskService</code> to upload results to.
+   * @param executor The <code>Executor</code> on which to run the upload
+   *     threads.
+   * @param threads The number of upload threads.
+   * @param maxInFlightBytes The maximum total size (in bytes) of results
+   *     that may be queued or being uploaded at once.  A single result
+   *     larger than this is admitted when nothing else is in flight.
+   * @param chunkSize The size (in bytes) of the chunks in which large
+   *     results are uploaded.
+   */
+  public TaskResultUploader(TaskService service, Executor executor,
+      int threads, long maxInFlightBytes, int chunkSize) {
+    this.service = service;
+    this.maxInFlightBytes = maxInFlightBytes;
+    this.chunkSize = chunkSize;
+
+    Runnable uploadLoop = new Runnable() {
+      public void run() {
+        uploadLoop();
+      }
+    };
+    for (int i = 0; i < threads; i++) {
+      executor.execute(uploadLoop);
+    }
+  }
+
+  /**
+   * Sets the maximum total size of results that may be queued or being
+   * uploaded at once.
+   * @param maxInFlightBytes The maximum total size, in bytes.
+   */
+  public synchronized void setMaxInFlightBytes(long maxInFlightBytes) {
+    this.maxInFlightBytes = maxInFlightBytes;
+    notifyAll();
+  }
+
+  /**
+   * Sets the size of the chunks in which large results are uploaded.
+   * @param chunkSize The chunk size, in bytes.
+   */
+  public void setChunkSize(int chunkSize) {
+    this.chunkSize = chunkSize;
+  }
+
+  /**
+   * Queues the results of a task to be uploaded.  This method blocks while
+   * the results would cause the limit on the total size of results in
+   * flight to be exceeded.
+   * @param jobId The <code>UUID</code> of the job for which the task was
+   *     performed.
+   * @param taskId The ID of the task that was performed.
+   * @param payload The encoded results of the task.
+   * @return A value indicating whether the results were queued.  The
+   *     results are not queued if the uploader has been shut down, in
+   *     which case the caller should submit them itself.
+   * @throws InterruptedException If the thread is interrupted while
+   *     waiting for earlier uploads to complete.
+   */
+  public synchronized boolean submit(UUID jobId, int taskId,
+      CompressedPayload payload) throws InterruptedException {
+    PendingResult result = new PendingResult(jobId, taskId, payload);
+    while (!shutdown && !inFlight.isEmpty()
+        && inFlightBytes + result.size > maxInFlightBytes) {
+      wait();
+    }
+    if (shutdown) {
+      return false;
+    }
+    inFlightBytes += result.size;
+    inFlight.add(result);
+    pending.add(result);
+    notifyAll();
+    return true;
+  }
+
+  /**
+   * Gets the tasks whose results are queued or being uploaded.  The leases
+   * on these tasks should continue to be renewed until the service has
+   * acknowledged their results.
+   * @param jobIds The <code>List</code> to add the job IDs to.
+   * @param taskIds The <code>List</code> to add the task IDs to.
+   */
+  public synchronized void getInFlightTasks(List<UUID> jobIds,
+      List<Integer> taskIds) {
+    for (PendingResult result : inFlight) {
+      jobIds.add(result.jobId);
+      taskIds.add(result.taskId);
+    }
+  }
+
+  /**
+   * Stops the upload threads once all queued results have been uploaded.
+   * Results submitted after this is called are not queued.
+   */
+  public synchronized void shutdown() {
+    shutdown = true;
+    notifyAll();
+  }
+
+  /**
+   * Waits until all queued results have been uploaded.
+   * @throws InterruptedException If the thread is interrupted while
+   *     waiting.
+   */
+  public synchronized void flush() throws InterruptedException {
+    while (!inFlight.isEmpty()) {
+      wait();
+    }
+  }
+
+  /**
+   * Repeatedly takes a batch of queued results and uploads it.
+   */
+  private void uploadLoop() {
+    try {
+      while (true) {
+        List<PendingResult> batch = takeBatch();
+        if (batch == null) {
+          break;
+        }
+        try {
+          upload(batch);
+        } catch (Exception e) {
+          logger.error("Could not upload task results", e);
+        } finally {
+          release(batch);
+        }
+      }
+    } catch (InterruptedException e) {
+      logger.warn("Upload thread interrupted", e);
+    }
+  }
+
+  /**
+   * Waits for results to be queued, then takes up to
+   * {@link #MAX_BATCH_SIZE} of them, waiting up to
+   * {@link #BATCH_WINDOW_MILLIS} for others to join the first.
+   * @return The results to upload, or <code>null</code> if the uploader
+   *     has been shut down and there is nothing left to upload.
+   * @throws InterruptedException If the thread is interrupted while
+   *     waiting.
+   */
+  private synchronized List<PendingResult> takeBatch() throws InterruptedException {
+    while (pending.isEmpty()) {
+      if (shutdown) {
+        return null;
+      }
+      wait();
+    }
+
+    long end = System.currentTimeMillis() + BATCH_WINDOW_MILLIS;
+    long remaining;
+    while (!shutdown && pending.size() < MAX_BATCH_SIZE
+        && (remaining = end - System.currentTimeMillis()) > 0) {
+      wait(remaining);
+    }
+
+    List<PendingResult> batch = new ArrayList<PendingResult>();
+    while (!pending.isEmpty() && batch.size() < MAX_BATCH_SIZE) {
+      batch.add(pending.removeFirst());
+    }
+    return batch;
+  }
+
+  /**
+   * Records that a batch of results has been uploaded, allowing more
+   * results to be queued.
+   * @param batch The results that were uploaded.
+   */
+  private synchronized void release(List<PendingResult> batch) {
+    for (PendingResult result : batch) {
+      inFlightBytes -= result.size;
+      inFlight.remove(result);
+    }
+    notifyAll();
+  }
+
+  /**
+   * Submits a batch of results to the service.  Results too large to send
+   * in a single call are streamed individually.
+   * @param batch The results to upload.
+   */
+  private void upload(List<PendingResult> batch) throws Exception {
+    int chunkSize = this.chunkSize;
+    if (hasLargeResults(batch, chunkSize)) {
+      List<PendingResult> small = new ArrayList<PendingResult>();
+      for (PendingResult result : batch) {
+        if (result.payload.getSize() > chunkSize) {
+          uploadStream(result, chunkSize);
+        } else {
+          small.add(result);
+        }
+      }
+      if (small.isEmpty()) {
+        return;
+      }
+      batch = small;
+    }
+
+    int n = batch.size();
+    if (n == 1) {
+      PendingResult result = batch.get(0);
+      service.submitTaskResults(result.jobId, result.taskId, result.results);
+      return;
+    }
+
+    UUID[] jobIds = new UUID[n];
+    int[] taskIds = new int[n];
+    @SuppressWarnings("unchecked")
+    Serialized<Object>[] results = (Serialized<Object>[]) new Serialized<?>[n];
+    for (int i = 0; i < n; i++) {
+      PendingResult result = batch.get(i);
+      jobIds[i] = result.jobId;
+      taskIds[i] = result.taskId;
+      results[i] = result.results;
+    }
+
+    BitSet accepted = service.submitTaskResultsBatch(jobIds, taskIds, results);
+    if (logger.isDebugEnabled() && accepted.cardinality() < n) {
+      logger.debug(String.format("%d of %d task results were not accepted",
+          n - accepted.cardinality(), n));
+    }
+  }
+
+  /**
+   * Determines whether any of the results in a batch are too large to send
+   * in a single call.
+   * @param batch The results to upload.
+   * @param chunkSize The size (in bytes) of the chunks in which large
+   *     results are uploaded.
+   * @return A value indicating whether any results must be streamed.
+   */
+  private static boolean hasLargeResults(List<PendingResult> batch,
+      int chunkSize) {
+    for (PendingResult result : batch) {
+      if (result.payload.getSize() > chunkSize) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Uploads the results of a single task as a result stream.
+   * @param result The results to upload.
+   * @param chunkSize The size (in bytes) of the chunks to upload.
+   * @see ca.eandb.jdcp.remote.TaskService#openResultStream(UUID, int, boolean)
+   */
+  private void uploadStream(PendingResult result, int chunkSize) {
+    ResultStreamWriter out = new ResultStreamWriter(service, result.jobId,
+        result.taskId, false, chunkSize);
+    try {
+      Serializers.JAVA.writeObject(result.payload, out);
+      if (!out.commit() && logger.isInfoEnabled()) {
+        logger.info("Results not accepted for task " + result.taskId
+            + " of job " + result.jobId);
+      }
+    } catch (IOException e) {
+      out.abort();
+      if (!out.isRejected()) {
+        logger.error("Cannot upload task results", e);
+      }
+    }
+  }
+
+}
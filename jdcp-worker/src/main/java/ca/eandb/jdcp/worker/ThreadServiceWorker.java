@@ -25,12 +25,18 @@
 
 package ca.eandb.jdcp.worker;
 
+import java.io.IOException;
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.BitSet;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
+import java.util.Queue;
 import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.BlockingQueue;
@@ -46,13 +52,19 @@ import javax.sql.DataSource;
 
 import org.apache.log4j.Logger;
 
+import ca.eandb.jdcp.codec.Codec;
+import ca.eandb.jdcp.codec.Codecs;
+import ca.eandb.jdcp.codec.CompressedPayload;
+import ca.eandb.jdcp.codec.Serializer;
+import ca.eandb.jdcp.codec.Serializers;
+import ca.eandb.jdcp.job.StreamableResult;
 import ca.eandb.jdcp.job.TaskDescription;
 import ca.eandb.jdcp.job.TaskWorker;
 import ca.eandb.jdcp.remote.DelegationException;
+import ca.eandb.jdcp.remote.TaskEvent;
 import ca.eandb.jdcp.worker.policy.CourtesyMonitor;
 import ca.eandb.jdcp.worker.policy.UnconditionalCourtesyMonitor;
 import ca.eandb.util.UnexpectedException;
-import ca.eandb.util.classloader.ClassLoaderStrategy;
 import ca.eandb.util.classloader.StrategyClassLoader;
 import ca.eandb.util.progress.CancelListener;
 import ca.eandb.util.progress.CompositeCancelListener;
@@ -96,6 +108,31 @@ public final class ThreadServiceWorker implements Runnable {
     this.dataSource = dataSource;
   }
 
+  /**
+   * Sets the <code>ClassDefinitionCache</code> in which to store class
+   * definitions when no <code>DataSource</code> is set.  By default, the
+   * cache shared by all <code>InternalCachingJobServiceClassLoaderStrategy</code>
+   * instances is used.
+   * @param classCache The <code>ClassDefinitionCache</code> to use.
+   * @see #setDataSource(DataSource)
+   * @see InternalCachingJobServiceClassLoaderStrategy#getDefaultCache()
+   */
+  public void setClassCache(ClassDefinitionCache classCache) {
+    this.classCache = classCache;
+  }
+
+  /**
+   * Sets the <code>ClassPackFile</code> in which to store class definitions
+   * when no <code>DataSource</code> is set.  If set, it is used in place of
+   * the in-memory <code>ClassDefinitionCache</code>.
+   * @param classPack The <code>ClassPackFile</code> to use, or
+   *     <code>null</code> to use the in-memory cache.
+   * @see #setClassCache(ClassDefinitionCache)
+   */
+  public void setClassPack(ClassPackFile classPack) {
+    this.classPack = classPack;
+  }
+
   /* (non-Javadoc)
    * @see java.lang.Runnable#run()
    */
@@ -106,6 +143,15 @@ public final class ThreadServiceWorker implements Runnable {
     FinishedTaskPoller poller = new FinishedTaskPoller();
     executor.execute(poller);
 
+    TaskEventListener listener = new TaskEventListener();
+    executor.execute(listener);
+
+    TaskPrefetcher prefetcher = new TaskPrefetcher();
+    executor.execute(prefetcher);
+
+    uploader = new TaskResultUploader(service, executor,
+        DEFAULT_UPLOAD_THREADS, maxUploadBytes, resultChunkSize);
+
     while (!shutdownPending) {
       try {
         Worker worker = getWorker();
@@ -115,7 +161,21 @@ public final class ThreadServiceWorker implements Runnable {
       }
     }
 
+    listener.shutdown();
+    prefetcher.shutdown();
+    uploader.shutdown();
+    try {
+      uploader.flush();
+    } catch (InterruptedException e) {
+      logger.warn("Interrupted while waiting for task results to upload", e);
+    }
     poller.shutdown();
+    releasePreparedTasks();
+
+    if (logger.isInfoEnabled()) {
+      logger.info("Result compression (" + resultCodec.getName() + "): "
+          + Codecs.getStatistics(resultCodec));
+    }
     runThread = null;
 
   }
@@ -141,23 +201,44 @@ public final class ThreadServiceWorker implements Runnable {
       UUID[] jobIds;
       int[] taskIds;
       boolean lastPollOk = true;
-      int nThreads, nJobs;
+      int nThreads, nBuffered, nUploads, nJobs;
       boolean removedJob;
+      List<UUID> heldJobIds = new ArrayList<UUID>();
+      List<Integer> heldTaskIds = new ArrayList<Integer>();
 
       while (!shutdown) {
+
+        /* Tasks that are waiting in the prefetch buffer, and tasks whose
+         * results are still being uploaded, are included so that their
+         * leases are renewed while they are held here.
+         */
+        heldJobIds.clear();
+        heldTaskIds.clear();
+        getBufferedTasks(heldJobIds, heldTaskIds);
+        nBuffered = heldJobIds.size();
+        TaskResultUploader uploader = ThreadServiceWorker.this.uploader;
+        if (uploader != null) {
+          uploader.getInFlightTasks(heldJobIds, heldTaskIds);
+        }
+        nUploads = heldJobIds.size() - nBuffered;
+
         synchronized (activeWorkers) {
           synchronized (workerMap) {
             nThreads = activeWorkers.size();
             nJobs = workerMap.size();
             workers = new Worker[nThreads];
-            jobIds = new UUID[nThreads + nJobs];
-            taskIds = new int[nThreads + nJobs];
+            jobIds = new UUID[nThreads + nBuffered + nUploads + nJobs];
+            taskIds = new int[nThreads + nBuffered + nUploads + nJobs];
             int i = 0;
             for (Worker worker : activeWorkers) {
               workers[i] = worker;
               jobIds[i] = worker.getCurrentJobId();
               taskIds[i++] = worker.getCurrentTaskId();
             }
+            for (int j = 0, n = heldJobIds.size(); j < n; j++) {
+              jobIds[i] = heldJobIds.get(j);
+              taskIds[i++] = heldTaskIds.get(j);
+            }
             for (UUID jobId : workerMap.keySet()) {
               jobIds[i] = jobId;
               taskIds[i++] = 0;
@@ -174,7 +255,9 @@ public final class ThreadServiceWorker implements Runnable {
                 .nextSetBit(i + 1)) {
               if (i < nThreads) {
                 workers[i].cancel(jobIds[i], taskIds[i]);
-              } else {
+              } else if (i < nThreads + nBuffered) {
+                cancelFinishedTask(jobIds[i], taskIds[i]);
+              } else if (i >= nThreads + nBuffered + nUploads) {
                 workerMap.remove(jobIds[i]);
                 removedJob = true;
               }
@@ -199,6 +282,364 @@ public final class ThreadServiceWorker implements Runnable {
     }
   }
 
+  /**
+   * Waits for the service to report that tasks or jobs are finished, so
+   * that workers processing them are cancelled right away rather than when
+   * the {@link FinishedTaskPoller} next runs.
+   * @author Brad Kimmel
+   */
+  private class TaskEventListener implements Runnable {
+
+    private boolean shutdown = false;
+
+    private Thread listenerThread = null;
+
+    public synchronized void shutdown() {
+      shutdown = true;
+      Thread thread = listenerThread;
+      if (thread != null) {
+        thread.interrupt();
+      }
+    }
+
+    public void run() {
+      listenerThread = Thread.currentThread();
+
+      long lastEventId = Long.MIN_VALUE;
+      boolean lastListenOk = true;
+
+      while (!shutdown) {
+        try {
+          TaskEvent[] events = service.waitForTaskEvents(lastEventId, TASK_EVENT_TIMEOUT_MILLIS);
+          lastListenOk = true;
+          for (TaskEvent event : events) {
+            lastEventId = event.getEventId();
+            if (!event.isReset()) {
+              cancelFinishedTask(event.getJobId(), event.getTaskId());
+            }
+          }
+        } catch (Exception e) {
+          if (lastListenOk) {
+            logger.warn("Could not listen for task events.", e);
+            lastListenOk = false;
+          }
+          try {
+            Thread.sleep(finishedTaskPollingInterval);
+          } catch (InterruptedException ie) {}
+        }
+      }
+      listenerThread = null;
+    }
+
+  }
+
+  /**
+   * Cancels work on a task or job that is finished.  Workers processing
+   * the task are cancelled, and any copies of it that have been obtained
+   * but not yet started are discarded.
+   * @param jobId The <code>UUID</code> of the job.
+   * @param taskId The ID of the task, or zero (0) if the job as a whole is
+   *     finished.
+   */
+  private void cancelFinishedTask(UUID jobId, int taskId) {
+    synchronized (activeWorkers) {
+      for (Worker worker : activeWorkers) {
+        UUID currentJobId = worker.getCurrentJobId();
+        int currentTaskId = worker.getCurrentTaskId();
+        if (jobId.equals(currentJobId)
+            && (taskId == 0 || taskId == currentTaskId)) {
+          worker.cancel(currentJobId, currentTaskId);
+        }
+      }
+    }
+
+    synchronized (preparedTasks) {
+      Iterator<PreparedTask> i = preparedTasks.iterator();
+      while (i.hasNext()) {
+        TaskDescription taskDesc = i.next().description;
+        if (jobId.equals(taskDesc.getJobId())
+            && (taskId == 0 || taskId == taskDesc.getTaskId())) {
+          i.remove();
+          preparedTasks.notifyAll();
+        }
+      }
+    }
+
+    synchronized (taskBuffer) {
+      Iterator<TaskDescription> i = taskBuffer.iterator();
+      while (i.hasNext()) {
+        TaskDescription taskDesc = i.next();
+        if (jobId.equals(taskDesc.getJobId())
+            && (taskId == 0 || taskId == taskDesc.getTaskId())) {
+          i.remove();
+        }
+      }
+    }
+
+    if (taskId == 0 && workerMap.remove(jobId) != null) {
+      System.gc();
+    }
+  }
+
+  /**
+   * Keeps up to {@link #prefetchDepth} tasks ready to run, so that a worker
+   * that finishes a task may start the next one without waiting for the
+   * task to be obtained from the service and deserialized.
+   * @author Brad Kimmel
+   */
+  private class TaskPrefetcher implements Runnable {
+
+    private boolean shutdown = false;
+
+    private Thread prefetchThread = null;
+
+    public synchronized void shutdown() {
+      shutdown = true;
+      Thread thread = prefetchThread;
+      if (thread != null) {
+        thread.interrupt();
+      }
+    }
+
+    public void run() {
+      prefetchThread = Thread.currentThread();
+
+      while (!shutdown) {
+        try {
+          synchronized (preparedTasks) {
+            while (preparedTasks.size() >= prefetchDepth) {
+              preparedTasks.wait();
+            }
+          }
+
+          if (!courtesyMonitor.allowTasksToRun()) {
+            releasePreparedTasks();
+            courtesyMonitor.waitFor();
+            continue;
+          }
+
+          TaskDescription taskDesc = nextTask();
+          if (taskDesc.getJobId() == null) {
+            /* Leave it to the workers to poll the server while idling. */
+            int seconds = (Integer) taskDesc.getTask().deserialize();
+            Thread.sleep(seconds * 1000L);
+            continue;
+          }
+
+          PreparedTask prepared = prepareTask(taskDesc);
+          if (prepared != null) {
+            synchronized (preparedTasks) {
+              preparedTasks.add(prepared);
+            }
+          }
+        } catch (InterruptedException e) {
+          /* nothing to do. */
+        } catch (ClassNotFoundException e) {
+          logger.error("Cannot read idle time", e);
+        } catch (RuntimeException e) {
+          logger.error("Could not prefetch task", e);
+          try {
+            Thread.sleep(finishedTaskPollingInterval);
+          } catch (InterruptedException ie) {
+            /* nothing to do. */
+          }
+        }
+      }
+
+      prefetchThread = null;
+    }
+
+  }
+
+  /**
+   * A task that has been obtained from the service and is ready to run.
+   * @author Brad Kimmel
+   */
+  private static final class PreparedTask {
+
+    /** The <code>TaskDescription</code> obtained from the service. */
+    public final TaskDescription description;
+
+    /** The <code>TaskWorker</code> to use to perform the task. */
+    public final TaskWorker worker;
+
+    /** The deserialized task. */
+    public final Object task;
+
+    /**
+     * Creates a new <code>PreparedTask</code>.
+     * @param description The <code>TaskDescription</code> obtained from the
+     *     service.
+     * @param worker The <code>TaskWorker</code> to use to perform the task.
+     * @param task The deserialized task.
+     */
+    public PreparedTask(TaskDescription description, TaskWorker worker, Object task) {
+      this.description = description;
+      this.worker = worker;
+      this.task = task;
+    }
+
+  }
+
+  /**
+   * Obtains the <code>TaskWorker</code> for a task and deserializes the
+   * task.  Failures are reported to the service.
+   * @param taskDesc The <code>TaskDescription</code> for the task.
+   * @return The <code>PreparedTask</code>, or <code>null</code> if the
+   *     task could not be prepared.
+   */
+  private PreparedTask prepareTask(TaskDescription taskDesc) {
+    UUID jobId = taskDesc.getJobId();
+    TaskWorker worker;
+    try {
+      worker = getTaskWorker(jobId);
+    } catch (DelegationException e) {
+      return null;
+    } catch (ClassNotFoundException e) {
+      service.reportException(jobId, 0, e);
+      return null;
+    }
+
+    try {
+      Object task = getTask(taskDesc, worker.getClass().getClassLoader());
+      return new PreparedTask(taskDesc, worker, task);
+    } catch (DelegationException e) {
+      return null;
+    } catch (Exception e) {
+      service.reportException(jobId, taskDesc.getTaskId(), e);
+      return null;
+    }
+  }
+
+  /**
+   * Gets the <code>Object</code> describing a task.  If the task is for a
+   * job hosted in this JVM, the task is obtained directly from the
+   * <code>LocalTaskService</code> rather than deserialized.
+   * @param taskDesc The <code>TaskDescription</code> for the task.
+   * @param loader The <code>ClassLoader</code> of the job's
+   *     <code>TaskWorker</code>.
+   * @return The <code>Object</code> describing the task.
+   * @throws ClassNotFoundException If a class required by the task cannot
+   *     be found.
+   */
+  private Object getTask(TaskDescription taskDesc, ClassLoader loader)
+      throws ClassNotFoundException {
+    LocalTaskService local = service.getLocalTaskService();
+    if (local != null) {
+      Object task = local.getLocalTask(taskDesc);
+      if (task != null) {
+        return task;
+      }
+    }
+    return CompressedPayload.decompress(taskDesc.getTask().deserialize(loader), loader);
+  }
+
+  /**
+   * Takes the next prefetched task, if there is one.
+   * @return The next <code>PreparedTask</code>, or <code>null</code> if
+   *     there are none ready.
+   */
+  private PreparedTask takePreparedTask() {
+    synchronized (preparedTasks) {
+      PreparedTask prepared = preparedTasks.poll();
+      if (prepared != null) {
+        preparedTasks.notifyAll();
+      }
+      return prepared;
+    }
+  }
+
+  /**
+   * Gets the tasks that have been obtained from the service but not yet
+   * started.
+   * @param jobIds The <code>List</code> to add the job IDs to.
+   * @param taskIds The <code>List</code> to add the task IDs to.
+   */
+  private void getBufferedTasks(List<UUID> jobIds, List<Integer> taskIds) {
+    synchronized (preparedTasks) {
+      for (PreparedTask prepared : preparedTasks) {
+        jobIds.add(prepared.description.getJobId());
+        taskIds.add(prepared.description.getTaskId());
+      }
+    }
+    synchronized (taskBuffer) {
+      for (TaskDescription taskDesc : taskBuffer) {
+        if (taskDesc.getJobId() != null) {
+          jobIds.add(taskDesc.getJobId());
+          taskIds.add(taskDesc.getTaskId());
+        }
+      }
+    }
+  }
+
+  /**
+   * Discards all prefetched tasks and returns them to the service, so that
+   * they may be handed out to other workers right away.
+   */
+  private void releasePreparedTasks() {
+    List<UUID> jobIds = new ArrayList<UUID>();
+    List<Integer> taskIds = new ArrayList<Integer>();
+    synchronized (preparedTasks) {
+      synchronized (taskBuffer) {
+        getBufferedTasks(jobIds, taskIds);
+        preparedTasks.clear();
+        taskBuffer.clear();
+      }
+    }
+    releaseTasks(jobIds, taskIds);
+  }
+
+  /**
+   * Returns tasks that will not be performed to the service.
+   * @param jobIds The <code>UUID</code>s of the jobs for which the tasks
+   *     were obtained.
+   * @param taskIds The IDs of the tasks to return.
+   * @see ca.eandb.jdcp.remote.TaskService#releaseTasks(UUID[], int[])
+   */
+  private void releaseTasks(List<UUID> jobIds, List<Integer> taskIds) {
+    int n = jobIds.size();
+    if (n == 0) {
+      return;
+    }
+    if (logger.isInfoEnabled()) {
+      logger.info(String.format("Releasing %d prefetched task(s)", n));
+    }
+    int[] ids = new int[n];
+    for (int i = 0; i < n; i++) {
+      ids[i] = taskIds.get(i);
+    }
+    try {
+      service.releaseTasks(jobIds.toArray(new UUID[n]), ids);
+    } catch (RuntimeException e) {
+      logger.warn("Could not release prefetched tasks", e);
+    }
+  }
+
+  /**
+   * Sets the maximum number of tasks to keep ready to run in addition to
+   * those being processed.
+   * @param prefetchDepth The maximum number of tasks to prefetch.
+   * @throws IllegalArgumentException If <code>prefetchDepth</code> is
+   *     negative.
+   */
+  public void setPrefetchDepth(int prefetchDepth) {
+    if (prefetchDepth < 0) {
+      throw new IllegalArgumentException("prefetchDepth must be non-negative.");
+    }
+    List<UUID> jobIds = new ArrayList<UUID>();
+    List<Integer> taskIds = new ArrayList<Integer>();
+    synchronized (preparedTasks) {
+      this.prefetchDepth = prefetchDepth;
+      preparedTasks.notifyAll();
+      while (preparedTasks.size() > prefetchDepth) {
+        TaskDescription taskDesc = preparedTasks.removeLast().description;
+        jobIds.add(taskDesc.getJobId());
+        taskIds.add(taskDesc.getTaskId());
+      }
+    }
+    releaseTasks(jobIds, taskIds);
+  }
+
   /**
    * Shuts down the <code>Thread</code> currently processing this worker.
    */
@@ -249,6 +690,7 @@ public final class ThreadServiceWorker implements Runnable {
    */
   private Worker getWorker() throws InterruptedException {
     while (!courtesyMonitor.allowTasksToRun()) {
+      releasePreparedTasks();
       courtesyMonitor.waitFor();
     }
     while (numWorkers > maxWorkers) {
@@ -258,6 +700,207 @@ public final class ThreadServiceWorker implements Runnable {
     return workerQueue.take();
   }
 
+  /**
+   * Obtains the next task to perform.  Tasks are requested from the service
+   * in batches large enough to supply every idle worker in a single round
+   * trip.  Tasks that are not needed immediately are held in
+   * {@link #taskBuffer} for the other workers.  If the service has no tasks,
+   * the request is held at the service for up to
+   * {@link #TASK_WAIT_MILLIS} so that new tasks are picked up as soon as
+   * they are submitted.
+   * @return The <code>TaskDescription</code> for the next task to perform.
+   */
+  private TaskDescription nextTask() {
+    int idleWorkers;
+    synchronized (taskBuffer) {
+      TaskDescription taskDesc = taskBuffer.poll();
+      if (taskDesc != null) {
+        return taskDesc;
+      }
+      idleWorkers = Math.max(Math.min(workerQueue.size() + 1, maxWorkers), 1);
+    }
+
+    /* Do not hold the lock on the buffer while waiting on the service. */
+    TaskDescription[] tasks = service.requestTasks(idleWorkers, TASK_WAIT_MILLIS);
+    synchronized (taskBuffer) {
+      for (int i = 1; i < tasks.length; i++) {
+        taskBuffer.add(tasks[i]);
+      }
+    }
+    return tasks[0];
+  }
+
+  /**
+   * Sets the <code>Codec</code> to use to compress task results.  The
+   * server decodes results using whichever codec is recorded with them.
+   * @param codec The <code>Codec</code> to use to compress task results.
+   * @param threshold The size (in bytes) of serialized results below which
+   *     they are sent uncompressed.
+   * @see ca.eandb.jdcp.codec.Codecs
+   */
+  public void setResultCodec(Codec codec, int threshold) {
+    this.resultCodec = codec;
+    this.compressionThreshold = threshold;
+  }
+
+  /**
+   * Sets the <code>Serializer</code> to use to serialize task results.
+   * The server reads results using whichever serializer wrote them.
+   * @param serializer The <code>Serializer</code> to use to serialize
+   *     task results.
+   * @see ca.eandb.jdcp.codec.Serializers
+   */
+  public void setResultSerializer(Serializer serializer) {
+    this.resultSerializer = serializer;
+  }
+
+  /**
+   * Sets the maximum total size of task results that may be waiting to be
+   * uploaded or in the process of being uploaded.  Workers that finish
+   * tasks while this limit is reached wait for earlier uploads to complete
+   * before moving on to their next task.
+   * @param maxUploadBytes The maximum total size, in bytes.
+   * @throws IllegalArgumentException If <code>maxUploadBytes</code> is not
+   *     positive.
+   */
+  public void setMaxUploadBytes(long maxUploadBytes) {
+    if (maxUploadBytes <= 0) {
+      throw new IllegalArgumentException("maxUploadBytes must be positive.");
+    }
+    this.maxUploadBytes = maxUploadBytes;
+    TaskResultUploader uploader = this.uploader;
+    if (uploader != null) {
+      uploader.setMaxInFlightBytes(maxUploadBytes);
+    }
+  }
+
+  /**
+   * Sets the size of the chunks in which large task results are uploaded.
+   * Results whose serialized form fits within a single chunk are uploaded
+   * in one call.
+   * @param chunkSize The chunk size, in bytes.
+   * @throws IllegalArgumentException If <code>chunkSize</code> is not
+   *     positive.
+   */
+  public void setResultChunkSize(int chunkSize) {
+    if (chunkSize <= 0) {
+      throw new IllegalArgumentException("chunkSize must be positive.");
+    }
+    this.resultChunkSize = chunkSize;
+    TaskResultUploader uploader = this.uploader;
+    if (uploader != null) {
+      uploader.setChunkSize(chunkSize);
+    }
+  }
+
+  /**
+   * Serializes and submits the results of a task.  Results are compressed
+   * and handed to {@link #submitTaskResults(UUID, int, CompressedPayload)},
+   * which streams those too large to send in a single call.
+   * <code>StreamableResult</code>s are uploaded in chunks on the calling
+   * thread as they are written, so that they are never held in memory, if
+   * the job accepts streamed results.  Otherwise, they are serialized like
+   * any other results.  Results for a job hosted in this JVM are handed to
+   * the <code>LocalTaskService</code> as is.
+   * @param jobId The <code>UUID</code> of the job for which the task was
+   *     performed.
+   * @param taskId The ID of the task that was performed.
+   * @param results The results of the task.
+   * @see ca.eandb.jdcp.remote.TaskService#openResultStream(UUID, int, boolean)
+   */
+  private void uploadTaskResults(UUID jobId, int taskId, Object results) {
+    LocalTaskService local = service.getLocalTaskService();
+    if (local != null && local.submitLocalTaskResults(jobId, taskId, results)) {
+      return;
+    }
+
+    if (results instanceof StreamableResult) {
+      ResultStreamWriter out = new ResultStreamWriter(service, jobId, taskId,
+          true, resultChunkSize);
+      try {
+        ((StreamableResult) results).writeTo(out);
+        if (!out.commit() && logger.isInfoEnabled()) {
+          logger.info("Results not accepted for task " + taskId
+              + " of job " + jobId);
+        }
+        return;
+      } catch (IOException e) {
+        out.abort();
+        if (!out.isUnsupported()) {
+          if (!out.isRejected()) {
+            logger.error("Cannot upload task results", e);
+          }
+          return;
+        }
+      }
+    }
+
+    byte[] bytes;
+    try {
+      bytes = Serializers.serialize(results, resultSerializer);
+    } catch (IOException e) {
+      logger.error("Cannot serialize task results", e);
+      return;
+    }
+    submitTaskResults(jobId, taskId,
+        CompressedPayload.wrap(bytes, resultCodec, compressionThreshold));
+  }
+
+  /**
+   * Submits the results of a task.  The results are handed off to the
+   * {@link TaskResultUploader}, so that the calling worker may move on to
+   * its next task while the results are transmitted.
+   * @param jobId The <code>UUID</code> of the job for which the task was
+   *     performed.
+   * @param taskId The ID of the task that was performed.
+   * @param payload The encoded results of the task.
+   */
+  private void submitTaskResults(UUID jobId, int taskId, CompressedPayload payload) {
+    TaskResultUploader uploader = this.uploader;
+    if (uploader != null) {
+      try {
+        if (uploader.submit(jobId, taskId, payload)) {
+          return;
+        }
+      } catch (InterruptedException e) {
+        logger.warn("Interrupted while queuing task results, submitting directly", e);
+      }
+    }
+    service.submitTaskResults(jobId, taskId, new Serialized<Object>(payload));
+  }
+
+  /**
+   * Reports the classes loaded for a job that the service did not provide
+   * in advance, so that it can provide them to other workers.  This is done
+   * once per job, after the first task for the job has completed, by which
+   * time the classes needed to process tasks will usually have been loaded.
+   * @param jobId The <code>UUID</code> of the job.
+   * @see ca.eandb.jdcp.remote.TaskService#reportClassManifest(UUID, String[])
+   */
+  private void reportClassManifest(UUID jobId) {
+    TaskWorkerRef ref = workerMap.get(jobId);
+    if (ref == null) {
+      return;
+    }
+
+    CachingJobServiceClassLoaderStrategy strategy;
+    synchronized (ref) {
+      strategy = ref.strategy;
+      ref.strategy = null;
+    }
+
+    if (strategy != null) {
+      String[] classNames = strategy.getUnbundledClasses();
+      if (classNames.length > 0) {
+        try {
+          service.reportClassManifest(jobId, classNames);
+        } catch (SecurityException e) {
+          logger.error("Could not report class manifest", e);
+        }
+      }
+    }
+  }
+
   /**
    * Reference to a <code>TaskWorker</code>.  This object acts as a handle
    * for other workers to synchronize on to prevent multiple worker threads
@@ -267,6 +910,14 @@ public final class ThreadServiceWorker implements Runnable {
    */
   private static class TaskWorkerRef {
     public TaskWorker worker;
+
+    /**
+     * The <code>CachingJobServiceClassLoaderStrategy</code> used to load
+     * the classes for the <code>TaskWorker</code>, or <code>null</code> if
+     * the classes loaded for the job have already been reported (or the
+     * <code>TaskWorker</code> was not deserialized by this worker).
+     */
+    public CachingJobServiceClassLoaderStrategy strategy;
   };
 
   /** A <code>Map</code> containing the active <code>TaskWorker</code>s. */
@@ -300,17 +951,32 @@ public final class ThreadServiceWorker implements Runnable {
         /* The task worker was not in the cache, so use the service to
          * obtain the task worker.
          */
-        Serialized<TaskWorker> envelope = this.service.getTaskWorker(jobId);
-
-        ClassLoaderStrategy strategy;
-        if (dataSource != null) {
-          strategy = new DbCachingJobServiceClassLoaderStrategy(service, jobId, dataSource);
-        } else {
-          strategy = new InternalCachingJobServiceClassLoaderStrategy(service, jobId);
+        LocalTaskService local = service.getLocalTaskService();
+        if (local != null) {
+          ref.worker = local.getLocalTaskWorker(jobId);
         }
 
-        ClassLoader loader = new StrategyClassLoader(strategy, ThreadServiceWorker.class.getClassLoader());
-        ref.worker = envelope.deserialize(loader);
+        if (ref.worker == null) {
+          Serialized<TaskWorker> envelope = this.service.getTaskWorker(jobId);
+
+          CachingJobServiceClassLoaderStrategy strategy;
+          if (dataSource != null) {
+            strategy = new DbCachingJobServiceClassLoaderStrategy(service, jobId, dataSource);
+          } else if (classPack != null) {
+            strategy = new PackFileCachingJobServiceClassLoaderStrategy(service, jobId, classPack);
+          } else {
+            strategy = new InternalCachingJobServiceClassLoaderStrategy(service, jobId, classCache);
+          }
+
+          /* Obtain the classes the job is known to need up front, rather
+           * than one at a time as the task worker is deserialized.
+           */
+          strategy.prefetchClassBundle();
+
+          ClassLoader loader = new StrategyClassLoader(strategy, ThreadServiceWorker.class.getClassLoader());
+          ref.worker = envelope.deserialize(loader);
+          ref.strategy = strategy;
+        }
 
         if (logger.isInfoEnabled()) {
           logger.info(String.format("Got worker (thread=%d)", Thread.currentThread().getId()));
@@ -378,7 +1044,8 @@ public final class ThreadServiceWorker implements Runnable {
             return; // Monitor signaled worker should cancel.
           }
 
-          TaskDescription taskDesc = service.requestTask();
+          PreparedTask prepared = takePreparedTask();
+          TaskDescription taskDesc = (prepared != null) ? prepared.description : nextTask();
           UUID jobId = taskDesc.getJobId();
           int taskId = taskDesc.getTaskId();
 
@@ -392,7 +1059,7 @@ public final class ThreadServiceWorker implements Runnable {
             this.monitor.notifyStatusChanged("Obtaining task worker...");
             TaskWorker worker;
             try {
-              worker = getTaskWorker(jobId);
+              worker = (prepared != null) ? prepared.worker : getTaskWorker(jobId);
             } catch (DelegationException e) {
               worker = null;
             } catch (ClassNotFoundException e) {
@@ -412,7 +1079,8 @@ public final class ThreadServiceWorker implements Runnable {
             Object results;
 
             try {
-              Object task = taskDesc.getTask().deserialize(loader);
+              Object task = (prepared != null) ? prepared.task
+                  : getTask(taskDesc, loader);
               results = worker.performTask(task, monitor);
             } catch (DelegationException e) {
               results = null;
@@ -424,7 +1092,8 @@ public final class ThreadServiceWorker implements Runnable {
 
             if (results != null && !monitor.isCancelPending()) {
               this.monitor.notifyStatusChanged("Submitting task results...");
-              service.submitTaskResults(jobId, taskId, new Serialized<Object>(results));
+              uploadTaskResults(jobId, taskId, results);
+              reportClassManifest(jobId);
             }
 
           } else { // server has no tasks to perform.
@@ -817,11 +1486,90 @@ public final class ThreadServiceWorker implements Runnable {
   /** A queue containing the available workers. */
   private final BlockingQueue<Worker> workerQueue = new LinkedBlockingQueue<Worker>();
 
+  /**
+   * Tasks that have been obtained from the service but that have not yet
+   * been picked up by a worker.
+   */
+  private final Queue<TaskDescription> taskBuffer = new LinkedList<TaskDescription>();
+
+  /**
+   * The maximum amount of time (in milliseconds) to wait at the service for
+   * a task to become available when there are none.
+   */
+  private static final long TASK_WAIT_MILLIS = 30000;
+
+  /** The default number of tasks to keep ready to run. */
+  private static final int DEFAULT_PREFETCH_DEPTH = 1;
+
+  /**
+   * The maximum number of tasks to keep ready to run in addition to those
+   * being processed.  Guarded by {@link #preparedTasks}.
+   */
+  private int prefetchDepth = DEFAULT_PREFETCH_DEPTH;
+
+  /** Tasks that are ready to run, in the order in which they were obtained. */
+  private final LinkedList<PreparedTask> preparedTasks = new LinkedList<PreparedTask>();
+
+  /** The default number of threads to use to upload task results. */
+  private static final int DEFAULT_UPLOAD_THREADS = 2;
+
+  /**
+   * The default maximum total size (in bytes) of task results that may be
+   * waiting to be uploaded or in the process of being uploaded.
+   */
+  private static final long DEFAULT_MAX_UPLOAD_BYTES = 64L * 1024L * 1024L;
+
+  /**
+   * The maximum total size (in bytes) of task results that may be waiting
+   * to be uploaded or in the process of being uploaded.
+   */
+  private long maxUploadBytes = DEFAULT_MAX_UPLOAD_BYTES;
+
+  /**
+   * The <code>TaskResultUploader</code> used to submit task results while
+   * {@link #run()} is executing.
+   */
+  private volatile TaskResultUploader uploader = null;
+
+  /** The <code>Codec</code> to use to compress task results. */
+  private volatile Codec resultCodec = Codecs.LZ;
+
+  /** The <code>Serializer</code> to use to serialize task results. */
+  private volatile Serializer resultSerializer = Serializers.JAVA;
+
+  /**
+   * The size (in bytes) of serialized task results below which they are
+   * sent uncompressed.
+   */
+  private volatile int compressionThreshold = CompressedPayload.DEFAULT_THRESHOLD;
+
+  /**
+   * The default size (in bytes) of the chunks in which large task results
+   * are uploaded.
+   */
+  private static final int DEFAULT_RESULT_CHUNK_SIZE = 1024 * 1024;
+
+  /** The size (in bytes) of the chunks in which large results are uploaded. */
+  private volatile int resultChunkSize = DEFAULT_RESULT_CHUNK_SIZE;
+
   /**
    * A <code>DataSource</code> to use to store cached class definitions.
    */
   private DataSource dataSource = null;
 
+  /**
+   * The <code>ClassDefinitionCache</code> in which to store class
+   * definitions if no <code>DataSource</code> is set.
+   */
+  private volatile ClassDefinitionCache classCache = InternalCachingJobServiceClassLoaderStrategy.getDefaultCache();
+
+  /**
+   * The <code>ClassPackFile</code> in which to store class definitions if
+   * no <code>DataSource</code> is set, or <code>null</code> to use
+   * <code>classCache</code>.
+   */
+  private volatile ClassPackFile classPack = null;
+
   /**
    * A <code>Lock</code> for controlling access to critical sections for
    * idle polling.
@@ -859,4 +1607,10 @@ public final class ThreadServiceWorker implements Runnable {
    */
   private final long finishedTaskPollingInterval = 10000;
 
+  /**
+   * The maximum amount of time (in milliseconds) to wait for task events
+   * from the service in a single call.
+   */
+  private static final long TASK_EVENT_TIMEOUT_MILLIS = 60000;
+
 }
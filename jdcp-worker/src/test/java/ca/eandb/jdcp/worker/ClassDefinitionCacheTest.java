@@ -0,0 +1,230 @@
+/*
+ * Copyright (c) 2026 Bradley W. Kimmel
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package ca.eandb.jdcp.worker;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.testng.annotations.Test;
+
+/**
+ * Tests for {@link ClassDefinitionCache}.
+ * @author Brad Kimmel
+ */
+public class ClassDefinitionCacheTest {
+
+  /** The number of segments in the cache. */
+  private static final int SEGMENTS = 16;
+
+  /** The capacity of each segment in the caches under test. */
+  private static final long SEGMENT_CAPACITY = 100;
+
+  private static ClassDefinitionCache newCache() {
+    return new ClassDefinitionCache(SEGMENTS * SEGMENT_CAPACITY);
+  }
+
+  /** Creates a digest-like key from an integer. */
+  private static byte[] digest(int n) {
+    byte[] digest = new byte[16];
+    for (int i = 0; i < 4; i++) {
+      digest[i] = (byte) (n >>> (8 * i));
+    }
+    digest[15] = 0x5a;
+    return digest;
+  }
+
+  /** Gets the segment that the cache assigns a digest to. */
+  private static int segmentOf(byte[] digest) {
+    int h = Arrays.hashCode(digest);
+    return (h ^ (h >>> 16)) & (SEGMENTS - 1);
+  }
+
+  /** Finds digests that fall in the same segment of the cache. */
+  private static List<byte[]> digestsInOneSegment(int count) {
+    List<byte[]> result = new ArrayList<byte[]>();
+    int segment = segmentOf(digest(0));
+    for (int n = 0; result.size() < count; n++) {
+      byte[] digest = digest(n);
+      if (segmentOf(digest) == segment) {
+        result.add(digest);
+      }
+    }
+    return result;
+  }
+
+  private static byte[] def(int length, int fill) {
+    byte[] def = new byte[length];
+    Arrays.fill(def, (byte) fill);
+    return def;
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testNegativeCapacity() {
+    new ClassDefinitionCache(-1);
+  }
+
+  @Test
+  public void testPutAndGet() {
+    ClassDefinitionCache cache = newCache();
+    byte[] digest = digest(1);
+    byte[] def = def(10, 1);
+    cache.put("a.b.C", digest, def);
+
+    assertEquals(cache.get(digest), def);
+    assertEquals(cache.getDigest("a.b.C"), digest);
+    assertEquals(cache.getEntryCount(), 1);
+    assertEquals(cache.getSize(), 10);
+    assertEquals(cache.getStores(), 1);
+    assertEquals(cache.getHits(), 1);
+
+    assertNull(cache.get(digest(2)));
+    assertNull(cache.get(null));
+    assertNull(cache.getDigest("a.b.D"));
+    assertEquals(cache.getMisses(), 1);
+  }
+
+  @Test
+  public void testReturnsCopies() {
+    ClassDefinitionCache cache = newCache();
+    byte[] digest = digest(1);
+    byte[] def = def(10, 1);
+    cache.put("C", digest, def);
+
+    def[0] = 99;
+    digest[0] = 99;
+    byte[] stored = cache.get(digest(1));
+    assertEquals(stored[0], 1);
+    stored[1] = 99;
+    assertEquals(cache.get(digest(1))[1], 1);
+    cache.getDigest("C")[0] = 99;
+    assertEquals(cache.getDigest("C"), digest(1));
+  }
+
+  @Test
+  public void testEvictsLeastRecentlyUsed() {
+    ClassDefinitionCache cache = newCache();
+    List<byte[]> digests = digestsInOneSegment(3);
+    cache.put("p.A", digests.get(0), def(40, 0));
+    cache.put("p.B", digests.get(1), def(40, 1));
+
+    /* Touch A, so that B is the least recently used. */
+    assertNotNull(cache.get(digests.get(0)));
+    cache.put("p.C", digests.get(2), def(40, 2));
+
+    assertNotNull(cache.get(digests.get(0)));
+    assertNull(cache.get(digests.get(1)));
+    assertNotNull(cache.get(digests.get(2)));
+    assertEquals(cache.getEvictions(), 1);
+    assertEquals(cache.getEntryCount(), 2);
+    assertEquals(cache.getSize(), 80);
+
+    /* The evicted class is no longer named in the index. */
+    assertNull(cache.getDigest("p.B"));
+    List<String> names = cache.getClassNames("p");
+    Collections.sort(names);
+    assertEquals(names, Arrays.asList("p.A", "p.C"));
+  }
+
+  @Test
+  public void testOtherSegmentsAreUnaffected() {
+    ClassDefinitionCache cache = newCache();
+    List<byte[]> digests = digestsInOneSegment(3);
+    byte[] other = null;
+    for (int n = 0; other == null; n++) {
+      if (segmentOf(digest(n)) != segmentOf(digests.get(0))) {
+        other = digest(n);
+      }
+    }
+
+    cache.put("Other", other, def(90, 9));
+    for (int i = 0; i < digests.size(); i++) {
+      cache.put("C" + i, digests.get(i), def(60, i));
+    }
+    assertNotNull(cache.get(other));
+    assertEquals(cache.getEvictions(), 2);
+    assertTrue(cache.getSize() <= cache.getCapacity());
+  }
+
+  @Test
+  public void testOversizedDefinitionIsNotStored() {
+    ClassDefinitionCache cache = newCache();
+    cache.put("Big", digest(1), def((int) SEGMENT_CAPACITY + 1, 0));
+    assertNull(cache.get(digest(1)));
+    assertNull(cache.getDigest("Big"));
+    assertEquals(cache.getStores(), 0);
+    assertEquals(cache.getEntryCount(), 0);
+  }
+
+  @Test
+  public void testReplacingDefinitionKeepsSize() {
+    ClassDefinitionCache cache = newCache();
+    cache.put("C", digest(1), def(30, 0));
+    cache.put("C", digest(1), def(30, 0));
+    assertEquals(cache.getEntryCount(), 1);
+    assertEquals(cache.getSize(), 30);
+  }
+
+  @Test
+  public void testNameIndexFollowsLatestDefinition() {
+    ClassDefinitionCache cache = newCache();
+    List<byte[]> digests = digestsInOneSegment(3);
+    cache.put("p.C", digests.get(0), def(40, 0));
+    cache.put("p.C", digests.get(1), def(40, 1));
+    assertEquals(cache.getDigest("p.C"), digests.get(1));
+
+    /* Evicting the older definition leaves the newer one named. */
+    cache.put("p.D", digests.get(2), def(40, 2));
+    assertNull(cache.get(digests.get(0)));
+    assertEquals(cache.getDigest("p.C"), digests.get(1));
+  }
+
+  @Test
+  public void testClassNamesByPackage() {
+    ClassDefinitionCache cache = new ClassDefinitionCache(
+        ClassDefinitionCache.DEFAULT_CAPACITY);
+    cache.put("a.X", digest(1), def(1, 0));
+    cache.put("a.Y", digest(2), def(1, 0));
+    cache.put("a.b.Z", digest(3), def(1, 0));
+    cache.put("Default", digest(4), def(1, 0));
+
+    List<String> names = cache.getClassNames("a");
+    Collections.sort(names);
+    assertEquals(names, Arrays.asList("a.X", "a.Y"));
+    assertEquals(cache.getClassNames("a.b"), Arrays.asList("a.b.Z"));
+    assertEquals(cache.getClassNames(""), Arrays.asList("Default"));
+    assertTrue(cache.getClassNames("c").isEmpty());
+    assertFalse(cache.toString().isEmpty());
+  }
+
+}
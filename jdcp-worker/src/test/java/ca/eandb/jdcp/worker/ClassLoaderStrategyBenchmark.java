@@ -0,0 +1,283 @@
+/*
+ * Copyright (c) 2026 Bradley W. Kimmel
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package ca.eandb.jdcp.worker;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import ca.eandb.jdcp.remote.TaskService;
+
+/**
+ * Measures how well <code>CachingJobServiceClassLoaderStrategy</code>
+ * handles many threads faulting in overlapping sets of classes at once, as
+ * happens when a worker with many threads starts on a new job.  The
+ * <code>TaskService</code> simulates a fixed round-trip latency and counts
+ * the calls made to it.  Ideally, each class is fetched exactly once, and
+ * the elapsed time approaches the time taken by one thread to fetch its
+ * own share of the classes.
+ *
+ * <p>Usage: <code>ClassLoaderStrategyBenchmark [threads [classes
+ * [latencyMillis [rounds]]]]</code>
+ *
+ * @author Brad Kimmel
+ */
+public final class ClassLoaderStrategyBenchmark {
+
+  /** The number of concurrent threads to use by default. */
+  private static final int DEFAULT_THREADS = 64;
+
+  /** The number of distinct classes in the job by default. */
+  private static final int DEFAULT_CLASSES = 512;
+
+  /** The simulated round-trip latency (in milliseconds) by default. */
+  private static final int DEFAULT_LATENCY_MILLIS = 1;
+
+  /** The number of measured rounds by default. */
+  private static final int DEFAULT_ROUNDS = 5;
+
+  /** The size of the class definitions served. */
+  private static final int DEFINITION_SIZE = 4096;
+
+  /**
+   * Runs the benchmark.
+   * @param args Command line arguments: the number of threads, the number
+   *     of classes, the simulated latency in milliseconds, and the number of
+   *     rounds to measure.
+   * @throws Exception If an error occurs.
+   */
+  public static void main(String[] args) throws Exception {
+    int threads = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_THREADS;
+    int classes = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_CLASSES;
+    int latency = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_LATENCY_MILLIS;
+    int rounds = args.length > 3 ? Integer.parseInt(args[3]) : DEFAULT_ROUNDS;
+
+    String[] names = new String[classes];
+    for (int i = 0; i < classes; i++) {
+      names[i] = "bench.pkg" + (i % 16) + ".Class" + i;
+    }
+
+    /* Each thread faults in half of the classes, starting at a different
+     * offset, so that every class is wanted by many threads at once.
+     */
+    int perThread = Math.max(classes / 2, 1);
+
+    CallCounter counter = new CallCounter(latency);
+    TaskService service = counter.createService();
+
+    run(service, names, threads, perThread); // warm up
+
+    System.out.printf("%8s %8s %10s %12s %10s %10s%n", "threads", "classes",
+        "ms", "faults/s", "digests", "defs");
+    for (int r = 0; r < rounds; r++) {
+      counter.reset();
+      long nanos = run(service, names, threads, perThread);
+      double seconds = nanos / 1e9;
+      System.out.printf("%8d %8d %10.1f %12.0f %10d %10d%n", threads, classes,
+          nanos / 1e6, threads * perThread / seconds,
+          counter.digestCalls.get(), counter.definitionCalls.get());
+    }
+  }
+
+  /**
+   * Has several threads fault in overlapping sets of classes using a
+   * single, initially empty, strategy.
+   * @param service The <code>TaskService</code> to obtain classes from.
+   * @param names The names of the classes in the job.
+   * @param threads The number of concurrent threads.
+   * @param perThread The number of classes each thread faults in.
+   * @return The elapsed time, in nanoseconds.
+   * @throws Exception If a thread fails.
+   */
+  private static long run(TaskService service, final String[] names,
+      int threads, final int perThread) throws Exception {
+    final CachingJobServiceClassLoaderStrategy strategy =
+        new BenchmarkStrategy(service, UUID.randomUUID());
+    final CountDownLatch start = new CountDownLatch(1);
+    final CountDownLatch done = new CountDownLatch(threads);
+    final AtomicReference<Exception> failure = new AtomicReference<Exception>();
+
+    for (int t = 0; t < threads; t++) {
+      final int offset = (int) ((long) t * names.length / threads);
+      final Random rand = new Random(t);
+      Thread thread = new Thread(new Runnable() {
+        public void run() {
+          try {
+            String[] mine = new String[perThread];
+            for (int i = 0; i < perThread; i++) {
+              mine[i] = names[(offset + i) % names.length];
+            }
+            for (int i = mine.length - 1; i > 0; i--) {
+              int j = rand.nextInt(i + 1);
+              String tmp = mine[i];
+              mine[i] = mine[j];
+              mine[j] = tmp;
+            }
+
+            start.await();
+            for (String name : mine) {
+              if (strategy.getClassDefinition(name) == null) {
+                throw new IllegalStateException("Missing class: " + name);
+              }
+            }
+          } catch (Exception e) {
+            failure.compareAndSet(null, e);
+          } finally {
+            done.countDown();
+          }
+        }
+      });
+      thread.setDaemon(true);
+      thread.start();
+    }
+
+    long begin = System.nanoTime();
+    start.countDown();
+    done.await();
+    long elapsed = System.nanoTime() - begin;
+
+    if (failure.get() != null) {
+      throw failure.get();
+    }
+    return elapsed;
+  }
+
+  /**
+   * A <code>CachingJobServiceClassLoaderStrategy</code> that caches class
+   * definitions in memory, separately for each instance, so that every
+   * round starts with an empty cache.
+   */
+  private static final class BenchmarkStrategy extends
+      CachingJobServiceClassLoaderStrategy {
+
+    /** The cached class definitions. */
+    private final Map<String, byte[]> cache = new ConcurrentHashMap<String, byte[]>();
+
+    /**
+     * Creates a new <code>BenchmarkStrategy</code>.
+     * @param service The <code>TaskService</code> from which to obtain
+     *     class definitions.
+     * @param jobId The <code>UUID</code> identifying the job.
+     */
+    public BenchmarkStrategy(TaskService service, UUID jobId) {
+      super(service, jobId);
+    }
+
+    /* (non-Javadoc)
+     * @see ca.eandb.jdcp.worker.CachingJobServiceClassLoaderStrategy#cacheLookup(java.lang.String, byte[])
+     */
+    @Override
+    protected byte[] cacheLookup(String name, byte[] digest) {
+      return cache.get(name);
+    }
+
+    /* (non-Javadoc)
+     * @see ca.eandb.jdcp.worker.CachingJobServiceClassLoaderStrategy#cacheStore(java.lang.String, byte[], byte[])
+     */
+    @Override
+    protected void cacheStore(String name, byte[] digest, byte[] def) {
+      cache.put(name, def);
+    }
+
+  }
+
+  /**
+   * Counts the calls made to a simulated <code>TaskService</code>.
+   */
+  private static final class CallCounter {
+
+    /** The number of calls made to obtain class digests. */
+    public final AtomicInteger digestCalls = new AtomicInteger();
+
+    /** The number of calls made to obtain class definitions. */
+    public final AtomicInteger definitionCalls = new AtomicInteger();
+
+    /** The simulated round-trip latency, in milliseconds. */
+    private final int latency;
+
+    /**
+     * Creates a new <code>CallCounter</code>.
+     * @param latency The simulated round-trip latency, in milliseconds.
+     */
+    public CallCounter(int latency) {
+      this.latency = latency;
+    }
+
+    /** Resets the call counts. */
+    public void reset() {
+      digestCalls.set(0);
+      definitionCalls.set(0);
+    }
+
+    /**
+     * Creates a <code>TaskService</code> that serves a class definition
+     * for any name, after the simulated latency.
+     * @return The new <code>TaskService</code>.
+     */
+    public TaskService createService() {
+      final byte[] digest = new byte[16];
+      final byte[] def = new byte[DEFINITION_SIZE];
+      return (TaskService) Proxy.newProxyInstance(
+          TaskService.class.getClassLoader(),
+          new Class<?>[]{ TaskService.class }, new InvocationHandler() {
+            public Object invoke(Object proxy, Method method, Object[] args)
+                throws InterruptedException {
+              String name = method.getName();
+              if (name.equals("getClassDigest")) {
+                digestCalls.incrementAndGet();
+                Thread.sleep(latency);
+                return digest;
+              } else if (name.equals("getClassDigests")) {
+                digestCalls.incrementAndGet();
+                Thread.sleep(latency);
+                byte[][] digests = new byte[((String[]) args[0]).length][];
+                for (int i = 0; i < digests.length; i++) {
+                  digests[i] = digest;
+                }
+                return digests;
+              } else if (name.equals("getClassDefinition")) {
+                definitionCalls.incrementAndGet();
+                Thread.sleep(latency);
+                return def;
+              }
+              throw new UnsupportedOperationException(name);
+            }
+          });
+    }
+
+  }
+
+  /** This class contains only static utility methods. */
+  private ClassLoaderStrategyBenchmark() {}
+
+}
@@ -0,0 +1,452 @@
+/*
+ * Copyright (c) 2026 Bradley W. Kimmel
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package ca.eandb.jdcp.worker;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+/**
+ * Tests for {@link ClassPackFile}.
+ * @author Brad Kimmel
+ */
+public class ClassPackFileTest {
+
+  /** The size of the data file header. */
+  private static final int DATA_HEADER_SIZE = 16;
+
+  /** The offset of the clean flag in the index file header. */
+  private static final int INDEX_CLEAN = 28;
+
+  /** The offset of the generation in the index file header. */
+  private static final int INDEX_GENERATION = 8;
+
+  /** The size of each definition stored by these tests. */
+  private static final int DEF_SIZE = 100;
+
+  /**
+   * The size of the record holding each definition stored by these tests:
+   * overhead (15), a three character name and a 16 byte digest.
+   */
+  private static final int RECORD_SIZE = 15 + 3 + 16 + DEF_SIZE;
+
+  /** The directory holding the pack. */
+  private File directory;
+
+  /** The pack under test. */
+  private ClassPackFile pack;
+
+  @BeforeMethod
+  public void setUp() throws IOException {
+    directory = File.createTempFile("jdcp-test-", "");
+    directory.delete();
+    directory.mkdir();
+  }
+
+  @AfterMethod
+  public void tearDown() throws IOException {
+    if (pack != null) {
+      pack.close();
+      pack = null;
+    }
+    for (File file : directory.listFiles()) {
+      file.delete();
+    }
+    directory.delete();
+  }
+
+  private File dataFile() {
+    return new File(directory, "classes.pack");
+  }
+
+  private File indexFile() {
+    return new File(directory, "classes.idx");
+  }
+
+  private void open(long capacity) throws IOException {
+    pack = new ClassPackFile(directory, capacity);
+  }
+
+  private void reopen(long capacity) throws IOException {
+    pack.close();
+    open(capacity);
+  }
+
+  /** Creates a digest-like key from an integer. */
+  private static byte[] digest(int n) {
+    byte[] digest = new byte[16];
+    Arrays.fill(digest, (byte) n);
+    digest[0] = 0x5a;
+    return digest;
+  }
+
+  private static byte[] def(int n) {
+    byte[] def = new byte[DEF_SIZE];
+    for (int i = 0; i < def.length; i++) {
+      def[i] = (byte) (n + i);
+    }
+    return def;
+  }
+
+  /** Stores the definitions of classes "p.A", "p.B", and so on. */
+  private void putClasses(int first, int count) {
+    for (int n = first; n < first + count; n++) {
+      pack.put("p." + (char) ('A' + n), digest(n), def(n));
+    }
+  }
+
+  private void assertStored(int n) {
+    assertEquals(pack.get(digest(n)), def(n));
+    assertEquals(pack.getDigest("p." + (char) ('A' + n)), digest(n));
+  }
+
+  private void assertNotStored(int n) {
+    assertNull(pack.get(digest(n)));
+    assertNull(pack.getDigest("p." + (char) ('A' + n)));
+  }
+
+  /** Overwrites part of a file. */
+  private static void write(File file, long pos, byte[] bytes)
+      throws IOException {
+    RandomAccessFile raf = new RandomAccessFile(file, "rw");
+    try {
+      raf.seek(pos);
+      raf.write(bytes);
+    } finally {
+      raf.close();
+    }
+  }
+
+  private static void truncate(File file, long length) throws IOException {
+    RandomAccessFile raf = new RandomAccessFile(file, "rw");
+    try {
+      raf.setLength(length);
+    } finally {
+      raf.close();
+    }
+  }
+
+  /** Marks the index as having been left open, as if after a crash. */
+  private void markIndexDirty() throws IOException {
+    write(indexFile(), INDEX_CLEAN, new byte[4]);
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testNotADirectory() throws IOException {
+    new ClassPackFile(new File(directory, "missing"), 1000);
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testNegativeCapacity() throws IOException {
+    new ClassPackFile(directory, -1);
+  }
+
+  @Test
+  public void testPutAndGet() throws IOException {
+    open(ClassPackFile.DEFAULT_CAPACITY);
+    putClasses(0, 3);
+    pack.put("Default", digest(9), def(9));
+
+    assertStored(0);
+    assertStored(1);
+    assertStored(2);
+    assertNull(pack.get(digest(5)));
+    assertNull(pack.get(null));
+    assertEquals(pack.getEntryCount(), 4);
+    assertEquals(pack.getSize(), DATA_HEADER_SIZE + 3 * RECORD_SIZE
+        + RECORD_SIZE + "Default".length() - 3);
+    assertEquals(pack.getHits(), 3);
+    assertEquals(pack.getMisses(), 1);
+
+    List<String> names = pack.getClassNames("p");
+    Collections.sort(names);
+    assertEquals(names, Arrays.asList("p.A", "p.B", "p.C"));
+    assertEquals(pack.getClassNames(""), Arrays.asList("Default"));
+
+    /* Storing a definition again does not add a record. */
+    long size = pack.getSize();
+    putClasses(0, 1);
+    assertEquals(pack.getSize(), size);
+  }
+
+  @Test
+  public void testManyEntriesGrowIndex() throws IOException {
+    open(ClassPackFile.DEFAULT_CAPACITY);
+    for (int n = 0; n < 3000; n++) {
+      byte[] digest = new byte[16];
+      digest[0] = (byte) n;
+      digest[1] = (byte) (n >>> 8);
+      pack.put("q.C" + n, digest, new byte[]{ (byte) n });
+    }
+    reopen(ClassPackFile.DEFAULT_CAPACITY);
+    assertEquals(pack.getEntryCount(), 3000);
+    assertEquals(pack.getClassNames("q").size(), 3000);
+    for (int n = 0; n < 3000; n++) {
+      byte[] digest = new byte[16];
+      digest[0] = (byte) n;
+      digest[1] = (byte) (n >>> 8);
+      assertEquals(pack.get(digest), new byte[]{ (byte) n });
+    }
+  }
+
+  @Test
+  public void testReopen() throws IOException {
+    open(ClassPackFile.DEFAULT_CAPACITY);
+    putClasses(0, 3);
+    pack.close();
+
+    /* The data file is trimmed to the records it holds. */
+    assertEquals(dataFile().length(), DATA_HEADER_SIZE + 3 * RECORD_SIZE);
+    open(ClassPackFile.DEFAULT_CAPACITY);
+    assertEquals(pack.getEntryCount(), 3);
+    assertStored(0);
+    assertStored(1);
+    assertStored(2);
+
+    putClasses(3, 1);
+    reopen(ClassPackFile.DEFAULT_CAPACITY);
+    assertEquals(pack.getEntryCount(), 4);
+    assertStored(3);
+  }
+
+  @Test
+  public void testLockedByAnotherOpener() throws IOException {
+    open(ClassPackFile.DEFAULT_CAPACITY);
+    try {
+      new ClassPackFile(directory, ClassPackFile.DEFAULT_CAPACITY);
+      fail("Expected IOException");
+    } catch (IOException e) {
+      /* expected. */
+    }
+    putClasses(0, 1);
+    assertStored(0);
+  }
+
+  @Test
+  public void testClosedPackFindsNothing() throws IOException {
+    open(ClassPackFile.DEFAULT_CAPACITY);
+    putClasses(0, 1);
+    pack.close();
+    assertNull(pack.get(digest(0)));
+    assertNull(pack.getDigest("p.A"));
+    assertTrue(pack.getClassNames("p").isEmpty());
+    pack.put("p.B", digest(1), def(1));
+    pack = null;
+  }
+
+  @Test
+  public void testDirtyIndexIsRebuilt() throws IOException {
+    open(ClassPackFile.DEFAULT_CAPACITY);
+    putClasses(0, 3);
+    pack.close();
+
+    /* Clear the slots of the index, so that it only works if rebuilt. */
+    long indexLength = indexFile().length();
+    truncate(indexFile(), 32);
+    truncate(indexFile(), indexLength);
+    markIndexDirty();
+
+    open(ClassPackFile.DEFAULT_CAPACITY);
+    assertEquals(pack.getEntryCount(), 3);
+    assertStored(0);
+    assertStored(1);
+    assertStored(2);
+  }
+
+  @Test
+  public void testIndexForAnotherGenerationIsRebuilt() throws IOException {
+    open(ClassPackFile.DEFAULT_CAPACITY);
+    putClasses(0, 2);
+    pack.close();
+
+    long indexLength = indexFile().length();
+    truncate(indexFile(), 32);
+    truncate(indexFile(), indexLength);
+    write(indexFile(), INDEX_GENERATION, new byte[]{ 1, 2, 3, 4, 5, 6, 7, 8 });
+
+    open(ClassPackFile.DEFAULT_CAPACITY);
+    assertStored(0);
+    assertStored(1);
+  }
+
+  @Test
+  public void testTruncatedIndexIsRebuilt() throws IOException {
+    open(ClassPackFile.DEFAULT_CAPACITY);
+    putClasses(0, 2);
+    pack.close();
+
+    truncate(indexFile(), 100);
+    open(ClassPackFile.DEFAULT_CAPACITY);
+    assertStored(0);
+    assertStored(1);
+    pack.close();
+
+    truncate(indexFile(), 10);
+    open(ClassPackFile.DEFAULT_CAPACITY);
+    assertStored(0);
+    assertStored(1);
+    pack.close();
+
+    indexFile().delete();
+    open(ClassPackFile.DEFAULT_CAPACITY);
+    assertStored(0);
+    assertStored(1);
+  }
+
+  @Test
+  public void testTornRecordIsDiscarded() throws IOException {
+    open(ClassPackFile.DEFAULT_CAPACITY);
+    putClasses(0, 3);
+    pack.close();
+
+    /* Cut the last record short, as if the process died writing it. */
+    truncate(dataFile(), DATA_HEADER_SIZE + 3 * RECORD_SIZE - 10);
+    markIndexDirty();
+
+    open(ClassPackFile.DEFAULT_CAPACITY);
+    assertEquals(pack.getEntryCount(), 2);
+    assertStored(0);
+    assertStored(1);
+    assertNotStored(2);
+
+    /* The damaged space is reused. */
+    putClasses(2, 2);
+    reopen(ClassPackFile.DEFAULT_CAPACITY);
+    assertEquals(pack.getEntryCount(), 4);
+    assertEquals(pack.getSize(), DATA_HEADER_SIZE + 4 * RECORD_SIZE);
+    assertStored(2);
+    assertStored(3);
+  }
+
+  @Test
+  public void testTruncatedDataWithCleanIndex() throws IOException {
+    open(ClassPackFile.DEFAULT_CAPACITY);
+    putClasses(0, 3);
+    pack.close();
+
+    truncate(dataFile(), DATA_HEADER_SIZE + 2 * RECORD_SIZE - 10);
+    open(ClassPackFile.DEFAULT_CAPACITY);
+    assertEquals(pack.getEntryCount(), 1);
+    assertStored(0);
+    assertNotStored(1);
+    assertNotStored(2);
+  }
+
+  @Test
+  public void testCorruptRecordIsDiscarded() throws IOException {
+    open(ClassPackFile.DEFAULT_CAPACITY);
+    putClasses(0, 3);
+    pack.close();
+
+    /* Damage the definition in the second record. */
+    write(dataFile(), DATA_HEADER_SIZE + RECORD_SIZE + RECORD_SIZE / 2,
+        new byte[]{ 0x7f, 0x7f, 0x7f });
+    markIndexDirty();
+
+    open(ClassPackFile.DEFAULT_CAPACITY);
+    assertEquals(pack.getEntryCount(), 1);
+    assertStored(0);
+    assertNotStored(1);
+    assertNotStored(2);
+  }
+
+  @Test
+  public void testUnrecognizedDataFileIsDiscarded() throws IOException {
+    open(ClassPackFile.DEFAULT_CAPACITY);
+    putClasses(0, 2);
+    pack.close();
+
+    write(dataFile(), 0, new byte[]{ 'j', 'u', 'n', 'k' });
+    open(ClassPackFile.DEFAULT_CAPACITY);
+    assertEquals(pack.getEntryCount(), 0);
+    assertEquals(pack.getSize(), DATA_HEADER_SIZE);
+    assertNotStored(0);
+
+    putClasses(1, 1);
+    reopen(ClassPackFile.DEFAULT_CAPACITY);
+    assertStored(1);
+  }
+
+  @Test
+  public void testCompactionKeepsTouchedRecords() throws IOException {
+    long capacity = DATA_HEADER_SIZE + 3 * RECORD_SIZE;
+    open(capacity);
+    putClasses(0, 3);
+    reopen(capacity);
+
+    /* Only A is used in this session, so B and C may be discarded. */
+    assertStored(0);
+    putClasses(3, 1);
+
+    assertEquals(pack.getEntryCount(), 2);
+    assertEquals(pack.getSize(), DATA_HEADER_SIZE + 2 * RECORD_SIZE);
+    assertStored(0);
+    assertStored(3);
+    assertNotStored(1);
+    assertNotStored(2);
+    assertTrue(pack.getClassNames("p").containsAll(Arrays.asList("p.A", "p.D")));
+    assertEquals(pack.getClassNames("p").size(), 2);
+
+    /* The compacted pack survives being reopened, cleanly or not. */
+    reopen(capacity);
+    assertStored(0);
+    assertStored(3);
+    pack.close();
+    markIndexDirty();
+    open(capacity);
+    assertEquals(pack.getEntryCount(), 2);
+    assertStored(0);
+    assertStored(3);
+  }
+
+  @Test
+  public void testNoRoomWhenAllRecordsTouched() throws IOException {
+    long capacity = DATA_HEADER_SIZE + 3 * RECORD_SIZE;
+    open(capacity);
+    putClasses(0, 3);
+
+    /* Every record was stored in this session, so none are discarded. */
+    putClasses(3, 1);
+    assertEquals(pack.getEntryCount(), 3);
+    assertStored(0);
+    assertStored(1);
+    assertStored(2);
+    assertNotStored(3);
+  }
+
+}